@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.bench;
+
+import ch.oakmountain.tpa.solver.*;
+import org.joda.time.Minutes;
+
+/**
+ * Generated test data shared by the benchmarks: a test topology, its generated catalogue and an application across the topology.
+ * <p/>
+ * The network sizes are the test topologies: "tiny" (A1 - M1 - M2 - D1) and "large" (A1 - A4 - M1 - M10 - D4 - D1). All slots take 20 minutes.
+ */
+final class BenchmarkFixtures {
+
+    static final String TINY = "tiny";
+    static final String LARGE = "large";
+    static final int SLOT_DURATION_MINUTES = 20;
+
+    private BenchmarkFixtures() {
+    }
+
+    static MacroscopicTopology getTopology(String networkSize) {
+        switch (networkSize) {
+            case TINY:
+                return MacroscopicTopology.getTinyTopology();
+            case LARGE:
+                return MacroscopicTopology.getLargeTopology();
+            default:
+                throw new IllegalArgumentException("Unknown network size \"" + networkSize + "\", expected " + TINY + " or " + LARGE);
+        }
+    }
+
+    static TrainPathSlotCatalogue getCatalogue(MacroscopicTopology macro, int slotsPerHour) {
+        return TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, slotsPerHour, SLOT_DURATION_MINUTES);
+    }
+
+    /**
+     * Returns an application from A1 to D1 on Monday morning, leaving about an hour and a half of slack on top of the running time.
+     *
+     * @param macro
+     * @param networkSize
+     * @return
+     */
+    static SimpleTrainPathApplication getApplication(MacroscopicTopology macro, String networkSize) {
+        PeriodicalTimeFrame endTime = TINY.equals(networkSize) ? new PeriodicalTimeFrame(1, 6, 30) : new PeriodicalTimeFrame(1, 14, 0);
+        return new SimpleTrainPathApplication("benchmark", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(1, 5, 0), endTime, null, 0, 0, 0);
+    }
+
+    /**
+     * Returns pruning parameters wide enough for the DAG to reach the terminal node on all network sizes and slot frequencies.
+     *
+     * @param application
+     * @return
+     */
+    static TrainPathAllocationProblemPruningParameters getParams(SimpleTrainPathApplication application) {
+        return getParams(application, 20);
+    }
+
+    /**
+     * Returns pruning parameters with the given maximum additional dwell time; 10 minutes are needed for the DAG to reach the terminal node at 2 and 4 slots per hour.
+     * <p/>
+     * The number of paths grows exponentially in the additional dwell time over the number of system nodes, e.g. on the large network with 12 slots per hour
+     * there are about 10^7 paths with 10 minutes and 10^12 paths with 20 minutes.
+     *
+     * @param application
+     * @param maxAdditionalDwellMinutes
+     * @return
+     */
+    static TrainPathAllocationProblemPruningParameters getParams(SimpleTrainPathApplication application, int maxAdditionalDwellMinutes) {
+        return application.getParams().toBuilder()
+                .setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(maxAdditionalDwellMinutes).toStandardDuration())
+                .setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(40).toStandardDuration())
+                .setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(60).toStandardDuration())
+                .build();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.bench;
+
+import ch.oakmountain.tpa.solver.PeriodicalTimeFrame;
+import org.joda.time.DateTimeConstants;
+import org.joda.time.Days;
+import org.joda.time.Duration;
+import org.joda.time.Minutes;
+import org.joda.time.chrono.ISOChronology;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Week normalisation of {@link PeriodicalTimeFrame} in constant time versus the former week-by-week loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PeriodicalTimeFrameBenchmark {
+
+    /**
+     * Offset in whole weeks added to the start time.
+     */
+    @Param({"1", "12"})
+    int weeks;
+
+    /**
+     * Local millis of {@link PeriodicalTimeFrame#END_OF_WEEK}, one week after {@link PeriodicalTimeFrame#START_OF_WEEK}.
+     */
+    private static final long END_OF_WEEK_LOCAL_MILLIS = PeriodicalTimeFrame.START_OF_WEEK.toDuration().getMillis() + DateTimeConstants.MILLIS_PER_WEEK;
+
+    private PeriodicalTimeFrame startTime;
+    private Duration offset;
+    /**
+     * Local millis of the start time shifted by the offset, i.e. the input of the week normalisation.
+     */
+    private long shiftedLocalMillis;
+
+    @Setup
+    public void setUp() {
+        startTime = new PeriodicalTimeFrame(DateTimeConstants.WEDNESDAY, 13, 37);
+        offset = Days.days(7 * weeks).toStandardDuration().plus(Minutes.minutes(5).toStandardDuration());
+        shiftedLocalMillis = END_OF_WEEK_LOCAL_MILLIS - DateTimeConstants.MILLIS_PER_WEEK + startTime.getMillisOfWeek() + offset.getMillis();
+    }
+
+    @Benchmark
+    public PeriodicalTimeFrame shiftToStandardWeek() {
+        return startTime.plus(offset);
+    }
+
+    /**
+     * The former week normalisation, which shifts by one week per iteration.
+     */
+    @Benchmark
+    public PeriodicalTimeFrame shiftToStandardWeekByLoop() {
+        long localMillis = shiftedLocalMillis;
+        PeriodicalTimeFrame periodicalTimeFrame = new PeriodicalTimeFrame(localMillis, ISOChronology.getInstanceUTC());
+        while (periodicalTimeFrame.isAfterOrEqual(PeriodicalTimeFrame.END_OF_WEEK)) {
+            localMillis = periodicalTimeFrame.getChronology().days().add(localMillis, -7);
+            periodicalTimeFrame = new PeriodicalTimeFrame(localMillis, ISOChronology.getInstanceUTC());
+        }
+        while (periodicalTimeFrame.isBefore(PeriodicalTimeFrame.START_OF_WEEK)) {
+            localMillis = periodicalTimeFrame.getChronology().days().add(localMillis, 7);
+            periodicalTimeFrame = new PeriodicalTimeFrame(localMillis, ISOChronology.getInstanceUTC());
+        }
+        return periodicalTimeFrame;
+    }
+}
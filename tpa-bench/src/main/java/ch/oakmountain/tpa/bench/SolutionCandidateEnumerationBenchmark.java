@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.bench;
+
+import ch.oakmountain.tpa.solver.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enumeration of all solution candidates of a train path DAG, and of the cheapest ones.
+ * <p/>
+ * Full enumeration is exponential in the slot frequency, so the DAGs are built with 10 minutes maximum additional dwell time and at most 6 slots per hour,
+ * which gives about 25000 paths on the large network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolutionCandidateEnumerationBenchmark {
+
+    @Param({BenchmarkFixtures.TINY, BenchmarkFixtures.LARGE})
+    String networkSize;
+
+    @Param({"2", "4", "6"})
+    int slotsPerHour;
+
+    /**
+     * Number of cheapest solution candidates to enumerate.
+     */
+    @Param({"10"})
+    int k;
+
+    private TrainPathDAG dag;
+
+    @Setup
+    public void setUp() {
+        MacroscopicTopology macro = BenchmarkFixtures.getTopology(networkSize);
+        TrainPathSlotCatalogue catalogue = BenchmarkFixtures.getCatalogue(macro, slotsPerHour);
+        SimpleTrainPathApplication application = BenchmarkFixtures.getApplication(macro, networkSize);
+        dag = TrainPathDAG.constructDAG(macro, application, BenchmarkFixtures.getParams(application, 10), catalogue);
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public Set<SolutionCandidate> enumerate() {
+        return dag.enumerate(1).getSolutionCandidates();
+    }
+
+    @Benchmark
+    public int solutionCandidateIterator() {
+        SolutionCandidateIterator iterator = dag.solutionCandidateIterator(false, Integer.MAX_VALUE);
+        while (iterator.hasNext()) {
+            iterator.next();
+        }
+        return iterator.getNbReturned();
+    }
+
+    @Benchmark
+    public int solutionCandidateIteratorByIncreasingWeight() {
+        SolutionCandidateIterator iterator = dag.solutionCandidateIterator(true, k);
+        while (iterator.hasNext()) {
+            iterator.next();
+        }
+        return iterator.getNbReturned();
+    }
+}
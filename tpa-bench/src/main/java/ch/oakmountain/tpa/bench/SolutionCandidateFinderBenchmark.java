@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.bench;
+
+import ch.oakmountain.tpa.solver.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search for pruning parameters that make an application's DAG feasible, starting from the default pruning.
+ * <p/>
+ * Every invocation starts with an empty DAG cache, so the default DAG and the widened DAG are constructed each time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolutionCandidateFinderBenchmark {
+
+    @Param({BenchmarkFixtures.TINY, BenchmarkFixtures.LARGE})
+    String networkSize;
+
+    @Param({"2", "4", "12"})
+    int slotsPerHour;
+
+    private MacroscopicTopology macro;
+    private TrainPathSlotCatalogue catalogue;
+    private SimpleTrainPathApplication application;
+
+    @Setup
+    public void setUp() {
+        macro = BenchmarkFixtures.getTopology(networkSize);
+        catalogue = BenchmarkFixtures.getCatalogue(macro, slotsPerHour);
+        application = BenchmarkFixtures.getApplication(macro, networkSize);
+    }
+
+    @Benchmark
+    public TrainPathDAG findFeasibleDAG() throws IOException, IllegalAccessException {
+        return SolutionCandidateFinder.findFeasibleDAG(macro, catalogue, application);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.bench;
+
+import ch.oakmountain.tpa.solver.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of a train path DAG and counting its paths.
+ *
+ * @see SolutionCandidateEnumerationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrainPathDAGBenchmark {
+
+    @Param({BenchmarkFixtures.TINY, BenchmarkFixtures.LARGE})
+    String networkSize;
+
+    @Param({"2", "4", "12"})
+    int slotsPerHour;
+
+    @Param({"false", "true"})
+    boolean reachabilityPruning;
+
+    private MacroscopicTopology macro;
+    private TrainPathSlotCatalogue catalogue;
+    private SimpleTrainPathApplication application;
+    private TrainPathAllocationProblemPruningParameters params;
+    private TrainPathDAG dag;
+
+    @Setup
+    public void setUp() {
+        macro = BenchmarkFixtures.getTopology(networkSize);
+        catalogue = BenchmarkFixtures.getCatalogue(macro, slotsPerHour);
+        application = BenchmarkFixtures.getApplication(macro, networkSize);
+        params = BenchmarkFixtures.getParams(application).toBuilder().setReachabilityPruning(reachabilityPruning).build();
+        dag = TrainPathDAG.constructDAG(macro, application, params, catalogue);
+        if (!dag.isTargetNodeReached()) {
+            throw new IllegalStateException("DAG for " + networkSize + " network with " + slotsPerHour + " slots per hour does not reach the terminal node");
+        }
+    }
+
+    @Benchmark
+    public TrainPathDAG constructDAG() {
+        return TrainPathDAG.constructDAG(macro, application, params, catalogue);
+    }
+
+    @Benchmark
+    public long nbPaths() {
+        return dag.nbPaths();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.bench;
+
+import ch.oakmountain.tpa.solver.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catalogue queries as issued by DAG construction: the slots of a link departing within a window.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrainPathSlotCatalogueBenchmark {
+
+    @Param({BenchmarkFixtures.TINY, BenchmarkFixtures.LARGE})
+    String networkSize;
+
+    @Param({"2", "4", "12"})
+    int slotsPerHour;
+
+    /**
+     * Window length in minutes.
+     */
+    @Param({"60", "240"})
+    int windowMinutes;
+
+    private TrainPathSlotCatalogue catalogue;
+    private SystemNode from;
+    private SystemNode to;
+    private int earliestMillisOfWeek;
+    private int latestMillisOfWeek;
+
+    @Setup
+    public void setUp() {
+        MacroscopicTopology macro = BenchmarkFixtures.getTopology(networkSize);
+        catalogue = BenchmarkFixtures.getCatalogue(macro, slotsPerHour);
+        from = macro.getSystemNode("A1");
+        to = macro.getSuccessors(from, from, macro.getSystemNode("D1")).get(0);
+        earliestMillisOfWeek = new PeriodicalTimeFrame(1, 5, 0).getMillisOfWeek();
+        latestMillisOfWeek = MillisOfWeek.plus(earliestMillisOfWeek, (int) TimeUnit.MINUTES.toMillis(windowMinutes));
+        // build the link index outside of the measurement
+        catalogue.getSortedTrainPathSlots(from, to, earliestMillisOfWeek, latestMillisOfWeek);
+    }
+
+    @Benchmark
+    public List<TrainPathSlot> getSortedTrainPathSlots() {
+        return catalogue.getSortedTrainPathSlots(from, to, earliestMillisOfWeek, latestMillisOfWeek);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.bench;
+
+import ch.oakmountain.tpa.solver.*;
+import ch.oakmountain.tpa.web.GraphCSV;
+import ch.oakmountain.tpa.web.TpaWebPersistor;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Web output of a train path DAG as written by the statistics: the DAG including removed arcs, and the solution candidates highlighted in the DAG.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebOutputBenchmark {
+
+    @Param({BenchmarkFixtures.TINY, BenchmarkFixtures.LARGE})
+    String networkSize;
+
+    @Param({"2", "4", "12"})
+    int slotsPerHour;
+
+    /**
+     * Maximum number of solution candidates to highlight.
+     */
+    @Param({"10"})
+    int nbSolutionCandidates;
+
+    private TrainPathDAG dag;
+    private Set<SolutionCandidate> solutionCandidates;
+    private File outputDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        MacroscopicTopology macro = BenchmarkFixtures.getTopology(networkSize);
+        TrainPathSlotCatalogue catalogue = BenchmarkFixtures.getCatalogue(macro, slotsPerHour);
+        SimpleTrainPathApplication application = BenchmarkFixtures.getApplication(macro, networkSize);
+        dag = TrainPathDAG.constructDAG(macro, application, BenchmarkFixtures.getParams(application), catalogue);
+        solutionCandidates = new HashSet<>();
+        SolutionCandidateIterator iterator = dag.solutionCandidateIterator(true, nbSolutionCandidates);
+        while (iterator.hasNext()) {
+            solutionCandidates.add(iterator.next());
+        }
+        outputDir = Files.createTempDirectory("tpa-bench").toFile();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(outputDir);
+    }
+
+    @Benchmark
+    public String dagToCSV() {
+        return dag.toCSV(new HashSet<SolutionCandidate>(), true).toString();
+    }
+
+    @Benchmark
+    public String solutionCandidatesToCSV() {
+        return dag.toCSV(solutionCandidates, false).toString();
+    }
+
+    @Benchmark
+    public GraphCSV createGraph() throws IOException {
+        GraphCSV csv = dag.toCSV(new HashSet<SolutionCandidate>(), true);
+        TpaWebPersistor.createGraph("dag", outputDir.getAbsolutePath(), csv, "<h1>Train Path Slot DAG</h1>");
+        return csv;
+    }
+}
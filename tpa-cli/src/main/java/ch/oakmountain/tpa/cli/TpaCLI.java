@@ -20,13 +20,11 @@ import ch.oakmountain.tpa.parser.TpaParser;
 import ch.oakmountain.tpa.solver.*;
 import ch.oakmountain.tpa.web.TpaWebPersistor;
 import com.google.common.base.Stopwatch;
-import gurobi.GRBException;
 import org.apache.commons.cli.*;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.codehaus.plexus.util.dag.CycleDetectedException;
 
 import java.io.*;
 import java.nio.file.FileSystems;
@@ -63,11 +61,11 @@ public class TpaCLI {
      * @param args Expect one argument that capsuleSetupOnly the FILE to read.
      * @throws java.io.IOException When there capsuleSetupOnly an error processing the FILE.
      */
-    public static void main(String[] args) throws CycleDetectedException, InfeasibleTPAException, IllegalAccessException, IOException, GRBException {
+    public static void main(String[] args) throws InfeasibleTPAException, IllegalAccessException, IOException {
         doMain(args);
     }
 
-    public static TrainPathAllocations doMain(String[] args) throws IOException, CycleDetectedException, IllegalAccessException, InfeasibleTPAException, GRBException {
+    public static TrainPathAllocations doMain(String[] args) throws IOException, IllegalAccessException, InfeasibleTPAException {
         TpaCLIPropertiesCapsule tpaCLIPropertiesCapsule = new TpaCLIPropertiesCapsule(args).setup();
         if (tpaCLIPropertiesCapsule.capsuleSetupOnly()) return null;
         TpaParser tpaParser = tpaCLIPropertiesCapsule.getTpaParser();
@@ -75,7 +73,16 @@ public class TpaCLI {
         boolean clean = tpaCLIPropertiesCapsule.isClean();
         boolean ignoreinfeasibleapps = tpaCLIPropertiesCapsule.isIgnoreinfeasibleapps();
         boolean skipweboutput = tpaCLIPropertiesCapsule.isSkipweboutput();
-        boolean pathbased = tpaCLIPropertiesCapsule.isPathbased();
+        TrainPathAllocationProblemModel.ModelType modelType = tpaCLIPropertiesCapsule.getModelType();
+        boolean weekdayaggregation = tpaCLIPropertiesCapsule.isWeekdayaggregation();
+        boolean decompose = tpaCLIPropertiesCapsule.isDecompose();
+        boolean lagrangian = tpaCLIPropertiesCapsule.isLagrangian();
+        TrainPathAllocationProblemGreedyHeuristic.Priority greedyPriority = tpaCLIPropertiesCapsule.getGreedyPriority();
+        boolean greedyOnly = tpaCLIPropertiesCapsule.isGreedyOnly();
+        int nbThreads = tpaCLIPropertiesCapsule.getNbThreads();
+        int dagCacheSize = tpaCLIPropertiesCapsule.getDagCacheSize();
+        int kBest = tpaCLIPropertiesCapsule.getKBest();
+        MIPSolver solver = tpaCLIPropertiesCapsule.getSolverType().createSolver(tpaCLIPropertiesCapsule.getTimeLimit(), tpaCLIPropertiesCapsule.getNodeLimit());
         String fileName = tpaCLIPropertiesCapsule.getFileName();
         Periodicity requestFilterLower = tpaCLIPropertiesCapsule.getRequestFilterLower();
         Periodicity requestFilterUpper = tpaCLIPropertiesCapsule.getRequestFilterUpper();
@@ -83,6 +90,8 @@ public class TpaCLI {
         int globalHardMaximumEarlierDeparture = tpaCLIPropertiesCapsule.getGlobalHardMaximumEarlierDeparture();
         int globalHardMinimumDwellTime = tpaCLIPropertiesCapsule.getGlobalHardMinimumDwellTime();
         int globalHardMaximumLaterArrival = tpaCLIPropertiesCapsule.getGlobalHardMaximumLaterArrival();
+        boolean reachabilityPruning = tpaCLIPropertiesCapsule.isReachabilityPruning();
+        boolean sanityCheck = tpaCLIPropertiesCapsule.isSanityCheck();
 
         try {
             Stopwatch stopwatchParseModel = TPAUtil.startStopWatch();
@@ -100,7 +109,7 @@ public class TpaCLI {
             trainPathSlotCatalogue.logInfo();
 
             // Parse train path applications
-            List<TrainPathApplication> periodicalTrainPathApplicationWithPeriodicities = tpaParser.readRequests(macroscopicTopology, requestFilterLower, requestFilterUpper, clean, true, globalHardMaximumEarlierDeparture, globalHardMinimumDwellTime, globalHardMaximumLaterArrival);
+            List<TrainPathApplication> periodicalTrainPathApplicationWithPeriodicities = tpaParser.readRequests(macroscopicTopology, requestFilterLower, requestFilterUpper, clean, true, globalHardMaximumEarlierDeparture, globalHardMinimumDwellTime, globalHardMaximumLaterArrival, reachabilityPruning, sanityCheck);
             LOGGER.info("Including the following " + periodicalTrainPathApplicationWithPeriodicities.size() + " unallocated requests...");
             for (TrainPathApplication r : periodicalTrainPathApplicationWithPeriodicities) {
                 LOGGER.info("  Including request " + r.getName() + " on " + r.getNbDays() + " days: " + r.getPeriodicity().getStringRepresentation());
@@ -114,7 +123,7 @@ public class TpaCLI {
             }
             TPAUtil.stopStopWatch(stopwatchParseModel, "PARSE MODEL");
 
-            TrainPathAllocationProblem tpa = new TrainPathAllocationProblem(macroscopicTopology, simpleTrainPathApplications, trainPathSlotCatalogue);
+            TrainPathAllocationProblem tpa = new TrainPathAllocationProblem(macroscopicTopology, simpleTrainPathApplications, trainPathSlotCatalogue, new TrainPathDAGCache(dagCacheSize));
 
             // Statistics?
             if (!skipweboutput) {
@@ -123,14 +132,35 @@ public class TpaCLI {
                 TPAUtil.stopStopWatch(stopwatchStats, "COMPILING STATS");
             }
 
-            TrainPathAllocationProblemModel tpaModel;
-            if (pathbased) {
-                tpaModel = new TrainPathAllocationProblemModelPathBased(tpa);
-            } else {
-                tpaModel = new TrainPathAllocationProblemModelArcNode(tpa);
+            // Solve equivalent weekdays only once?
+            TrainPathAllocationProblemWeekdayAggregation aggregation = null;
+            if (weekdayaggregation) {
+                aggregation = TrainPathAllocationProblemWeekdayAggregation.aggregate(tpa);
             }
+            TrainPathAllocationProblem tpaToSolve = aggregation == null ? tpa : aggregation.getRepresentativeProblem();
 
-            TrainPathAllocations result = tpaModel.solve(outputDir, ignoreinfeasibleapps, true);
+            // Greedy allocation as start solution or on its own?
+            TrainPathAllocations start = null;
+            if (greedyPriority != null) {
+                start = new TrainPathAllocationProblemGreedyHeuristic(tpaToSolve, nbThreads, greedyPriority).solve(ignoreinfeasibleapps);
+            }
+
+            TrainPathAllocations result;
+            if (greedyOnly) {
+                result = start;
+            } else if (lagrangian) {
+                result = new TrainPathAllocationProblemLagrangianRelaxation(tpaToSolve, nbThreads).solve(ignoreinfeasibleapps).getAllocations();
+            } else if (decompose) {
+                TrainPathAllocationProblemDecomposition decomposition = TrainPathAllocationProblemDecomposition.decompose(tpaToSolve, nbThreads);
+                result = decomposition.solve(outputDir, ignoreinfeasibleapps, true, modelType, kBest, nbThreads, solver, start);
+            } else {
+                TrainPathAllocationProblemModel tpaModel = modelType.createModel(tpaToSolve, nbThreads, kBest, solver);
+                tpaModel.setStart(start);
+                result = tpaModel.solve(outputDir, ignoreinfeasibleapps, true);
+            }
+            if (aggregation != null) {
+                result = aggregation.expand(result);
+            }
 
             tpaParser.allocate(result.getAllocations());
 
@@ -166,7 +196,14 @@ public class TpaCLI {
         CLEAN("clean", "start with empty allocation"),
         IGNOREINFEASIBLEAPPLICATIONS("ignoreinfeasibleapps", "ignore infeasible train path applications and try to allocation feasible applications"),
         PATHBASED("pathbased", "use path-based model, default is arc-node model"),
+        COLUMNGENERATION("columngeneration", "use path-based model, generating its paths by column generation instead of enumerating them"),
         SKIPWEBOUTPUT("skipweboutput", "do not create html pages (may save time)"),
+        DECOMPOSE("decompose", "solve applications not sharing any slot as separate models concurrently"),
+        GREEDYONLY("greedyonly", "allocate greedily without MIP (priority given by -greedy, dagsize if not given); infeasible or blocked applications remain unallocated"),
+        LAGRANGIAN("lagrangian", "solve heuristically by Lagrangian relaxation of the slot capacity constraints instead of a MIP model"),
+        WEEKDAYAGGREGATION("weekdayaggregation", "solve equivalent weekdays only once if no application crosses midnight"),
+        BIDIRECTIONAL("bidirectional", "construct train path DAGs without slots that cannot reach the destination in time, using backward time bounds per system node"),
+        SANITYCHECK("sanitycheck", "debug: check each application's earliest path against its DAG relaxed to the hard bounds (slow)"),
         CLEANOUTPUT("cleanoutput", "delete dthe output dir"),
         HELP("help", "show this help message and terminate"),
         CONFIGHELP("confighelp", "show file format configuration options and terminate"),
@@ -176,6 +213,13 @@ public class TpaCLI {
         OUTPUT("output", true, "file", "output directory", true, "output"),
         REQUESTFILTER("requestfilter", true, "pattern", "Pattern of the form 01??000", true, Periodicity.allPattern),
         ENUM_MAX_ITERATION("max_iter", true, "nb", "maximum iterations", true, "5"),
+        THREADS("threads", true, "nb", "number of threads building the train path DAGs (and solving conflict components)", true, String.valueOf(Runtime.getRuntime().availableProcessors())),
+        KBEST("kbest", true, "nb", "number of cheapest paths per application in the path-based model, all paths if not given", true, null),
+        SOLVER("solver", true, "name", "MIP solver: gurobi or builtin (pure Java, for small models)", true, "gurobi"),
+        TIMELIMIT("timelimit", true, "seconds", "time limit of each MIP optimization, keeping the best allocation found; no limit if not given", true, null),
+        NODELIMIT("nodelimit", true, "nb", "branch-and-bound node limit of each MIP optimization, keeping the best allocation found; no limit if not given", true, null),
+        GREEDY("greedy", true, "priority", "start the MIP from a greedy allocation, allocating applications by priority dagsize, candidates or weight", true, null),
+        DAGCACHE("dagcache", true, "nb", "maximum number of cached train path DAGs, 0 disables the cache", true, String.valueOf(TrainPathDAGCache.DEFAULT_MAXIMUM_SIZE)),
         GLOBALHARDMAXIMUMLATERARRIVAL("globalHardMaximumLaterArrival", true, "nb", "global hard maximum later arrival (minutes)", true, "0"),
         GLOBALHARDMAXIMUMEARLIERDEPARTURE("globalHardMaximumEarlierDeparture", true, "nb", "global hard maximum earlier departure (minutes)", true, "0"),
         GLOBALHARDMINIMUMDWELLTIME("globalHardMinimumDwellTime", true, "nb", "global hard minimum dwell time", true, "0");
@@ -256,14 +300,79 @@ public class TpaCLI {
         private int globalHardMaximumEarlierDeparture;
         private int globalHardMinimumDwellTime;
         private boolean ignoreinfeasibleapps;
-        private boolean pathbased;
+        private TrainPathAllocationProblemModel.ModelType modelType;
+        private boolean weekdayaggregation;
+        private boolean decompose;
+        private boolean lagrangian;
+        private boolean reachabilityPruning;
+        private boolean sanityCheck;
+        private TrainPathAllocationProblemGreedyHeuristic.Priority greedyPriority;
+        private boolean greedyOnly;
+        private int nbThreads;
+        private int dagCacheSize;
+        private int kBest;
+        private MIPSolver.Type solverType;
+        private double timeLimit;
+        private double nodeLimit;
 
         public TpaCLIPropertiesCapsule(String... args) {
             this.args = args;
         }
 
-        public boolean isPathbased() {
-            return pathbased;
+        public TrainPathAllocationProblemModel.ModelType getModelType() {
+            return modelType;
+        }
+
+        public boolean isWeekdayaggregation() {
+            return weekdayaggregation;
+        }
+
+        public boolean isDecompose() {
+            return decompose;
+        }
+
+        public boolean isLagrangian() {
+            return lagrangian;
+        }
+
+        public boolean isReachabilityPruning() {
+            return reachabilityPruning;
+        }
+
+        public boolean isSanityCheck() {
+            return sanityCheck;
+        }
+
+        public TrainPathAllocationProblemGreedyHeuristic.Priority getGreedyPriority() {
+            return greedyPriority;
+        }
+
+        public boolean isGreedyOnly() {
+            return greedyOnly;
+        }
+
+        public int getNbThreads() {
+            return nbThreads;
+        }
+
+        public int getDagCacheSize() {
+            return dagCacheSize;
+        }
+
+        public int getKBest() {
+            return kBest;
+        }
+
+        public MIPSolver.Type getSolverType() {
+            return solverType;
+        }
+
+        public double getTimeLimit() {
+            return timeLimit;
+        }
+
+        public double getNodeLimit() {
+            return nodeLimit;
         }
 
         public boolean isIgnoreinfeasibleapps() {
@@ -402,7 +511,18 @@ public class TpaCLI {
                 Files.createDirectory(outputDirPath);
             }
             skipweboutput = commandLine.hasOption(tpaOptions.SKIPWEBOUTPUT.getOpt());
-            pathbased = commandLine.hasOption(tpaOptions.PATHBASED.getOpt());
+            if (commandLine.hasOption(tpaOptions.COLUMNGENERATION.getOpt())) {
+                modelType = TrainPathAllocationProblemModel.ModelType.PATH_BASED_COLUMN_GENERATION;
+            } else if (commandLine.hasOption(tpaOptions.PATHBASED.getOpt())) {
+                modelType = TrainPathAllocationProblemModel.ModelType.PATH_BASED;
+            } else {
+                modelType = TrainPathAllocationProblemModel.ModelType.ARC_NODE;
+            }
+            weekdayaggregation = commandLine.hasOption(tpaOptions.WEEKDAYAGGREGATION.getOpt());
+            decompose = commandLine.hasOption(tpaOptions.DECOMPOSE.getOpt());
+            lagrangian = commandLine.hasOption(tpaOptions.LAGRANGIAN.getOpt());
+            sanityCheck = commandLine.hasOption(tpaOptions.SANITYCHECK.getOpt());
+            reachabilityPruning = commandLine.hasOption(tpaOptions.BIDIRECTIONAL.getOpt());
 
             Pair<Periodicity, Periodicity> periodicityBounds;
             if (commandLine.hasOption(tpaOptions.REQUESTFILTER.getOpt())) {
@@ -420,6 +540,58 @@ public class TpaCLI {
                 dagEnumeration_maxIter = Integer.parseInt(tpaOptions.ENUM_MAX_ITERATION.getDefaultValue());
             }
 
+            if (commandLine.hasOption(tpaOptions.THREADS.getOpt())) {
+                nbThreads = Integer.parseInt(commandLine.getOptionValue(tpaOptions.THREADS.getOpt()));
+            } else {
+                nbThreads = Integer.parseInt(tpaOptions.THREADS.getDefaultValue());
+            }
+            if (nbThreads < 1) {
+                throw new IllegalArgumentException("Option \"-" + tpaOptions.THREADS.getOpt() + "\" expects a positive number of threads, found " + nbThreads);
+            }
+
+            if (commandLine.hasOption(tpaOptions.DAGCACHE.getOpt())) {
+                dagCacheSize = Integer.parseInt(commandLine.getOptionValue(tpaOptions.DAGCACHE.getOpt()));
+            } else {
+                dagCacheSize = Integer.parseInt(tpaOptions.DAGCACHE.getDefaultValue());
+            }
+            if (dagCacheSize < 0) {
+                throw new IllegalArgumentException("Option \"-" + tpaOptions.DAGCACHE.getOpt() + "\" expects a non-negative number of DAGs, found " + dagCacheSize);
+            }
+
+            if (commandLine.hasOption(tpaOptions.KBEST.getOpt())) {
+                kBest = Integer.parseInt(commandLine.getOptionValue(tpaOptions.KBEST.getOpt()));
+                if (kBest < 1) {
+                    throw new IllegalArgumentException("Option \"-" + tpaOptions.KBEST.getOpt() + "\" expects a positive number of paths, found " + kBest);
+                }
+            } else {
+                kBest = Integer.MAX_VALUE;
+            }
+
+            String solverName = commandLine.hasOption(tpaOptions.SOLVER.getOpt()) ? commandLine.getOptionValue(tpaOptions.SOLVER.getOpt()) : tpaOptions.SOLVER.getDefaultValue();
+            if ("gurobi".equals(solverName)) {
+                solverType = MIPSolver.Type.GUROBI;
+            } else if ("builtin".equals(solverName)) {
+                solverType = MIPSolver.Type.BUILT_IN;
+            } else {
+                throw new IllegalArgumentException("Option \"-" + tpaOptions.SOLVER.getOpt() + "\" expects gurobi or builtin, found " + solverName);
+            }
+            timeLimit = getLimit(commandLine, tpaOptions.TIMELIMIT, "seconds");
+            nodeLimit = getLimit(commandLine, tpaOptions.NODELIMIT, "nodes");
+
+            greedyOnly = commandLine.hasOption(tpaOptions.GREEDYONLY.getOpt());
+            String greedyPriorityName = commandLine.hasOption(tpaOptions.GREEDY.getOpt()) ? commandLine.getOptionValue(tpaOptions.GREEDY.getOpt()) : greedyOnly ? "dagsize" : null;
+            if (greedyPriorityName == null) {
+                greedyPriority = null;
+            } else if ("dagsize".equals(greedyPriorityName)) {
+                greedyPriority = TrainPathAllocationProblemGreedyHeuristic.Priority.DAG_SIZE;
+            } else if ("candidates".equals(greedyPriorityName)) {
+                greedyPriority = TrainPathAllocationProblemGreedyHeuristic.Priority.FEWEST_CANDIDATES;
+            } else if ("weight".equals(greedyPriorityName)) {
+                greedyPriority = TrainPathAllocationProblemGreedyHeuristic.Priority.WEIGHT;
+            } else {
+                throw new IllegalArgumentException("Option \"-" + tpaOptions.GREEDY.getOpt() + "\" expects dagsize, candidates or weight, found " + greedyPriorityName);
+            }
+
             if (commandLine.hasOption(tpaOptions.GLOBALHARDMAXIMUMEARLIERDEPARTURE.getOpt())) {
                 globalHardMaximumEarlierDeparture = Integer.parseInt(commandLine.getOptionValue(tpaOptions.GLOBALHARDMAXIMUMEARLIERDEPARTURE.getOpt()));
             } else {
@@ -444,6 +616,17 @@ public class TpaCLI {
             return this;
         }
 
+        private static double getLimit(CommandLine commandLine, tpaOptions option, String unit) {
+            if (!commandLine.hasOption(option.getOpt())) {
+                return Double.POSITIVE_INFINITY;
+            }
+            double limit = Double.parseDouble(commandLine.getOptionValue(option.getOpt()));
+            if (!(limit > 0)) {
+                throw new IllegalArgumentException("Option \"-" + option.getOpt() + "\" expects a positive number of " + unit + ", found " + limit);
+            }
+            return limit;
+        }
+
         public int getGlobalHardMaximumEarlierDeparture() {
             return globalHardMaximumEarlierDeparture;
         }
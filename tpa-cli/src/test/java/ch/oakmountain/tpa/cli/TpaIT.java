@@ -31,7 +31,6 @@ import org.apache.logging.log4j.core.appender.FileAppender;
 import org.apache.logging.log4j.core.config.Configuration;
 import org.apache.logging.log4j.core.config.LoggerConfig;
 import org.apache.logging.log4j.core.layout.PatternLayout;
-import org.codehaus.plexus.util.dag.CycleDetectedException;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -147,13 +146,12 @@ public class TpaIT {
     /**
      * Data set 1: a single daily request on a line, flat.
      *
-     * @throws CycleDetectedException
      * @throws IllegalAccessException
      * @throws ParseException
      * @throws IOException
      */
     @Test
-    public void integrationTest1() throws CycleDetectedException, IllegalAccessException, ParseException, IOException, InfeasibleTPAException, GRBException {
+    public void integrationTest1() throws IllegalAccessException, ParseException, IOException, InfeasibleTPAException, GRBException {
         ITCapsule ITCapsule = new ITCapsule("TpaTestData.xls").invoke(0, 5, 60);
         List<TrainPathApplication> requests = ITCapsule.getRequests();
         TrainPathSlotCatalogue trainPathSlotCatalogue = ITCapsule.getTrainPathSlotCatalogue();
@@ -197,13 +195,12 @@ public class TpaIT {
     /**
      * Data set 1: a single Mon-only request on a line, flat.
      *
-     * @throws CycleDetectedException
      * @throws IllegalAccessException
      * @throws ParseException
      * @throws IOException
      */
     @Test
-    public void integrationTest1MonTueOnly() throws CycleDetectedException, IllegalAccessException, ParseException, IOException, InfeasibleTPAException, GRBException {
+    public void integrationTest1MonTueOnly() throws IllegalAccessException, ParseException, IOException, InfeasibleTPAException, GRBException {
         ITCapsule ITCapsule = new ITCapsule("TpaTestData_MonTueonly.xls").invoke(0, 5, 60);
         List<TrainPathApplication> requests = ITCapsule.getRequests();
         TrainPathSlotCatalogue trainPathSlotCatalogue = ITCapsule.getTrainPathSlotCatalogue();
@@ -226,13 +223,12 @@ public class TpaIT {
     /**
      * Data set 2: two daily requests at the same time, flat.
      *
-     * @throws CycleDetectedException
      * @throws IllegalAccessException
      * @throws ParseException
      * @throws IOException
      */
     @Test
-    public void integrationTest2() throws CycleDetectedException, IllegalAccessException, ParseException, IOException, InfeasibleTPAException, GRBException {
+    public void integrationTest2() throws IllegalAccessException, ParseException, IOException, InfeasibleTPAException, GRBException {
         ITCapsule ITCapsule = new ITCapsule("TpaTestData2.xls").invoke(0, 5, 60);
         List<TrainPathApplication> requests = ITCapsule.getRequests();
         TrainPathSlotCatalogue trainPathSlotCatalogue = ITCapsule.getTrainPathSlotCatalogue();
@@ -262,13 +258,12 @@ public class TpaIT {
     /**
      * Data set 3: two requests at the same time, first one daily, second one Mon-Tue only, flat.
      *
-     * @throws CycleDetectedException
      * @throws IllegalAccessException
      * @throws ParseException
      * @throws IOException
      */
     @Test
-    public void integrationTest3() throws CycleDetectedException, IllegalAccessException, ParseException, IOException, InfeasibleTPAException, GRBException {
+    public void integrationTest3() throws IllegalAccessException, ParseException, IOException, InfeasibleTPAException, GRBException {
         ITCapsule ITCapsule = new ITCapsule("TpaTestData3.xls").invoke(0, 5, 60);
         List<TrainPathApplication> requests = ITCapsule.getRequests();
         TrainPathSlotCatalogue trainPathSlotCatalogue = ITCapsule.getTrainPathSlotCatalogue();
@@ -306,13 +301,12 @@ public class TpaIT {
     /**
      * Data set 4: two requests at shifted, first one daily, second one Mon-Tue only, flat.
      *
-     * @throws CycleDetectedException
      * @throws IllegalAccessException
      * @throws ParseException
      * @throws IOException
      */
     @Test
-    public void integrationTest4() throws CycleDetectedException, IllegalAccessException, ParseException, IOException, InfeasibleTPAException, GRBException {
+    public void integrationTest4() throws IllegalAccessException, ParseException, IOException, InfeasibleTPAException, GRBException {
         ITCapsule itCapsule = new ITCapsule("TpaTestData4.xls").invoke(0, 5, 60);
         List<TrainPathApplication> requests = itCapsule.getRequests();
         TrainPathSlotCatalogue trainPathSlotCatalogue = itCapsule.getTrainPathSlotCatalogue();
@@ -348,7 +342,7 @@ public class TpaIT {
     }
 
     @Test
-    public void integrationTestGeneratedEarliness() throws CycleDetectedException, IllegalAccessException, ParseException, IOException, GRBException {
+    public void integrationTestGeneratedEarliness() throws IllegalAccessException, ParseException, IOException, GRBException {
         try {
             TrainPathAllocations results = runIntegrationTestGenerated(90, 4, 60, 5, 60, TEMPLATE_TINY);
             TrainPathAllocationProblem tpa = results.getTpa();
@@ -382,7 +376,7 @@ public class TpaIT {
     }
 
     @Test
-    public void integrationTestGeneratedNoEarliness() throws CycleDetectedException, IllegalAccessException, ParseException, IOException, GRBException {
+    public void integrationTestGeneratedNoEarliness() throws IllegalAccessException, ParseException, IOException, GRBException {
         try {
             TrainPathAllocations results = runIntegrationTestGenerated(90, 4, 0, 5, 60, TEMPLATE_TINY);
             TrainPathAllocationProblem tpa = results.getTpa();
@@ -416,7 +410,7 @@ public class TpaIT {
         }
     }
 
-    private TrainPathAllocations runIntegrationTestGenerated(int requestDuration, int nbSlotsPerHour, int globalHardMaximumEarlierDeparture, int globalHardMinimumDwellTime, int globalHardMaximumLaterArrival, String templateFile) throws IOException, IllegalAccessException, CycleDetectedException, InfeasibleTPAException, GRBException {
+    private TrainPathAllocations runIntegrationTestGenerated(int requestDuration, int nbSlotsPerHour, int globalHardMaximumEarlierDeparture, int globalHardMinimumDwellTime, int globalHardMaximumLaterArrival, String templateFile) throws IOException, IllegalAccessException, InfeasibleTPAException, GRBException {
         // Generate test data
         String outputDir = getOutputDirName();
         String outFileName = outputDir + File.separator + "TpaTestDataGenerated.xls";
@@ -458,7 +452,7 @@ public class TpaIT {
     }
 
     @Test
-    public void integrationTestGeneratedConflict() throws CycleDetectedException, IllegalAccessException, ParseException, IOException, InfeasibleTPAException, GRBException {
+    public void integrationTestGeneratedConflict() throws IllegalAccessException, ParseException, IOException, InfeasibleTPAException, GRBException {
         // http://stackoverflow.com/questions/156503/how-do-you-assert-that-a-certain-exception-is-thrown-in-junit-4-tests
         exception.expect(InfeasibleTPAException.class);
         TrainPathAllocations results = runIntegrationTestGenerated(3 * 30, 3, 0, 5, 60, TEMPLATE_TINY);
@@ -510,7 +504,7 @@ public class TpaIT {
     }
 
     @Test
-    public void integrationTestGeneratedLarge() throws CycleDetectedException, IllegalAccessException, ParseException, IOException, InfeasibleTPAException, GRBException {
+    public void integrationTestGeneratedLarge() throws IllegalAccessException, ParseException, IOException, InfeasibleTPAException, GRBException {
         runIntegrationTestGenerated(17 * 30, 4, 0, 5, 60, TEMPLATE_LARGE);
 
         // TODO assertions
@@ -538,7 +532,7 @@ public class TpaIT {
             return trainPathSlotCatalogue;
         }
 
-        public ITCapsule invoke(int globalHardMaximumEarlierDeparture, int globalHardMinimumDwellTime, int globalHardMaximumLaterArrival) throws IOException, ParseException, CycleDetectedException, IllegalAccessException, InfeasibleTPAException, GRBException {
+        public ITCapsule invoke(int globalHardMaximumEarlierDeparture, int globalHardMinimumDwellTime, int globalHardMaximumLaterArrival) throws IOException, ParseException, IllegalAccessException, InfeasibleTPAException, GRBException {
             // Make full analysis
             String outputDirName = getOutputDirName();
             String[] args = {
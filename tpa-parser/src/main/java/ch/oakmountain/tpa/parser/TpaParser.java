@@ -602,6 +602,24 @@ public class TpaParser {
      * @return
      */
     public List<TrainPathApplication> readRequests(MacroscopicTopology macroscopicTopology, Periodicity requestFilterLower, Periodicity requestFilterUpper, boolean clean, boolean ignoreCompletelyAllocatedRequests, int hardMaximumEarlierDeparture, int hardMinimumDwellTime, int hardMaximumLaterArrival) {
+        return readRequests(macroscopicTopology, requestFilterLower, requestFilterUpper, clean, ignoreCompletelyAllocatedRequests, hardMaximumEarlierDeparture, hardMinimumDwellTime, hardMaximumLaterArrival, false, false);
+    }
+
+    /**
+     * Read the requests from the input file and filter them.
+     *
+     * @param macroscopicTopology
+     * @param requestFilterLower
+     * @param requestFilterUpper
+     * @param clean
+     * @param ignoreCompletelyAllocatedRequests
+     * @param reachabilityPruning               whether the requests' DAGs are constructed in bidirectional mode
+     * @param sanityCheck                       whether the requests' earliest paths are checked against their relaxed DAGs
+     * @return
+     * @see ch.oakmountain.tpa.solver.TrainPathAllocationProblemPruningParameters#isReachabilityPruning()
+     * @see ch.oakmountain.tpa.solver.TrainPathAllocationProblemPruningParameters#isSanityCheck()
+     */
+    public List<TrainPathApplication> readRequests(MacroscopicTopology macroscopicTopology, Periodicity requestFilterLower, Periodicity requestFilterUpper, boolean clean, boolean ignoreCompletelyAllocatedRequests, int hardMaximumEarlierDeparture, int hardMinimumDwellTime, int hardMaximumLaterArrival, boolean reachabilityPruning, boolean sanityCheck) {
         List<TrainPathApplication> requests = new LinkedList<TrainPathApplication>();
 
 
@@ -672,7 +690,7 @@ public class TpaParser {
                     continue;
                 }
                 if (periodicity.containedWithin(requestFilterLower, requestFilterUpper)) {
-                    TrainPathApplication r = new TrainPathApplication(name, from, to, startTime, endTime, periodicity, hardMaximumEarlierDeparture, hardMinimumDwellTime, hardMaximumLaterArrival);
+                    TrainPathApplication r = new TrainPathApplication(name, from, to, startTime, endTime, periodicity, hardMaximumEarlierDeparture, hardMinimumDwellTime, hardMaximumLaterArrival, reachabilityPruning, sanityCheck);
                     requests.add(r);
                     LOGGER.debug("Filtered in request " + r.getName() + " since " + periodicity.getStringRepresentation() + " in [" + requestFilterLower.getStringRepresentation() + "," + requestFilterUpper.getStringRepresentation() + "]");
                 } else {
@@ -0,0 +1,618 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.solver;
+
+import com.google.common.base.Stopwatch;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pure Java MIP solver: LP relaxations are solved by {@link BuiltInSimplex}, integrality by depth-first branch-and-bound on the most fractional variable,
+ * diving into the branch the variable is closer to first.
+ * <p/>
+ * The IIS of an infeasible model is computed by a deletion filter over its constraints, i.e. by repeated feasibility checks. Lower bounds
+ * of variables must be finite. Meant for small models and environments without Gurobi; no presolve, cuts or warm starts.
+ * <p/>
+ * Time and node limits apply to branch-and-bound in {@link MIPModel#optimize()}, not to the feasibility checks of the IIS computation.
+ * A MIP whose LP relaxation is unbounded is reported unbounded if it is feasible and infeasible otherwise; as branch-and-bound need not
+ * terminate on such a model, it is reported infeasible or unbounded if its feasibility check hits a limit.
+ */
+public class BuiltInMIPSolver implements MIPSolver {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final double INTEGRALITY_TOLERANCE = 1e-6;
+
+    private final double timeLimit;
+    private final double nodeLimit;
+
+    public BuiltInMIPSolver() {
+        this(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param timeLimit time limit in seconds of each model's optimization
+     * @param nodeLimit node limit of each model's optimization
+     */
+    public BuiltInMIPSolver(double timeLimit, double nodeLimit) {
+        this.timeLimit = timeLimit;
+        this.nodeLimit = nodeLimit;
+    }
+
+    @Override
+    public MIPModel newModel(String outputDir) {
+        MIPModel model = new BuiltInMIPModel();
+        model.setTimeLimit(timeLimit);
+        model.setNodeLimit(nodeLimit);
+        return model;
+    }
+
+    private static final class Var {
+        private final double lb;
+        private final double ub;
+        private double obj;
+        private MIPModel.VarType type;
+        private final String name;
+        private boolean removed = false;
+        private double start = Double.NaN;
+
+        private Var(double lb, double ub, double obj, MIPModel.VarType type, String name) {
+            this.lb = lb;
+            this.ub = ub;
+            this.obj = obj;
+            this.type = type;
+            this.name = name;
+        }
+    }
+
+    private static final class Constr {
+        private final MIPLinearExpression expr;
+        private final MIPModel.Sense sense;
+        private final double rhs;
+        private final String name;
+        private boolean removed = false;
+
+        private Constr(MIPLinearExpression expr, MIPModel.Sense sense, double rhs, String name) {
+            this.expr = expr;
+            this.sense = sense;
+            this.rhs = rhs;
+            this.name = name;
+        }
+    }
+
+    /**
+     * Result of a solve over a subset of the constraints, indexed by handle; values are null if no solution was found.
+     */
+    private static final class Solution {
+        private final MIPModel.Status status;
+        private double objectiveValue;
+        private double[] values;
+        private double[] duals;
+
+        private Solution(MIPModel.Status status) {
+            this.status = status;
+        }
+    }
+
+    private static final class BuiltInMIPModel implements MIPModel {
+        private final List<Var> vars = new ArrayList<>();
+        private final List<Constr> constrs = new ArrayList<>();
+        private int nbVars = 0;
+        private int nbConstrs = 0;
+        private Solution solution;
+        private double timeLimit = Double.POSITIVE_INFINITY;
+        private double nodeLimit = Double.POSITIVE_INFINITY;
+
+        @Override
+        public int[] addVars(double[] lb, double[] ub, double[] obj, VarType[] types, String[] names) {
+            int[] handles = new int[lb.length];
+            for (int i = 0; i < lb.length; i++) {
+                handles[i] = vars.size();
+                vars.add(new Var(lb[i], ub[i], obj == null ? 0 : obj[i], types[i], names == null ? null : names[i]));
+            }
+            nbVars += lb.length;
+            return handles;
+        }
+
+        @Override
+        public int addVar(double lb, double ub, double obj, VarType type, int[] constrs, double[] coeffs, String name) {
+            int var = vars.size();
+            vars.add(new Var(lb, ub, obj, type, name));
+            nbVars++;
+            for (int i = 0; i < constrs.length; i++) {
+                this.constrs.get(constrs[i]).expr.addTerm(coeffs[i], var);
+            }
+            return var;
+        }
+
+        @Override
+        public int addConstr(MIPLinearExpression expr, Sense sense, double rhs, String name) {
+            MIPLinearExpression row = new MIPLinearExpression(expr.size());
+            for (int i = 0; i < expr.size(); i++) {
+                row.addTerm(expr.getCoeff(i), expr.getVar(i));
+            }
+            constrs.add(new Constr(row, sense, rhs, name));
+            nbConstrs++;
+            return constrs.size() - 1;
+        }
+
+        @Override
+        public void removeVar(int var) {
+            vars.get(var).removed = true;
+            nbVars--;
+        }
+
+        @Override
+        public void removeConstr(int constr) {
+            constrs.get(constr).removed = true;
+            nbConstrs--;
+        }
+
+        @Override
+        public void setVarType(int var, VarType type) {
+            vars.get(var).type = type;
+        }
+
+        @Override
+        public void setObjective(MIPLinearExpression expr) {
+            for (Var var : vars) {
+                var.obj = 0;
+            }
+            for (int i = 0; i < expr.size(); i++) {
+                vars.get(expr.getVar(i)).obj += expr.getCoeff(i);
+            }
+        }
+
+        @Override
+        public void update() {
+            // modifications take effect immediately
+        }
+
+        @Override
+        public void setStart(int[] handles, double[] values) {
+            for (int i = 0; i < handles.length; i++) {
+                vars.get(handles[i]).start = values[i];
+            }
+        }
+
+        @Override
+        public void setTimeLimit(double seconds) {
+            timeLimit = seconds;
+        }
+
+        @Override
+        public void setNodeLimit(double nodes) {
+            nodeLimit = nodes;
+        }
+
+        @Override
+        public Status optimize() {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            solution = solve(getConstrs(), false, stopwatch);
+            LOGGER.info("Built-in MIP solver: status " + solution.status + (hasSolution() ? ", objective " + solution.objectiveValue : "") + " after " + stopwatch);
+            return solution.status;
+        }
+
+        @Override
+        public boolean hasSolution() {
+            return solution != null && solution.values != null;
+        }
+
+        /**
+         * Solves the model restricted to some constraints.
+         *
+         * @param constrHandles
+         * @param feasibilityOnly stop at the first integer feasible solution
+         * @param stopwatch       running since the start of the optimization for the time and node limits to apply or null
+         * @return
+         */
+        private Solution solve(int[] constrHandles, boolean feasibilityOnly, Stopwatch stopwatch) {
+            // Columns of the variables not removed
+            int[] columns = new int[vars.size()];
+            int nbColumns = 0;
+            for (int var = 0; var < vars.size(); var++) {
+                columns[var] = vars.get(var).removed ? -1 : nbColumns++;
+            }
+            double[] lb = new double[nbColumns];
+            double[] ub = new double[nbColumns];
+            double[] obj = new double[nbColumns];
+            int[] varOfColumn = new int[nbColumns];
+            List<Integer> integerColumns = new ArrayList<>();
+            for (int var = 0; var < vars.size(); var++) {
+                int column = columns[var];
+                if (column < 0) {
+                    continue;
+                }
+                Var v = vars.get(var);
+                varOfColumn[column] = var;
+                lb[column] = v.lb;
+                ub[column] = v.ub;
+                obj[column] = feasibilityOnly ? 0 : v.obj;
+                if (v.type != VarType.CONTINUOUS) {
+                    integerColumns.add(column);
+                    if (v.type == VarType.BINARY) {
+                        lb[column] = Math.max(0, lb[column]);
+                        ub[column] = Math.min(1, ub[column]);
+                    }
+                }
+            }
+            int nbRows = constrHandles.length;
+            int[][] rowVars = new int[nbRows][];
+            double[][] rowCoeffs = new double[nbRows][];
+            Sense[] senses = new Sense[nbRows];
+            double[] rhs = new double[nbRows];
+            for (int i = 0; i < nbRows; i++) {
+                Constr constr = constrs.get(constrHandles[i]);
+                int nbTerms = 0;
+                for (int k = 0; k < constr.expr.size(); k++) {
+                    if (columns[constr.expr.getVar(k)] >= 0) {
+                        nbTerms++;
+                    }
+                }
+                rowVars[i] = new int[nbTerms];
+                rowCoeffs[i] = new double[nbTerms];
+                nbTerms = 0;
+                for (int k = 0; k < constr.expr.size(); k++) {
+                    int column = columns[constr.expr.getVar(k)];
+                    if (column >= 0) {
+                        rowVars[i][nbTerms] = column;
+                        rowCoeffs[i][nbTerms] = constr.expr.getCoeff(k);
+                        nbTerms++;
+                    }
+                }
+                senses[i] = constr.sense;
+                rhs[i] = constr.rhs;
+            }
+            BuiltInSimplex lp = new BuiltInSimplex(nbColumns, rowVars, rowCoeffs, senses, rhs, obj);
+
+            Solution result;
+            double[] x;
+            if (integerColumns.isEmpty()) {
+                result = new Solution(lp.solve(lb, ub));
+                if (result.status != Status.OPTIMAL) {
+                    return result;
+                }
+                x = lp.getX();
+                result.objectiveValue = lp.getObjectiveValue();
+                result.duals = new double[constrs.size()];
+                for (int i = 0; i < nbRows; i++) {
+                    result.duals[constrHandles[i]] = lp.getDuals()[i];
+                }
+            } else {
+                double[] start = feasibilityOnly ? null : getStart(varOfColumn, lb, ub, integerColumns, rowVars, rowCoeffs, senses, rhs);
+                result = branchAndBound(lp, lb, ub, integerColumns, feasibilityOnly, start, obj, stopwatch);
+                if (result.status == Status.UNBOUNDED) {
+                    // with rational data, a feasible MIP whose LP relaxation is unbounded is unbounded itself
+                    Status feasibility = solve(constrHandles, true, stopwatch).status;
+                    if (feasibility == Status.OPTIMAL) {
+                        return new Solution(Status.UNBOUNDED);
+                    }
+                    return new Solution(feasibility == Status.INFEASIBLE ? Status.INFEASIBLE : Status.INFEASIBLE_OR_UNBOUNDED);
+                }
+                x = result.values;
+                if (x == null) {
+                    return result;
+                }
+                for (int column = 0; column < nbColumns; column++) {
+                    result.objectiveValue += obj[column] * x[column];
+                }
+            }
+            result.values = new double[vars.size()];
+            for (int column = 0; column < nbColumns; column++) {
+                result.values[varOfColumn[column]] = x[column];
+            }
+            return result;
+        }
+
+        /**
+         * Returns the start values by column if they are defined for all columns and form a feasible solution, null otherwise.
+         */
+        private double[] getStart(int[] varOfColumn, double[] lb, double[] ub, List<Integer> integerColumns, int[][] rowVars, double[][] rowCoeffs, Sense[] senses, double[] rhs) {
+            double[] start = new double[varOfColumn.length];
+            for (int column = 0; column < varOfColumn.length; column++) {
+                start[column] = vars.get(varOfColumn[column]).start;
+                if (Double.isNaN(start[column])) {
+                    return null;
+                }
+                if (start[column] < lb[column] - INTEGRALITY_TOLERANCE || start[column] > ub[column] + INTEGRALITY_TOLERANCE) {
+                    LOGGER.debug("Ignoring start solution: variable " + getVarName(varOfColumn[column]) + " out of bounds");
+                    return null;
+                }
+            }
+            for (int column : integerColumns) {
+                if (Math.abs(start[column] - Math.rint(start[column])) > INTEGRALITY_TOLERANCE) {
+                    LOGGER.debug("Ignoring start solution: variable " + getVarName(varOfColumn[column]) + " not integral");
+                    return null;
+                }
+            }
+            for (int i = 0; i < rowVars.length; i++) {
+                double activity = 0;
+                for (int k = 0; k < rowVars[i].length; k++) {
+                    activity += rowCoeffs[i][k] * start[rowVars[i][k]];
+                }
+                double tolerance = INTEGRALITY_TOLERANCE * Math.max(1.0, Math.abs(rhs[i]));
+                if ((senses[i] != Sense.GREATER_EQUAL && activity > rhs[i] + tolerance) || (senses[i] != Sense.LESS_EQUAL && activity < rhs[i] - tolerance)) {
+                    LOGGER.debug("Ignoring start solution: constraint " + i + " violated");
+                    return null;
+                }
+            }
+            return start;
+        }
+
+        /**
+         * Depth-first branch-and-bound, stopped at the time or node limit if a stopwatch is given.
+         *
+         * @param lp
+         * @param lb
+         * @param ub
+         * @param integerColumns
+         * @param feasibilityOnly stop at the first integer feasible solution
+         * @param start           feasible solution to start from as incumbent or null
+         * @param obj             objective coefficients by column
+         * @param stopwatch       running since the start of the optimization for the time and node limits to apply or null
+         * @return the status and the best integer solution by column, if any; {@link Status#UNBOUNDED} if an LP relaxation is unbounded
+         */
+        private Solution branchAndBound(BuiltInSimplex lp, double[] lb, double[] ub, List<Integer> integerColumns, boolean feasibilityOnly, double[] start, double[] obj, Stopwatch stopwatch) {
+            double[] incumbent = null;
+            double incumbentValue = Double.POSITIVE_INFINITY;
+            if (start != null) {
+                incumbent = start;
+                incumbentValue = 0;
+                for (int column = 0; column < start.length; column++) {
+                    incumbentValue += obj[column] * start[column];
+                }
+                LOGGER.debug("Branch-and-bound starts from incumbent of objective " + incumbentValue);
+            }
+            Status status = null;
+            int nbNodes = 0;
+            Deque<double[][]> nodes = new ArrayDeque<>();
+            nodes.push(new double[][]{lb, ub});
+            while (!nodes.isEmpty()) {
+                if (stopwatch != null && nbNodes >= nodeLimit) {
+                    status = Status.NODE_LIMIT;
+                    break;
+                }
+                if (stopwatch != null && stopwatch.elapsed(TimeUnit.MILLISECONDS) >= timeLimit * 1000) {
+                    status = Status.TIME_LIMIT;
+                    break;
+                }
+                double[][] node = nodes.pop();
+                nbNodes++;
+                Status lpStatus = lp.solve(node[0], node[1]);
+                if (lpStatus == Status.UNBOUNDED) {
+                    LOGGER.debug("LP relaxation is unbounded in branch-and-bound node " + nbNodes);
+                    return new Solution(Status.UNBOUNDED);
+                }
+                if (lpStatus != Status.OPTIMAL || lp.getObjectiveValue() >= incumbentValue - 1e-9 * Math.max(1.0, Math.abs(incumbentValue))) {
+                    continue;
+                }
+                double[] x = lp.getX();
+                int branchColumn = -1;
+                double maxFractionality = INTEGRALITY_TOLERANCE;
+                for (int column : integerColumns) {
+                    double fractionality = Math.abs(x[column] - Math.rint(x[column]));
+                    if (fractionality > maxFractionality) {
+                        branchColumn = column;
+                        maxFractionality = fractionality;
+                    }
+                }
+                if (branchColumn < 0) {
+                    incumbent = x.clone();
+                    for (int column : integerColumns) {
+                        incumbent[column] = Math.rint(incumbent[column]);
+                    }
+                    incumbentValue = lp.getObjectiveValue();
+                    if (feasibilityOnly) {
+                        break;
+                    }
+                    continue;
+                }
+                double value = x[branchColumn];
+                double[] downUb = node[1].clone();
+                downUb[branchColumn] = Math.floor(value);
+                double[] upLb = node[0].clone();
+                upLb[branchColumn] = Math.ceil(value);
+                double[][] down = new double[][]{node[0], downUb};
+                double[][] up = new double[][]{upLb, node[1]};
+                // the branch pushed last is explored first
+                if (value - Math.floor(value) < 0.5) {
+                    nodes.push(up);
+                    nodes.push(down);
+                } else {
+                    nodes.push(down);
+                    nodes.push(up);
+                }
+            }
+            if (status == null) {
+                status = incumbent == null ? Status.INFEASIBLE : Status.OPTIMAL;
+            } else {
+                LOGGER.warn("Branch-and-bound stopped with status " + status + " after " + nbNodes + " nodes" + (incumbent == null ? " without a solution" : ", objective of the best solution " + incumbentValue));
+            }
+            LOGGER.debug("Branch-and-bound explored " + nbNodes + " nodes");
+            Solution result = new Solution(status);
+            result.values = incumbent;
+            return result;
+        }
+
+        private Solution getSolution() {
+            if (!hasSolution()) {
+                throw new IllegalStateException("No solution available");
+            }
+            return solution;
+        }
+
+        @Override
+        public double getObjectiveValue() {
+            return getSolution().objectiveValue;
+        }
+
+        @Override
+        public double[] getValues(int[] handles) {
+            Solution solution = getSolution();
+            double[] values = new double[handles.length];
+            for (int i = 0; i < handles.length; i++) {
+                values[i] = handles[i] < solution.values.length ? solution.values[handles[i]] : 0;
+            }
+            return values;
+        }
+
+        @Override
+        public double[] getDuals(int[] handles) {
+            Solution solution = getSolution();
+            if (solution.duals == null) {
+                throw new IllegalStateException("Dual values are only available for continuous models");
+            }
+            double[] duals = new double[handles.length];
+            for (int i = 0; i < handles.length; i++) {
+                duals[i] = handles[i] < solution.duals.length ? solution.duals[handles[i]] : 0;
+            }
+            return duals;
+        }
+
+        @Override
+        public int[] computeIIS() {
+            int[] candidates = getConstrs();
+            if (solve(candidates, true, null).status != Status.INFEASIBLE) {
+                throw new IllegalStateException("Cannot compute IIS of a feasible model");
+            }
+            // Deletion filter: drop each constraint if the rest remains infeasible
+            List<Integer> iis = new ArrayList<>();
+            for (int constr : candidates) {
+                iis.add(constr);
+            }
+            for (int constr : candidates) {
+                iis.remove(Integer.valueOf(constr));
+                int[] rest = new int[iis.size()];
+                for (int i = 0; i < rest.length; i++) {
+                    rest[i] = iis.get(i);
+                }
+                if (solve(rest, true, null).status != Status.INFEASIBLE) {
+                    iis.add(constr);
+                    Collections.sort(iis);
+                }
+            }
+            int[] handles = new int[iis.size()];
+            for (int i = 0; i < handles.length; i++) {
+                handles[i] = iis.get(i);
+            }
+            return handles;
+        }
+
+        @Override
+        public int[] getConstrs() {
+            int[] handles = new int[nbConstrs];
+            int i = 0;
+            for (int constr = 0; constr < constrs.size(); constr++) {
+                if (!constrs.get(constr).removed) {
+                    handles[i++] = constr;
+                }
+            }
+            return handles;
+        }
+
+        @Override
+        public String getConstrName(int constr) {
+            return getConstrName(constr, constrs.get(constr));
+        }
+
+        private String getConstrName(int handle, Constr constr) {
+            return constr.name == null ? "R" + handle : constr.name;
+        }
+
+        private String getVarName(int handle) {
+            String name = vars.get(handle).name;
+            return name == null ? "C" + handle : name;
+        }
+
+        @Override
+        public int getNbVars() {
+            return nbVars;
+        }
+
+        @Override
+        public int getNbConstrs() {
+            return nbConstrs;
+        }
+
+        @Override
+        public void write(String fileName) {
+            try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8)) {
+                writer.write("\\ Model written by the built-in MIP solver\nMinimize\n obj:");
+                for (int var = 0; var < vars.size(); var++) {
+                    Var v = vars.get(var);
+                    if (!v.removed && v.obj != 0) {
+                        writeTerm(writer, v.obj, var);
+                    }
+                }
+                writer.write("\nSubject To\n");
+                for (int constr : getConstrs()) {
+                    Constr c = constrs.get(constr);
+                    writer.write(" " + getConstrName(constr, c) + ":");
+                    for (int k = 0; k < c.expr.size(); k++) {
+                        if (!vars.get(c.expr.getVar(k)).removed) {
+                            writeTerm(writer, c.expr.getCoeff(k), c.expr.getVar(k));
+                        }
+                    }
+                    writer.write(" " + (c.sense == Sense.LESS_EQUAL ? "<=" : c.sense == Sense.GREATER_EQUAL ? ">=" : "=") + " " + c.rhs + "\n");
+                }
+                StringBuilder binaries = new StringBuilder();
+                StringBuilder generals = new StringBuilder();
+                writer.write("Bounds\n");
+                for (int var = 0; var < vars.size(); var++) {
+                    Var v = vars.get(var);
+                    if (v.removed) {
+                        continue;
+                    }
+                    if (v.type == VarType.BINARY) {
+                        binaries.append(" ").append(getVarName(var)).append("\n");
+                        continue;
+                    } else if (v.type == VarType.INTEGER) {
+                        generals.append(" ").append(getVarName(var)).append("\n");
+                    }
+                    if (v.ub < BuiltInSimplex.INFINITE_BOUND) {
+                        writer.write(" " + v.lb + " <= " + getVarName(var) + " <= " + v.ub + "\n");
+                    } else {
+                        writer.write(" " + getVarName(var) + " >= " + v.lb + "\n");
+                    }
+                }
+                writer.write("Binaries\n" + binaries + "Generals\n" + generals + "End\n");
+            } catch (IOException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        private void writeTerm(BufferedWriter writer, double coeff, int var) throws IOException {
+            writer.write((coeff < 0 ? " - " : " + ") + Math.abs(coeff) + " " + getVarName(var));
+        }
+
+        @Override
+        public void dispose() {
+            vars.clear();
+            constrs.clear();
+            solution = null;
+        }
+    }
+}
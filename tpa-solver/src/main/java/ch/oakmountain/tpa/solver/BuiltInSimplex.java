@@ -0,0 +1,394 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.solver;
+
+/**
+ * Dense two-phase primal simplex for linear programs with bounded variables, minimizing c x subject to rows a x (<=, =, >=) b and lb <= x <= ub.
+ * <p/>
+ * Variables are shifted to their lower bounds, which must be finite; upper bounds of {@link #INFINITE_BOUND} or more are infinite. Each row gets
+ * a slack (inequalities) and an artificial variable; phase 1 minimizes the sum of the artificial variables starting from the slack or artificial basis,
+ * phase 2 the objective with the artificial variables fixed at 0. Non-basic variables are at their lower or upper bound, so an entering variable
+ * may just flip bounds. Pricing is by largest reduced cost, falling back to Bland's rule after a series of degenerate pivots to avoid cycling.
+ * <p/>
+ * The tableau is dense with one row per constraint and one column per variable, slack and artificial, so this is meant for small models.
+ * The problem data is kept, so the same program can be solved repeatedly under different bounds, as in branch-and-bound.
+ */
+final class BuiltInSimplex {
+
+    static final double INFINITE_BOUND = 1e30;
+    private static final double PIVOT_TOLERANCE = 1e-9;
+    private static final double FEASIBILITY_TOLERANCE = 1e-6;
+    private static final double OPTIMALITY_TOLERANCE = 1e-9;
+    private static final int DEGENERATE_PIVOTS_BEFORE_BLAND = 50;
+
+    private final int nbRows;
+    private final int nbVars;
+    private final int[][] rowVars;
+    private final double[][] rowCoeffs;
+    private final MIPModel.Sense[] senses;
+    private final double[] rhs;
+    private final double[] obj;
+    private final double optimalityTolerance;
+    private final int maxIterations;
+
+    // per solve
+    private int firstArtificial;
+    private double[][] tableau;
+    private double[] reducedCosts;
+    private double[] upper;
+    private boolean[] atUpper;
+    private int[] basis;
+    private int[] basisRow;
+    private double[] beta;
+    private double[] rowSigns;
+    private int iterations;
+
+    // solution
+    private double[] x;
+    private double objectiveValue;
+    private double[] duals;
+
+    /**
+     * @param nbVars
+     * @param rowVars   variable indices of the terms of each row, duplicates are summed
+     * @param rowCoeffs coefficients of the terms of each row
+     * @param senses
+     * @param rhs
+     * @param obj       objective coefficients
+     */
+    BuiltInSimplex(int nbVars, int[][] rowVars, double[][] rowCoeffs, MIPModel.Sense[] senses, double[] rhs, double[] obj) {
+        this.nbRows = rowVars.length;
+        this.nbVars = nbVars;
+        this.rowVars = rowVars;
+        this.rowCoeffs = rowCoeffs;
+        this.senses = senses;
+        this.rhs = rhs;
+        this.obj = obj;
+        double maxObj = 1.0;
+        for (double c : obj) {
+            maxObj = Math.max(maxObj, Math.abs(c));
+        }
+        this.optimalityTolerance = OPTIMALITY_TOLERANCE * maxObj;
+        this.maxIterations = 1000 + 50 * (nbRows + nbVars);
+    }
+
+    /**
+     * Solves the program under the given bounds.
+     *
+     * @param lb
+     * @param ub
+     * @return {@link MIPModel.Status#OPTIMAL}, {@link MIPModel.Status#INFEASIBLE} or {@link MIPModel.Status#UNBOUNDED}
+     */
+    MIPModel.Status solve(double[] lb, double[] ub) {
+        x = null;
+        duals = null;
+        for (int j = 0; j < nbVars; j++) {
+            if (Double.isInfinite(lb[j]) || lb[j] <= -INFINITE_BOUND) {
+                throw new IllegalArgumentException("Lower bounds must be finite, found " + lb[j] + " for variable " + j);
+            }
+            if (lb[j] > ub[j] + FEASIBILITY_TOLERANCE) {
+                return MIPModel.Status.INFEASIBLE;
+            }
+        }
+        init(lb, ub);
+
+        // Phase 1
+        double[] cost = new double[reducedCosts.length];
+        boolean artificialInBasis = false;
+        for (int i = 0; i < nbRows; i++) {
+            cost[firstArtificial + i] = 1.0;
+            artificialInBasis |= basis[i] >= firstArtificial;
+        }
+        if (artificialInBasis) {
+            iterate(cost, OPTIMALITY_TOLERANCE);
+            double infeasibility = 0;
+            for (int i = 0; i < nbRows; i++) {
+                if (basis[i] >= firstArtificial) {
+                    infeasibility += beta[i];
+                }
+            }
+            if (infeasibility > FEASIBILITY_TOLERANCE) {
+                return MIPModel.Status.INFEASIBLE;
+            }
+            driveArtificialsOutOfBasis();
+        }
+        for (int i = 0; i < nbRows; i++) {
+            upper[firstArtificial + i] = 0;
+        }
+
+        // Phase 2
+        cost = new double[reducedCosts.length];
+        System.arraycopy(obj, 0, cost, 0, nbVars);
+        if (!iterate(cost, optimalityTolerance)) {
+            return MIPModel.Status.UNBOUNDED;
+        }
+
+        x = new double[nbVars];
+        objectiveValue = 0;
+        for (int j = 0; j < nbVars; j++) {
+            x[j] = lb[j] + getValue(j);
+            objectiveValue += obj[j] * x[j];
+        }
+        // the reduced cost of a row's artificial column is the negated dual of the (sign-normalized) row
+        duals = new double[nbRows];
+        for (int i = 0; i < nbRows; i++) {
+            duals[i] = -reducedCosts[firstArtificial + i] * rowSigns[i];
+        }
+        return MIPModel.Status.OPTIMAL;
+    }
+
+    private void init(double[] lb, double[] ub) {
+        int nbSlacks = 0;
+        for (MIPModel.Sense sense : senses) {
+            if (sense != MIPModel.Sense.EQUAL) {
+                nbSlacks++;
+            }
+        }
+        firstArtificial = nbVars + nbSlacks;
+        int nbColumns = firstArtificial + nbRows;
+        tableau = new double[nbRows][nbColumns];
+        reducedCosts = new double[nbColumns];
+        upper = new double[nbColumns];
+        atUpper = new boolean[nbColumns];
+        basis = new int[nbRows];
+        basisRow = new int[nbColumns];
+        beta = new double[nbRows];
+        rowSigns = new double[nbRows];
+        iterations = 0;
+
+        for (int j = 0; j < nbColumns; j++) {
+            upper[j] = j < nbVars && ub[j] < INFINITE_BOUND ? Math.max(0, ub[j] - lb[j]) : Double.POSITIVE_INFINITY;
+            basisRow[j] = -1;
+        }
+        int slack = nbVars;
+        for (int i = 0; i < nbRows; i++) {
+            double[] row = tableau[i];
+            double b = rhs[i];
+            for (int k = 0; k < rowVars[i].length; k++) {
+                row[rowVars[i][k]] += rowCoeffs[i][k];
+                b -= rowCoeffs[i][k] * lb[rowVars[i][k]];
+            }
+            int rowSlack = -1;
+            if (senses[i] == MIPModel.Sense.LESS_EQUAL) {
+                rowSlack = slack++;
+                row[rowSlack] = 1.0;
+            } else if (senses[i] == MIPModel.Sense.GREATER_EQUAL) {
+                rowSlack = slack++;
+                row[rowSlack] = -1.0;
+            }
+            rowSigns[i] = b < 0 ? -1.0 : 1.0;
+            if (b < 0) {
+                for (int j = 0; j < firstArtificial; j++) {
+                    row[j] = -row[j];
+                }
+                b = -b;
+            }
+            row[firstArtificial + i] = 1.0;
+            basis[i] = rowSlack >= 0 && row[rowSlack] > 0 ? rowSlack : firstArtificial + i;
+            basisRow[basis[i]] = i;
+            beta[i] = b;
+        }
+    }
+
+    private double getValue(int column) {
+        if (basisRow[column] >= 0) {
+            return beta[basisRow[column]];
+        }
+        return atUpper[column] ? upper[column] : 0;
+    }
+
+    private void computeReducedCosts(double[] cost) {
+        System.arraycopy(cost, 0, reducedCosts, 0, cost.length);
+        for (int i = 0; i < nbRows; i++) {
+            double c = cost[basis[i]];
+            if (c != 0) {
+                double[] row = tableau[i];
+                for (int j = 0; j < reducedCosts.length; j++) {
+                    reducedCosts[j] -= c * row[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs simplex iterations until no non-basic variable improves the objective.
+     *
+     * @param cost
+     * @param tolerance
+     * @return false if the objective is unbounded
+     */
+    private boolean iterate(double[] cost, double tolerance) {
+        computeReducedCosts(cost);
+        int nbDegeneratePivots = 0;
+        while (true) {
+            if (++iterations > maxIterations) {
+                throw new IllegalStateException("Simplex iteration limit of " + maxIterations + " exceeded");
+            }
+            boolean bland = nbDegeneratePivots > DEGENERATE_PIVOTS_BEFORE_BLAND;
+
+            // Pricing; artificial variables never enter
+            int entering = -1;
+            double best = tolerance;
+            for (int j = 0; j < firstArtificial; j++) {
+                if (basisRow[j] >= 0) {
+                    continue;
+                }
+                double improvement = atUpper[j] ? reducedCosts[j] : -reducedCosts[j];
+                if (improvement > best) {
+                    entering = j;
+                    best = improvement;
+                    if (bland) {
+                        break;
+                    }
+                }
+            }
+            if (entering < 0) {
+                return true;
+            }
+
+            // Ratio test, including the entering variable's own bound
+            double direction = atUpper[entering] ? -1.0 : 1.0;
+            double step = upper[entering];
+            int leavingRow = -1;
+            boolean leavingAtUpper = false;
+            double leavingAlpha = 0;
+            for (int i = 0; i < nbRows; i++) {
+                double alpha = direction * tableau[i][entering];
+                double t;
+                boolean toUpper;
+                if (alpha > PIVOT_TOLERANCE) {
+                    t = Math.max(0, beta[i]) / alpha;
+                    toUpper = false;
+                } else if (alpha < -PIVOT_TOLERANCE && upper[basis[i]] != Double.POSITIVE_INFINITY) {
+                    t = Math.max(0, upper[basis[i]] - beta[i]) / -alpha;
+                    toUpper = true;
+                } else {
+                    continue;
+                }
+                boolean better;
+                if (leavingRow < 0) {
+                    better = t < step;
+                } else if (t < step - PIVOT_TOLERANCE) {
+                    better = true;
+                } else if (t <= step + PIVOT_TOLERANCE) {
+                    // tie: largest pivot for stability, lowest index with Bland's rule
+                    better = bland ? basis[i] < basis[leavingRow] : Math.abs(alpha) > Math.abs(leavingAlpha);
+                } else {
+                    better = false;
+                }
+                if (better) {
+                    step = Math.min(step, t);
+                    leavingRow = i;
+                    leavingAtUpper = toUpper;
+                    leavingAlpha = alpha;
+                }
+            }
+            if (step == Double.POSITIVE_INFINITY) {
+                return false;
+            }
+            nbDegeneratePivots = step <= PIVOT_TOLERANCE ? nbDegeneratePivots + 1 : 0;
+
+            for (int i = 0; i < nbRows; i++) {
+                beta[i] -= direction * tableau[i][entering] * step;
+            }
+            if (leavingRow < 0) {
+                // bound flip
+                atUpper[entering] = !atUpper[entering];
+                continue;
+            }
+            double enteringValue = (atUpper[entering] ? upper[entering] : 0) + direction * step;
+            int leaving = basis[leavingRow];
+            atUpper[leaving] = leavingAtUpper;
+            pivot(leavingRow, entering, enteringValue);
+        }
+    }
+
+    private void pivot(int row, int entering, double enteringValue) {
+        int leaving = basis[row];
+        double[] pivotRow = tableau[row];
+        double pivot = pivotRow[entering];
+        for (int j = 0; j < pivotRow.length; j++) {
+            pivotRow[j] /= pivot;
+        }
+        pivotRow[entering] = 1.0;
+        for (int i = 0; i < nbRows; i++) {
+            if (i == row) {
+                continue;
+            }
+            double[] r = tableau[i];
+            double factor = r[entering];
+            if (factor != 0) {
+                for (int j = 0; j < r.length; j++) {
+                    r[j] -= factor * pivotRow[j];
+                }
+                r[entering] = 0;
+            }
+        }
+        double factor = reducedCosts[entering];
+        if (factor != 0) {
+            for (int j = 0; j < reducedCosts.length; j++) {
+                reducedCosts[j] -= factor * pivotRow[j];
+            }
+            reducedCosts[entering] = 0;
+        }
+        basisRow[leaving] = -1;
+        basis[row] = entering;
+        basisRow[entering] = row;
+        atUpper[entering] = false;
+        beta[row] = enteringValue;
+    }
+
+    /**
+     * After phase 1, replaces the artificial variables still basic at 0 by other variables; rows where none is left are redundant and keep their artificial variable.
+     */
+    private void driveArtificialsOutOfBasis() {
+        for (int i = 0; i < nbRows; i++) {
+            if (basis[i] < firstArtificial) {
+                continue;
+            }
+            int entering = -1;
+            double maxAlpha = PIVOT_TOLERANCE;
+            for (int j = 0; j < firstArtificial; j++) {
+                if (basisRow[j] < 0 && Math.abs(tableau[i][j]) > maxAlpha) {
+                    entering = j;
+                    maxAlpha = Math.abs(tableau[i][j]);
+                }
+            }
+            if (entering >= 0) {
+                atUpper[basis[i]] = false;
+                pivot(i, entering, getValue(entering));
+            }
+        }
+    }
+
+    /**
+     * @return the values of the variables of the last optimal solve
+     */
+    double[] getX() {
+        return x;
+    }
+
+    double getObjectiveValue() {
+        return objectiveValue;
+    }
+
+    /**
+     * @return the dual values of the rows of the last optimal solve
+     */
+    double[] getDuals() {
+        return duals;
+    }
+}
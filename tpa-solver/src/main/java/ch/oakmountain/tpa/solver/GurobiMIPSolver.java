@@ -0,0 +1,385 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.solver;
+
+import gurobi.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MIP solver backed by Gurobi; each model has its own Gurobi environment logging to mip.log in the output directory.
+ * <p/>
+ * Gurobi exceptions are rethrown as {@link IllegalStateException}.
+ */
+public class GurobiMIPSolver implements MIPSolver {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final double timeLimit;
+    private final double nodeLimit;
+
+    public GurobiMIPSolver() {
+        this(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param timeLimit time limit in seconds of each model's optimization
+     * @param nodeLimit node limit of each model's optimization
+     */
+    public GurobiMIPSolver(double timeLimit, double nodeLimit) {
+        this.timeLimit = timeLimit;
+        this.nodeLimit = nodeLimit;
+    }
+
+    @Override
+    public MIPModel newModel(String outputDir) {
+        try {
+            GRBEnv env = new GRBEnv(outputDir + File.separator + "mip.log");
+            MIPModel model = new GurobiMIPModel(env, new GRBModel(env));
+            model.setTimeLimit(timeLimit);
+            model.setNodeLimit(nodeLimit);
+            return model;
+        } catch (GRBException e) {
+            throw new IllegalStateException("Something went wrong", e);
+        }
+    }
+
+    private static char toGRB(MIPModel.VarType type) {
+        switch (type) {
+            case BINARY:
+                return GRB.BINARY;
+            case INTEGER:
+                return GRB.INTEGER;
+            default:
+                return GRB.CONTINUOUS;
+        }
+    }
+
+    private static char toGRB(MIPModel.Sense sense) {
+        switch (sense) {
+            case LESS_EQUAL:
+                return GRB.LESS_EQUAL;
+            case GREATER_EQUAL:
+                return GRB.GREATER_EQUAL;
+            default:
+                return GRB.EQUAL;
+        }
+    }
+
+    private static final class GurobiMIPModel implements MIPModel {
+        private final GRBEnv env;
+        private final GRBModel model;
+        // indexed by handle, null if removed
+        private final List<GRBVar> vars = new ArrayList<>();
+        private final List<GRBConstr> constrs = new ArrayList<>();
+        private int nbVars = 0;
+        private int nbConstrs = 0;
+
+        private GurobiMIPModel(GRBEnv env, GRBModel model) {
+            this.env = env;
+            this.model = model;
+        }
+
+        private GRBVar[] getGRBVars(int[] handles) {
+            GRBVar[] grbVars = new GRBVar[handles.length];
+            for (int i = 0; i < handles.length; i++) {
+                grbVars[i] = vars.get(handles[i]);
+            }
+            return grbVars;
+        }
+
+        private GRBConstr[] getGRBConstrs(int[] handles) {
+            GRBConstr[] grbConstrs = new GRBConstr[handles.length];
+            for (int i = 0; i < handles.length; i++) {
+                grbConstrs[i] = constrs.get(handles[i]);
+            }
+            return grbConstrs;
+        }
+
+        private GRBLinExpr toGRB(MIPLinearExpression expr) {
+            GRBLinExpr grbExpr = new GRBLinExpr();
+            grbExpr.addTerms(expr.getCoeffs(), getGRBVars(expr.getVars()));
+            return grbExpr;
+        }
+
+        @Override
+        public int[] addVars(double[] lb, double[] ub, double[] obj, VarType[] types, String[] names) {
+            char[] grbTypes = new char[types.length];
+            for (int i = 0; i < types.length; i++) {
+                grbTypes[i] = GurobiMIPSolver.toGRB(types[i]);
+            }
+            try {
+                GRBVar[] grbVars = model.addVars(lb, ub, obj, grbTypes, names);
+                int[] handles = new int[grbVars.length];
+                for (int i = 0; i < grbVars.length; i++) {
+                    handles[i] = vars.size();
+                    vars.add(grbVars[i]);
+                }
+                nbVars += grbVars.length;
+                return handles;
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public int addVar(double lb, double ub, double obj, VarType type, int[] constrs, double[] coeffs, String name) {
+            GRBColumn column = new GRBColumn();
+            column.addTerms(coeffs, getGRBConstrs(constrs));
+            try {
+                vars.add(model.addVar(lb, ub, obj, GurobiMIPSolver.toGRB(type), column, name));
+                nbVars++;
+                return vars.size() - 1;
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public int addConstr(MIPLinearExpression expr, Sense sense, double rhs, String name) {
+            try {
+                constrs.add(model.addConstr(toGRB(expr), GurobiMIPSolver.toGRB(sense), rhs, name));
+                nbConstrs++;
+                return constrs.size() - 1;
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public void removeVar(int var) {
+            try {
+                model.remove(vars.get(var));
+                vars.set(var, null);
+                nbVars--;
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public void removeConstr(int constr) {
+            try {
+                model.remove(constrs.get(constr));
+                constrs.set(constr, null);
+                nbConstrs--;
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public void setVarType(int var, VarType type) {
+            try {
+                vars.get(var).set(GRB.CharAttr.VType, GurobiMIPSolver.toGRB(type));
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public void setObjective(MIPLinearExpression expr) {
+            try {
+                model.setObjective(toGRB(expr), GRB.MINIMIZE);
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public void update() {
+            try {
+                model.update();
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public void setStart(int[] handles, double[] values) {
+            if (handles.length == 0) {
+                return;
+            }
+            double[] start = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                start[i] = Double.isNaN(values[i]) ? GRB.UNDEFINED : values[i];
+            }
+            try {
+                model.set(GRB.DoubleAttr.Start, getGRBVars(handles), start);
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public void setTimeLimit(double seconds) {
+            try {
+                model.getEnv().set(GRB.DoubleParam.TimeLimit, Math.min(seconds, GRB.INFINITY));
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public void setNodeLimit(double nodes) {
+            try {
+                model.getEnv().set(GRB.DoubleParam.NodeLimit, Math.min(nodes, GRB.INFINITY));
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public Status optimize() {
+            try {
+                model.optimize();
+                int status = model.get(GRB.IntAttr.Status);
+                if (status == GRB.Status.OPTIMAL) {
+                    return Status.OPTIMAL;
+                } else if (status == GRB.Status.INFEASIBLE) {
+                    return Status.INFEASIBLE;
+                } else if (status == GRB.Status.INF_OR_UNBD) {
+                    return Status.INFEASIBLE_OR_UNBOUNDED;
+                } else if (status == GRB.Status.UNBOUNDED) {
+                    return Status.UNBOUNDED;
+                } else if (status == GRB.Status.TIME_LIMIT) {
+                    return Status.TIME_LIMIT;
+                } else if (status == GRB.Status.NODE_LIMIT) {
+                    return Status.NODE_LIMIT;
+                }
+                LOGGER.warn("Unhandled gurobi model status " + status);
+                return Status.OTHER;
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public boolean hasSolution() {
+            try {
+                return model.get(GRB.IntAttr.SolCount) > 0;
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public double getObjectiveValue() {
+            try {
+                return model.get(GRB.DoubleAttr.ObjVal);
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public double[] getValues(int[] handles) {
+            if (handles.length == 0) {
+                return new double[0];
+            }
+            try {
+                return model.get(GRB.DoubleAttr.X, getGRBVars(handles));
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public double[] getDuals(int[] handles) {
+            if (handles.length == 0) {
+                return new double[0];
+            }
+            try {
+                return model.get(GRB.DoubleAttr.Pi, getGRBConstrs(handles));
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public int[] computeIIS() {
+            try {
+                model.computeIIS();
+                int[] handles = getConstrs();
+                int[] iisConstr = handles.length == 0 ? new int[0] : model.get(GRB.IntAttr.IISConstr, getGRBConstrs(handles));
+                int nbIIS = 0;
+                for (int i = 0; i < handles.length; i++) {
+                    if (iisConstr[i] == 1) {
+                        handles[nbIIS++] = handles[i];
+                    }
+                }
+                int[] iis = new int[nbIIS];
+                System.arraycopy(handles, 0, iis, 0, nbIIS);
+                return iis;
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public int[] getConstrs() {
+            int[] handles = new int[nbConstrs];
+            int i = 0;
+            for (int constr = 0; constr < constrs.size(); constr++) {
+                if (constrs.get(constr) != null) {
+                    handles[i++] = constr;
+                }
+            }
+            return handles;
+        }
+
+        @Override
+        public String getConstrName(int constr) {
+            try {
+                return constrs.get(constr).get(GRB.StringAttr.ConstrName);
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public int getNbVars() {
+            return nbVars;
+        }
+
+        @Override
+        public int getNbConstrs() {
+            return nbConstrs;
+        }
+
+        @Override
+        public void write(String fileName) {
+            try {
+                model.write(fileName);
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+
+        @Override
+        public void dispose() {
+            model.dispose();
+            try {
+                env.dispose();
+            } catch (GRBException e) {
+                throw new IllegalStateException("Something went wrong", e);
+            }
+        }
+    }
+}
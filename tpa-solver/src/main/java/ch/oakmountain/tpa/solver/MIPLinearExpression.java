@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.solver;
+
+import java.util.Arrays;
+
+/**
+ * A linear expression over the variables of a {@link MIPModel}: a list of terms, each a coefficient and a variable handle.
+ * <p/>
+ * Terms are stored as added; a variable may occur in several terms.
+ */
+public final class MIPLinearExpression {
+
+    private int[] vars;
+    private double[] coeffs;
+    private int size = 0;
+
+    public MIPLinearExpression() {
+        this(4);
+    }
+
+    public MIPLinearExpression(int capacity) {
+        vars = new int[Math.max(1, capacity)];
+        coeffs = new double[vars.length];
+    }
+
+    public void addTerm(double coeff, int var) {
+        if (size == vars.length) {
+            vars = Arrays.copyOf(vars, 2 * size);
+            coeffs = Arrays.copyOf(coeffs, 2 * size);
+        }
+        vars[size] = var;
+        coeffs[size] = coeff;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getVar(int i) {
+        return vars[i];
+    }
+
+    public double getCoeff(int i) {
+        return coeffs[i];
+    }
+
+    /**
+     * @return copy of the variables of the terms
+     */
+    public int[] getVars() {
+        return Arrays.copyOf(vars, size);
+    }
+
+    /**
+     * @return copy of the coefficients of the terms
+     */
+    public double[] getCoeffs() {
+        return Arrays.copyOf(coeffs, size);
+    }
+}
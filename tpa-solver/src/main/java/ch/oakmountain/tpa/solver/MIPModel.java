@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.solver;
+
+/**
+ * A mixed integer linear program to be minimized, as seen by the train path allocation problem models.
+ * <p/>
+ * Variables and constraints are referred to by the int handle returned when they are added, in order of addition starting from 0;
+ * handles remain valid when other variables or constraints are removed. New variables can only be used in constraints or the objective after {@link #update()}.
+ */
+public interface MIPModel {
+
+    enum VarType {
+        CONTINUOUS, BINARY, INTEGER
+    }
+
+    enum Sense {
+        LESS_EQUAL, EQUAL, GREATER_EQUAL
+    }
+
+    /**
+     * Outcome of {@link #optimize()}; on {@link #TIME_LIMIT} and {@link #NODE_LIMIT}, the best solution found so far is available if {@link #hasSolution()}.
+     */
+    enum Status {
+        OPTIMAL, INFEASIBLE, INFEASIBLE_OR_UNBOUNDED, UNBOUNDED, TIME_LIMIT, NODE_LIMIT, OTHER
+    }
+
+    /**
+     * Adds variables in bulk.
+     *
+     * @param lb    lower bounds
+     * @param ub    upper bounds
+     * @param obj   objective coefficients or null for 0
+     * @param types
+     * @param names
+     * @return the handles of the variables in array order
+     */
+    int[] addVars(double[] lb, double[] ub, double[] obj, VarType[] types, String[] names);
+
+    /**
+     * Adds a variable with its coefficients in existing constraints (a column).
+     *
+     * @param lb
+     * @param ub
+     * @param obj
+     * @param type
+     * @param constrs handles of the constraints
+     * @param coeffs  coefficients of the variable in the constraints
+     * @param name
+     * @return
+     */
+    int addVar(double lb, double ub, double obj, VarType type, int[] constrs, double[] coeffs, String name);
+
+    int addConstr(MIPLinearExpression expr, Sense sense, double rhs, String name);
+
+    void removeVar(int var);
+
+    void removeConstr(int constr);
+
+    void setVarType(int var, VarType type);
+
+    /**
+     * Replaces the objective to be minimized.
+     *
+     * @param expr
+     */
+    void setObjective(MIPLinearExpression expr);
+
+    /**
+     * Processes pending modifications.
+     */
+    void update();
+
+    /**
+     * Sets start values of variables for the next {@link #optimize()}, e.g. a feasible solution found by a heuristic.
+     *
+     * @param vars
+     * @param values start values, {@link Double#NaN} to leave a variable's start value undefined
+     */
+    void setStart(int[] vars, double[] values);
+
+    /**
+     * Limits the time spent in {@link #optimize()}.
+     *
+     * @param seconds {@link Double#POSITIVE_INFINITY} for no limit, the default
+     */
+    void setTimeLimit(double seconds);
+
+    /**
+     * Limits the number of branch-and-bound nodes explored by {@link #optimize()}.
+     *
+     * @param nodes {@link Double#POSITIVE_INFINITY} for no limit, the default
+     */
+    void setNodeLimit(double nodes);
+
+    Status optimize();
+
+    /**
+     * @return whether {@link #optimize()} found a feasible solution, which is not necessarily optimal if a limit was reached
+     */
+    boolean hasSolution();
+
+    /**
+     * @return the objective value of the solution found by {@link #optimize()}
+     */
+    double getObjectiveValue();
+
+    /**
+     * @param vars
+     * @return the values of the variables in the solution found by {@link #optimize()}
+     */
+    double[] getValues(int[] vars);
+
+    /**
+     * Returns the dual values of the constraints, available for continuous models only.
+     *
+     * @param constrs
+     * @return
+     */
+    double[] getDuals(int[] constrs);
+
+    /**
+     * Computes an irreducible inconsistent subsystem of an infeasible model.
+     *
+     * @return the handles of the constraints in the IIS
+     */
+    int[] computeIIS();
+
+    /**
+     * @return the handles of all constraints not removed, in order of addition
+     */
+    int[] getConstrs();
+
+    String getConstrName(int constr);
+
+    int getNbVars();
+
+    int getNbConstrs();
+
+    /**
+     * Writes the model in LP format.
+     *
+     * @param fileName
+     */
+    void write(String fileName);
+
+    void dispose();
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.solver;
+
+/**
+ * Creates the MIP models of train path allocation problem models, hiding the MIP solver used.
+ * <p/>
+ * Implementations must allow models to be created and solved concurrently, as conflict components are solved in parallel.
+ *
+ * @see MIPModel
+ */
+public interface MIPSolver {
+
+    /**
+     * Creates an empty model.
+     *
+     * @param outputDir directory for the solver's log, if any
+     * @return
+     */
+    MIPModel newModel(String outputDir);
+
+    /**
+     * The MIP solvers available.
+     */
+    enum Type {
+        /**
+         * Gurobi, needs the Gurobi jar on the classpath and a licence.
+         */
+        GUROBI,
+        /**
+         * Built-in pure Java solver, for small models and environments without Gurobi.
+         */
+        BUILT_IN;
+
+        public MIPSolver createSolver() {
+            return createSolver(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+
+        /**
+         * @param timeLimit time limit in seconds of each model's optimization
+         * @param nodeLimit node limit of each model's optimization
+         * @return
+         * @see MIPModel#setTimeLimit(double)
+         * @see MIPModel#setNodeLimit(double)
+         */
+        public MIPSolver createSolver(double timeLimit, double nodeLimit) {
+            switch (this) {
+                case BUILT_IN:
+                    return new BuiltInMIPSolver(timeLimit, nodeLimit);
+                default:
+                    return new GurobiMIPSolver(timeLimit, nodeLimit);
+            }
+        }
+    }
+}
@@ -21,10 +21,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.ArrayList;
-import java.util.Hashtable;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 /**
  *
@@ -35,6 +32,8 @@ public class MacroscopicTopology {
     Hashtable<String, Pair<SystemNode, SystemNode>> trainPathSectionsList = new Hashtable<String, Pair<SystemNode, SystemNode>>();
     List<List<SystemNode>> routes = new LinkedList<List<SystemNode>>();
     private Hashtable<String, SystemNode> systemNodes = new Hashtable<String, SystemNode>();
+    private volatile Map<Pair<SystemNode, SystemNode>, Map<SystemNode, List<SystemNode>>> successorIndex;
+    private volatile int version = 0;
 
     /* Topology as in TpaTestDataEmptyTemplate.xls */
     public static MacroscopicTopology getLargeTopology() {
@@ -216,7 +215,17 @@ public class MacroscopicTopology {
             }
         }
         routes.add(route);
+        successorIndex = null;
+        version++;
+    }
 
+    /**
+     * Returns a counter that changes whenever a route is added.
+     *
+     * @return
+     */
+    public int getVersion() {
+        return version;
     }
 
     public boolean sameRoute(List<SystemNode> r1, List<SystemNode> r2) {
@@ -278,6 +287,8 @@ public class MacroscopicTopology {
 
     /**
      * Get the possible subroutes from {@code from} to {@code to} contained in routes {@code alongFrom} to {@code alongTo}.
+     * <p/>
+     * Looked up in the successor index, which is built once from the routes and rebuilt only after routes are added. The returned list must not be modified.
      *
      * @param from
      * @param alongFrom
@@ -285,18 +296,62 @@ public class MacroscopicTopology {
      * @return
      */
     public List<SystemNode> getSuccessors(SystemNode from, SystemNode alongFrom, SystemNode alongTo) {
-        List<List<SystemNode>> alongRoutes = getRoutes(alongFrom, alongTo);
-        List<SystemNode> successors = new LinkedList<>();
-        for (List<SystemNode> route : alongRoutes) {
-            int fromIndex = route.indexOf(from);
-            if (fromIndex >= 0 && route.size() > fromIndex + 1) {
-                SystemNode successor = route.get(fromIndex + 1);
-                if (!successors.contains(successor)) {
-                    successors.add(successor);
+        Map<SystemNode, List<SystemNode>> successorsAlong = getSuccessorIndex().get(new Pair<>(alongFrom, alongTo));
+        if (successorsAlong == null) {
+            return Collections.emptyList();
+        }
+        List<SystemNode> successors = successorsAlong.get(from);
+        if (successors == null) {
+            return Collections.emptyList();
+        }
+        return successors;
+    }
+
+    private Map<Pair<SystemNode, SystemNode>, Map<SystemNode, List<SystemNode>>> getSuccessorIndex() {
+        Map<Pair<SystemNode, SystemNode>, Map<SystemNode, List<SystemNode>>> index = successorIndex;
+        if (index == null) {
+            index = buildSuccessorIndex();
+            successorIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Maps (alongFrom, alongTo) and a system node to its successors, in the order of the routes, on the subroutes from alongFrom to alongTo.
+     *
+     * @return
+     */
+    private Map<Pair<SystemNode, SystemNode>, Map<SystemNode, List<SystemNode>>> buildSuccessorIndex() {
+        Map<Pair<SystemNode, SystemNode>, Map<SystemNode, List<SystemNode>>> index = new HashMap<>();
+        for (List<SystemNode> route : routes) {
+            SystemNode[] nodes = route.toArray(new SystemNode[route.size()]);
+            for (int i = 0; i < nodes.length - 1; i++) {
+                for (int j = i + 1; j < nodes.length; j++) {
+                    Pair<SystemNode, SystemNode> along = new Pair<>(nodes[i], nodes[j]);
+                    Map<SystemNode, List<SystemNode>> successorsAlong = index.get(along);
+                    if (successorsAlong == null) {
+                        successorsAlong = new HashMap<>();
+                        index.put(along, successorsAlong);
+                    }
+                    for (int k = i; k < j; k++) {
+                        List<SystemNode> successors = successorsAlong.get(nodes[k]);
+                        if (successors == null) {
+                            successors = new ArrayList<>(1);
+                            successorsAlong.put(nodes[k], successors);
+                        }
+                        if (!successors.contains(nodes[k + 1])) {
+                            successors.add(nodes[k + 1]);
+                        }
+                    }
                 }
             }
         }
-        return successors;
+        for (Map<SystemNode, List<SystemNode>> successorsAlong : index.values()) {
+            for (Map.Entry<SystemNode, List<SystemNode>> entry : successorsAlong.entrySet()) {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+        }
+        return index;
     }
 
     public List<List<SystemNode>> findRoutesByEndPoints(List<SystemNode> endPoints) {
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.oakmountain.tpa.solver;
+
+import org.joda.time.Duration;
+import org.joda.time.chrono.ISOChronology;
+
+/**
+ * Cyclic arithmetic on moments of the week represented as <code>int</code> milliseconds after {@link PeriodicalTimeFrame#START_OF_WEEK}.
+ * <p/>
+ * Mirrors the semantics of {@link PeriodicalTimeFrame#plus}, {@link PeriodicalTimeFrame#distanceAfter} and {@link PeriodicalTimeFrame#isWithinBounds}
+ * without allocating objects, so that it can be used on the hot path of DAG construction.
+ */
+public final class MillisOfWeek {
+
+    public static final int MILLIS_PER_WEEK = 7 * 24 * 60 * 60 * 1000;
+
+    private MillisOfWeek() {
+    }
+
+    /**
+     * Shifts an arbitrary offset into the standard week [0, MILLIS_PER_WEEK).
+     *
+     * @param millis
+     * @return
+     */
+    public static int normalize(long millis) {
+        int millisOfWeek = (int) (millis % MILLIS_PER_WEEK);
+        if (millisOfWeek < 0) {
+            millisOfWeek += MILLIS_PER_WEEK;
+        }
+        return millisOfWeek;
+    }
+
+    public static int plus(int moment, int durationMillis) {
+        return normalize((long) moment + durationMillis);
+    }
+
+    public static int minus(int moment, int durationMillis) {
+        return normalize((long) moment - durationMillis);
+    }
+
+    /**
+     * Returns if within inclusive bounds:
+     * if earliest <= latest: earliest <= moment <= latest
+     * if earliest > latest: (moment >= earliest) or (latest >= moment)
+     *
+     * @param moment
+     * @param earliest
+     * @param latest
+     * @return
+     */
+    public static boolean isWithinBounds(int moment, int earliest, int latest) {
+        if (earliest <= latest) {
+            return earliest <= moment && moment <= latest;
+        } else {
+            return moment >= earliest || moment <= latest;
+        }
+    }
+
+    /**
+     * Returns the non-negative distance from reference to moment in the periodical week (0 if equal).
+     *
+     * @param moment
+     * @param reference
+     * @return
+     */
+    public static int distanceAfter(int moment, int reference) {
+        if (moment == reference) {
+            return 0;
+        } else if (moment < reference) {
+            return MILLIS_PER_WEEK - reference + moment;
+        } else {
+            return moment - reference;
+        }
+    }
+
+    public static int of(PeriodicalTimeFrame periodicalTimeFrame) {
+        return periodicalTimeFrame.getMillisOfWeek();
+    }
+
+    /**
+     * Converts a duration to milliseconds; as in {@link PeriodicalTimeFrame#plus(org.joda.time.ReadableDuration)}, null means zero.
+     *
+     * @param duration
+     * @return
+     */
+    public static int of(Duration duration) {
+        if (duration == null) {
+            return 0;
+        }
+        long millis = duration.getMillis();
+        if (millis > Integer.MAX_VALUE || millis < Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Duration " + PeriodicalTimeFrame.formatDuration(duration) + " does not fit into millis of week");
+        }
+        return (int) millis;
+    }
+
+    public static PeriodicalTimeFrame toPeriodicalTimeFrame(int millisOfWeek) {
+        return new PeriodicalTimeFrame(PeriodicalTimeFrame.START_OF_WEEK.getLocalMillis() + normalize(millisOfWeek), ISOChronology.getInstanceUTC());
+    }
+
+    public static Duration toDuration(int durationMillis) {
+        return new Duration(durationMillis);
+    }
+}
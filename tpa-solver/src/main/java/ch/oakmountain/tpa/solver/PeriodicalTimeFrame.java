@@ -588,7 +588,8 @@ public class PeriodicalTimeFrame extends BaseLocal implements ReadablePartial, S
      * @return a copy of this datetime with different millis
      */
     PeriodicalTimeFrame withLocalMillis(long newMillis) {
-        return shiftToStandardWeek(newMillis == getLocalMillis() ? this : new PeriodicalTimeFrame(newMillis, getChronology()));
+        long standardWeekMillis = shiftToStandardWeek(newMillis);
+        return standardWeekMillis == getLocalMillis() ? this : new PeriodicalTimeFrame(standardWeekMillis, getChronology());
     }
 
     /**
@@ -606,17 +607,15 @@ public class PeriodicalTimeFrame extends BaseLocal implements ReadablePartial, S
 
     //-----------------------------------------------------------------------
 
-    private PeriodicalTimeFrame shiftToStandardWeek(PeriodicalTimeFrame periodicalTimeFrame) {
-        int i = 0;
-        while (periodicalTimeFrame.isAfterOrEqual(END_OF_WEEK)) {
-            periodicalTimeFrame.isAfterOrEqual(END_OF_WEEK);
-            periodicalTimeFrame = periodicalTimeFrame.minus(Days.days(7));
-        }
-        while (periodicalTimeFrame.isBefore(START_OF_WEEK)) {
-            periodicalTimeFrame.isBefore(START_OF_WEEK);
-            periodicalTimeFrame = periodicalTimeFrame.plus(Days.days(7));
-        }
-        return periodicalTimeFrame;
+    /**
+     * Shifts local millis by whole weeks into [START_OF_WEEK, END_OF_WEEK) in constant time.
+     *
+     * @param localMillis
+     * @return
+     */
+    private static long shiftToStandardWeek(long localMillis) {
+        long startOfWeek = START_OF_WEEK.iLocalMillis;
+        return startOfWeek + MillisOfWeek.normalize(localMillis - startOfWeek);
     }
 
     /**
@@ -1061,6 +1060,15 @@ public class PeriodicalTimeFrame extends BaseLocal implements ReadablePartial, S
         return new Duration(iLocalMillis);
     }
 
+    /**
+     * Returns the offset from the start of the week in milliseconds, see {@link MillisOfWeek}.
+     *
+     * @return
+     */
+    public int getMillisOfWeek() {
+        return (int) (iLocalMillis - START_OF_WEEK.iLocalMillis);
+    }
+
     /**
      * LocalWeekTime.Property binds a LocalWeekTime to a DateTimeField allowing
      * powerful datetime functionality to be easily accessed.
@@ -109,6 +109,14 @@ public class PeriodicalTrainPathSlot implements IPeriodical {
         }
     }
 
+    public void addAllStartTimeContainedInclusive(int earliestMillisOfWeek, int latestMillisOfWeek, List<TrainPathSlot> slotList) {
+        for (Integer day : periodicity.getWeekDays()) {
+            if (slots[day].isStartTimeContainedInclusive(earliestMillisOfWeek, latestMillisOfWeek)) {
+                slotList.add(slots[day]);
+            }
+        }
+    }
+
     /**
      * Get a train path slot
      *
@@ -131,4 +139,24 @@ public class PeriodicalTrainPathSlot implements IPeriodical {
         return nextSlot;
     }
 
+    /**
+     * Get the train path slot starting next after earliest.
+     *
+     * @param earliestMillisOfWeek
+     * @return
+     */
+    public TrainPathSlot getNextOrQuickestTrainPathSlot(int earliestMillisOfWeek) {
+        TrainPathSlot nextSlot = null;
+        int shortestDistance = Integer.MAX_VALUE;
+        for (Integer day : periodicity.getWeekDays()) {
+            TrainPathSlot daySlot = slots[day];
+            int thisDistance = MillisOfWeek.distanceAfter(daySlot.getStartMillisOfWeek(), earliestMillisOfWeek);
+            if (nextSlot == null || thisDistance < shortestDistance) {
+                nextSlot = daySlot;
+                shortestDistance = thisDistance;
+            }
+        }
+        return nextSlot;
+    }
+
 }
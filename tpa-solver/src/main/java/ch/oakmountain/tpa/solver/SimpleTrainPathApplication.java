@@ -40,9 +40,12 @@ public class SimpleTrainPathApplication {
     private final TrainPathAllocationProblemPruningParameters params;
 
     private TrainPathApplication parent;
-    private int solutionCandidateCounter = 0;
 
     public SimpleTrainPathApplication(String name, SystemNode from, SystemNode to, PeriodicalTimeFrame startTime, PeriodicalTimeFrame endTime, TrainPathApplication parent, int hardMaximumEarlierDeparture, int hardMinimumDwellTime, int hardMaximumLaterArrival) {
+        this(name, from, to, startTime, endTime, parent, hardMaximumEarlierDeparture, hardMinimumDwellTime, hardMaximumLaterArrival, false, false);
+    }
+
+    public SimpleTrainPathApplication(String name, SystemNode from, SystemNode to, PeriodicalTimeFrame startTime, PeriodicalTimeFrame endTime, TrainPathApplication parent, int hardMaximumEarlierDeparture, int hardMinimumDwellTime, int hardMaximumLaterArrival, boolean reachabilityPruning, boolean sanityCheck) {
         this.name = name;
         this.from = from;
         this.to = to;
@@ -53,16 +56,15 @@ public class SimpleTrainPathApplication {
             endTime.isWithinBounds(startTime, startTime.plus(Days.days(1)));
             throw new IllegalArgumentException("End time " + endTime + " is not within 24h from startTime " + startTime + " in request " + name);
         }
-        this.params = new TrainPathAllocationProblemPruningParameters(this, hardMaximumEarlierDeparture, hardMinimumDwellTime, hardMaximumLaterArrival);
+        this.params = new TrainPathAllocationProblemPruningParameters(this, hardMaximumEarlierDeparture, hardMinimumDwellTime, hardMaximumLaterArrival, reachabilityPruning, sanityCheck);
     }
 
 
-
-
-    public int getNextSolutionCandiateCounte() {
-        return solutionCandidateCounter++;
-    }
-
+    /**
+     * Returns the application's initial pruning parameters; DAG construction derives its own variants from them.
+     *
+     * @return
+     */
     public TrainPathAllocationProblemPruningParameters getParams() {
         return params;
     }
@@ -87,6 +89,14 @@ public class SimpleTrainPathApplication {
         return endTime;
     }
 
+    public int getStartMillisOfWeek() {
+        return startTime.getMillisOfWeek();
+    }
+
+    public int getEndMillisOfWeek() {
+        return endTime.getMillisOfWeek();
+    }
+
     public String getName() {
         return name;
     }
@@ -57,7 +57,6 @@ public class SolutionCandidate {
             throw new IllegalStateException("Path does not start at request end node " + r.getTo() + ", but at " + getLastSlot().getTo());
         }
         this.r = r;
-        makeName();
     }
 
     /**
@@ -113,6 +112,10 @@ public class SolutionCandidate {
     }
 
     public String toString() {
+        // built lazily, candidates may be enumerated without ever being named
+        if (name == null) {
+            makeName();
+        }
         return name;
     }
 
@@ -18,14 +18,10 @@ package ch.oakmountain.tpa.solver;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.codehaus.plexus.util.dag.CycleDetectedException;
 import org.joda.time.Duration;
 
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 /**
  * Pruning, DAG construction and partial enumeration of solution candidate for a train path application.
@@ -73,11 +69,15 @@ public class SolutionCandidateFinder {
     }
 
     /**
-     * Gets the earliest path within the request's hard bounds.
-     *
-     * Greedy approach:
-     * - at each system node A and for all next system nodes C, choose the slot that brings us first to C (this should be deterministic, if the construction of train path slots does not produce overtakings)
-     * - finally choose arbitrarily one of the paths that brings us first to the destination (here, indeterminism happens as seen in the real-world data set)
+     * Gets the earliest path leaving not before lb and arriving within [lb, ub].
+     * <p/>
+     * Label-setting (Dijkstra) search over the system nodes, where a label is the earliest arrival at a system node in millis after lb:
+     * - at each system node A and for all next system nodes C, take the slot that brings us first to C when leaving A at arrival plus dwell time (at the origin: not before lb)
+     * - since leaving later never brings us earlier to C, a system node's label is final once it is settled, which gives O(E log V) per query
+     * - labels arriving after ub are discarded, since every extension arrives even later
+     * <p/>
+     * Tie-break: system nodes with equal arrival are settled in the order of their names and a label is only replaced by a strictly earlier arrival,
+     * so among equally early paths the one found first from the earlier settled system node is returned.
      *
      * @param macro
      * @param catalogue
@@ -87,109 +87,137 @@ public class SolutionCandidateFinder {
      * @param ub
      * @return
      */
-    // TODO make a data set with alternative routes, for instance---</=======>---<===
-    // TODO remove indeterministic behaviour?
     private static List<TrainPathSlot> getEarliestPath(MacroscopicTopology macro, TrainPathSlotCatalogue catalogue, SystemNode from, SystemNode to, PeriodicalTimeFrame lb, Duration dt, PeriodicalTimeFrame ub) {
-        HashSet<List<TrainPathSlot>> paths = new HashSet<>();
-        Duration bestDuration = null;
-        List<TrainPathSlot> bestPath = null;
-        getEarliestPathIter(macro, catalogue, from, to, lb, dt, ub, from, new LinkedList<TrainPathSlot>(), paths);
-
-        // N.B: the choice of the earliest path is Non-deterministic!
-        for (List<TrainPathSlot> path : paths) {
-
-            Duration durationCand = lb.distanceAfter(path.get(path.size() - 1).getEndTime());
-            if (bestDuration == null || durationCand.isShorterThan(bestDuration)) {
-                bestDuration = durationCand;
-                bestPath = path;
+        int lbMillisOfWeek = lb.getMillisOfWeek();
+        int dwellMillis = MillisOfWeek.of(dt);
+        int maxArrival = MillisOfWeek.distanceAfter(ub.getMillisOfWeek(), lbMillisOfWeek);
+
+        Map<SystemNode, Long> arrivals = new HashMap<>();
+        Map<SystemNode, TrainPathSlot> lastSlots = new HashMap<>();
+        Set<SystemNode> settled = new HashSet<>();
+        PriorityQueue<EarliestArrivalLabel> queue = new PriorityQueue<>();
+        arrivals.put(from, 0L);
+        queue.add(new EarliestArrivalLabel(from, 0));
+
+        while (!queue.isEmpty()) {
+            EarliestArrivalLabel label = queue.poll();
+            SystemNode currentNode = label.systemNode;
+            if (!settled.add(currentNode)) {
+                // outdated label
+                continue;
+            }
+            if (currentNode.equals(to)) {
+                break;
             }
-        }
-        return bestPath;
-    }
-
-
-    private static void getEarliestPathIter(MacroscopicTopology macro, TrainPathSlotCatalogue catalogue, SystemNode from, SystemNode to, PeriodicalTimeFrame lb, Duration dt, PeriodicalTimeFrame ub, SystemNode currentNode, List<TrainPathSlot> path, Set<List<TrainPathSlot>> paths) {
 
-        if (currentNode.equals(to)) {
-            if (path.get(path.size() - 1).getEndTime().isWithinBounds(lb, ub)) {
-                paths.add(path);
+            long earliest = currentNode.equals(from) ? 0 : label.arrival + dwellMillis;
+            int earliestMillisOfWeek = MillisOfWeek.normalize(lbMillisOfWeek + earliest);
+            for (SystemNode nextSystemNodeCandidate : macro.getSuccessors(currentNode, from, to)) {
+                if (settled.contains(nextSystemNodeCandidate)) {
+                    continue;
+                }
+                TrainPathSlot quickestTrainPathSlot = catalogue.getQuickestTrainPathSlot(currentNode, nextSystemNodeCandidate, earliestMillisOfWeek);
+                if (quickestTrainPathSlot == null) {
+                    throw new IllegalStateException("No next slot found in catalogue between " + currentNode.getName() + " and " + nextSystemNodeCandidate.getName());
+                }
+                long arrival = earliest + MillisOfWeek.distanceAfter(quickestTrainPathSlot.getStartMillisOfWeek(), earliestMillisOfWeek) + quickestTrainPathSlot.getDurationMillis();
+                if (arrival > maxArrival) {
+                    continue;
+                }
+                Long knownArrival = arrivals.get(nextSystemNodeCandidate);
+                if (knownArrival == null || arrival < knownArrival) {
+                    arrivals.put(nextSystemNodeCandidate, arrival);
+                    lastSlots.put(nextSystemNodeCandidate, quickestTrainPathSlot);
+                    queue.add(new EarliestArrivalLabel(nextSystemNodeCandidate, arrival));
+                }
             }
-            return;
         }
 
-        PeriodicalTimeFrame earliest;
-        if (path.size() == 0) {
-            earliest = lb;
-        } else {
-            earliest = path.get(path.size() - 1).getEndTime().plus(dt);
+        if (from.equals(to) || !settled.contains(to)) {
+            return null;
         }
-
-        for (SystemNode nextSystemNodeCandidate : macro.getSuccessors(currentNode, from, to)) {
-            TrainPathSlot quickestTrainPathSlot = catalogue.getQuickestTrainPathSlot(currentNode, nextSystemNodeCandidate, earliest);
-            if (quickestTrainPathSlot == null) {
-                throw new IllegalStateException("No next slot found in catalogue between " + currentNode.getName() + " and " + nextSystemNodeCandidate.getName());
-            }
-            List<TrainPathSlot> newPath = addToCopy(path, quickestTrainPathSlot);
-            getEarliestPathIter(macro, catalogue, from, to, lb, dt, ub, nextSystemNodeCandidate, newPath, paths);
+        LinkedList<TrainPathSlot> path = new LinkedList<>();
+        for (SystemNode systemNode = to; !systemNode.equals(from); systemNode = path.getFirst().getFrom()) {
+            path.addFirst(lastSlots.get(systemNode));
         }
+        return path;
     }
 
-    private static List<TrainPathSlot> addToCopy(List<TrainPathSlot> path, TrainPathSlot v) {
-        List<TrainPathSlot> newPath = (List<TrainPathSlot>) ((LinkedList<TrainPathSlot>) path).clone();
-        newPath.add(v);
-        return newPath;
+    /**
+     * Find initial pruning that makes DAG feasible.
+     * <p/>
+     * The application's parameters are left untouched; the pruning parameters found are those of the returned DAG.
+     *
+     *
+     * @param macroscopicTopology
+     * @param trainPathSlotCatalogue
+     * @param application
+     * @return
+     * @throws IOException
+     * @throws IllegalAccessException
+     */
+    public static TrainPathDAG findFeasibleDAG(MacroscopicTopology macroscopicTopology, TrainPathSlotCatalogue trainPathSlotCatalogue, SimpleTrainPathApplication application) throws IOException, IllegalAccessException {
+        return findFeasibleDAG(macroscopicTopology, trainPathSlotCatalogue, application, new TrainPathDAGCache(0));
     }
 
     /**
-     * Find initial pruning that makes DAG feasible.
+     * Find initial pruning that makes DAG feasible, looking up and storing the DAGs constructed on the way in the cache.
+     * <p/>
+     * The DAG with default pruning is constructed first. If it does not reach the target node, pruning parameters are derived from the earliest path
+     * and the DAG is widened to them (keeping the default windows where they are wider), instead of being constructed again.
      *
      * @param macroscopicTopology
      * @param trainPathSlotCatalogue
      * @param application
+     * @param dagCache
      * @return
-     * @throws CycleDetectedException
      * @throws IOException
      * @throws IllegalAccessException
+     * @see #findFeasibleDAG(MacroscopicTopology, TrainPathSlotCatalogue, SimpleTrainPathApplication)
+     * @see TrainPathAllocationProblemPruningParameters#isSanityCheck()
      */
-    public static TrainPathDAG findFeasibleDAG(MacroscopicTopology macroscopicTopology, TrainPathSlotCatalogue trainPathSlotCatalogue, SimpleTrainPathApplication application) throws CycleDetectedException, IOException, IllegalAccessException {
-        sanityCheck(macroscopicTopology, trainPathSlotCatalogue, application);
+    public static TrainPathDAG findFeasibleDAG(MacroscopicTopology macroscopicTopology, TrainPathSlotCatalogue trainPathSlotCatalogue, SimpleTrainPathApplication application, TrainPathDAGCache dagCache) throws IOException, IllegalAccessException {
+        if (application.getParams().isSanityCheck()) {
+            sanityCheck(macroscopicTopology, trainPathSlotCatalogue, application, dagCache);
+        }
 
         // 1. Try to construct a DAG with default parameters and best path
-        application.getParams().setDefaultPruning();
-        TrainPathDAG dag = TrainPathDAG.constructDAG(macroscopicTopology, application, trainPathSlotCatalogue);
-
+        TrainPathAllocationProblemPruningParameters defaultParams = application.getParams().withDefaultPruning();
+        TrainPathDAG dag = dagCache.getDAG(macroscopicTopology, application, defaultParams, trainPathSlotCatalogue);
+        if (dag.isTargetNodeReached()) {
+            return dag;
+        }
 
         // 2. Try to guess parameters from the earliest path found if dag is not feasible
-        if (!dag.isTargetNodeReached()) {
-            List<TrainPathSlot> earliestPath = getEarliestPathWithinRequestedBounds(macroscopicTopology, trainPathSlotCatalogue, application);
+        List<TrainPathSlot> earliestPath = getEarliestPathWithinRequestedBounds(macroscopicTopology, trainPathSlotCatalogue, application);
 
-            // 3. If no best path, try again start at hard max early departure point
-            if (earliestPath == null) {
-                LOGGER.warn("No path found for " + application.getName() + " within requested bounds => maybe we can find a path within hard bounds?");
-                earliestPath = getEarliestPathWithinHardBounds(macroscopicTopology, trainPathSlotCatalogue, application);
-            }
+        // 3. If no best path, try again start at hard max early departure point
+        if (earliestPath == null) {
+            LOGGER.warn("No path found for " + application.getName() + " within requested bounds => maybe we can find a path within hard bounds?");
+            earliestPath = getEarliestPathWithinHardBounds(macroscopicTopology, trainPathSlotCatalogue, application);
+        }
 
-            if (earliestPath == null) {
-                LOGGER.warn("No path found for " + application.getName() + " => giving up.");
-                dag.printInfeasibilities();
-                // construct DAG so infeasibility can be analysed
-                dag = TrainPathDAG.constructDAG(macroscopicTopology, application, trainPathSlotCatalogue);
-                return dag;
-            } else {
-                LOGGER.warn("Now, a path found for " + application.getName() + ", coo!");
-            }
-            // derive params from earliest path and construct DAG
-            derivePruningParamsFromEarliestPath(application, earliestPath);
-            dag = TrainPathDAG.constructDAG(macroscopicTopology, application, trainPathSlotCatalogue);
-
-            if (!dag.isTargetNodeReached()) {
-                /*earliestPath = getEarliestPathWithinRequestedBounds(macroscopicTopology, trainPathSlotCatalogue, application);
-                earliestPath = getEarliestPathWithinHardBounds(macroscopicTopology, trainPathSlotCatalogue, application);
-                dag = TrainPathDAG.constructDAG(macroscopicTopology, application, trainPathSlotCatalogue);*/
-                throw new IllegalStateException("Found a path, but dag construction does not reach target node.");
-            }
+        if (earliestPath == null) {
+            LOGGER.warn("No path found for " + application.getName() + " => giving up.");
+            // the default DAG is returned so infeasibility can be analysed
+            dag.printInfeasibilities();
+            return dag;
+        } else {
+            LOGGER.warn("Now, a path found for " + application.getName() + ", coo!");
+        }
+
+        // 4. Widen the default DAG to the params derived from the earliest path
+        TrainPathAllocationProblemPruningParameters derivedParams = derivePruningParamsFromEarliestPath(application, defaultParams, earliestPath);
+        TrainPathAllocationProblemPruningParameters relaxedParams = defaultParams.toBuilder().relaxTo(derivedParams).build();
+        if (relaxedParams.isRelaxationOf(defaultParams)) {
+            dag = dagCache.getWidenedDAG(macroscopicTopology, application, dag, relaxedParams, trainPathSlotCatalogue);
+        } else {
+            dag = dagCache.getDAG(macroscopicTopology, application, relaxedParams, trainPathSlotCatalogue);
         }
 
+        if (!dag.isTargetNodeReached()) {
+            throw new IllegalStateException("Found a path, but dag construction does not reach target node.");
+        }
         return dag;
     }
 
@@ -199,18 +227,18 @@ public class SolutionCandidateFinder {
      * @param macroscopicTopology
      * @param trainPathSlotCatalogue
      * @param application
-     * @throws CycleDetectedException
+     * @param dagCache
      */
-    private static void sanityCheck(MacroscopicTopology macroscopicTopology, TrainPathSlotCatalogue trainPathSlotCatalogue, SimpleTrainPathApplication application) throws CycleDetectedException {
-        application.getParams().relaxToMax();
-        TrainPathDAG maxDag = TrainPathDAG.constructDAG(macroscopicTopology, application, trainPathSlotCatalogue);
+    private static void sanityCheck(MacroscopicTopology macroscopicTopology, TrainPathSlotCatalogue trainPathSlotCatalogue, SimpleTrainPathApplication application, TrainPathDAGCache dagCache) {
+        TrainPathDAG maxDag = dagCache.getDAG(macroscopicTopology, application, application.getParams().relaxedToMax(), trainPathSlotCatalogue);
         List<TrainPathSlot> earliestPath1 = getEarliestPathWithinHardBounds(macroscopicTopology, trainPathSlotCatalogue, application);
         if (!((maxDag.isTargetNodeReached() && earliestPath1 != null) || (!maxDag.isTargetNodeReached() && earliestPath1 == null))) {
             throw new IllegalStateException("Sanity check failed: Path found <=/=> target node in DAG reached");
         }
     }
 
-    private static void derivePruningParamsFromEarliestPath(SimpleTrainPathApplication application, List<TrainPathSlot> earliestPath) {
+    private static TrainPathAllocationProblemPruningParameters derivePruningParamsFromEarliestPath(SimpleTrainPathApplication application, TrainPathAllocationProblemPruningParameters params, List<TrainPathSlot> earliestPath) {
+        TrainPathAllocationProblemPruningParameters.Builder builder = params.toBuilder();
         PeriodicalTimeFrame earliestPathEndTime = earliestPath.get(earliestPath.size() - 1).getEndTime();
         PeriodicalTimeFrame earliestPathStartTime = earliestPath.get(0).getStartTime();
 
@@ -224,8 +252,8 @@ public class SolutionCandidateFinder {
             maxEarlierArrivalFromEarliestPath = new Duration(0);
             maxLaterArrivalFromEarliestPath = earliestPathEndTime.distanceAfter(application.getEndTime());
         }
-        application.getParams().setMAXIMUM_EARLIER_ARRIVAL(maxEarlierArrivalFromEarliestPath);
-        application.getParams().setMAXIMUM_LATER_ARRIVAL(maxLaterArrivalFromEarliestPath);
+        builder.setMAXIMUM_EARLIER_ARRIVAL(maxEarlierArrivalFromEarliestPath);
+        builder.setMAXIMUM_LATER_ARRIVAL(maxLaterArrivalFromEarliestPath);
 
         // Maximum earlier/later departure from path's departure time
         Duration maxLaterDepartureFromEarliestPath;
@@ -237,20 +265,21 @@ public class SolutionCandidateFinder {
             maxLaterDepartureFromEarliestPath = new Duration(0);
             maxEarlierDepartureFromEarliestPath = application.getStartTime().distanceAfter(earliestPathStartTime);
         }
-        application.getParams().setMAXIMUM_LATER_DEPARTURE(maxLaterDepartureFromEarliestPath);
-        application.getParams().setMAXIMUM_EARLIER_DEPARTURE(maxEarlierDepartureFromEarliestPath);
+        builder.setMAXIMUM_LATER_DEPARTURE(maxLaterDepartureFromEarliestPath);
+        builder.setMAXIMUM_EARLIER_DEPARTURE(maxEarlierDepartureFromEarliestPath);
 
         // Mnimum dwell time as hard minimum dwell time
-        application.getParams().setMINIMUM_DWELL_TIME(application.getParams().getHARD_MINIMUM_DWELL_TIME());
+        builder.setMINIMUM_DWELL_TIME(params.getHARD_MINIMUM_DWELL_TIME());
 
         // Maximum additional dwell time per system node
         for (int i = 1; i < earliestPath.size(); i++) {
             TrainPathSlot fromSlot = earliestPath.get(i - 1);
             TrainPathSlot toSlot = earliestPath.get(i);
             SystemNode weAreAt = toSlot.getFrom();
-            Duration dwellTimeAdditionalToHardMinimum = toSlot.getStartTime().distanceAfter(fromSlot.getEndTime()).minus(application.getParams().getHARD_MINIMUM_DWELL_TIME());
-            application.getParams().setMAXIMUM_ADDITIONAL_DWELL_TIME(weAreAt, dwellTimeAdditionalToHardMinimum);
+            Duration dwellTimeAdditionalToHardMinimum = toSlot.getStartTime().distanceAfter(fromSlot.getEndTime()).minus(params.getHARD_MINIMUM_DWELL_TIME());
+            builder.setMAXIMUM_ADDITIONAL_DWELL_TIME(weAreAt, dwellTimeAdditionalToHardMinimum);
         }
+        return builder.build();
     }
 
     /**
@@ -260,9 +289,25 @@ public class SolutionCandidateFinder {
      * @return
      */
     public static Set<SolutionCandidate> getEnumerate(TrainPathDAG dag) {
-        // Full enumeration
-        TrainPathDAG.SolutionCandidateEnumerationResult enumerate = dag.enumerate(1);
-        Set<SolutionCandidate> solutionCandidates = enumerate.getSolutionCandidates();
+        return getEnumerate(dag, dag.getParams().getMAX_TRAINPATHS_PER_REQUEST());
+    }
+
+    /**
+     * Enumerate solution candidates from DAG depth-first, up to a limit.
+     *
+     * @param dag
+     * @param limit
+     * @return
+     */
+    public static Set<SolutionCandidate> getEnumerate(TrainPathDAG dag, int limit) {
+        Set<SolutionCandidate> solutionCandidates = new HashSet<>();
+        SolutionCandidateIterator iterator = dag.solutionCandidateIterator(false, limit);
+        while (iterator.hasNext()) {
+            solutionCandidates.add(iterator.next());
+        }
+        if (iterator.isLimitReached()) {
+            LOGGER.warn("Enumeration of " + dag.getSimpleTrainPathApplication().getName() + " stopped after " + limit + " solution candidates");
+        }
 
         if (dag.isTargetNodeReached() && solutionCandidates.size() == 0) {
             throw new IllegalStateException("DAG feasible but no enumeration");
@@ -270,11 +315,142 @@ public class SolutionCandidateFinder {
         return solutionCandidates;
     }
 
+    /**
+     * Returns the k solution candidates of least weight (see {@link SolutionCandidate#getWeight()}), in order of increasing weight.
+     * <p/>
+     * The k best suffixes from every vertex to the request end node are computed by dynamic programming in reverse
+     * topological order, merging the lists of the children; ties are broken by arc and rank, so the result is reproducible.
+     * The list of a vertex holds at most as many suffixes as its children's lists together, so time is in O((V + E) k log(E)) and
+     * memory in O(V k) at worst, regardless of the number of paths in the DAG.
+     *
+     * @param dag
+     * @param k
+     * @return fewer than k candidates if the DAG does not have as many paths
+     */
+    public static List<SolutionCandidate> getKBest(TrainPathDAG dag, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1, found " + k);
+        }
+        if (!dag.isTargetNodeReached()) {
+            return new LinkedList<>();
+        }
+        int nbVertices = dag.getNbVertices();
+        // k best suffixes per vertex: weight, arc taken and rank of the continuation in the arc target's list
+        long[][] weights = new long[nbVertices][];
+        int[][] edges = new int[nbVertices][];
+        int[][] ranks = new int[nbVertices][];
+        int end = dag.getRequestEndNode();
+        weights[end] = new long[]{0};
+        edges[end] = new int[]{-1};
+        ranks[end] = new int[]{-1};
+
+        int[] topologicalOrder = dag.getTopologicalOrder();
+        PriorityQueue<KBestEntry> heap = new PriorityQueue<>();
+        for (int i = topologicalOrder.length - 1; i >= 0; i--) {
+            int vertex = topologicalOrder[i];
+            if (vertex == end) {
+                continue;
+            }
+            heap.clear();
+            int nbSuffixes = 0;
+            for (int edge = dag.getChildEdgesBegin(vertex); edge < dag.getChildEdgesEnd(vertex); edge++) {
+                int child = dag.getEdgeTarget(edge);
+                if (weights[child].length > 0) {
+                    heap.add(new KBestEntry(dag.getArcWeight(vertex, child) + weights[child][0], edge, 0));
+                    nbSuffixes = (int) Math.min(k, (long) nbSuffixes + weights[child].length);
+                }
+            }
+            long[] vertexWeights = new long[nbSuffixes];
+            int[] vertexEdges = new int[nbSuffixes];
+            int[] vertexRanks = new int[nbSuffixes];
+            int nb = 0;
+            while (nb < nbSuffixes) {
+                KBestEntry entry = heap.poll();
+                vertexWeights[nb] = entry.weight;
+                vertexEdges[nb] = entry.edge;
+                vertexRanks[nb] = entry.rank;
+                nb++;
+                int child = dag.getEdgeTarget(entry.edge);
+                if (entry.rank + 1 < weights[child].length) {
+                    heap.add(new KBestEntry(entry.weight - weights[child][entry.rank] + weights[child][entry.rank + 1], entry.edge, entry.rank + 1));
+                }
+            }
+            weights[vertex] = vertexWeights;
+            edges[vertex] = vertexEdges;
+            ranks[vertex] = vertexRanks;
+        }
+
+        // Follow the arcs and ranks from the start node
+        int start = dag.getRequestStartNode();
+        List<SolutionCandidate> solutionCandidates = new ArrayList<>(weights[start].length);
+        for (int rank = 0; rank < weights[start].length; rank++) {
+            List<TrainPathSlot> path = new LinkedList<>();
+            int vertex = start;
+            int vertexRank = rank;
+            while (true) {
+                int child = dag.getEdgeTarget(edges[vertex][vertexRank]);
+                if (child == end) {
+                    break;
+                }
+                path.add(dag.getSlot(child));
+                vertexRank = ranks[vertex][vertexRank];
+                vertex = child;
+            }
+            solutionCandidates.add(new SolutionCandidate(path, dag.getCatalogue(), dag.getSimpleTrainPathApplication()));
+        }
+        return solutionCandidates;
+    }
+
+    /**
+     * Returns the solution candidate minimizing its weight plus the penalties of its slots, by dynamic programming in topological order.
+     *
+     * @param dag
+     * @param slotPenalties penalties indexed by slot id or null for none; slots with an infinite penalty are avoided
+     * @return null if every path uses a slot with an infinite penalty or the DAG has no path
+     */
+    public static SolutionCandidate getCheapest(TrainPathDAG dag, double[] slotPenalties) {
+        if (!dag.isTargetNodeReached()) {
+            return null;
+        }
+        int nbVertices = dag.getNbVertices();
+        double[] cost = new double[nbVertices];
+        int[] predecessor = new int[nbVertices];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        Arrays.fill(predecessor, -1);
+        cost[dag.getRequestStartNode()] = 0;
+        for (int vertex : dag.getTopologicalOrder()) {
+            if (cost[vertex] == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            for (int edge = dag.getChildEdgesBegin(vertex); edge < dag.getChildEdgesEnd(vertex); edge++) {
+                int child = dag.getEdgeTarget(edge);
+                double childCost = cost[vertex] + dag.getArcWeight(vertex, child);
+                TrainPathSlot slot = dag.getSlot(child);
+                if (slot != null && slotPenalties != null) {
+                    childCost += slotPenalties[slot.getId()];
+                }
+                if (childCost < cost[child]) {
+                    cost[child] = childCost;
+                    predecessor[child] = vertex;
+                }
+            }
+        }
+        if (predecessor[dag.getRequestEndNode()] < 0) {
+            return null;
+        }
+        LinkedList<TrainPathSlot> path = new LinkedList<>();
+        for (int vertex = predecessor[dag.getRequestEndNode()]; vertex != dag.getRequestStartNode(); vertex = predecessor[vertex]) {
+            path.addFirst(dag.getSlot(vertex));
+        }
+        return new SolutionCandidate(path, dag.getCatalogue(), dag.getSimpleTrainPathApplication());
+    }
+
     /**
      * Experimental: enumerate solution candidates by path sampling that maximises cyclomatic complexity of the solutions.
      *
      * @param dag
      * @return
+     * @deprecated random and not reproducible, use {@link #getKBest(TrainPathDAG, int)} to bound the number of solution candidates.
      */
     @Deprecated
     public static Set<SolutionCandidate> getEnumerateWithSampling(TrainPathDAG dag) {
@@ -321,4 +497,51 @@ public class SolutionCandidateFinder {
         }
     }
 
+    /**
+     * Suffix from a vertex: the arc taken and the rank of the continuation in the list of the arc's target.
+     */
+    private static final class KBestEntry implements Comparable<KBestEntry> {
+        private final long weight;
+        private final int edge;
+        private final int rank;
+
+        private KBestEntry(long weight, int edge, int rank) {
+            this.weight = weight;
+            this.edge = edge;
+            this.rank = rank;
+        }
+
+        @Override
+        public int compareTo(KBestEntry o) {
+            if (weight != o.weight) {
+                return weight < o.weight ? -1 : 1;
+            }
+            if (edge != o.edge) {
+                return edge < o.edge ? -1 : 1;
+            }
+            return rank < o.rank ? -1 : (rank == o.rank ? 0 : 1);
+        }
+    }
+
+    /**
+     * Earliest arrival at a system node, ordered by arrival and then by system node name.
+     */
+    private static final class EarliestArrivalLabel implements Comparable<EarliestArrivalLabel> {
+        private final SystemNode systemNode;
+        private final long arrival;
+
+        private EarliestArrivalLabel(SystemNode systemNode, long arrival) {
+            this.systemNode = systemNode;
+            this.arrival = arrival;
+        }
+
+        @Override
+        public int compareTo(EarliestArrivalLabel o) {
+            if (arrival != o.arrival) {
+                return arrival < o.arrival ? -1 : 1;
+            }
+            return systemNode.getName().compareTo(o.systemNode.getName());
+        }
+    }
+
 }
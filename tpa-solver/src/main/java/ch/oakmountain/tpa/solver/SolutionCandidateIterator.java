@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.oakmountain.tpa.solver;
+
+import java.util.*;
+
+/**
+ * Lazily enumerates the solution candidates of a train path DAG, one path from the request start node to the request end node at a time.
+ * <p/>
+ * In depth-first order, the DAG is walked with an explicit stack of arc cursors over a single path buffer, so memory is
+ * bounded by the length of the longest path regardless of how many paths exist. In order of increasing weight
+ * (see {@link SolutionCandidate#getWeight()}), the candidates up to the limit are computed upfront by
+ * {@link SolutionCandidateFinder#getKBest(TrainPathDAG, int)}, so memory grows with the limit.
+ * <p/>
+ * Enumeration stops after the given limit of candidates; {@link #isLimitReached()} tells whether candidates were left out.
+ */
+public class SolutionCandidateIterator implements Iterator<SolutionCandidate> {
+
+    private final TrainPathDAG dag;
+    private final int limit;
+    private final boolean byIncreasingWeight;
+    private int nbReturned = 0;
+    private SolutionCandidate next;
+
+    // depth-first: path buffer and the next arc to follow at each depth
+    private int[] pathVertices;
+    private int[] edgeCursors;
+    private int depth;
+    private boolean[] reachesEnd;
+
+    // by increasing weight: the k best candidates, one more than the limit to tell whether it is reached
+    private Iterator<SolutionCandidate> kBest;
+
+    /**
+     * @param dag
+     * @param byIncreasingWeight enumerate in order of increasing weight instead of depth-first
+     * @param limit              maximum number of candidates to enumerate
+     */
+    SolutionCandidateIterator(TrainPathDAG dag, boolean byIncreasingWeight, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative, found " + limit);
+        }
+        this.dag = dag;
+        this.limit = limit;
+        this.byIncreasingWeight = byIncreasingWeight;
+        if (byIncreasingWeight) {
+            kBest = SolutionCandidateFinder.getKBest(dag, limit == Integer.MAX_VALUE ? limit : limit + 1).iterator();
+        } else if (dag.isTargetNodeReached()) {
+            initDepthFirst();
+        } else {
+            depth = -1;
+        }
+    }
+
+    private void initDepthFirst() {
+        pathVertices = new int[dag.getNbVertices()];
+        edgeCursors = new int[dag.getNbVertices()];
+        reachesEnd = new boolean[dag.getNbVertices()];
+        reachesEnd[dag.getRequestEndNode()] = true;
+        int[] topologicalOrder = dag.getTopologicalOrder();
+        for (int i = topologicalOrder.length - 1; i >= 0; i--) {
+            int vertex = topologicalOrder[i];
+            for (int edge = dag.getChildEdgesBegin(vertex); edge < dag.getChildEdgesEnd(vertex) && !reachesEnd[vertex]; edge++) {
+                reachesEnd[vertex] = reachesEnd[dag.getEdgeTarget(edge)];
+            }
+        }
+        depth = 0;
+        pathVertices[0] = dag.getRequestStartNode();
+        edgeCursors[0] = dag.getChildEdgesBegin(dag.getRequestStartNode());
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nbReturned >= limit) {
+            return false;
+        }
+        if (next == null) {
+            next = byIncreasingWeight ? computeNextByIncreasingWeight() : computeNextDepthFirst();
+        }
+        return next != null;
+    }
+
+    @Override
+    public SolutionCandidate next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        SolutionCandidate solutionCandidate = next;
+        next = null;
+        nbReturned++;
+        return solutionCandidate;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return whether enumeration stopped at the limit while further candidates exist.
+     */
+    public boolean isLimitReached() {
+        if (nbReturned < limit) {
+            return false;
+        }
+        if (next == null) {
+            next = byIncreasingWeight ? computeNextByIncreasingWeight() : computeNextDepthFirst();
+        }
+        return next != null;
+    }
+
+    public int getNbReturned() {
+        return nbReturned;
+    }
+
+    private SolutionCandidate computeNextDepthFirst() {
+        while (depth >= 0) {
+            int vertex = pathVertices[depth];
+            if (edgeCursors[depth] == dag.getChildEdgesEnd(vertex)) {
+                depth--;
+                continue;
+            }
+            int child = dag.getEdgeTarget(edgeCursors[depth]++);
+            if (child == dag.getRequestEndNode()) {
+                List<TrainPathSlot> path = new ArrayList<>(depth);
+                for (int i = 1; i <= depth; i++) {
+                    path.add(dag.getSlot(pathVertices[i]));
+                }
+                return new SolutionCandidate(path, dag.getCatalogue(), dag.getSimpleTrainPathApplication());
+            }
+            // skip dead ends
+            if (!reachesEnd[child]) {
+                continue;
+            }
+            depth++;
+            pathVertices[depth] = child;
+            edgeCursors[depth] = dag.getChildEdgesBegin(child);
+        }
+        return null;
+    }
+
+    private SolutionCandidate computeNextByIncreasingWeight() {
+        return kBest.hasNext() ? kBest.next() : null;
+    }
+}
@@ -34,11 +34,23 @@ public class TrainPathAllocationProblem /*implements ITable, IGraph, IMatrix*/ {
     private final MacroscopicTopology macroscopicTopology;
     private final Set<SimpleTrainPathApplication> simpleTrainPathApplications;
     private final TrainPathSlotCatalogue catalogue;
+    private final TrainPathDAGCache dagCache;
 
     public TrainPathAllocationProblem(MacroscopicTopology macroscopicTopology, Set<SimpleTrainPathApplication> simpleTrainPathApplications, TrainPathSlotCatalogue catalogue) {
+        this(macroscopicTopology, simpleTrainPathApplications, catalogue, new TrainPathDAGCache());
+    }
+
+    /**
+     * @param macroscopicTopology
+     * @param simpleTrainPathApplications
+     * @param catalogue
+     * @param dagCache                    shared by statistics, model building and subproblems
+     */
+    public TrainPathAllocationProblem(MacroscopicTopology macroscopicTopology, Set<SimpleTrainPathApplication> simpleTrainPathApplications, TrainPathSlotCatalogue catalogue, TrainPathDAGCache dagCache) {
         this.macroscopicTopology = macroscopicTopology;
         this.simpleTrainPathApplications = simpleTrainPathApplications;
         this.catalogue = catalogue;
+        this.dagCache = dagCache;
     }
 
     public static double getTotalWeightOfSolutionCandidates(Map<SimpleTrainPathApplication, SolutionCandidate> allocations) {
@@ -50,12 +62,36 @@ public class TrainPathAllocationProblem /*implements ITable, IGraph, IMatrix*/ {
         return objective;
     }
 
+    /**
+     * Returns the distance from the slot's start to the application's start, 0 if the slot starts within the application's window;
+     * as {@link PeriodicalTimeFrame#distanceBeforeInterval(PeriodicalTimeFrame, PeriodicalTimeFrame)}, but on millis of week.
+     *
+     * @param simpleTrainPathApplication
+     * @param slot
+     * @return
+     */
     public static long getEarlyness(SimpleTrainPathApplication simpleTrainPathApplication, TrainPathSlot slot) {
-        return slot.getStartTime().distanceBeforeInterval(simpleTrainPathApplication.getStartTime(), simpleTrainPathApplication.getEndTime()).getMillis();
+        int start = slot.getStartMillisOfWeek();
+        if (MillisOfWeek.isWithinBounds(start, simpleTrainPathApplication.getStartMillisOfWeek(), simpleTrainPathApplication.getEndMillisOfWeek())) {
+            return 0;
+        }
+        return MillisOfWeek.distanceAfter(simpleTrainPathApplication.getStartMillisOfWeek(), start);
     }
 
+    /**
+     * Returns the distance from the application's end to the slot's end, 0 if the slot ends within the application's window;
+     * as {@link PeriodicalTimeFrame#distanceAfterInterval(PeriodicalTimeFrame, PeriodicalTimeFrame)}, but on millis of week.
+     *
+     * @param simpleTrainPathApplication
+     * @param slot
+     * @return
+     */
     public static long getLateness(SimpleTrainPathApplication simpleTrainPathApplication, TrainPathSlot slot) {
-        return slot.getEndTime().distanceAfterInterval(simpleTrainPathApplication.getStartTime(), simpleTrainPathApplication.getEndTime()).getMillis();
+        int end = slot.getEndMillisOfWeek();
+        if (MillisOfWeek.isWithinBounds(end, simpleTrainPathApplication.getStartMillisOfWeek(), simpleTrainPathApplication.getEndMillisOfWeek())) {
+            return 0;
+        }
+        return MillisOfWeek.distanceAfter(end, simpleTrainPathApplication.getEndMillisOfWeek());
     }
 
     public MacroscopicTopology getMacroscopicTopology() {
@@ -66,6 +102,10 @@ public class TrainPathAllocationProblem /*implements ITable, IGraph, IMatrix*/ {
         return catalogue;
     }
 
+    public TrainPathDAGCache getDagCache() {
+        return dagCache;
+    }
+
     public int nbTrainPathApplications() {
         return getSimpleTrainPathApplications().size();
     }
@@ -88,6 +128,10 @@ public class TrainPathAllocationProblem /*implements ITable, IGraph, IMatrix*/ {
         return catalogue.getSlot(name);
     }
 
+    public TrainPathSlot getSlotById(int id) {
+        return catalogue.getSlot(id);
+    }
+
     public String buildApplicationString() {
         List<String> strings = new LinkedList<>();
         for (SimpleTrainPathApplication simpleTrainPathApplication : simpleTrainPathApplications) {
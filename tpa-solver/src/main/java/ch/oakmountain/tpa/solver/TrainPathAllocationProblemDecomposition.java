@@ -0,0 +1,290 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.oakmountain.tpa.solver;
+
+import com.google.common.base.Stopwatch;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Decomposes a train path allocation problem into its conflict components.
+ * <p/>
+ * Two applications only interact through the unit capacity constraint of a slot both their DAGs contain. The connected
+ * components of the application-slot conflict graph are therefore independent problems; they are solved as separate,
+ * small models concurrently and their allocations are merged.
+ */
+public class TrainPathAllocationProblemDecomposition {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final TrainPathAllocationProblem tpa;
+    private final List<TrainPathAllocationProblem> components;
+    private final List<SimpleTrainPathApplication> infeasibleSimpleTrainPathApplications;
+
+    private TrainPathAllocationProblemDecomposition(TrainPathAllocationProblem tpa, List<TrainPathAllocationProblem> components, List<SimpleTrainPathApplication> infeasibleSimpleTrainPathApplications) {
+        this.tpa = tpa;
+        this.components = components;
+        this.infeasibleSimpleTrainPathApplications = infeasibleSimpleTrainPathApplications;
+    }
+
+    /**
+     * Builds the DAGs of all applications and groups the applications into conflict components.
+     * <p/>
+     * The DAGs are built through the problem's DAG cache, so the component models find them there again.
+     *
+     * @param tpa
+     * @param nbThreads number of threads building the train path DAGs
+     * @return
+     * @throws IOException
+     * @throws IllegalAccessException
+     */
+    public static TrainPathAllocationProblemDecomposition decompose(final TrainPathAllocationProblem tpa, int nbThreads) throws IOException, IllegalAccessException {
+        if (nbThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1, found " + nbThreads);
+        }
+        Stopwatch stopwatchDecompose = TPAUtil.startStopWatch();
+        List<SimpleTrainPathApplication> simpleTrainPathApplications = new ArrayList<>(tpa.getSimpleTrainPathApplications());
+        int nbApplications = simpleTrainPathApplications.size();
+
+        // Build DAGs
+        List<TrainPathDAG> dags = new ArrayList<>(TrainPathAllocationProblemModel.buildDAGs(tpa, simpleTrainPathApplications, nbThreads).values());
+
+        // Union-find over the applications, joining applications whose DAGs share a slot
+        int[] parent = new int[nbApplications];
+        int[] size = new int[nbApplications];
+        int[] applicationBySlotId = new int[tpa.getCatalogue().getNbSlots()];
+        Arrays.fill(applicationBySlotId, -1);
+        List<SimpleTrainPathApplication> infeasibleSimpleTrainPathApplications = new LinkedList<>();
+        for (int i = 0; i < nbApplications; i++) {
+            parent[i] = i;
+            size[i] = 1;
+            TrainPathDAG dag = dags.get(i);
+            if (!dag.isTargetNodeReached()) {
+                infeasibleSimpleTrainPathApplications.add(simpleTrainPathApplications.get(i));
+                continue;
+            }
+            for (int v = 0; v < dag.getNbVertices(); v++) {
+                TrainPathSlot slot = dag.getSlot(v);
+                if (slot == null) {
+                    continue;
+                }
+                int other = applicationBySlotId[slot.getId()];
+                if (other < 0) {
+                    applicationBySlotId[slot.getId()] = i;
+                } else {
+                    union(parent, size, i, other);
+                }
+            }
+        }
+
+        // Collect components, largest first so that they start solving first
+        Map<Integer, Set<SimpleTrainPathApplication>> applicationsByRoot = new LinkedHashMap<>();
+        for (int i = 0; i < nbApplications; i++) {
+            if (!dags.get(i).isTargetNodeReached()) {
+                continue;
+            }
+            int root = find(parent, i);
+            Set<SimpleTrainPathApplication> component = applicationsByRoot.get(root);
+            if (component == null) {
+                component = new HashSet<>();
+                applicationsByRoot.put(root, component);
+            }
+            component.add(simpleTrainPathApplications.get(i));
+        }
+        List<Set<SimpleTrainPathApplication>> componentApplications = new ArrayList<>(applicationsByRoot.values());
+        Collections.sort(componentApplications, new Comparator<Set<SimpleTrainPathApplication>>() {
+            @Override
+            public int compare(Set<SimpleTrainPathApplication> o1, Set<SimpleTrainPathApplication> o2) {
+                return Integer.compare(o2.size(), o1.size());
+            }
+        });
+        List<TrainPathAllocationProblem> components = new ArrayList<>(componentApplications.size());
+        for (Set<SimpleTrainPathApplication> applications : componentApplications) {
+            components.add(new TrainPathAllocationProblem(tpa.getMacroscopicTopology(), applications, tpa.getCatalogue(), tpa.getDagCache()));
+        }
+
+        TPAUtil.stopStopWatch(stopwatchDecompose, "DECOMPOSE");
+        LOGGER.info("Decomposed " + nbApplications + " applications into " + components.size() + " conflict components" + (components.isEmpty() ? "" : " (largest has " + componentApplications.get(0).size() + " applications)") + ", " + infeasibleSimpleTrainPathApplications.size() + " applications are infeasible");
+        return new TrainPathAllocationProblemDecomposition(tpa, components, infeasibleSimpleTrainPathApplications);
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            // path halving
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int[] size, int i, int j) {
+        int rootI = find(parent, i);
+        int rootJ = find(parent, j);
+        if (rootI == rootJ) {
+            return;
+        }
+        if (size[rootI] < size[rootJ]) {
+            int tmp = rootI;
+            rootI = rootJ;
+            rootJ = tmp;
+        }
+        parent[rootJ] = rootI;
+        size[rootI] += size[rootJ];
+    }
+
+    public List<TrainPathAllocationProblem> getComponents() {
+        return Collections.unmodifiableList(components);
+    }
+
+    public List<SimpleTrainPathApplication> getInfeasibleSimpleTrainPathApplications() {
+        return Collections.unmodifiableList(infeasibleSimpleTrainPathApplications);
+    }
+
+    /**
+     * Solves the components concurrently, each in a sub-directory {@code component_<i>} of the output directory, and merges their allocations.
+     *
+     * @param outputDir
+     * @param ignoreinfeasibleapps
+     * @param relaxOnInfeasibility
+     * @param modelType                           formulation of the component models
+     * @param maxSolutionCandidatesPerApplication number of cheapest solution candidates per application in path-based models
+     * @param nbThreads                           number of components solved concurrently
+     * @return
+     * @throws InfeasibleTPAException if an application is infeasible (and not ignored) or if a component model is infeasible; the IIS of all infeasible components are merged
+     */
+    public TrainPathAllocations solve(String outputDir, boolean ignoreinfeasibleapps, boolean relaxOnInfeasibility, TrainPathAllocationProblemModel.ModelType modelType, int maxSolutionCandidatesPerApplication, int nbThreads) throws InfeasibleTPAException {
+        return solve(outputDir, ignoreinfeasibleapps, relaxOnInfeasibility, modelType, maxSolutionCandidatesPerApplication, nbThreads, MIPSolver.Type.GUROBI.createSolver());
+    }
+
+    /**
+     * Solves the components concurrently with the given MIP solver.
+     *
+     * @param outputDir
+     * @param ignoreinfeasibleapps
+     * @param relaxOnInfeasibility
+     * @param modelType
+     * @param maxSolutionCandidatesPerApplication
+     * @param nbThreads
+     * @param solver                              MIP solver of the component models
+     * @return
+     * @throws InfeasibleTPAException
+     * @see #solve(String, boolean, boolean, TrainPathAllocationProblemModel.ModelType, int, int)
+     */
+    public TrainPathAllocations solve(String outputDir, boolean ignoreinfeasibleapps, boolean relaxOnInfeasibility, TrainPathAllocationProblemModel.ModelType modelType, int maxSolutionCandidatesPerApplication, int nbThreads, MIPSolver solver) throws InfeasibleTPAException {
+        return solve(outputDir, ignoreinfeasibleapps, relaxOnInfeasibility, modelType, maxSolutionCandidatesPerApplication, nbThreads, solver, null);
+    }
+
+    /**
+     * Solves the components concurrently with the given MIP solver, each component model started from the allocations of its applications in the start solution.
+     *
+     * @param outputDir
+     * @param ignoreinfeasibleapps
+     * @param relaxOnInfeasibility
+     * @param modelType
+     * @param maxSolutionCandidatesPerApplication
+     * @param nbThreads
+     * @param solver
+     * @param start                               start solution of the whole problem or null
+     * @return
+     * @throws InfeasibleTPAException
+     * @see TrainPathAllocationProblemModel#setStart(TrainPathAllocations)
+     */
+    public TrainPathAllocations solve(String outputDir, final boolean ignoreinfeasibleapps, final boolean relaxOnInfeasibility, final TrainPathAllocationProblemModel.ModelType modelType, final int maxSolutionCandidatesPerApplication, int nbThreads, final MIPSolver solver, final TrainPathAllocations start) throws InfeasibleTPAException {
+        if (nbThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1, found " + nbThreads);
+        }
+        if (!ignoreinfeasibleapps && infeasibleSimpleTrainPathApplications.size() > 0) {
+            throw new InfeasibleTPAApplicationException(new LinkedList<>(infeasibleSimpleTrainPathApplications));
+        }
+
+        Map<SimpleTrainPathApplication, SolutionCandidate> allocations = new HashMap<>();
+        Set<SimpleTrainPathApplication> removedSimpleTrainPathApplications = new HashSet<>();
+        Set<SimpleTrainPathApplication> iisSimpleTrainPathApplications = new HashSet<>();
+        Set<TrainPathSlot> iisSlots = new HashSet<>();
+        boolean infeasible = false;
+
+        Stopwatch stopwatchSolveComponents = TPAUtil.startStopWatch();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(nbThreads, components.size())));
+        try {
+            List<Future<TrainPathAllocations>> futures = new ArrayList<>(components.size());
+            for (int i = 0; i < components.size(); i++) {
+                final TrainPathAllocationProblem component = components.get(i);
+                final String outputDirComponent = createComponentOutputDir(outputDir, i);
+                futures.add(executor.submit(new Callable<TrainPathAllocations>() {
+                    @Override
+                    public TrainPathAllocations call() throws Exception {
+                        TrainPathAllocationProblemModel model = modelType.createModel(component, 1, maxSolutionCandidatesPerApplication, solver);
+                        model.setStart(start);
+                        return model.solve(outputDirComponent, ignoreinfeasibleapps, relaxOnInfeasibility);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    TrainPathAllocations componentAllocations = futures.get(i).get();
+                    allocations.putAll(componentAllocations.getAllocations());
+                    removedSimpleTrainPathApplications.addAll(componentAllocations.getRemovedSimpleTrainPathApplications());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while solving conflict components", e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof InfeasibleTPAModelException) {
+                        LOGGER.warn("Conflict component " + i + " " + components.get(i).buildApplicationString() + " is infeasible");
+                        infeasible = true;
+                        iisSimpleTrainPathApplications.addAll(((InfeasibleTPAModelException) cause).getIisSimpleTrainPathApplications());
+                        iisSlots.addAll(((InfeasibleTPAModelException) cause).getIisSlots());
+                    } else if (cause instanceof InfeasibleTPAException) {
+                        throw (InfeasibleTPAException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    } else {
+                        throw new IllegalStateException("Something went wrong", cause);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            TPAUtil.stopStopWatch(stopwatchSolveComponents, "SOLVE COMPONENTS");
+        }
+        if (infeasible) {
+            throw new InfeasibleTPAModelException(iisSimpleTrainPathApplications, iisSlots);
+        }
+        return new TrainPathAllocations(tpa, allocations, tpa.getSimpleTrainPathApplications(), removedSimpleTrainPathApplications);
+    }
+
+    private String createComponentOutputDir(String outputDir, int i) {
+        String outputDirComponent = outputDir + File.separator + "component_" + i;
+        try {
+            if (!Files.isDirectory(Paths.get(outputDirComponent))) {
+                Files.createDirectory(Paths.get(outputDirComponent));
+            }
+        } catch (IOException e) {
+            LOGGER.error(e);
+            throw new IllegalStateException("Something went wrong: ", e);
+        }
+        return outputDirComponent;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.solver;
+
+import com.google.common.base.Stopwatch;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Greedy heuristic allocating the applications one at a time in order of priority, each to its cheapest path avoiding the slots already allocated.
+ * <p/>
+ * The occupied slots are kept in a bitset and enter the shortest path search as infinite penalties. When the occupied slots disconnect
+ * an application's DAG, the heuristic backtracks in a limited way: an application allocated before on a slot of the DAG is released,
+ * the blocked application is allocated and the released one re-allocated around it; this is tried for the most recently allocated
+ * applications first, within a total budget of backtracks. Applications still blocked are left unallocated.
+ * <p/>
+ * The allocation can be used on its own or as a start solution of a MIP model (see {@link TrainPathAllocationProblemModel#setStart(TrainPathAllocations)}).
+ */
+public class TrainPathAllocationProblemGreedyHeuristic {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    public static final int DEFAULT_MAX_BACKTRACKS = 100;
+
+    /**
+     * Order in which the applications are allocated.
+     */
+    public enum Priority {
+        /**
+         * Applications with the fewest arcs in their DAG first.
+         */
+        DAG_SIZE,
+        /**
+         * Applications with the fewest paths in their DAG first.
+         */
+        FEWEST_CANDIDATES,
+        /**
+         * Applications with the heaviest cheapest path first.
+         */
+        WEIGHT;
+
+        /**
+         * Returns the key the applications are sorted by in ascending order.
+         *
+         * @param dag
+         * @return
+         */
+        long getKey(TrainPathDAG dag) {
+            switch (this) {
+                case DAG_SIZE:
+                    return dag.getNbEdges();
+                case FEWEST_CANDIDATES:
+                    return dag.nbPaths();
+                case WEIGHT:
+                    return -SolutionCandidateFinder.getCheapest(dag, null).getWeight();
+                default:
+                    throw new IllegalStateException("Unhandled priority " + this);
+            }
+        }
+    }
+
+    private final TrainPathAllocationProblem tpa;
+    private final int nbThreads;
+    private final Priority priority;
+    private final int maxBacktracks;
+
+    public TrainPathAllocationProblemGreedyHeuristic(TrainPathAllocationProblem tpa) {
+        this(tpa, 1, Priority.DAG_SIZE);
+    }
+
+    public TrainPathAllocationProblemGreedyHeuristic(TrainPathAllocationProblem tpa, int nbThreads, Priority priority) {
+        this(tpa, nbThreads, priority, DEFAULT_MAX_BACKTRACKS);
+    }
+
+    /**
+     * @param tpa
+     * @param nbThreads     number of threads building the train path DAGs
+     * @param priority      order in which the applications are allocated
+     * @param maxBacktracks maximum number of allocated applications released in favour of blocked ones
+     */
+    public TrainPathAllocationProblemGreedyHeuristic(TrainPathAllocationProblem tpa, int nbThreads, Priority priority, int maxBacktracks) {
+        if (nbThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1, found " + nbThreads);
+        }
+        if (maxBacktracks < 0) {
+            throw new IllegalArgumentException("Number of backtracks must not be negative, found " + maxBacktracks);
+        }
+        this.tpa = tpa;
+        this.nbThreads = nbThreads;
+        this.priority = priority;
+        this.maxBacktracks = maxBacktracks;
+    }
+
+    /**
+     * @param ignoreinfeasibleapps leave applications without a path unallocated instead of failing
+     * @return the allocation; infeasible applications and applications the heuristic could not allocate are removed
+     * @throws InfeasibleTPAException if an application has no path and infeasible applications are not ignored
+     */
+    public TrainPathAllocations solve(boolean ignoreinfeasibleapps) throws InfeasibleTPAException {
+        Stopwatch stopwatch = TPAUtil.startStopWatch();
+        try {
+            List<SimpleTrainPathApplication> simpleTrainPathApplications = new ArrayList<>(tpa.getSimpleTrainPathApplications());
+            Collection<TrainPathDAG> allDags;
+            try {
+                allDags = TrainPathAllocationProblemModel.buildDAGs(tpa, simpleTrainPathApplications, nbThreads).values();
+            } catch (IOException | IllegalAccessException e) {
+                LOGGER.error(e);
+                throw new IllegalStateException("Something went wrong", e);
+            }
+            final List<TrainPathDAG> dags = new ArrayList<>();
+            List<SimpleTrainPathApplication> infeasibleSimpleTrainPathApplications = new LinkedList<>();
+            for (TrainPathDAG dag : allDags) {
+                if (dag.isTargetNodeReached()) {
+                    dags.add(dag);
+                } else {
+                    infeasibleSimpleTrainPathApplications.add(dag.getSimpleTrainPathApplication());
+                }
+            }
+            if (!ignoreinfeasibleapps && infeasibleSimpleTrainPathApplications.size() > 0) {
+                throw new InfeasibleTPAApplicationException(infeasibleSimpleTrainPathApplications);
+            }
+
+            // Priority order, ties broken by name so the order is deterministic
+            final long[] keys = new long[dags.size()];
+            List<Integer> order = new ArrayList<>(dags.size());
+            for (int i = 0; i < dags.size(); i++) {
+                keys[i] = priority.getKey(dags.get(i));
+                order.add(i);
+            }
+            Collections.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    if (keys[o1] != keys[o2]) {
+                        return keys[o1] < keys[o2] ? -1 : 1;
+                    }
+                    return dags.get(o1).getSimpleTrainPathApplication().getName().compareTo(dags.get(o2).getSimpleTrainPathApplication().getName());
+                }
+            });
+
+            SlotOccupancy occupancy = new SlotOccupancy(tpa.getCatalogue().getNbSlots());
+            SolutionCandidate[] paths = new SolutionCandidate[dags.size()];
+            // allocated applications in order of allocation
+            List<Integer> allocated = new ArrayList<>(dags.size());
+            Set<SimpleTrainPathApplication> removedSimpleTrainPathApplications = new HashSet<>(infeasibleSimpleTrainPathApplications);
+            int nbBacktracks = 0;
+            for (int i : order) {
+                TrainPathDAG dag = dags.get(i);
+                SolutionCandidate path = SolutionCandidateFinder.getCheapest(dag, occupancy.penalties);
+                if (path != null) {
+                    occupancy.occupy(path);
+                    paths[i] = path;
+                    allocated.add(i);
+                    continue;
+                }
+
+                // Backtrack: release an application allocated on a slot of the DAG, most recent first
+                BitSet dagSlots = new BitSet(occupancy.penalties.length);
+                for (int vertex = 0; vertex < dag.getNbVertices(); vertex++) {
+                    TrainPathSlot slot = dag.getSlot(vertex);
+                    if (slot != null) {
+                        dagSlots.set(slot.getId());
+                    }
+                }
+                for (int k = allocated.size() - 1; k >= 0 && paths[i] == null && nbBacktracks < maxBacktracks; k--) {
+                    int j = allocated.get(k);
+                    if (!uses(paths[j], dagSlots)) {
+                        continue;
+                    }
+                    nbBacktracks++;
+                    occupancy.release(paths[j]);
+                    path = SolutionCandidateFinder.getCheapest(dag, occupancy.penalties);
+                    if (path != null) {
+                        occupancy.occupy(path);
+                        SolutionCandidate releasedPath = SolutionCandidateFinder.getCheapest(dags.get(j), occupancy.penalties);
+                        if (releasedPath != null) {
+                            occupancy.occupy(releasedPath);
+                            paths[j] = releasedPath;
+                            paths[i] = path;
+                            allocated.add(i);
+                            LOGGER.debug("Greedy heuristic re-allocated " + dags.get(j).getSimpleTrainPathApplication().getName() + " to allocate " + dag.getSimpleTrainPathApplication().getName());
+                            break;
+                        }
+                        occupancy.release(path);
+                    }
+                    occupancy.occupy(paths[j]);
+                }
+                if (paths[i] == null) {
+                    LOGGER.warn("Greedy heuristic could not allocate application " + dag.getSimpleTrainPathApplication().getName());
+                    removedSimpleTrainPathApplications.add(dag.getSimpleTrainPathApplication());
+                }
+            }
+
+            Map<SimpleTrainPathApplication, SolutionCandidate> allocations = new HashMap<>();
+            long weight = 0;
+            for (int i : allocated) {
+                allocations.put(dags.get(i).getSimpleTrainPathApplication(), paths[i]);
+                weight += paths[i].getWeight();
+            }
+            LOGGER.info("Greedy heuristic allocated " + allocations.size() + " of " + dags.size() + " feasible applications with weight " + weight + " after " + nbBacktracks + " backtracks");
+            return new TrainPathAllocations(tpa, allocations, tpa.getSimpleTrainPathApplications(), removedSimpleTrainPathApplications);
+        } finally {
+            TPAUtil.stopStopWatch(stopwatch, "GREEDY HEURISTIC");
+        }
+    }
+
+    private static boolean uses(SolutionCandidate path, BitSet slots) {
+        for (TrainPathSlot slot : path.getPath()) {
+            if (slots.get(slot.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Occupied slots, kept in sync with infinite penalties for the shortest path search.
+     */
+    private static final class SlotOccupancy {
+        private final BitSet occupied;
+        private final double[] penalties;
+
+        private SlotOccupancy(int nbSlots) {
+            occupied = new BitSet(nbSlots);
+            penalties = new double[nbSlots];
+        }
+
+        private void occupy(SolutionCandidate path) {
+            for (TrainPathSlot slot : path.getPath()) {
+                if (occupied.get(slot.getId())) {
+                    throw new IllegalStateException("Slot " + slot.getName() + " is already occupied");
+                }
+                occupied.set(slot.getId());
+                penalties[slot.getId()] = Double.POSITIVE_INFINITY;
+            }
+        }
+
+        private void release(SolutionCandidate path) {
+            for (TrainPathSlot slot : path.getPath()) {
+                occupied.clear(slot.getId());
+                penalties[slot.getId()] = 0;
+            }
+        }
+    }
+}
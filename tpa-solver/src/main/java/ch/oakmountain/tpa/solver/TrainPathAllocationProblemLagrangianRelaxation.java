@@ -0,0 +1,340 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.solver;
+
+import com.google.common.base.Stopwatch;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Heuristic solver of a train path allocation problem by Lagrangian relaxation of the unit capacity constraints of the arc-node model.
+ * <p/>
+ * Without the unit capacity constraints, the arc-node model decomposes into one shortest path problem per application DAG. With a
+ * multiplier per slot added to the weight of the paths using it, the sum of the applications' shortest paths minus the sum of
+ * the multipliers is a lower bound on the optimal weight. The multipliers are updated by subgradient steps (Polyak step size
+ * towards the best allocation found, halved when the bound stalls). In each iteration, the relaxed paths are repaired greedily
+ * into an allocation: applications whose path shares no slot keep it, the others, least flexible first, take their path
+ * if still free or else the cheapest path avoiding the slots taken, with the multipliers as penalties. As in the greedy heuristic,
+ * applications whose DAG is disconnected by the slots taken are left unallocated; allocations allocating more applications are preferred.
+ * <p/>
+ * The shortest paths of an iteration are computed concurrently. The allocation is optimal if its weight meets the lower bound.
+ */
+public class TrainPathAllocationProblemLagrangianRelaxation {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    public static final int DEFAULT_MAX_ITERATIONS = 500;
+    private static final int NON_IMPROVING_ITERATIONS_BEFORE_HALVING = 20;
+    private static final double INITIAL_STEP_FACTOR = 2.0;
+    private static final double MIN_STEP_FACTOR = 1e-4;
+
+    private final TrainPathAllocationProblem tpa;
+    private final int nbThreads;
+    private final int maxIterations;
+
+    public TrainPathAllocationProblemLagrangianRelaxation(TrainPathAllocationProblem tpa) {
+        this(tpa, 1);
+    }
+
+    public TrainPathAllocationProblemLagrangianRelaxation(TrainPathAllocationProblem tpa, int nbThreads) {
+        this(tpa, nbThreads, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * @param tpa
+     * @param nbThreads     number of threads building the DAGs and computing the shortest paths
+     * @param maxIterations maximum number of subgradient iterations
+     */
+    public TrainPathAllocationProblemLagrangianRelaxation(TrainPathAllocationProblem tpa, int nbThreads, int maxIterations) {
+        if (nbThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1, found " + nbThreads);
+        }
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("Number of iterations must be at least 1, found " + maxIterations);
+        }
+        this.tpa = tpa;
+        this.nbThreads = nbThreads;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * @param ignoreinfeasibleapps leave applications without a path unallocated instead of failing
+     * @return
+     * @throws InfeasibleTPAException if an application has no path and infeasible applications are not ignored
+     */
+    public LagrangianRelaxationResult solve(boolean ignoreinfeasibleapps) throws InfeasibleTPAException {
+        Stopwatch stopwatch = TPAUtil.startStopWatch();
+        List<SimpleTrainPathApplication> simpleTrainPathApplications = new ArrayList<>(tpa.getSimpleTrainPathApplications());
+        Collections.sort(simpleTrainPathApplications, new Comparator<SimpleTrainPathApplication>() {
+            @Override
+            public int compare(SimpleTrainPathApplication o1, SimpleTrainPathApplication o2) {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+        ExecutorService executor = nbThreads == 1 || simpleTrainPathApplications.size() <= 1 ? null : Executors.newFixedThreadPool(Math.min(nbThreads, simpleTrainPathApplications.size()));
+        try {
+            // DAGs of the feasible applications
+            Collection<TrainPathDAG> allDags;
+            try {
+                allDags = TrainPathAllocationProblemModel.buildDAGs(tpa, simpleTrainPathApplications, nbThreads).values();
+            } catch (IOException | IllegalAccessException e) {
+                LOGGER.error(e);
+                throw new IllegalStateException("Something went wrong", e);
+            }
+            final List<TrainPathDAG> dags = new ArrayList<>();
+            List<SimpleTrainPathApplication> infeasibleSimpleTrainPathApplications = new LinkedList<>();
+            for (TrainPathDAG dag : allDags) {
+                if (dag.isTargetNodeReached()) {
+                    dags.add(dag);
+                } else {
+                    infeasibleSimpleTrainPathApplications.add(dag.getSimpleTrainPathApplication());
+                }
+            }
+            if (!ignoreinfeasibleapps && infeasibleSimpleTrainPathApplications.size() > 0) {
+                throw new InfeasibleTPAApplicationException(infeasibleSimpleTrainPathApplications);
+            }
+
+            int nbSlots = tpa.getCatalogue().getNbSlots();
+            double[] multipliers = new double[nbSlots];
+            int[] slotUsage = new int[nbSlots];
+            double lowerBound = Double.NEGATIVE_INFINITY;
+            Map<SimpleTrainPathApplication, SolutionCandidate> bestAllocation = null;
+            long bestWeight = Long.MAX_VALUE;
+            // weight of the best allocation of all feasible applications
+            long upperBound = Long.MAX_VALUE;
+            double stepFactor = INITIAL_STEP_FACTOR;
+            int nbNonImprovingIterations = 0;
+            int iteration = 0;
+            while (iteration < maxIterations) {
+                iteration++;
+
+                // Relaxed problem: a shortest path per application
+                SolutionCandidate[] paths = getCheapestPaths(executor, dags, multipliers);
+                double lagrangian = 0;
+                for (double multiplier : multipliers) {
+                    lagrangian -= multiplier;
+                }
+                Arrays.fill(slotUsage, 0);
+                for (SolutionCandidate path : paths) {
+                    lagrangian += path.getWeight();
+                    for (TrainPathSlot slot : path.getPath()) {
+                        lagrangian += multipliers[slot.getId()];
+                        slotUsage[slot.getId()]++;
+                    }
+                }
+                if (lagrangian > lowerBound) {
+                    lowerBound = lagrangian;
+                    nbNonImprovingIterations = 0;
+                } else if (++nbNonImprovingIterations >= NON_IMPROVING_ITERATIONS_BEFORE_HALVING) {
+                    stepFactor /= 2;
+                    nbNonImprovingIterations = 0;
+                }
+
+                // Upper bound: repair the relaxed paths
+                Map<SimpleTrainPathApplication, SolutionCandidate> allocation = repair(dags, paths, slotUsage, multipliers);
+                long weight = 0;
+                for (SolutionCandidate solutionCandidate : allocation.values()) {
+                    weight += solutionCandidate.getWeight();
+                }
+                if (bestAllocation == null || allocation.size() > bestAllocation.size() || (allocation.size() == bestAllocation.size() && weight < bestWeight)) {
+                    bestAllocation = allocation;
+                    bestWeight = weight;
+                }
+                if (allocation.size() == dags.size() && weight < upperBound) {
+                    upperBound = weight;
+                }
+                LOGGER.debug("Lagrangian relaxation iteration " + iteration + ": lagrangian " + lagrangian + ", lower bound " + lowerBound + ", upper bound " + upperBound);
+
+                // weights are integral
+                if (upperBound != Long.MAX_VALUE && Math.ceil(lowerBound - 1e-6) >= upperBound) {
+                    break;
+                }
+
+                // Subgradient, projected on the non-negative multipliers
+                double norm = 0;
+                for (int slotId = 0; slotId < nbSlots; slotId++) {
+                    double subgradient = slotUsage[slotId] - 1;
+                    if (subgradient > 0 || multipliers[slotId] > 0) {
+                        norm += subgradient * subgradient;
+                    }
+                }
+                if (norm == 0 || stepFactor < MIN_STEP_FACTOR) {
+                    break;
+                }
+                double target = upperBound != Long.MAX_VALUE ? upperBound : lagrangian + 0.05 * Math.max(1.0, Math.abs(lagrangian));
+                double step = stepFactor * Math.max(target - lagrangian, 1.0) / norm;
+                for (int slotId = 0; slotId < nbSlots; slotId++) {
+                    multipliers[slotId] = Math.max(0, multipliers[slotId] + step * (slotUsage[slotId] - 1));
+                }
+            }
+
+            Set<SimpleTrainPathApplication> removedSimpleTrainPathApplications = new HashSet<>(infeasibleSimpleTrainPathApplications);
+            for (TrainPathDAG dag : dags) {
+                if (!bestAllocation.containsKey(dag.getSimpleTrainPathApplication())) {
+                    LOGGER.warn("Lagrangian relaxation could not allocate application " + dag.getSimpleTrainPathApplication().getName());
+                    removedSimpleTrainPathApplications.add(dag.getSimpleTrainPathApplication());
+                }
+            }
+            TrainPathAllocations allocations = new TrainPathAllocations(tpa, bestAllocation, tpa.getSimpleTrainPathApplications(), removedSimpleTrainPathApplications);
+            LOGGER.info("Lagrangian relaxation allocated " + bestAllocation.size() + " of " + dags.size() + " feasible applications with weight " + bestWeight + ", lower bound " + lowerBound + " after " + iteration + " iterations");
+            return new LagrangianRelaxationResult(allocations, lowerBound, iteration);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            TPAUtil.stopStopWatch(stopwatch, "LAGRANGIAN RELAXATION");
+        }
+    }
+
+    /**
+     * Computes the shortest path of each DAG with the multipliers as slot penalties, in stripes of DAGs per thread.
+     *
+     * @param executor
+     * @param dags
+     * @param multipliers
+     * @return
+     */
+    private SolutionCandidate[] getCheapestPaths(ExecutorService executor, final List<TrainPathDAG> dags, final double[] multipliers) {
+        final SolutionCandidate[] paths = new SolutionCandidate[dags.size()];
+        if (executor == null) {
+            for (int i = 0; i < dags.size(); i++) {
+                paths[i] = SolutionCandidateFinder.getCheapest(dags.get(i), multipliers);
+            }
+            return paths;
+        }
+        List<Future<Void>> futures = new ArrayList<>(nbThreads);
+        for (int stripe = 0; stripe < nbThreads; stripe++) {
+            final int first = stripe;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int i = first; i < dags.size(); i += nbThreads) {
+                        paths[i] = SolutionCandidateFinder.getCheapest(dags.get(i), multipliers);
+                    }
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                TrainPathAllocationProblemModel.getResult(future);
+            }
+        } catch (IOException | IllegalAccessException e) {
+            throw new IllegalStateException("Something went wrong", e);
+        }
+        return paths;
+    }
+
+    /**
+     * Repairs the relaxed paths into an allocation using each slot at most once.
+     *
+     * @param dags
+     * @param paths       relaxed path of each DAG
+     * @param slotUsage   number of relaxed paths using each slot
+     * @param multipliers
+     * @return the allocation; applications whose DAG is disconnected by the slots taken are left unallocated
+     */
+    private Map<SimpleTrainPathApplication, SolutionCandidate> repair(final List<TrainPathDAG> dags, SolutionCandidate[] paths, int[] slotUsage, double[] multipliers) {
+        // Conflict-free paths first, then least flexible applications first
+        final boolean[] conflicting = new boolean[paths.length];
+        List<Integer> order = new ArrayList<>(paths.length);
+        for (int i = 0; i < paths.length; i++) {
+            for (TrainPathSlot slot : paths[i].getPath()) {
+                conflicting[i] |= slotUsage[slot.getId()] > 1;
+            }
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                if (conflicting[o1] != conflicting[o2]) {
+                    return conflicting[o1] ? 1 : -1;
+                }
+                return Integer.compare(dags.get(o1).getNbEdges(), dags.get(o2).getNbEdges());
+            }
+        });
+
+        Map<SimpleTrainPathApplication, SolutionCandidate> allocation = new HashMap<>();
+        BitSet occupied = new BitSet(multipliers.length);
+        double[] penalties = multipliers.clone();
+        for (int i : order) {
+            SolutionCandidate path = paths[i];
+            for (TrainPathSlot slot : path.getPath()) {
+                if (occupied.get(slot.getId())) {
+                    path = SolutionCandidateFinder.getCheapest(dags.get(i), penalties);
+                    break;
+                }
+            }
+            if (path == null) {
+                LOGGER.debug("Repair could not allocate application " + dags.get(i).getSimpleTrainPathApplication().getName());
+                continue;
+            }
+            for (TrainPathSlot slot : path.getPath()) {
+                occupied.set(slot.getId());
+                penalties[slot.getId()] = Double.POSITIVE_INFINITY;
+            }
+            allocation.put(dags.get(i).getSimpleTrainPathApplication(), path);
+        }
+        return allocation;
+    }
+
+    /**
+     * Best allocation found and lower bound on the optimal weight.
+     */
+    public static class LagrangianRelaxationResult {
+        private final TrainPathAllocations allocations;
+        private final double lowerBound;
+        private final int nbIterations;
+
+        LagrangianRelaxationResult(TrainPathAllocations allocations, double lowerBound, int nbIterations) {
+            this.allocations = allocations;
+            this.lowerBound = lowerBound;
+            this.nbIterations = nbIterations;
+        }
+
+        /**
+         * @return the best allocation found; infeasible applications and applications the repair could not allocate are removed
+         */
+        public TrainPathAllocations getAllocations() {
+            return allocations;
+        }
+
+        /**
+         * @return lower bound on the weight of any allocation of the feasible applications
+         */
+        public double getLowerBound() {
+            return lowerBound;
+        }
+
+        /**
+         * @return the weight of the best allocation found, an upper bound on the optimal weight if it allocates all feasible applications
+         */
+        public long getUpperBound() {
+            long weight = 0;
+            for (SolutionCandidate solutionCandidate : allocations.getAllocations().values()) {
+                weight += solutionCandidate.getWeight();
+            }
+            return weight;
+        }
+
+        public int getNbIterations() {
+            return nbIterations;
+        }
+    }
+}
@@ -18,10 +18,8 @@ package ch.oakmountain.tpa.solver;
 
 import ch.oakmountain.tpa.web.TablePersistor;
 import com.google.common.base.Stopwatch;
-import gurobi.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.codehaus.plexus.util.dag.CycleDetectedException;
 import org.joda.time.Duration;
 
 import java.io.File;
@@ -29,7 +27,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.*;
 
 /**
  * Represents a MIP model of a Train Path Allocation Problem.
@@ -40,9 +38,40 @@ public abstract class
         TrainPathAllocationProblemModel {
     static final Logger LOGGER = LogManager.getLogger();
     final TrainPathAllocationProblem tpa;
+    final int nbThreads;
+    final MIPSolver solver;
+    // stateful: the feasible applications' DAGs and the side table of variables of the model built last
+    final Map<SimpleTrainPathApplication, TrainPathDAG> dags = new LinkedHashMap<>();
+    final TrainPathAllocationProblemModelVariables variables = new TrainPathAllocationProblemModelVariables();
+    // handles of the unit capacity constraints of the model built last indexed by slot id, -1 for slots not used
+    int[] unitCapacityConstraints;
+    // start solution injected before optimizing or null
+    Map<SimpleTrainPathApplication, SolutionCandidate> start;
 
     public TrainPathAllocationProblemModel(TrainPathAllocationProblem tpa) {
+        this(tpa, 1);
+    }
+
+    /**
+     * @param tpa
+     * @param nbThreads number of threads building the train path DAGs of the applications concurrently (the MIP model itself is assembled by the calling thread).
+     */
+    public TrainPathAllocationProblemModel(TrainPathAllocationProblem tpa, int nbThreads) {
+        this(tpa, nbThreads, MIPSolver.Type.GUROBI.createSolver());
+    }
+
+    /**
+     * @param tpa
+     * @param nbThreads
+     * @param solver    MIP solver building and solving the model
+     */
+    public TrainPathAllocationProblemModel(TrainPathAllocationProblem tpa, int nbThreads, MIPSolver solver) {
+        if (nbThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1, found " + nbThreads);
+        }
         this.tpa = tpa;
+        this.nbThreads = nbThreads;
+        this.solver = solver;
     }
 
     /**
@@ -51,50 +80,46 @@ public abstract class
      * @param tpa
      * @param outputDir
      * @throws IllegalAccessException
-     * @throws CycleDetectedException
      * @throws IOException
      * @see TrainPathAllocationProblemModelStatistics
      */
-    public static void statistics(TrainPathAllocationProblem tpa, String outputDir) throws IllegalAccessException, CycleDetectedException, IOException {
+    public static void statistics(TrainPathAllocationProblem tpa, String outputDir) throws IllegalAccessException, IOException {
         TrainPathAllocationProblemStatistics statistcs = new TrainPathAllocationProblemStatistics(tpa, outputDir);
         statistcs.compile();
     }
 
     /**
-     * Computes the IIS applications and slots in the Gurobi model.
+     * Computes the IIS applications and slots in the MIP model.
      *
      * @param model
      * @return
-     * @throws GRBException
      * @see <a href="http://www.gurobi.com/documentation/6.0/examples.pdf"/>
      */
-    private InfeasibleTPAModelException infeasibilityAnalysis(GRBModel model) throws GRBException {
+    private InfeasibleTPAModelException infeasibilityAnalysis(MIPModel model) {
         // Compute IIS
         LOGGER.warn("The model is infeasible; computing IIS");
-        model.computeIIS();
+        int[] iis = model.computeIIS();
         LOGGER.warn("\nThe following constraint(s) "
                 + "cannot be satisfied:");
         Set<SimpleTrainPathApplication> iisSimpleTrainPathApplications = new HashSet<>();
         Set<TrainPathSlot> iisSlots = new HashSet<>();
 
 
-        for (GRBConstr c : model.getConstrs()) {
-            if (c.get(GRB.IntAttr.IISConstr) == 1) {
-                String constraintName = c.get(GRB.StringAttr.ConstrName);
-                LOGGER.debug("Found IIS constraint " + constraintName);
-                TrainPathSlot slot = getTrainPathSlotFromConstraintName(constraintName);
-                if (slot != null) {
-                    LOGGER.debug("  => IIS slot constraint " + constraintName);
-                    iisSlots.add(slot);
-                }
-                SimpleTrainPathApplication simpleTrainPathApplication = getTrainPathApplicationFromConstraintName(constraintName);
-                if (simpleTrainPathApplication != null) {
-                    LOGGER.debug("  => IIS application constraint " + constraintName);
-                    iisSimpleTrainPathApplications.add(simpleTrainPathApplication);
-                }
-                if (slot == null && simpleTrainPathApplication == null) {
-                    throw new IllegalStateException("IIS Analysis: could find neither slot nor application for constraint " + constraintName);
-                }
+        for (int c : iis) {
+            String constraintName = model.getConstrName(c);
+            LOGGER.debug("Found IIS constraint " + constraintName);
+            TrainPathSlot slot = getTrainPathSlotFromConstraintName(constraintName);
+            if (slot != null) {
+                LOGGER.debug("  => IIS slot constraint " + constraintName);
+                iisSlots.add(slot);
+            }
+            SimpleTrainPathApplication simpleTrainPathApplication = getTrainPathApplicationFromConstraintName(constraintName);
+            if (simpleTrainPathApplication != null) {
+                LOGGER.debug("  => IIS application constraint " + constraintName);
+                iisSimpleTrainPathApplications.add(simpleTrainPathApplication);
+            }
+            if (slot == null && simpleTrainPathApplication == null) {
+                throw new IllegalStateException("IIS Analysis: could find neither slot nor application for constraint " + constraintName);
             }
         }
         LOGGER.warn("Found " + iisSlots.size() + " IIS slots and " + iisSimpleTrainPathApplications.size() + " IIS train path applications:");
@@ -108,13 +133,13 @@ public abstract class
         return new InfeasibleTPAModelException(iisSimpleTrainPathApplications, iisSlots);
     }
 
-    private void removeApplicationFromModel(GRBModel model, SimpleTrainPathApplication appToRemove) throws GRBException {
-        for (GRBConstr c : model.getConstrs()) {
-            String constraintName = c.get(GRB.StringAttr.ConstrName);
+    private void removeApplicationFromModel(MIPModel model, SimpleTrainPathApplication appToRemove) {
+        for (int c : model.getConstrs()) {
+            String constraintName = model.getConstrName(c);
             SimpleTrainPathApplication simpleTrainPathApplication = getTrainPathApplicationFromConstraintName(constraintName);
             if (appToRemove.equals(simpleTrainPathApplication)) {
                 LOGGER.warn(" Removing constraint " + constraintName + " for IIS application " + simpleTrainPathApplication.getName());
-                model.remove(c);
+                model.removeConstr(c);
             }
         }
     }
@@ -127,64 +152,63 @@ public abstract class
      * @param ignoreinfeasibleapps
      * @throws InfeasibleTPAModelException
      */
-    private void optimizeModel(String outputDir, GRBModel model, boolean ignoreinfeasibleapps, boolean relaxOnInfeasibility) throws InfeasibleTPAModelException {
-        try {
-            LOGGER.info("Gurobi model contains " + model.getConstrs().length + " constraints (rows) and " + model.getVars().length + " variables (columns)");
+    private void optimizeModel(String outputDir, MIPModel model, boolean ignoreinfeasibleapps, boolean relaxOnInfeasibility) throws InfeasibleTPAModelException {
+        LOGGER.info("MIP model contains " + model.getNbConstrs() + " constraints (rows) and " + model.getNbVars() + " variables (columns)");
 
-            // Skip presolve?
-            //  model.getEnv().set(GRB.IntParam.Presolve, 0);
+        // Skip presolve?
+        //  model.getEnv().set(GRB.IntParam.Presolve, 0);
 
-            // It does not seem easily possible to only write output to file and not to stdout: https://groups.google.com/forum/#!topic/gurobi/afoNway93tk
-            //model.getEnv().set(GRB.IntParam.OutputFlag, 0);
+        // It does not seem easily possible to only write output to file and not to stdout: https://groups.google.com/forum/#!topic/gurobi/afoNway93tk
+        //model.getEnv().set(GRB.IntParam.OutputFlag, 0);
 
 
-            // Optimize model
+        // Optimize model
 
-            model.optimize();
+        MIPModel.Status status = model.optimize();
 
 
-            model.write(outputDir + File.separator + "model.lp");
+        model.write(outputDir + File.separator + "model.lp");
 
-            int status = model.get(GRB.IntAttr.Status);
-            if (status == GRB.Status.UNBOUNDED) {
-                LOGGER.warn("The model cannot be solved "
-                        + "because it is unbounded");
-                throw new IllegalStateException();
+        if (status == MIPModel.Status.UNBOUNDED) {
+            LOGGER.warn("The model cannot be solved "
+                    + "because it is unbounded");
+            throw new IllegalStateException();
 
-            } else if (status == GRB.Status.INF_OR_UNBD ||
-                    status == GRB.Status.INFEASIBLE) {
-                LOGGER.warn("Optimization was stopped with status " + status);
+        } else if (status == MIPModel.Status.INFEASIBLE_OR_UNBOUNDED ||
+                status == MIPModel.Status.INFEASIBLE) {
+            LOGGER.warn("Optimization was stopped with status " + status);
 
-                InfeasibleTPAModelException infeasibleTPAException = infeasibilityAnalysis(model);
+            InfeasibleTPAModelException infeasibleTPAException = infeasibilityAnalysis(model);
 
 
-                // Don't relax when checking subproblem feasibility
-                if (!relaxOnInfeasibility) {
-                    throw infeasibleTPAException;
-                }
+            // Don't relax when checking subproblem feasibility
+            if (!relaxOnInfeasibility) {
+                throw infeasibleTPAException;
+            }
 
-                Set<SimpleTrainPathApplication> iisSimpleTrainPathApplications = infeasibleTPAException.getIisSimpleTrainPathApplications();
-                String outputDirIISSubproblem = outputDir + File.separator + "iis_" + 1;
+            Set<SimpleTrainPathApplication> iisSimpleTrainPathApplications = infeasibleTPAException.getIisSimpleTrainPathApplications();
+            String outputDirIISSubproblem = outputDir + File.separator + "iis_" + 1;
 
-                if (isSubProblemFeasible(iisSimpleTrainPathApplications, outputDirIISSubproblem)) {
-                    throw new IllegalStateException("Not implemented yet.");
-                    //optimizeModel(outputDir, model, ignoreinfeasibleapps);
-                }
+            if (isSubProblemFeasible(iisSimpleTrainPathApplications, outputDirIISSubproblem)) {
+                throw new IllegalStateException("Not implemented yet.");
+                //optimizeModel(outputDir, model, ignoreinfeasibleapps);
+            }
 
-                /*if (removeaniisapplicationmode) {
-                    TrainPathApplication appToRemove = iisTrainPathApplications.iterator().next();
-                    LOGGER.info("Greedy mode: remove random application " + appToRemove.getDescription());
-                    removeApplicationFromModel(model, appToRemove);
-                    optimizeModel(outputDir, model, ignoreinfeasibleapps, relaxOnInfeasibility);
-                } else {*/
-                    throw infeasibleTPAException;
-                //}
-            } else if (status != GRB.Status.OPTIMAL) {
-                throw new IllegalStateException("Unhandled gurobi model status " + status);
+            /*if (removeaniisapplicationmode) {
+                TrainPathApplication appToRemove = iisTrainPathApplications.iterator().next();
+                LOGGER.info("Greedy mode: remove random application " + appToRemove.getDescription());
+                removeApplicationFromModel(model, appToRemove);
+                optimizeModel(outputDir, model, ignoreinfeasibleapps, relaxOnInfeasibility);
+            } else {*/
+                throw infeasibleTPAException;
+            //}
+        } else if (status == MIPModel.Status.TIME_LIMIT || status == MIPModel.Status.NODE_LIMIT) {
+            if (!model.hasSolution()) {
+                throw new IllegalStateException("Optimization was stopped with status " + status + " before a feasible allocation was found");
             }
-        } catch (GRBException e) {
-            LOGGER.error(e);
-            throw new IllegalStateException("Something went wrong: ", e);
+            LOGGER.warn("Optimization was stopped with status " + status + "; the allocation found need not be optimal");
+        } else if (status != MIPModel.Status.OPTIMAL) {
+            throw new IllegalStateException("Unhandled MIP model status " + status);
         }
     }
 
@@ -194,9 +218,8 @@ public abstract class
         table.writeRow(row);
     }
 
-    private void gurobiCleanup(GRBEnv env, GRBModel model) throws GRBException {
+    private void cleanup(MIPModel model) {
         model.dispose();
-        env.dispose();
     }
 
     protected double getInterval(TrainPathSlot firstSlot, TrainPathSlot secondSlot) {
@@ -302,58 +325,58 @@ public abstract class
      * @param ignoreinfeasibleapps               remove applications if the unrelaxed subproblem of IIS applications is infeasible.
      * @param relaxOnInfeasibility
      * @return
-     * @throws CycleDetectedException
      * @throws IOException
      * @throws IllegalAccessException
      * @throws InfeasibleTPAException
      */
     public TrainPathAllocations solve(String outputDir, boolean ignoreinfeasibleapps, boolean relaxOnInfeasibility) throws InfeasibleTPAException {
-        try {
-            GRBEnv env = new GRBEnv(outputDir + File.separator + "mip.log");
-            GRBModel model = new GRBModel(env);
+        MIPModel model = solver.newModel(outputDir);
 
-            // Build the model
-            Stopwatch stopwatchBuildModel = TPAUtil.startStopWatch();
-            List<SimpleTrainPathApplication> feasibleSimpleTrainPathApplications = buildModel(model, ignoreinfeasibleapps);
-            TPAUtil.stopStopWatch(stopwatchBuildModel, "BUILD MODEL");
+        // Build the model
+        Stopwatch stopwatchBuildModel = TPAUtil.startStopWatch();
+        List<SimpleTrainPathApplication> feasibleSimpleTrainPathApplications = buildModel(model, ignoreinfeasibleapps);
+        TPAUtil.stopStopWatch(stopwatchBuildModel, "BUILD MODEL");
+        LOGGER.info(tpa.getDagCache());
 
 
-            LOGGER.info("Found" + feasibleSimpleTrainPathApplications.size() + " feasible applications out of " + tpa.getSimpleTrainPathApplications().size());
-            for (SimpleTrainPathApplication simpleTrainPathApplication : tpa.getSimpleTrainPathApplications()) {
-                if (feasibleSimpleTrainPathApplications.contains(simpleTrainPathApplication)) {
-                    LOGGER.info(" Application " + simpleTrainPathApplication.getDescription() + " is infeasible, but continuing in ignoreinfeasibleapps mode.");
-                }
+        LOGGER.info("Found" + feasibleSimpleTrainPathApplications.size() + " feasible applications out of " + tpa.getSimpleTrainPathApplications().size());
+        for (SimpleTrainPathApplication simpleTrainPathApplication : tpa.getSimpleTrainPathApplications()) {
+            if (feasibleSimpleTrainPathApplications.contains(simpleTrainPathApplication)) {
+                LOGGER.info(" Application " + simpleTrainPathApplication.getDescription() + " is infeasible, but continuing in ignoreinfeasibleapps mode.");
             }
+        }
 
-            Stopwatch stopwatchOptimizeModel = TPAUtil.startStopWatch();
-            try {
-                optimizeModel(outputDir, model, ignoreinfeasibleapps, relaxOnInfeasibility);
-            } finally {
-                TPAUtil.stopStopWatch(stopwatchOptimizeModel, "OPTIMIZE MODEL");
-            }
+        prepareOptimization(model);
+        if (start != null) {
+            variables.setStart(model, getStartValues(start));
+        }
+
+        Stopwatch stopwatchOptimizeModel = TPAUtil.startStopWatch();
+        try {
+            optimizeModel(outputDir, model, ignoreinfeasibleapps, relaxOnInfeasibility);
+        } finally {
+            TPAUtil.stopStopWatch(stopwatchOptimizeModel, "OPTIMIZE MODEL");
+        }
 
 
-            Map<SimpleTrainPathApplication, SolutionCandidate> allocations = extractAllocations(model);
-            Set<SimpleTrainPathApplication> removedSimpleTrainPathApplications = new HashSet<>();
-            if (!ignoreinfeasibleapps && (allocations.size() != feasibleSimpleTrainPathApplications.size())) {
-                throw new IllegalStateException("Number of feasible applications and number of allocated applications are not the, but no option -ignoreinfeasibleapps.");
-            } else {
-                for (SimpleTrainPathApplication simpleTrainPathApplication : feasibleSimpleTrainPathApplications) {
-                    if (!allocations.containsKey(simpleTrainPathApplication)) {
-                        //if (!ignoreinfeasibleapps) {
-                        throw new IllegalStateException("Feasible application " + simpleTrainPathApplication.getName() + " has not been allocated‡.");
-                        /*} else {
-                            LOGGER.info("Train path application " + trainPathApplication.getDescription() + " was removed in ignoreinfeasibleapps mode.");
-                            feasibleTrainPathApplications.remove(trainPathApplication);
-                            removedTrainPathApplications.add(trainPathApplication);
-                        }*/
-                    }
+        Map<SimpleTrainPathApplication, SolutionCandidate> allocations = extractAllocations(model);
+        Set<SimpleTrainPathApplication> removedSimpleTrainPathApplications = extractUnallocatedApplications(model);
+        if (!ignoreinfeasibleapps && (allocations.size() + removedSimpleTrainPathApplications.size() != feasibleSimpleTrainPathApplications.size())) {
+            throw new IllegalStateException("Number of feasible applications and number of allocated applications are not the, but no option -ignoreinfeasibleapps.");
+        } else {
+            for (SimpleTrainPathApplication simpleTrainPathApplication : feasibleSimpleTrainPathApplications) {
+                if (!allocations.containsKey(simpleTrainPathApplication) && !removedSimpleTrainPathApplications.contains(simpleTrainPathApplication)) {
+                    //if (!ignoreinfeasibleapps) {
+                    throw new IllegalStateException("Feasible application " + simpleTrainPathApplication.getName() + " has not been allocated‡.");
+                    /*} else {
+                        LOGGER.info("Train path application " + trainPathApplication.getDescription() + " was removed in ignoreinfeasibleapps mode.");
+                        feasibleTrainPathApplications.remove(trainPathApplication);
+                        removedTrainPathApplications.add(trainPathApplication);
+                    }*/
                 }
             }
-            return new TrainPathAllocations(tpa, allocations, tpa.getSimpleTrainPathApplications(), removedSimpleTrainPathApplications);
-        } catch (GRBException e) {
-            throw new IllegalStateException("Something went wrong", e);
         }
+        return new TrainPathAllocations(tpa, allocations, tpa.getSimpleTrainPathApplications(), removedSimpleTrainPathApplications);
     }
 
 
@@ -367,13 +390,10 @@ public abstract class
             throw new IllegalStateException("Something went wrong: ", e1);
         }
 
-        TrainPathAllocationProblem iisSubproblem = new TrainPathAllocationProblem(tpa.getMacroscopicTopology(), iisSimpleTrainPathApplications, tpa.getCatalogue());
+        TrainPathAllocationProblem iisSubproblem = new TrainPathAllocationProblem(tpa.getMacroscopicTopology(), iisSimpleTrainPathApplications, tpa.getCatalogue(), tpa.getDagCache());
         String iisTrainPathApplicationsString = iisSubproblem.buildApplicationString();
         LOGGER.warn("Checking whether subproblem " + iisTrainPathApplicationsString + " is feasible");
-        for (SimpleTrainPathApplication iisSimpleTrainPathApplication : iisSimpleTrainPathApplications) {
-            iisSimpleTrainPathApplication.getParams().relaxToMax();
-        }
-        TrainPathAllocationProblemModelArcNode iisSubproblemModel = new TrainPathAllocationProblemModelArcNode(iisSubproblem);
+        TrainPathAllocationProblemModelArcNode iisSubproblemModel = new TrainPathAllocationProblemModelArcNode(iisSubproblem, nbThreads, solver);
 
         try {
             iisSubproblemModel.solve(outputDir, false, false);
@@ -386,24 +406,26 @@ public abstract class
     }
 
 
-    private List<SimpleTrainPathApplication> buildModel(GRBModel model, boolean ignoreinfeasibleapps) throws InfeasibleTPAException {
+    private List<SimpleTrainPathApplication> buildModel(MIPModel model, boolean ignoreinfeasibleapps) throws InfeasibleTPAException {
         try {
             List<SimpleTrainPathApplication> infeasibleSimpleTrainPathApplications = new LinkedList<>();
             List<SimpleTrainPathApplication> feasibleSimpleTrainPathApplications = new LinkedList<>();
-            HashMap<TrainPathSlot, GRBLinExpr> slotRequestMap = new HashMap<>();
-            GRBLinExpr objective = new GRBLinExpr();
-
-            // Add variables, flow constraints, objective and construct slotRequestMap
-            for (SimpleTrainPathApplication r : tpa.getSimpleTrainPathApplications()) {
-
-                TrainPathDAG dag = SolutionCandidateFinder.findFeasibleDAG(tpa.getMacroscopicTopology(), tpa.getCatalogue(), r);
-
-                if (dag.isTargetNodeReached()) {
-                    feasibleSimpleTrainPathApplications.add(r);
-                    addRequestToModel(model, slotRequestMap, objective, r, dag);
-                } else {
-                    infeasibleSimpleTrainPathApplications.add(r);
+            // unit capacity constraint terms indexed by slot id
+            MIPLinearExpression[] slotRequestTable = new MIPLinearExpression[tpa.getCatalogue().getNbSlots()];
+            MIPLinearExpression objective = new MIPLinearExpression();
+
+            // Add variables, then flow constraints, objective and construct slotRequestTable
+            List<SimpleTrainPathApplication> simpleTrainPathApplications = new ArrayList<>(tpa.getSimpleTrainPathApplications());
+            List<RequestBuild> feasibleBuilds = new ArrayList<>(simpleTrainPathApplications.size());
+            // DAGs and solution candidates are built concurrently, but added to the model in application order by this thread only
+            Map<SimpleTrainPathApplication, RequestBuild> builds = buildConcurrently(simpleTrainPathApplications, nbThreads, new ApplicationTask<RequestBuild>() {
+                @Override
+                public RequestBuild call(SimpleTrainPathApplication r) throws IOException, IllegalAccessException {
+                    return buildRequest(r);
                 }
+            });
+            for (RequestBuild build : builds.values()) {
+                addRequestVariablesToModel(model, build, feasibleBuilds, feasibleSimpleTrainPathApplications, infeasibleSimpleTrainPathApplications);
             }
 
             // Ignore infeasible train path applications in ignoreinfeasibleapps mode
@@ -411,75 +433,326 @@ public abstract class
                 throw new InfeasibleTPAApplicationException(infeasibleSimpleTrainPathApplications);
             }
 
-            finalizeBuildModel(model, slotRequestMap, objective);
-            model.setObjective(objective, GRB.MINIMIZE);
+            // New variables can only be used in constraints after an update, so one update for all applications
+            model.update();
+            for (RequestBuild build : feasibleBuilds) {
+                addRequestToModel(model, slotRequestTable, objective, build.r, build.dag, build.solutionCandidates, build.vars);
+            }
+
+            finalizeBuildModel(model, slotRequestTable, objective);
+            model.setObjective(objective);
             model.update();
 
             return feasibleSimpleTrainPathApplications;
-        } catch (CycleDetectedException | IOException | IllegalAccessException | GRBException e) {
+        } catch (IOException | IllegalAccessException e) {
             LOGGER.error(e);
             throw new IllegalStateException("Something went wrong", e);
         }
     }
 
-    private void finalizeBuildModel(GRBModel model, HashMap<TrainPathSlot, GRBLinExpr> slotRequestMap, GRBLinExpr objective) throws GRBException {
-        // Unit capacity constraints
-        for (TrainPathSlot trainPathSlot : slotRequestMap.keySet()) {
-            String unitCapacityConstraintName = getUnitCapacityConstraintName(trainPathSlot);
+    /**
+     * Builds the DAG and, if the model requires them, the solution candidates of an application.
+     * <p/>
+     * Called concurrently for different applications: it must only read the shared topology and catalogue.
+     *
+     * @param r
+     * @return
+     * @throws IOException
+     * @throws IllegalAccessException
+     */
+    private RequestBuild buildRequest(SimpleTrainPathApplication r) throws IOException, IllegalAccessException {
+        TrainPathDAG dag = SolutionCandidateFinder.findFeasibleDAG(tpa.getMacroscopicTopology(), tpa.getCatalogue(), r, tpa.getDagCache());
+        Set<SolutionCandidate> solutionCandidates = null;
+        if (dag.isTargetNodeReached()) {
+            solutionCandidates = findSolutionCandidates(r, dag);
+        }
+        return new RequestBuild(r, dag, solutionCandidates);
+    }
 
-            GRBLinExpr expr = slotRequestMap.get(trainPathSlot);
-            model.addConstr(expr, GRB.LESS_EQUAL, 1.0, unitCapacityConstraintName);
+    /**
+     * Builds the DAGs of the applications through the problem's DAG cache, concurrently if there is more than one thread.
+     *
+     * @param tpa
+     * @param simpleTrainPathApplications
+     * @param nbThreads
+     * @return the DAG of each application, in the order of the applications
+     * @throws IOException
+     * @throws IllegalAccessException
+     */
+    static Map<SimpleTrainPathApplication, TrainPathDAG> buildDAGs(final TrainPathAllocationProblem tpa, Collection<SimpleTrainPathApplication> simpleTrainPathApplications, int nbThreads) throws IOException, IllegalAccessException {
+        return buildConcurrently(simpleTrainPathApplications, nbThreads, new ApplicationTask<TrainPathDAG>() {
+            @Override
+            public TrainPathDAG call(SimpleTrainPathApplication r) throws IOException, IllegalAccessException {
+                return SolutionCandidateFinder.findFeasibleDAG(tpa.getMacroscopicTopology(), tpa.getCatalogue(), r, tpa.getDagCache());
+            }
+        });
+    }
+
+    /**
+     * Runs a build task for each application on a pool of at most nbThreads threads and collects the results in the order of the applications.
+     *
+     * @param simpleTrainPathApplications
+     * @param nbThreads
+     * @param task
+     * @param <T>
+     * @return the result of each application, in the order of the applications
+     * @throws IOException
+     * @throws IllegalAccessException
+     */
+    private static <T> Map<SimpleTrainPathApplication, T> buildConcurrently(Collection<SimpleTrainPathApplication> simpleTrainPathApplications, int nbThreads, final ApplicationTask<T> task) throws IOException, IllegalAccessException {
+        Map<SimpleTrainPathApplication, T> results = new LinkedHashMap<>();
+        if (nbThreads == 1 || simpleTrainPathApplications.size() <= 1) {
+            for (SimpleTrainPathApplication r : simpleTrainPathApplications) {
+                results.put(r, task.call(r));
+            }
+            return results;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(nbThreads, simpleTrainPathApplications.size()));
+        try {
+            Map<SimpleTrainPathApplication, Future<T>> futures = new LinkedHashMap<>();
+            for (final SimpleTrainPathApplication r : simpleTrainPathApplications) {
+                futures.put(r, executor.submit(new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        return task.call(r);
+                    }
+                }));
+            }
+            for (Map.Entry<SimpleTrainPathApplication, Future<T>> entry : futures.entrySet()) {
+                results.put(entry.getKey(), getResult(entry.getValue()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Waits for the result of a build task, rethrowing its exception unwrapped.
+     *
+     * @param future
+     * @param <T>
+     * @return
+     * @throws IOException
+     * @throws IllegalAccessException
+     */
+    static <T> T getResult(Future<T> future) throws IOException, IllegalAccessException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building train path DAGs", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof IllegalAccessException) {
+                throw (IllegalAccessException) cause;
+            }
+            throw new IllegalStateException("Something went wrong", cause);
+        }
+    }
+
+    private void addRequestVariablesToModel(MIPModel model, RequestBuild build, List<RequestBuild> feasibleBuilds, List<SimpleTrainPathApplication> feasibleSimpleTrainPathApplications, List<SimpleTrainPathApplication> infeasibleSimpleTrainPathApplications) {
+        if (build.dag.isTargetNodeReached()) {
+            feasibleSimpleTrainPathApplications.add(build.r);
+            build.vars = addRequestVariablesToModel(model, build.r, build.dag, build.solutionCandidates);
+            variables.add(build.r, build.vars);
+            dags.put(build.r, build.dag);
+            feasibleBuilds.add(build);
+        } else {
+            infeasibleSimpleTrainPathApplications.add(build.r);
+        }
+    }
+
+    private void finalizeBuildModel(MIPModel model, MIPLinearExpression[] slotRequestTable, MIPLinearExpression objective) {
+        // Unit capacity constraints
+        unitCapacityConstraints = new int[slotRequestTable.length];
+        Arrays.fill(unitCapacityConstraints, -1);
+        for (int slotId = 0; slotId < slotRequestTable.length; slotId++) {
+            MIPLinearExpression expr = slotRequestTable[slotId];
+            if (expr == null) {
+                continue;
+            }
+            String unitCapacityConstraintName = getUnitCapacityConstraintName(tpa.getCatalogue().getSlot(slotId));
+            unitCapacityConstraints[slotId] = model.addConstr(expr, MIPModel.Sense.LESS_EQUAL, 1.0, unitCapacityConstraintName);
         }
         model.update();
     }
 
-    private String getUnitCapacityConstraintName(TrainPathSlot trainPathSlot) {
-        return "ucc" + "|" + trainPathSlot.getName();
+    /**
+     * The constraint name carries the slot id for lookup and the slot name for readability of the written model.
+     *
+     * @param trainPathSlot
+     * @return
+     */
+    protected String getUnitCapacityConstraintName(TrainPathSlot trainPathSlot) {
+        return "ucc" + "|" + trainPathSlot.getId() + "|" + trainPathSlot.getName();
     }
 
     protected TrainPathSlot getTrainPathSlotFromConstraintName(String name) {
         if (!name.startsWith("ucc|")) {
             return null;
         }
-        return tpa.getCatalogue().getSlot(name.split(Pattern.quote("ucc|"))[1]);
-
+        int end = name.indexOf('|', 4);
+        return tpa.getCatalogue().getSlot(Integer.parseInt(name.substring(4, end)));
     }
 
-    protected void addSlotTermToUniquenessConstraint(TrainPathSlot slot, String varName, HashMap<TrainPathSlot, GRBLinExpr> slotRequestMap, GRBModel model) throws GRBException {
-        if (!slotRequestMap.containsKey(slot)) {
-            slotRequestMap.put(slot, new GRBLinExpr());
-        }
-        GRBLinExpr expr = slotRequestMap.get(slot);
-        GRBVar varByName = model.getVarByName(varName);
-        expr.addTerm(1.0, varByName);
-    }
-
-    protected SolutionCandidate getSolutionCandidateFromSlotSet(SimpleTrainPathApplication simpleTrainPathApplication, Set<TrainPathSlot> slots) {
-        List<TrainPathSlot> path = new LinkedList<>();
-        SystemNode nextSystemNode = simpleTrainPathApplication.getFrom();
-        int nb = slots.size();
-        for (int i = 0; i < nb; i++) {
-            TrainPathSlot slotFound = null;
-            for (TrainPathSlot slot : slots) {
-                if (slot.getFrom().equals(nextSystemNode)) {
-                    slotFound = slot;
-                    break;
-                }
-            }
-            if (slotFound == null) {
-                throw new IllegalStateException("Could not find slot starting at " + nextSystemNode.getName());
-            }
-            path.add(slotFound);
-            slots.remove(slotFound);
-            nextSystemNode = slotFound.getTo();
+    protected void addSlotTermToUniquenessConstraint(TrainPathSlot slot, int var, MIPLinearExpression[] slotRequestTable) {
+        if (slotRequestTable[slot.getId()] == null) {
+            slotRequestTable[slot.getId()] = new MIPLinearExpression();
         }
-        return new SolutionCandidate(path, tpa.getCatalogue(), simpleTrainPathApplication);
+        slotRequestTable[slot.getId()].addTerm(1.0, var);
     }
 
-    protected abstract void addRequestToModel(GRBModel model, HashMap<TrainPathSlot, GRBLinExpr> slotRequestMap, GRBLinExpr objective, SimpleTrainPathApplication r, TrainPathDAG dag) throws CycleDetectedException, IOException, IllegalAccessException, GRBException;
+    /**
+     * Computes the solution candidates the model needs for a feasible application; runs in the parallel build stage.
+     *
+     * @param r
+     * @param dag
+     * @return the solution candidates or null if the model works on the DAG only
+     */
+    protected Set<SolutionCandidate> findSolutionCandidates(SimpleTrainPathApplication r, TrainPathDAG dag) {
+        return null;
+    }
+
+    /**
+     * Sets a start solution (MIP start) for the solver, e.g. the allocation found by a {@link TrainPathAllocationProblemGreedyHeuristic}.
+     * The variables of applications not allocated in the start solution are left undefined.
+     *
+     * @param start the start solution or null for none
+     */
+    public void setStart(TrainPathAllocations start) {
+        this.start = start == null ? null : new HashMap<>(start.getAllocations());
+    }
+
+    /**
+     * Called on the built model before it is optimized.
+     *
+     * @param model
+     */
+    protected void prepareOptimization(MIPModel model) {
+    }
 
-    protected abstract Map<SimpleTrainPathApplication, SolutionCandidate> extractAllocations(GRBModel model) throws GRBException;
+    /**
+     * Adds the variables of a feasible application to the model, in one bulk call; the model is updated only after the variables of all applications are added.
+     *
+     * @param model
+     * @param r
+     * @param dag
+     * @param solutionCandidates
+     * @return the variables of the application, indexed by their key in the side table (e.g. by DAG edge id)
+     */
+    protected abstract int[] addRequestVariablesToModel(MIPModel model, SimpleTrainPathApplication r, TrainPathDAG dag, Set<SolutionCandidate> solutionCandidates);
+
+    /**
+     * Adds the constraints and objective terms of a feasible application to the model.
+     *
+     * @param model
+     * @param slotRequestTable
+     * @param objective
+     * @param r
+     * @param dag
+     * @param solutionCandidates
+     * @param vars               the variables returned by {@link #addRequestVariablesToModel(MIPModel, SimpleTrainPathApplication, TrainPathDAG, Set)}
+     * @throws IOException
+     * @throws IllegalAccessException
+     */
+    protected abstract void addRequestToModel(MIPModel model, MIPLinearExpression[] slotRequestTable, MIPLinearExpression objective, SimpleTrainPathApplication r, TrainPathDAG dag, Set<SolutionCandidate> solutionCandidates, int[] vars) throws IOException, IllegalAccessException;
+
+    /**
+     * Extracts the allocations from the optimized model, reading the values of all variables in the side table in one call.
+     *
+     * @param model
+     * @return
+     */
+    protected abstract Map<SimpleTrainPathApplication, SolutionCandidate> extractAllocations(MIPModel model);
+
+    /**
+     * Extracts the feasible applications the optimized model leaves unallocated, e.g. through slack variables.
+     *
+     * @param model
+     * @return
+     */
+    protected Set<SimpleTrainPathApplication> extractUnallocatedApplications(MIPModel model) {
+        return new HashSet<>();
+    }
+
+    /**
+     * Translates a start solution into start values of the variables in the side table.
+     *
+     * @param start
+     * @return the start values indexed by variable index, {@link Double#NaN} for undefined
+     */
+    protected abstract double[] getStartValues(Map<SimpleTrainPathApplication, SolutionCandidate> start);
 
     protected abstract SimpleTrainPathApplication getTrainPathApplicationFromConstraintName(String constrName);
 
+    /**
+     * The MIP formulations of the train path allocation problem.
+     */
+    public enum ModelType {
+        ARC_NODE, PATH_BASED, PATH_BASED_COLUMN_GENERATION;
+
+        public TrainPathAllocationProblemModel createModel(TrainPathAllocationProblem tpa, int nbThreads) {
+            return createModel(tpa, nbThreads, Integer.MAX_VALUE);
+        }
+
+        /**
+         * @param tpa
+         * @param nbThreads
+         * @param maxSolutionCandidatesPerApplication number of cheapest solution candidates per application in the path-based model, ignored by the other models.
+         * @return
+         */
+        public TrainPathAllocationProblemModel createModel(TrainPathAllocationProblem tpa, int nbThreads, int maxSolutionCandidatesPerApplication) {
+            return createModel(tpa, nbThreads, maxSolutionCandidatesPerApplication, MIPSolver.Type.GUROBI.createSolver());
+        }
+
+        /**
+         * @param tpa
+         * @param nbThreads
+         * @param maxSolutionCandidatesPerApplication number of cheapest solution candidates per application in the path-based model, ignored by the other models.
+         * @param solver
+         * @return
+         */
+        public TrainPathAllocationProblemModel createModel(TrainPathAllocationProblem tpa, int nbThreads, int maxSolutionCandidatesPerApplication, MIPSolver solver) {
+            switch (this) {
+                case PATH_BASED:
+                    return new TrainPathAllocationProblemModelPathBased(tpa, nbThreads, maxSolutionCandidatesPerApplication, solver);
+                case PATH_BASED_COLUMN_GENERATION:
+                    return new TrainPathAllocationProblemModelPathBasedColumnGeneration(tpa, nbThreads, TrainPathAllocationProblemModelPathBasedColumnGeneration.DEFAULT_MAX_ITERATIONS, solver);
+                default:
+                    return new TrainPathAllocationProblemModelArcNode(tpa, nbThreads, solver);
+            }
+        }
+    }
+
+    /**
+     * Build task of one application; called concurrently for different applications, so it must only read shared state.
+     *
+     * @param <T>
+     */
+    private interface ApplicationTask<T> {
+        T call(SimpleTrainPathApplication r) throws IOException, IllegalAccessException;
+    }
+
+    /**
+     * Result of the parallel build stage for one application.
+     */
+    private static final class RequestBuild {
+        private final SimpleTrainPathApplication r;
+        private final TrainPathDAG dag;
+        private final Set<SolutionCandidate> solutionCandidates;
+        private int[] vars;
+
+        private RequestBuild(SimpleTrainPathApplication r, TrainPathDAG dag, Set<SolutionCandidate> solutionCandidates) {
+            this.r = r;
+            this.dag = dag;
+            this.solutionCandidates = solutionCandidates;
+        }
+    }
 }
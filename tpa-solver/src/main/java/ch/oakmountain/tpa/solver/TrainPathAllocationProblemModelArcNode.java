@@ -16,15 +16,8 @@
 
 package ch.oakmountain.tpa.solver;
 
-import gurobi.*;
-import org.codehaus.plexus.util.dag.CycleDetectedException;
-import org.codehaus.plexus.util.dag.Vertex;
-
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 import java.util.regex.Pattern;
 
 /**
@@ -35,14 +28,21 @@ public class TrainPathAllocationProblemModelArcNode extends TrainPathAllocationP
         super(tpa);
     }
 
+    public TrainPathAllocationProblemModelArcNode(TrainPathAllocationProblem tpa, int nbThreads) {
+        super(tpa, nbThreads);
+    }
 
-    private String getVarName(SimpleTrainPathApplication r, Vertex v1, Vertex v2) {
-        return r.getName() + "|" + v1.getLabel() + "|" + v2.getLabel();
+    public TrainPathAllocationProblemModelArcNode(TrainPathAllocationProblem tpa, int nbThreads, MIPSolver solver) {
+        super(tpa, nbThreads, solver);
     }
 
-    private TrainPathSlot getSlotFromArcNode(Vertex vertex) {
-        String slotName = vertex.getLabel();
-        TrainPathSlot trainPathSlot = tpa.getCatalogue().getSlot(slotName);
+
+    private String getVarName(SimpleTrainPathApplication r, TrainPathDAG dag, int v1, int v2) {
+        return r.getName() + "|" + dag.getLabel(v1) + "|" + dag.getLabel(v2);
+    }
+
+    private TrainPathSlot getSlotFromArcNode(TrainPathDAG dag, int vertex) {
+        TrainPathSlot trainPathSlot = dag.getSlot(vertex);
         if (trainPathSlot == null) {
             throw new IllegalStateException("Not found");
         }
@@ -50,52 +50,123 @@ public class TrainPathAllocationProblemModelArcNode extends TrainPathAllocationP
     }
 
     @Override
-    protected Map<SimpleTrainPathApplication, SolutionCandidate> extractAllocations(GRBModel model) throws GRBException {
+    protected Map<SimpleTrainPathApplication, SolutionCandidate> extractAllocations(MIPModel model) {
         LOGGER.debug("Going to extract allocations....");
 
-        // Get the allocations
-        Map<SimpleTrainPathApplication, SolutionCandidate> allocations = new HashMap<>();
-        Map<SimpleTrainPathApplication, Set<TrainPathSlot>> slotMap = new HashMap<>();
-
-        for (GRBVar grbVar : model.getVars()) {
-            if (TPAUtil.doubleEquals(grbVar.get(GRB.DoubleAttr.X), 1.0)) {
-                String varName = grbVar.get(GRB.StringAttr.VarName);
-                String[] tokens = varName.split(Pattern.quote("|"));
-                String requestName = tokens[0];
-                if (tokens[1].endsWith("_start") || tokens[1].endsWith("_end")) {
-                    continue;
+        // Get the arcs used, by application
+        double[] values = variables.getValues(model);
+        Map<SimpleTrainPathApplication, BitSet> usedEdgesMap = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            if (TPAUtil.doubleEquals(values[i], 1.0)) {
+                SimpleTrainPathApplication simpleTrainPathApplication = variables.getApplication(i);
+                BitSet usedEdges = usedEdgesMap.get(simpleTrainPathApplication);
+                if (usedEdges == null) {
+                    usedEdges = new BitSet();
+                    usedEdgesMap.put(simpleTrainPathApplication, usedEdges);
                 }
-                String slotName = tokens[1];
-
-                SimpleTrainPathApplication simpleTrainPathApplication = tpa.getTrainPathApplication(requestName);
-                if (simpleTrainPathApplication == null) {
-                    throw new IllegalStateException("Found no request " + requestName);
-                }
-                TrainPathSlot slot = tpa.getSlotByName(slotName);
-                if (slot == null) {
-                    throw new IllegalStateException("Found no slot " + slotName);
-                }
-                if (!slotMap.containsKey(simpleTrainPathApplication)) {
-                    slotMap.put(simpleTrainPathApplication, new HashSet<TrainPathSlot>());
-                }
-                slotMap.get(simpleTrainPathApplication).add(slot);
+                usedEdges.set(variables.getKey(i));
             }
         }
+
+        // Get the allocations
+        Map<SimpleTrainPathApplication, SolutionCandidate> allocations = new HashMap<>();
         for (SimpleTrainPathApplication simpleTrainPathApplication : tpa.getSimpleTrainPathApplications()) {
-            if (!slotMap.containsKey(simpleTrainPathApplication)) {
+            if (!usedEdgesMap.containsKey(simpleTrainPathApplication)) {
                 //
                 LOGGER.warn("Request " + simpleTrainPathApplication.getName() + " not in allocations.");
                 continue;
             }
-
-            Set<TrainPathSlot> slots = slotMap.get(simpleTrainPathApplication);
-            SolutionCandidate sc = getSolutionCandidateFromSlotSet(simpleTrainPathApplication, slots);
+            SolutionCandidate sc = getSolutionCandidateFromUsedEdges(simpleTrainPathApplication, dags.get(simpleTrainPathApplication), usedEdgesMap.get(simpleTrainPathApplication));
             allocations.put(simpleTrainPathApplication, sc);
         }
         LOGGER.debug("... allocations extracted.");
         return allocations;
     }
 
+    @Override
+    protected double[] getStartValues(Map<SimpleTrainPathApplication, SolutionCandidate> start) {
+        // Get the arcs of the start paths, by application
+        Map<SimpleTrainPathApplication, BitSet> usedEdgesMap = new HashMap<>();
+        for (Map.Entry<SimpleTrainPathApplication, SolutionCandidate> entry : start.entrySet()) {
+            TrainPathDAG dag = dags.get(entry.getKey());
+            if (dag == null) {
+                continue;
+            }
+            BitSet usedEdges = getUsedEdgesFromSolutionCandidate(dag, entry.getValue());
+            if (usedEdges == null) {
+                LOGGER.warn("Start path of request " + entry.getKey().getName() + " is not in its DAG, leaving it undefined.");
+                continue;
+            }
+            usedEdgesMap.put(entry.getKey(), usedEdges);
+        }
+
+        double[] values = new double[variables.size()];
+        for (int i = 0; i < values.length; i++) {
+            BitSet usedEdges = usedEdgesMap.get(variables.getApplication(i));
+            values[i] = usedEdges == null ? Double.NaN : usedEdges.get(variables.getKey(i)) ? 1.0 : 0.0;
+        }
+        return values;
+    }
+
+    /**
+     * Follows the slots of the solution candidate from the request start node to the request end node.
+     *
+     * @param dag
+     * @param solutionCandidate
+     * @return edge ids of the arcs of the solution candidate or null if it is not a path of the DAG
+     */
+    private BitSet getUsedEdgesFromSolutionCandidate(TrainPathDAG dag, SolutionCandidate solutionCandidate) {
+        BitSet usedEdges = new BitSet(dag.getNbEdges());
+        List<TrainPathSlot> path = solutionCandidate.getPath();
+        int vertex = dag.getRequestStartNode();
+        for (int i = 0; i <= path.size(); i++) {
+            int next = i < path.size() ? dag.getVertex(path.get(i)) : dag.getRequestEndNode();
+            int usedEdge = -1;
+            for (int edge = dag.getChildEdgesBegin(vertex); next >= 0 && edge < dag.getChildEdgesEnd(vertex); edge++) {
+                if (dag.getEdgeTarget(edge) == next) {
+                    usedEdge = edge;
+                    break;
+                }
+            }
+            if (usedEdge < 0) {
+                return null;
+            }
+            usedEdges.set(usedEdge);
+            vertex = next;
+        }
+        return usedEdges;
+    }
+
+    /**
+     * Follows the used arcs from the request start node to the request end node.
+     *
+     * @param simpleTrainPathApplication
+     * @param dag
+     * @param usedEdges edge ids of the arcs whose variables are set
+     * @return
+     */
+    private SolutionCandidate getSolutionCandidateFromUsedEdges(SimpleTrainPathApplication simpleTrainPathApplication, TrainPathDAG dag, BitSet usedEdges) {
+        List<TrainPathSlot> path = new ArrayList<>();
+        int vertex = dag.getRequestStartNode();
+        while (vertex != dag.getRequestEndNode()) {
+            int next = -1;
+            for (int edge = dag.getChildEdgesBegin(vertex); edge < dag.getChildEdgesEnd(vertex); edge++) {
+                if (usedEdges.get(edge)) {
+                    next = dag.getEdgeTarget(edge);
+                    break;
+                }
+            }
+            if (next < 0) {
+                throw new IllegalStateException("Could not find used arc leaving " + dag.getLabel(vertex) + " for request " + simpleTrainPathApplication.getName());
+            }
+            if (next != dag.getRequestEndNode()) {
+                path.add(getSlotFromArcNode(dag, next));
+            }
+            vertex = next;
+        }
+        return new SolutionCandidate(path, tpa.getCatalogue(), simpleTrainPathApplication);
+    }
+
     @Override
     protected SimpleTrainPathApplication getTrainPathApplicationFromConstraintName(String constrName) {
         if (constrName.startsWith("fc|")) {
@@ -108,66 +179,60 @@ public class TrainPathAllocationProblemModelArcNode extends TrainPathAllocationP
 
 
     @Override
-    protected void addRequestToModel(GRBModel model, HashMap<TrainPathSlot, GRBLinExpr> slotRequestMap, GRBLinExpr objective, SimpleTrainPathApplication r, TrainPathDAG dag) throws CycleDetectedException, IOException, IllegalAccessException, GRBException {
-
-
-        // Add variables, one per arc
-        for (Vertex vertex : dag.getVerticies()) {
-            String name;
-            for (Vertex child : vertex.getChildren()) {
-                name = getVarName(r, vertex, child);
-                model.addVar(0.0, 1.0, 0.0, GRB.BINARY, name);
-            }
+    protected int[] addRequestVariablesToModel(MIPModel model, SimpleTrainPathApplication r, TrainPathDAG dag, Set<SolutionCandidate> solutionCandidates) {
+        // One variable per arc, indexed by edge id
+        int nbEdges = dag.getNbEdges();
+        double[] lb = new double[nbEdges];
+        double[] ub = new double[nbEdges];
+        MIPModel.VarType[] types = new MIPModel.VarType[nbEdges];
+        String[] names = new String[nbEdges];
+        Arrays.fill(ub, 1.0);
+        Arrays.fill(types, MIPModel.VarType.BINARY);
+        for (int edge = 0; edge < nbEdges; edge++) {
+            names[edge] = getVarName(r, dag, dag.getEdgeSource(edge), dag.getEdgeTarget(edge));
         }
-        model.update();
+        return model.addVars(lb, ub, null, types, names);
+    }
+
+    @Override
+    protected void addRequestToModel(MIPModel model, MIPLinearExpression[] slotRequestTable, MIPLinearExpression objective, SimpleTrainPathApplication r, TrainPathDAG dag, Set<SolutionCandidate> solutionCandidates, int[] vars) throws IOException, IllegalAccessException {
 
         // Add flow constraints
-        for (Vertex vertex : dag.getVerticies()) {
-            if (vertex.isLeaf() && vertex.isRoot()) {
+        for (int vertex = 0; vertex < dag.getNbVertices(); vertex++) {
+            if (dag.isLeaf(vertex) && dag.isRoot(vertex)) {
                 // skip vertices unconnected verticies (which should have been removed from the graph, instead of just removing the arcs?)
                 continue;
             }
-            String flowConstraintName = "fc|" + r.getName() + "|" + vertex.getLabel();
-
-
-            GRBLinExpr flowConstraintExpr = new GRBLinExpr();
-
-            for (Vertex child : vertex.getChildren()) {
-                GRBVar varByName = model.getVarByName(getVarName(r, vertex, child));
-                flowConstraintExpr.addTerm(1.0, varByName);
-                double weight = 0;
-                if (!child.isLeaf()) {
-                    TrainPathSlot secondSlot = getSlotFromArcNode(child);
-                    weight += getDuration(secondSlot);
-                    if (vertex.isRoot()) {
-                        weight += TrainPathAllocationProblem.getEarlyness(r, secondSlot);
-                    } else {
-                        TrainPathSlot firstSlot = getSlotFromArcNode(vertex);
-                        weight += getInterval(firstSlot, secondSlot);
-                    }
-                } else {
-                    TrainPathSlot firstSlot = getSlotFromArcNode(vertex);
-                    weight += TrainPathAllocationProblem.getLateness(r, firstSlot);
-                }
-                if (!vertex.isLeaf() && !vertex.isRoot()) {
-                    TrainPathSlot firstSlot = getSlotFromArcNode(vertex);
-                    addSlotTermToUniquenessConstraint(firstSlot, getVarName(r, vertex, child), slotRequestMap, model);
+            String flowConstraintName = "fc|" + r.getName() + "|" + dag.getLabel(vertex);
+
+
+            MIPLinearExpression flowConstraintExpr = new MIPLinearExpression();
+
+            TrainPathSlot firstSlot = null;
+            if (!dag.isLeaf(vertex) && !dag.isRoot(vertex)) {
+                firstSlot = getSlotFromArcNode(dag, vertex);
+            }
+            for (int edge = dag.getChildEdgesBegin(vertex); edge < dag.getChildEdgesEnd(vertex); edge++) {
+                int child = dag.getEdgeTarget(edge);
+                flowConstraintExpr.addTerm(1.0, vars[edge]);
+                double weight = dag.getArcWeight(vertex, child);
+                if (firstSlot != null) {
+                    addSlotTermToUniquenessConstraint(firstSlot, vars[edge], slotRequestTable);
                 }
 
-                objective.addTerm(weight, varByName);
+                objective.addTerm(weight, vars[edge]);
             }
-            for (Vertex parent : vertex.getParents()) {
-                GRBVar parentVar = model.getVarByName(getVarName(r, parent, vertex));
-                flowConstraintExpr.addTerm(-1.0, parentVar);
+            for (int i = dag.getParentEdgesBegin(vertex); i < dag.getParentEdgesEnd(vertex); i++) {
+                flowConstraintExpr.addTerm(-1.0, vars[dag.getParentEdge(i)]);
             }
 
             // add flow constraint for start and end node
-            if (vertex.isLeaf()) {
-                model.addConstr(flowConstraintExpr, GRB.EQUAL, -1.0, flowConstraintName);
-            } else if (vertex.isRoot()) {
-                model.addConstr(flowConstraintExpr, GRB.EQUAL, 1.0, flowConstraintName);
+            if (dag.isLeaf(vertex)) {
+                model.addConstr(flowConstraintExpr, MIPModel.Sense.EQUAL, -1.0, flowConstraintName);
+            } else if (dag.isRoot(vertex)) {
+                model.addConstr(flowConstraintExpr, MIPModel.Sense.EQUAL, 1.0, flowConstraintName);
             } else {
-                model.addConstr(flowConstraintExpr, GRB.EQUAL, 0.0, flowConstraintName);
+                model.addConstr(flowConstraintExpr, MIPModel.Sense.EQUAL, 0.0, flowConstraintName);
             }
         }
     }
@@ -16,14 +16,8 @@
 
 package ch.oakmountain.tpa.solver;
 
-import gurobi.*;
-import org.codehaus.plexus.util.dag.CycleDetectedException;
-
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /**
  *
@@ -31,45 +25,129 @@ import java.util.Set;
 public class TrainPathAllocationProblemModelPathBased extends TrainPathAllocationProblemModel {
 
     private Set<String> allMySolutionCandidatesNames = new HashSet<>(); // stateful!
+    // solution candidates by application, indexed by their key in the side table of variables
+    private final Map<SimpleTrainPathApplication, List<SolutionCandidate>> solutionCandidatesMap = new HashMap<>();
+    // handles of the choice constraints by application
+    final Map<SimpleTrainPathApplication, Integer> choiceConstraints = new HashMap<>();
+    private final int maxSolutionCandidatesPerApplication;
 
     public TrainPathAllocationProblemModelPathBased(TrainPathAllocationProblem tpa) {
-        super(tpa);
+        this(tpa, 1);
+    }
+
+    public TrainPathAllocationProblemModelPathBased(TrainPathAllocationProblem tpa, int nbThreads) {
+        this(tpa, nbThreads, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param tpa
+     * @param nbThreads
+     * @param maxSolutionCandidatesPerApplication only the cheapest solution candidates of an application up to this limit (or the one of its pruning parameters, if lower) are added to the model.
+     */
+    public TrainPathAllocationProblemModelPathBased(TrainPathAllocationProblem tpa, int nbThreads, int maxSolutionCandidatesPerApplication) {
+        this(tpa, nbThreads, maxSolutionCandidatesPerApplication, MIPSolver.Type.GUROBI.createSolver());
+    }
+
+    /**
+     * @param tpa
+     * @param nbThreads
+     * @param maxSolutionCandidatesPerApplication
+     * @param solver
+     */
+    public TrainPathAllocationProblemModelPathBased(TrainPathAllocationProblem tpa, int nbThreads, int maxSolutionCandidatesPerApplication, MIPSolver solver) {
+        super(tpa, nbThreads, solver);
+        if (maxSolutionCandidatesPerApplication < 1) {
+            throw new IllegalArgumentException("Maximum number of solution candidates per application must be at least 1, found " + maxSolutionCandidatesPerApplication);
+        }
+        this.maxSolutionCandidatesPerApplication = maxSolutionCandidatesPerApplication;
     }
 
-    private String getVarName(SolutionCandidate solutionCandidate) {
+    protected String getVarName(SolutionCandidate solutionCandidate) {
         return solutionCandidate.toString();
     }
 
+    /**
+     * Registers a solution candidate whose variable is added to the model, so that it is considered when extracting the allocations.
+     *
+     * @param solutionCandidate
+     * @return false if the solution candidate has been registered before
+     */
+    protected boolean registerSolutionCandidate(SolutionCandidate solutionCandidate) {
+        return allMySolutionCandidatesNames.add(getVarName(solutionCandidate));
+    }
 
-    @Override
-    protected void addRequestToModel(GRBModel model, HashMap<TrainPathSlot, GRBLinExpr> slotRequestMap, GRBLinExpr objective, SimpleTrainPathApplication simpleTrainPathApplication, TrainPathDAG dag) throws CycleDetectedException, IOException, IllegalAccessException, GRBException {
+    /**
+     * Adds the variable of a solution candidate added to the model after the build to the side table of variables.
+     *
+     * @param solutionCandidate
+     * @param var
+     */
+    protected void addSolutionCandidateVariable(SolutionCandidate solutionCandidate, int var) {
+        SimpleTrainPathApplication simpleTrainPathApplication = solutionCandidate.getTrainPathApplication();
+        List<SolutionCandidate> solutionCandidates = solutionCandidatesMap.get(simpleTrainPathApplication);
+        variables.add(simpleTrainPathApplication, var, solutionCandidates.size());
+        solutionCandidates.add(solutionCandidate);
+    }
 
-        Set<SolutionCandidate> candidateList = SolutionCandidateFinder.getEnumerate(dag);
-        for (SolutionCandidate solutionCandidate : candidateList) {
-            allMySolutionCandidatesNames.add(solutionCandidate.toString());
-        }
 
-        LOGGER.debug("Adding choice constraint for request " + getChoiceConstraintName(simpleTrainPathApplication));
+    @Override
+    protected Set<SolutionCandidate> findSolutionCandidates(SimpleTrainPathApplication simpleTrainPathApplication, TrainPathDAG dag) {
+        int limit = Math.min(maxSolutionCandidatesPerApplication, dag.getParams().getMAX_TRAINPATHS_PER_REQUEST());
+        if (limit == Integer.MAX_VALUE) {
+            return SolutionCandidateFinder.getEnumerate(dag);
+        }
+        return addStartSolutionCandidate(simpleTrainPathApplication, new LinkedHashSet<>(SolutionCandidateFinder.getKBest(dag, limit)));
+    }
 
+    /**
+     * Adds the application's path in the start solution, if any, so that the start solution can be set on the model's variables.
+     *
+     * @param simpleTrainPathApplication
+     * @param solutionCandidates
+     * @return the solution candidates
+     */
+    protected Set<SolutionCandidate> addStartSolutionCandidate(SimpleTrainPathApplication simpleTrainPathApplication, Set<SolutionCandidate> solutionCandidates) {
+        if (start != null && start.containsKey(simpleTrainPathApplication)) {
+            solutionCandidates.add(start.get(simpleTrainPathApplication));
+        }
+        return solutionCandidates;
+    }
 
+    @Override
+    protected int[] addRequestVariablesToModel(MIPModel model, SimpleTrainPathApplication simpleTrainPathApplication, TrainPathDAG dag, Set<SolutionCandidate> candidateList) {
+        // One variable per solution candidate, in iteration order of the candidates
+        int nbCandidates = candidateList.size();
+        double[] lb = new double[nbCandidates];
+        double[] ub = new double[nbCandidates];
+        MIPModel.VarType[] types = new MIPModel.VarType[nbCandidates];
+        String[] names = new String[nbCandidates];
+        Arrays.fill(ub, 1.0);
+        Arrays.fill(types, MIPModel.VarType.BINARY);
+        int i = 0;
         for (SolutionCandidate solutionCandidate : candidateList) {
-            GRBVar var = model.addVar(0.0, 1.0, 0.0, GRB.BINARY, getVarName(solutionCandidate));
+            registerSolutionCandidate(solutionCandidate);
+            names[i++] = getVarName(solutionCandidate);
         }
-        model.update();
-
+        solutionCandidatesMap.put(simpleTrainPathApplication, new ArrayList<>(candidateList));
+        return model.addVars(lb, ub, null, types, names);
+    }
 
+    @Override
+    protected void addRequestToModel(MIPModel model, MIPLinearExpression[] slotRequestTable, MIPLinearExpression objective, SimpleTrainPathApplication simpleTrainPathApplication, TrainPathDAG dag, Set<SolutionCandidate> candidateList, int[] vars) throws IOException, IllegalAccessException {
+        LOGGER.debug("Adding choice constraint for request " + getChoiceConstraintName(simpleTrainPathApplication));
 
         // Add constraints: choice of exactly one train path per request
-        GRBLinExpr expr = new GRBLinExpr();
+        MIPLinearExpression expr = new MIPLinearExpression(candidateList.size());
+        int i = 0;
         for (SolutionCandidate solCandidate : candidateList) {
             if (!solCandidate.getTrainPathApplication().equals(simpleTrainPathApplication)) {
                 throw new IllegalArgumentException("Solution Candidate " + solCandidate + " does not belong to request " + getChoiceConstraintName(simpleTrainPathApplication) + " but to " + getChoiceConstraintName(solCandidate.getTrainPathApplication()));
             }
+            int var = vars[i++];
             for (TrainPathSlot trainPathSlot : solCandidate.getPath()) {
-                addSlotTermToUniquenessConstraint(trainPathSlot, getVarName(solCandidate), slotRequestMap, model);
+                addSlotTermToUniquenessConstraint(trainPathSlot, var, slotRequestTable);
 
             }
-            GRBVar var = model.getVarByName(getVarName(solCandidate));
             expr.addTerm(1.0, var);
 
             // Set objective: minimize travel time + earliness + lateness
@@ -77,10 +155,11 @@ public class TrainPathAllocationProblemModelPathBased extends TrainPathAllocatio
             objective.addTerm(coeff, var);
         }
 
-        GRBConstr constr = model.addConstr(expr, GRB.EQUAL, 1.0, getChoiceConstraintName(simpleTrainPathApplication));
+        int constr = model.addConstr(expr, MIPModel.Sense.EQUAL, 1.0, getChoiceConstraintName(simpleTrainPathApplication));
+        choiceConstraints.put(simpleTrainPathApplication, constr);
     }
 
-    private String getChoiceConstraintName(SimpleTrainPathApplication simpleTrainPathApplication) {
+    protected String getChoiceConstraintName(SimpleTrainPathApplication simpleTrainPathApplication) {
         return simpleTrainPathApplication.getName();
     }
 
@@ -91,38 +170,35 @@ public class TrainPathAllocationProblemModelPathBased extends TrainPathAllocatio
 
 
     @Override
-    protected Map<SimpleTrainPathApplication, SolutionCandidate> extractAllocations(GRBModel model) throws GRBException {
+    protected double[] getStartValues(Map<SimpleTrainPathApplication, SolutionCandidate> start) {
+        double[] values = new double[variables.size()];
+        for (int i = 0; i < values.length; i++) {
+            SimpleTrainPathApplication simpleTrainPathApplication = variables.getApplication(i);
+            SolutionCandidate startSolutionCandidate = start.get(simpleTrainPathApplication);
+            if (startSolutionCandidate == null) {
+                values[i] = Double.NaN;
+            } else {
+                values[i] = startSolutionCandidate.equals(solutionCandidatesMap.get(simpleTrainPathApplication).get(variables.getKey(i))) ? 1.0 : 0.0;
+            }
+        }
+        return values;
+    }
+
+    @Override
+    protected Map<SimpleTrainPathApplication, SolutionCandidate> extractAllocations(MIPModel model) {
         LOGGER.debug("Going to extract allocations...");
         // Get the allocations
         Map<SimpleTrainPathApplication, SolutionCandidate> allocations = new HashMap<>();
-        for (String solutionCandidateName : allMySolutionCandidatesNames) {
-            GRBVar grbVar = model.getVarByName(solutionCandidateName);
-            if (TPAUtil.doubleEquals(grbVar.get(GRB.DoubleAttr.X), 1.0)) {
-                LOGGER.debug(" ==> " + solutionCandidateName);
-                GRBColumn col = model.getCol(grbVar);
-                Set<TrainPathSlot> slots = new HashSet<TrainPathSlot>();
-                SimpleTrainPathApplication simpleTrainPathApplication = null;
-                for (int i = 0; i < col.size(); i++) {
-                    GRBConstr constr = col.getConstr(i);
-                    String constrName = constr.get(GRB.StringAttr.ConstrName);
-                    TrainPathSlot slot = getTrainPathSlotFromConstraintName(constrName);
-                    SimpleTrainPathApplication simpleTrainPathApplicationForConstraintName = getTrainPathApplicationFromConstraintName(constrName);
-                    if ((simpleTrainPathApplicationForConstraintName == null && slot == null) || (simpleTrainPathApplicationForConstraintName != null && slot != null) || (simpleTrainPathApplication != null && simpleTrainPathApplicationForConstraintName != null)) {
-                        throw new IllegalArgumentException("Constraint must either be a choice or conflict constraint. And only one choice constraint must exist.");
-                    }
-                    if (slot != null) {
-                        slots.add(slot);
-                    }
-                    if (simpleTrainPathApplicationForConstraintName != null) {
-                        simpleTrainPathApplication = simpleTrainPathApplicationForConstraintName;
-                    }
-
-                }
+        double[] values = variables.getValues(model);
+        for (int i = 0; i < values.length; i++) {
+            if (TPAUtil.doubleEquals(values[i], 1.0)) {
+                SimpleTrainPathApplication simpleTrainPathApplication = variables.getApplication(i);
+                SolutionCandidate solutionCandidate = solutionCandidatesMap.get(simpleTrainPathApplication).get(variables.getKey(i));
+                LOGGER.debug(" ==> " + getVarName(solutionCandidate));
                 if (allocations.containsKey(simpleTrainPathApplication)) {
                     throw new InternalError("Found two allocations for request " + simpleTrainPathApplication);
                 }
-                allocations.put(simpleTrainPathApplication, getSolutionCandidateFromSlotSet(simpleTrainPathApplication, slots));
-                //LOGGER.debug(solutionCandidate.describeFullPath());
+                allocations.put(simpleTrainPathApplication, solutionCandidate);
             }
         }
         LOGGER.debug("... allocations extracted.");
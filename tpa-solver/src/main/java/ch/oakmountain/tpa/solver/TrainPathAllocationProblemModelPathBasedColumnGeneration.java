@@ -0,0 +1,234 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.oakmountain.tpa.solver;
+
+import com.google.common.base.Stopwatch;
+import org.joda.time.DateTimeConstants;
+
+import java.util.*;
+
+/**
+ * Path-based model generating its solution candidates by column generation instead of enumerating all paths of the DAGs.
+ * <p/>
+ * The model starts with the path of minimum weight per application (and its path in the start solution, if set). The LP relaxation of the model is solved repeatedly;
+ * after each solve, the path of minimum reduced cost is priced out of each application's DAG by a shortest path search,
+ * where a slot costs the negated dual of its unit capacity constraint. Paths of negative reduced cost are added as new
+ * columns until there are none left. The MIP over the generated columns is then solved (price-and-branch), so the
+ * allocation is optimal for the generated columns, which need not contain an optimal integer solution of the full model.
+ * <p/>
+ * The restricted LP is kept feasible by an artificial variable per choice constraint with cost {@link #ARTIFICIAL_COST}.
+ * The artificial variables are kept in the final MIP as binary slack, since the generated columns need not admit an allocation of all applications;
+ * an application covered by its artificial variable is reported unallocated instead of the model being reported infeasible.
+ */
+public class TrainPathAllocationProblemModelPathBasedColumnGeneration extends TrainPathAllocationProblemModelPathBased {
+
+    public static final int DEFAULT_MAX_ITERATIONS = 1000;
+    /**
+     * Cost of leaving an application unallocated in the restricted LP and the final MIP, higher than the weight of any path.
+     */
+    static final double ARTIFICIAL_COST = 10.0 * DateTimeConstants.MILLIS_PER_WEEK;
+    private static final double EPSILON = 1e-6;
+
+    private final int maxIterations;
+    private List<SimpleTrainPathApplication> applications;
+    private int[] artificialVars;
+
+    public TrainPathAllocationProblemModelPathBasedColumnGeneration(TrainPathAllocationProblem tpa) {
+        this(tpa, 1);
+    }
+
+    public TrainPathAllocationProblemModelPathBasedColumnGeneration(TrainPathAllocationProblem tpa, int nbThreads) {
+        this(tpa, nbThreads, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * @param tpa
+     * @param nbThreads
+     * @param maxIterations maximum number of LP solves; the MIP is solved over the columns generated so far if exceeded.
+     */
+    public TrainPathAllocationProblemModelPathBasedColumnGeneration(TrainPathAllocationProblem tpa, int nbThreads, int maxIterations) {
+        this(tpa, nbThreads, maxIterations, MIPSolver.Type.GUROBI.createSolver());
+    }
+
+    /**
+     * @param tpa
+     * @param nbThreads
+     * @param maxIterations
+     * @param solver        MIP solver, must provide dual values of continuous models
+     */
+    public TrainPathAllocationProblemModelPathBasedColumnGeneration(TrainPathAllocationProblem tpa, int nbThreads, int maxIterations, MIPSolver solver) {
+        super(tpa, nbThreads, Integer.MAX_VALUE, solver);
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("Number of iterations must be at least 1, found " + maxIterations);
+        }
+        this.maxIterations = maxIterations;
+    }
+
+    @Override
+    protected Set<SolutionCandidate> findSolutionCandidates(SimpleTrainPathApplication simpleTrainPathApplication, TrainPathDAG dag) {
+        Set<SolutionCandidate> solutionCandidates = new LinkedHashSet<>();
+        solutionCandidates.add(findCheapestSolutionCandidate(simpleTrainPathApplication, dag, null));
+        return addStartSolutionCandidate(simpleTrainPathApplication, solutionCandidates);
+    }
+
+    @Override
+    protected void prepareOptimization(MIPModel model) {
+        Stopwatch stopwatchColumnGeneration = TPAUtil.startStopWatch();
+
+        // Relax the initial columns and add the artificial variables
+        List<Integer> columns = new LinkedList<>();
+        for (int i = 0; i < variables.size(); i++) {
+            int var = variables.getVar(i);
+            model.setVarType(var, MIPModel.VarType.CONTINUOUS);
+            columns.add(var);
+        }
+        applications = new ArrayList<>(dags.keySet());
+        int[] choiceConstraintHandles = new int[applications.size()];
+        artificialVars = new int[applications.size()];
+        for (int i = 0; i < applications.size(); i++) {
+            SimpleTrainPathApplication r = applications.get(i);
+            choiceConstraintHandles[i] = choiceConstraints.get(r);
+            artificialVars[i] = model.addVar(0.0, 1.0, ARTIFICIAL_COST, MIPModel.VarType.CONTINUOUS, new int[]{choiceConstraintHandles[i]}, new double[]{1.0}, "art|" + r.getName());
+        }
+        model.update();
+
+        double[] slotPenalties = new double[unitCapacityConstraints.length];
+        int iteration = 0;
+        while (true) {
+            iteration++;
+            MIPModel.Status status = model.optimize();
+            if (status != MIPModel.Status.OPTIMAL) {
+                throw new IllegalStateException("Unhandled status " + status + " of restricted LP in column generation iteration " + iteration);
+            }
+            if (iteration >= maxIterations) {
+                LOGGER.warn("Column generation stopped after " + iteration + " iterations; solving the MIP over the columns generated so far");
+                break;
+            }
+
+            // Price
+            int nbUnitCapacityConstraints = 0;
+            int[] slotIds = new int[unitCapacityConstraints.length];
+            int[] unitCapacityConstraintHandles = new int[unitCapacityConstraints.length];
+            for (int slotId = 0; slotId < unitCapacityConstraints.length; slotId++) {
+                if (unitCapacityConstraints[slotId] >= 0) {
+                    slotIds[nbUnitCapacityConstraints] = slotId;
+                    unitCapacityConstraintHandles[nbUnitCapacityConstraints] = unitCapacityConstraints[slotId];
+                    nbUnitCapacityConstraints++;
+                }
+            }
+            double[] unitCapacityDuals = model.getDuals(Arrays.copyOf(unitCapacityConstraintHandles, nbUnitCapacityConstraints));
+            Arrays.fill(slotPenalties, 0);
+            for (int i = 0; i < nbUnitCapacityConstraints; i++) {
+                slotPenalties[slotIds[i]] = -unitCapacityDuals[i];
+            }
+            double[] choiceDuals = model.getDuals(choiceConstraintHandles);
+            int nbNewColumns = 0;
+            for (int i = 0; i < applications.size(); i++) {
+                SimpleTrainPathApplication r = applications.get(i);
+                SolutionCandidate solutionCandidate = findCheapestSolutionCandidate(r, dags.get(r), slotPenalties);
+                double reducedCost = solutionCandidate.getWeight() - choiceDuals[i];
+                for (TrainPathSlot slot : solutionCandidate.getPath()) {
+                    reducedCost += slotPenalties[slot.getId()];
+                }
+                if (reducedCost < -EPSILON && registerSolutionCandidate(solutionCandidate)) {
+                    columns.add(addColumn(model, solutionCandidate, choiceConstraintHandles[i]));
+                    nbNewColumns++;
+                }
+            }
+            LOGGER.info("Column generation iteration " + iteration + ": LP objective " + model.getObjectiveValue() + ", " + nbNewColumns + " new columns, " + columns.size() + " columns");
+            if (nbNewColumns == 0) {
+                break;
+            }
+            model.update();
+        }
+
+        // Final MIP over the generated columns
+        double[] artificialValues = model.getValues(artificialVars);
+        for (int i = 0; i < artificialVars.length; i++) {
+            if (artificialValues[i] > EPSILON) {
+                LOGGER.warn("Artificial variable art|" + applications.get(i).getName() + " is non-zero in the LP relaxation: the application may remain unallocated");
+            }
+            model.setVarType(artificialVars[i], MIPModel.VarType.BINARY);
+        }
+        for (int column : columns) {
+            model.setVarType(column, MIPModel.VarType.BINARY);
+        }
+        model.update();
+        TPAUtil.stopStopWatch(stopwatchColumnGeneration, "COLUMN GENERATION");
+    }
+
+    @Override
+    protected Set<SimpleTrainPathApplication> extractUnallocatedApplications(MIPModel model) {
+        Set<SimpleTrainPathApplication> unallocated = new HashSet<>();
+        double[] artificialValues = model.getValues(artificialVars);
+        for (int i = 0; i < artificialVars.length; i++) {
+            if (TPAUtil.doubleEquals(artificialValues[i], 1.0)) {
+                LOGGER.warn("Application " + applications.get(i).getName() + " could not be allocated over the generated columns");
+                unallocated.add(applications.get(i));
+            }
+        }
+        return unallocated;
+    }
+
+    private int addColumn(MIPModel model, SolutionCandidate solutionCandidate, int choiceConstraint) {
+        int[] constrs = new int[1 + solutionCandidate.getPath().size()];
+        int nbConstrs = 0;
+        constrs[nbConstrs++] = choiceConstraint;
+        List<TrainPathSlot> newSlots = new LinkedList<>();
+        for (TrainPathSlot slot : solutionCandidate.getPath()) {
+            if (unitCapacityConstraints[slot.getId()] < 0) {
+                newSlots.add(slot);
+            } else {
+                constrs[nbConstrs++] = unitCapacityConstraints[slot.getId()];
+            }
+        }
+        double[] coeffs = new double[nbConstrs];
+        Arrays.fill(coeffs, 1.0);
+        int var = model.addVar(0.0, 1.0, solutionCandidate.getWeight(), MIPModel.VarType.CONTINUOUS, Arrays.copyOf(constrs, nbConstrs), coeffs, getVarName(solutionCandidate));
+        addSolutionCandidateVariable(solutionCandidate, var);
+        if (!newSlots.isEmpty()) {
+            // the new variable is used in the new constraints
+            model.update();
+        }
+        for (TrainPathSlot slot : newSlots) {
+            MIPLinearExpression expr = new MIPLinearExpression(1);
+            expr.addTerm(1.0, var);
+            unitCapacityConstraints[slot.getId()] = model.addConstr(expr, MIPModel.Sense.LESS_EQUAL, 1.0, getUnitCapacityConstraintName(slot));
+        }
+        if (!newSlots.isEmpty()) {
+            // later columns of the same pricing round may use the new constraints
+            model.update();
+        }
+        return var;
+    }
+
+    /**
+     * Finds the path through the DAG minimizing its weight plus the penalties of its slots.
+     *
+     * @param r
+     * @param dag
+     * @param slotPenalties penalties indexed by slot id or null for none
+     * @return
+     */
+    SolutionCandidate findCheapestSolutionCandidate(SimpleTrainPathApplication r, TrainPathDAG dag, double[] slotPenalties) {
+        SolutionCandidate solutionCandidate = SolutionCandidateFinder.getCheapest(dag, slotPenalties);
+        if (solutionCandidate == null) {
+            throw new IllegalStateException("End node not reachable in DAG of application " + r.getName());
+        }
+        return solutionCandidate;
+    }
+}
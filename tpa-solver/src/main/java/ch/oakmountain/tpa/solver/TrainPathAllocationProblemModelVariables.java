@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.solver;
+
+import java.util.Arrays;
+
+/**
+ * Side table of the variables of a train path allocation problem model: for each variable index, the application and the key of the
+ * variable within the application, i.e. the DAG edge id in the arc-node model and the solution candidate index in the path-based models.
+ * <p/>
+ * The values of all variables are read with one bulk call, so that allocations can be extracted without
+ * looking variables up or parsing their names.
+ */
+final class TrainPathAllocationProblemModelVariables {
+
+    private int[] vars = new int[16];
+    private SimpleTrainPathApplication[] applications = new SimpleTrainPathApplication[16];
+    private int[] keys = new int[16];
+    private int size = 0;
+
+    /**
+     * Adds the variables of an application, keyed by their index in the array.
+     *
+     * @param r
+     * @param applicationVars
+     */
+    void add(SimpleTrainPathApplication r, int[] applicationVars) {
+        ensureCapacity(size + applicationVars.length);
+        for (int key = 0; key < applicationVars.length; key++) {
+            vars[size] = applicationVars[key];
+            applications[size] = r;
+            keys[size] = key;
+            size++;
+        }
+    }
+
+    /**
+     * Adds a variable of an application.
+     *
+     * @param r
+     * @param var
+     * @param key
+     */
+    void add(SimpleTrainPathApplication r, int var, int key) {
+        ensureCapacity(size + 1);
+        vars[size] = var;
+        applications[size] = r;
+        keys[size] = key;
+        size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > vars.length) {
+            int newCapacity = Math.max(capacity, 2 * vars.length);
+            vars = Arrays.copyOf(vars, newCapacity);
+            applications = Arrays.copyOf(applications, newCapacity);
+            keys = Arrays.copyOf(keys, newCapacity);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getVar(int index) {
+        return vars[index];
+    }
+
+    SimpleTrainPathApplication getApplication(int index) {
+        return applications[index];
+    }
+
+    int getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Reads the solution values of all variables in one call.
+     *
+     * @param model
+     * @return the values indexed by variable index
+     */
+    double[] getValues(MIPModel model) {
+        if (size == 0) {
+            return new double[0];
+        }
+        return model.getValues(Arrays.copyOf(vars, size));
+    }
+
+    /**
+     * Sets the start values of all variables in one call.
+     *
+     * @param model
+     * @param values the start values indexed by variable index, {@link Double#NaN} for undefined
+     */
+    void setStart(MIPModel model, double[] values) {
+        if (size == 0) {
+            return;
+        }
+        model.setStart(Arrays.copyOf(vars, size), values);
+    }
+}
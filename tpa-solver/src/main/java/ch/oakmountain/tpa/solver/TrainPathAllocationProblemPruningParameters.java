@@ -22,9 +22,12 @@ import org.joda.time.Minutes;
 import java.util.*;
 
 /**
- *
+ * Immutable pruning parameters of a train path application.
+ * <p/>
+ * Variants (relaxed to maximum, default pruning, derived from an earliest path) are created with a {@link Builder},
+ * so the same application can be processed with different parameters concurrently.
  */
-public class TrainPathAllocationProblemPruningParameters {
+public final class TrainPathAllocationProblemPruningParameters {
 
 
     private static final int MAX_TRAINPATHS_PER_REQUEST = Integer.MAX_VALUE;
@@ -35,85 +38,115 @@ public class TrainPathAllocationProblemPruningParameters {
     private final Duration HARD_MAXIMUM_LATER_ARRIVAL;
     private final SimpleTrainPathApplication simpleTrainPathApplication;
 
-    private Duration MAXIMUM_EARLIER_DEPARTURE;
-    private Duration MINIMUM_DWELL_TIME;
-    private Duration MAXIMUM_LATER_ARRIVAL;
+    private final Duration MAXIMUM_EARLIER_DEPARTURE;
+    private final Duration MINIMUM_DWELL_TIME;
+    private final Duration MAXIMUM_LATER_ARRIVAL;
+
+    private final Duration MAXIMUM_LATER_DEPARTURE;
+    private final Duration MAXIMUM_EARLIER_ARRIVAL;
+    private final Duration MAXIMUM_ADDITIONAL_DWELL_TIME;
 
-    private Duration MAXIMUM_LATER_DEPARTURE;
-    private Duration MAXIMUM_EARLIER_ARRIVAL;
-    private Duration MAXIMUM_ADDITIONAL_DWELL_TIME;
+    private final Map<SystemNode, Duration> nonDefaultAddiontalDwellTimesMap;
 
-    private Map<SystemNode, Duration> nonDefaultAddiontalDwellTimesMap = new HashMap<>();
+    private final boolean reachabilityPruning;
+    private final boolean sanityCheck;
 
     public TrainPathAllocationProblemPruningParameters(SimpleTrainPathApplication application) {
-        this.simpleTrainPathApplication = application;
-        HARD_MAXIMUM_EARLIER_DEPARTURE = Minutes.minutes(0).toStandardDuration();
-        HARD_MINIMUM_DWELL_TIME = Minutes.minutes(0).toStandardDuration();
-        HARD_MAXIMUM_LATER_ARRIVAL = Minutes.minutes(0).toStandardDuration();
+        this(new Builder(application, 0, 0, 0));
     }
 
     public TrainPathAllocationProblemPruningParameters(SimpleTrainPathApplication application, int hardMaximumEarlierDeparture, int hardMinimumDwellTime, int hardMaximumLaterArrival) {
-        this.simpleTrainPathApplication = application;
-        HARD_MAXIMUM_EARLIER_DEPARTURE = Minutes.minutes(hardMaximumEarlierDeparture).toStandardDuration();
-        HARD_MINIMUM_DWELL_TIME = Minutes.minutes(hardMinimumDwellTime).toStandardDuration();
-        HARD_MAXIMUM_LATER_ARRIVAL = Minutes.minutes(hardMaximumLaterArrival).toStandardDuration();
-        setMINIMUM_DWELL_TIME(Minutes.minutes(hardMinimumDwellTime).toStandardDuration());
+        this(new Builder(application, hardMaximumEarlierDeparture, hardMinimumDwellTime, hardMaximumLaterArrival));
     }
 
-    public static int getMAX_OUTGOINGCONNECTIONS_PER_SLOT() {
-        return MAX_OUTGOINGCONNECTIONS_PER_SLOT;
+    public TrainPathAllocationProblemPruningParameters(SimpleTrainPathApplication application, int hardMaximumEarlierDeparture, int hardMinimumDwellTime, int hardMaximumLaterArrival, boolean reachabilityPruning, boolean sanityCheck) {
+        this(new Builder(application, hardMaximumEarlierDeparture, hardMinimumDwellTime, hardMaximumLaterArrival).setReachabilityPruning(reachabilityPruning).setSanityCheck(sanityCheck));
     }
 
-    public void relaxToMax() {
-
-        setMAXIMUM_ADDITIONAL_DWELL_TIME(getApplicationHardMaxDuration());
-        setMAXIMUM_EARLIER_ARRIVAL(getApplicationDuration());
-        setMAXIMUM_LATER_DEPARTURE(getApplicationDuration());
-
-
-        // set to applications hard bounds
-        setMINIMUM_DWELL_TIME(getHARD_MINIMUM_DWELL_TIME());
-        setMAXIMUM_EARLIER_DEPARTURE(getHARD_MAXIMUM_EARLIER_DEPARTURE());
-        setMAXIMUM_LATER_ARRIVAL(getHARD_MAXIMUM_LATER_ARRIVAL());
+    private TrainPathAllocationProblemPruningParameters(Builder builder) {
+        this.simpleTrainPathApplication = builder.simpleTrainPathApplication;
+        HARD_MAXIMUM_EARLIER_DEPARTURE = builder.HARD_MAXIMUM_EARLIER_DEPARTURE;
+        HARD_MINIMUM_DWELL_TIME = builder.HARD_MINIMUM_DWELL_TIME;
+        HARD_MAXIMUM_LATER_ARRIVAL = builder.HARD_MAXIMUM_LATER_ARRIVAL;
+        MAXIMUM_EARLIER_DEPARTURE = builder.MAXIMUM_EARLIER_DEPARTURE;
+        MINIMUM_DWELL_TIME = builder.MINIMUM_DWELL_TIME;
+        MAXIMUM_LATER_ARRIVAL = builder.MAXIMUM_LATER_ARRIVAL;
+        MAXIMUM_LATER_DEPARTURE = builder.MAXIMUM_LATER_DEPARTURE;
+        MAXIMUM_EARLIER_ARRIVAL = builder.MAXIMUM_EARLIER_ARRIVAL;
+        MAXIMUM_ADDITIONAL_DWELL_TIME = builder.MAXIMUM_ADDITIONAL_DWELL_TIME;
+        nonDefaultAddiontalDwellTimesMap = Collections.unmodifiableMap(new HashMap<>(builder.nonDefaultAddiontalDwellTimesMap));
+        reachabilityPruning = builder.reachabilityPruning;
+        sanityCheck = builder.sanityCheck;
+    }
 
+    public static int getMAX_OUTGOINGCONNECTIONS_PER_SLOT() {
+        return MAX_OUTGOINGCONNECTIONS_PER_SLOT;
     }
 
-    public void relax(SimpleTrainPathApplication simpleTrainPathApplication, MacroscopicTopology topology) {
-        // TODO not implemented yet
-        List<List<SystemNode>> routes = topology.getRoutes(simpleTrainPathApplication.getFrom(), simpleTrainPathApplication.getTo());
-        Set<SystemNode> nodes = new HashSet<>();
-        for (List<SystemNode> route : routes) {
-            for (SystemNode systemNode : route) {
-                nodes.add(systemNode);
-            }
-        }
+    /**
+     * Returns a builder initialized with these parameters.
+     *
+     * @return
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * Returns these parameters relaxed to the application's hard bounds.
+     *
+     * @return
+     * @see Builder#relaxToMax()
+     */
+    public TrainPathAllocationProblemPruningParameters relaxedToMax() {
+        return toBuilder().relaxToMax().build();
+    }
+
+    /**
+     * Returns these parameters with default pruning.
+     *
+     * @return
+     * @see Builder#setDefaultPruning()
+     */
+    public TrainPathAllocationProblemPruningParameters withDefaultPruning() {
+        return toBuilder().setDefaultPruning().build();
+    }
+
+    /**
+     * Returns whether these parameters admit every slot and connection the other parameters admit: same route, window, hard bounds,
+     * minimum dwell time and construction mode, and all time windows at least as wide.
+     *
+     * @param other
+     * @return
+     */
+    public boolean isRelaxationOf(TrainPathAllocationProblemPruningParameters other) {
+        if (!simpleTrainPathApplication.getFrom().equals(other.simpleTrainPathApplication.getFrom())) return false;
+        if (!simpleTrainPathApplication.getTo().equals(other.simpleTrainPathApplication.getTo())) return false;
+        if (simpleTrainPathApplication.getStartMillisOfWeek() != other.simpleTrainPathApplication.getStartMillisOfWeek()) return false;
+        if (simpleTrainPathApplication.getEndMillisOfWeek() != other.simpleTrainPathApplication.getEndMillisOfWeek()) return false;
+        if (!HARD_MAXIMUM_EARLIER_DEPARTURE.equals(other.HARD_MAXIMUM_EARLIER_DEPARTURE)) return false;
+        if (!HARD_MINIMUM_DWELL_TIME.equals(other.HARD_MINIMUM_DWELL_TIME)) return false;
+        if (!HARD_MAXIMUM_LATER_ARRIVAL.equals(other.HARD_MAXIMUM_LATER_ARRIVAL)) return false;
+        if (MillisOfWeek.of(MINIMUM_DWELL_TIME) != MillisOfWeek.of(other.MINIMUM_DWELL_TIME)) return false;
+        if (reachabilityPruning != other.reachabilityPruning) return false;
+        if (isShorter(MAXIMUM_EARLIER_DEPARTURE, other.MAXIMUM_EARLIER_DEPARTURE)) return false;
+        if (isShorter(MAXIMUM_LATER_DEPARTURE, other.MAXIMUM_LATER_DEPARTURE)) return false;
+        if (isShorter(MAXIMUM_EARLIER_ARRIVAL, other.MAXIMUM_EARLIER_ARRIVAL)) return false;
+        if (isShorter(MAXIMUM_LATER_ARRIVAL, other.MAXIMUM_LATER_ARRIVAL)) return false;
+        if (isShorter(MAXIMUM_ADDITIONAL_DWELL_TIME, other.MAXIMUM_ADDITIONAL_DWELL_TIME)) return false;
+        Set<SystemNode> nodes = new HashSet<>(nonDefaultAddiontalDwellTimesMap.keySet());
+        nodes.addAll(other.nonDefaultAddiontalDwellTimesMap.keySet());
         for (SystemNode node : nodes) {
-            setMAXIMUM_ADDITIONAL_DWELL_TIME(getMAXIMUM_ADDITIONAL_DWELL_TIME(node).plus(Minutes.minutes(10).toStandardDuration()));
+            if (isShorter(getMAXIMUM_ADDITIONAL_DWELL_TIME(node), other.getMAXIMUM_ADDITIONAL_DWELL_TIME(node))) return false;
         }
-
+        return true;
     }
 
-    public void setDefaultPruning() {
-        // set to applications hard bounds
-        setMINIMUM_DWELL_TIME(getHARD_MINIMUM_DWELL_TIME());
-        setMAXIMUM_EARLIER_DEPARTURE(getHARD_MAXIMUM_EARLIER_DEPARTURE());
-        setMAXIMUM_LATER_ARRIVAL(getHARD_MAXIMUM_LATER_ARRIVAL());
-
-        // set to arbitrary initial values
-        // TODO command-line options for default pruning?
-        setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(15).toStandardDuration());
-        Duration maxDuration = getApplicationHardMaxDuration();
-        Duration anHour = Minutes.minutes(60).toStandardDuration();
-        if (maxDuration.isShorterThan(anHour)) {
-            setMAXIMUM_LATER_DEPARTURE(maxDuration);
-            setMAXIMUM_EARLIER_ARRIVAL(maxDuration);
-        } else {
-            setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(60).toStandardDuration());
-            setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(60).toStandardDuration());
-        }
-
-
-        nonDefaultAddiontalDwellTimesMap.clear();
+    /**
+     * Compares durations, where null means zero as in {@link MillisOfWeek#of(Duration)}.
+     */
+    private static boolean isShorter(Duration duration, Duration other) {
+        return MillisOfWeek.of(duration) < MillisOfWeek.of(other);
     }
 
     public Duration getHARD_MAXIMUM_EARLIER_DEPARTURE() {
@@ -137,49 +170,42 @@ public class TrainPathAllocationProblemPruningParameters {
         return MAXIMUM_LATER_DEPARTURE;
     }
 
-    public void setMAXIMUM_LATER_DEPARTURE(Duration MAXIMUM_LATER_DEPARTURE) {
-        this.MAXIMUM_LATER_DEPARTURE = MAXIMUM_LATER_DEPARTURE;
-    }
-
     public Duration getMAXIMUM_EARLIER_DEPARTURE() {
         return MAXIMUM_EARLIER_DEPARTURE;
     }
 
-    public void setMAXIMUM_EARLIER_DEPARTURE(Duration MAXIMUM_EARLIER_DEPARTURE) {
-        if (MAXIMUM_EARLIER_DEPARTURE.toPeriod().toStandardDuration().isLongerThan(HARD_MAXIMUM_EARLIER_DEPARTURE.toPeriod().toStandardDuration())) {
-            throw new IllegalArgumentException("Must not be longer than hard maximum.");
-        }
-        this.MAXIMUM_EARLIER_DEPARTURE = MAXIMUM_EARLIER_DEPARTURE;
-    }
-
     public Duration getMINIMUM_DWELL_TIME() {
         return MINIMUM_DWELL_TIME;
     }
 
-    public void setMINIMUM_DWELL_TIME(Duration MINIMUM_DWELL_TIME) {
-        if (MINIMUM_DWELL_TIME.isShorterThan(HARD_MINIMUM_DWELL_TIME)) {
-            throw new IllegalArgumentException("Must not be shorter than hard minimum.");
-        }
-        this.MINIMUM_DWELL_TIME = MINIMUM_DWELL_TIME;
-    }
-
     public Duration getMAXIMUM_LATER_ARRIVAL() {
         return MAXIMUM_LATER_ARRIVAL;
     }
 
-    public void setMAXIMUM_LATER_ARRIVAL(Duration MAXIMUM_LATER_ARRIVAL) {
-        if (MAXIMUM_LATER_ARRIVAL.toPeriod().toStandardDuration().isLongerThan(HARD_MAXIMUM_LATER_ARRIVAL.toPeriod().toStandardDuration())) {
-            throw new IllegalArgumentException("Must not be longer than hard maximum.");
-        }
-        this.MAXIMUM_LATER_ARRIVAL = MAXIMUM_LATER_ARRIVAL;
-    }
-
     public Duration getMAXIMUM_EARLIER_ARRIVAL() {
         return MAXIMUM_EARLIER_ARRIVAL;
     }
 
-    public void setMAXIMUM_EARLIER_ARRIVAL(Duration MAXIMUM_EARLIER_ARRIVAL) {
-        this.MAXIMUM_EARLIER_ARRIVAL = MAXIMUM_EARLIER_ARRIVAL;
+    /**
+     * Returns whether the DAG is constructed in bidirectional mode: before expanding forward, compute per system node the latest arrival
+     * from which the terminal node can still be reached in time (see {@link TrainPathDAGReachabilityBounds}) and do not add slots arriving later,
+     * instead of adding them and removing them again by backtracking. The DAG keeps the same paths; slots pruned are not reported as infeasible.
+     *
+     * @return
+     */
+    public boolean isReachabilityPruning() {
+        return reachabilityPruning;
+    }
+
+    /**
+     * Returns whether {@link SolutionCandidateFinder#findFeasibleDAG(MacroscopicTopology, TrainPathSlotCatalogue, SimpleTrainPathApplication, TrainPathDAGCache)}
+     * checks that the earliest path search and the DAG relaxed to the hard bounds agree on feasibility. Constructing the relaxed DAG is expensive,
+     * so this debug mode is off by default. It does not change the DAG, so it is ignored by {@link #equals(Object)} and {@link #isRelaxationOf(TrainPathAllocationProblemPruningParameters)}.
+     *
+     * @return
+     */
+    public boolean isSanityCheck() {
+        return sanityCheck;
     }
 
     public Duration getMAXIMUM_ADDITIONAL_DWELL_TIME(SystemNode node) {
@@ -190,20 +216,6 @@ public class TrainPathAllocationProblemPruningParameters {
         }
     }
 
-    public void setMAXIMUM_ADDITIONAL_DWELL_TIME(Duration MAXIMUM_ADDITIONAL_DWELL_TIME) {
-        if (MAXIMUM_ADDITIONAL_DWELL_TIME.getMillis() < 0) {
-            throw new IllegalArgumentException("Duration must not be < 0");
-        }
-        this.MAXIMUM_ADDITIONAL_DWELL_TIME = MAXIMUM_ADDITIONAL_DWELL_TIME;
-    }
-
-    public void setMAXIMUM_ADDITIONAL_DWELL_TIME(SystemNode node, Duration MAXIMUM_ADDITIONAL_DWELL_TIME) {
-        if (MAXIMUM_ADDITIONAL_DWELL_TIME.getMillis() < 0) {
-            throw new IllegalArgumentException("Duration must not be < 0");
-        }
-        nonDefaultAddiontalDwellTimesMap.put(node, MAXIMUM_ADDITIONAL_DWELL_TIME);
-    }
-
     public PeriodicalTimeFrame getArrivalLowerBound() {
         PeriodicalTimeFrame lowerInclusiveBoundRequest = simpleTrainPathApplication.getEndTime().minus(MAXIMUM_EARLIER_ARRIVAL);
         return lowerInclusiveBoundRequest;
@@ -234,6 +246,46 @@ public class TrainPathAllocationProblemPruningParameters {
         return upperInclusiveBoundRequest;
     }
 
+    public int getMinimumDwellTimeMillis() {
+        return MillisOfWeek.of(MINIMUM_DWELL_TIME);
+    }
+
+    public int getMaximumAdditionalDwellTimeMillis(SystemNode node) {
+        return MillisOfWeek.of(getMAXIMUM_ADDITIONAL_DWELL_TIME(node));
+    }
+
+    public int getArrivalLowerBoundMillis() {
+        return MillisOfWeek.minus(simpleTrainPathApplication.getEndMillisOfWeek(), MillisOfWeek.of(MAXIMUM_EARLIER_ARRIVAL));
+    }
+
+    public int getArrivalUpperBoundMillis() {
+        return MillisOfWeek.plus(simpleTrainPathApplication.getEndMillisOfWeek(), MillisOfWeek.of(MAXIMUM_LATER_ARRIVAL));
+    }
+
+    public int getArrivalHardUpperBoundMillis() {
+        return MillisOfWeek.plus(simpleTrainPathApplication.getEndMillisOfWeek(), MillisOfWeek.of(HARD_MAXIMUM_LATER_ARRIVAL));
+    }
+
+    public int getDepartureHardLowerBoundMillis() {
+        return MillisOfWeek.minus(simpleTrainPathApplication.getStartMillisOfWeek(), MillisOfWeek.of(HARD_MAXIMUM_EARLIER_DEPARTURE));
+    }
+
+    public int getDepartureLowerBoundMillis() {
+        return MillisOfWeek.minus(simpleTrainPathApplication.getStartMillisOfWeek(), MillisOfWeek.of(MAXIMUM_EARLIER_DEPARTURE));
+    }
+
+    public int getDepartureUpperBoundMillis() {
+        return MillisOfWeek.plus(simpleTrainPathApplication.getStartMillisOfWeek(), MillisOfWeek.of(MAXIMUM_LATER_DEPARTURE));
+    }
+
+    public boolean isWithinHardBounds(int momentMillisOfWeek) {
+        return MillisOfWeek.isWithinBounds(momentMillisOfWeek, getDepartureHardLowerBoundMillis(), getArrivalHardUpperBoundMillis());
+    }
+
+    public boolean isWithinBounds(int momentMillisOfWeek) {
+        return MillisOfWeek.isWithinBounds(momentMillisOfWeek, getDepartureLowerBoundMillis(), getArrivalUpperBoundMillis());
+    }
+
     public boolean isWithinHardBounds(PeriodicalTimeFrame moment) {
         return moment.isWithinBounds(getDepartureHardLowerBound(), getArrivalHardUpperBound());
     }
@@ -243,14 +295,285 @@ public class TrainPathAllocationProblemPruningParameters {
     }
 
     public Duration getApplicationHardMaxDuration() {
-        Duration duration = getArrivalHardUpperBound().distanceAfter(getDepartureHardLowerBound());
-        return duration;
+        return getApplicationHardMaxDuration(simpleTrainPathApplication, HARD_MAXIMUM_EARLIER_DEPARTURE, HARD_MAXIMUM_LATER_ARRIVAL);
     }
 
     public Duration getApplicationDuration() {
-        Duration duration = simpleTrainPathApplication.getEndTime().distanceAfter(simpleTrainPathApplication.getStartTime());
-        return duration;
-    }
+        return getApplicationDuration(simpleTrainPathApplication);
+    }
+
+    /**
+     * Two parameter sets are equal if they prune the same route and time window alike, regardless of the application object they belong to.
+     *
+     * @param o
+     * @return
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        TrainPathAllocationProblemPruningParameters that = (TrainPathAllocationProblemPruningParameters) o;
+
+        if (!simpleTrainPathApplication.getFrom().equals(that.simpleTrainPathApplication.getFrom())) return false;
+        if (!simpleTrainPathApplication.getTo().equals(that.simpleTrainPathApplication.getTo())) return false;
+        if (simpleTrainPathApplication.getStartMillisOfWeek() != that.simpleTrainPathApplication.getStartMillisOfWeek()) return false;
+        if (simpleTrainPathApplication.getEndMillisOfWeek() != that.simpleTrainPathApplication.getEndMillisOfWeek()) return false;
+        if (!HARD_MAXIMUM_EARLIER_DEPARTURE.equals(that.HARD_MAXIMUM_EARLIER_DEPARTURE)) return false;
+        if (!HARD_MINIMUM_DWELL_TIME.equals(that.HARD_MINIMUM_DWELL_TIME)) return false;
+        if (!HARD_MAXIMUM_LATER_ARRIVAL.equals(that.HARD_MAXIMUM_LATER_ARRIVAL)) return false;
+        if (MAXIMUM_EARLIER_DEPARTURE != null ? !MAXIMUM_EARLIER_DEPARTURE.equals(that.MAXIMUM_EARLIER_DEPARTURE) : that.MAXIMUM_EARLIER_DEPARTURE != null) return false;
+        if (MINIMUM_DWELL_TIME != null ? !MINIMUM_DWELL_TIME.equals(that.MINIMUM_DWELL_TIME) : that.MINIMUM_DWELL_TIME != null) return false;
+        if (MAXIMUM_LATER_ARRIVAL != null ? !MAXIMUM_LATER_ARRIVAL.equals(that.MAXIMUM_LATER_ARRIVAL) : that.MAXIMUM_LATER_ARRIVAL != null) return false;
+        if (MAXIMUM_LATER_DEPARTURE != null ? !MAXIMUM_LATER_DEPARTURE.equals(that.MAXIMUM_LATER_DEPARTURE) : that.MAXIMUM_LATER_DEPARTURE != null) return false;
+        if (MAXIMUM_EARLIER_ARRIVAL != null ? !MAXIMUM_EARLIER_ARRIVAL.equals(that.MAXIMUM_EARLIER_ARRIVAL) : that.MAXIMUM_EARLIER_ARRIVAL != null) return false;
+        if (MAXIMUM_ADDITIONAL_DWELL_TIME != null ? !MAXIMUM_ADDITIONAL_DWELL_TIME.equals(that.MAXIMUM_ADDITIONAL_DWELL_TIME) : that.MAXIMUM_ADDITIONAL_DWELL_TIME != null) return false;
+        if (reachabilityPruning != that.reachabilityPruning) return false;
+        return nonDefaultAddiontalDwellTimesMap.equals(that.nonDefaultAddiontalDwellTimesMap);
+
+    }
+
+    @Override
+    public int hashCode() {
+        int result = simpleTrainPathApplication.getFrom().hashCode();
+        result = 31 * result + simpleTrainPathApplication.getTo().hashCode();
+        result = 31 * result + simpleTrainPathApplication.getStartMillisOfWeek();
+        result = 31 * result + simpleTrainPathApplication.getEndMillisOfWeek();
+        result = 31 * result + HARD_MAXIMUM_EARLIER_DEPARTURE.hashCode();
+        result = 31 * result + HARD_MINIMUM_DWELL_TIME.hashCode();
+        result = 31 * result + HARD_MAXIMUM_LATER_ARRIVAL.hashCode();
+        result = 31 * result + (MAXIMUM_EARLIER_DEPARTURE != null ? MAXIMUM_EARLIER_DEPARTURE.hashCode() : 0);
+        result = 31 * result + (MINIMUM_DWELL_TIME != null ? MINIMUM_DWELL_TIME.hashCode() : 0);
+        result = 31 * result + (MAXIMUM_LATER_ARRIVAL != null ? MAXIMUM_LATER_ARRIVAL.hashCode() : 0);
+        result = 31 * result + (MAXIMUM_LATER_DEPARTURE != null ? MAXIMUM_LATER_DEPARTURE.hashCode() : 0);
+        result = 31 * result + (MAXIMUM_EARLIER_ARRIVAL != null ? MAXIMUM_EARLIER_ARRIVAL.hashCode() : 0);
+        result = 31 * result + (MAXIMUM_ADDITIONAL_DWELL_TIME != null ? MAXIMUM_ADDITIONAL_DWELL_TIME.hashCode() : 0);
+        result = 31 * result + nonDefaultAddiontalDwellTimesMap.hashCode();
+        result = 31 * result + (reachabilityPruning ? 1 : 0);
+        return result;
+    }
+
+    private static Duration getApplicationHardMaxDuration(SimpleTrainPathApplication simpleTrainPathApplication, Duration hardMaximumEarlierDeparture, Duration hardMaximumLaterArrival) {
+        PeriodicalTimeFrame arrivalHardUpperBound = simpleTrainPathApplication.getEndTime().plus(hardMaximumLaterArrival);
+        PeriodicalTimeFrame departureHardLowerBound = simpleTrainPathApplication.getStartTime().minus(hardMaximumEarlierDeparture);
+        return arrivalHardUpperBound.distanceAfter(departureHardLowerBound);
+    }
+
+    private static Duration getApplicationDuration(SimpleTrainPathApplication simpleTrainPathApplication) {
+        return simpleTrainPathApplication.getEndTime().distanceAfter(simpleTrainPathApplication.getStartTime());
+    }
+
+    /**
+     * Mutable builder for {@link TrainPathAllocationProblemPruningParameters}; the hard bounds are fixed, the setters check the pruning parameters against them.
+     */
+    public static final class Builder {
+        private final Duration HARD_MAXIMUM_EARLIER_DEPARTURE;
+        private final Duration HARD_MINIMUM_DWELL_TIME;
+        private final Duration HARD_MAXIMUM_LATER_ARRIVAL;
+        private final SimpleTrainPathApplication simpleTrainPathApplication;
+
+        private Duration MAXIMUM_EARLIER_DEPARTURE;
+        private Duration MINIMUM_DWELL_TIME;
+        private Duration MAXIMUM_LATER_ARRIVAL;
+
+        private Duration MAXIMUM_LATER_DEPARTURE;
+        private Duration MAXIMUM_EARLIER_ARRIVAL;
+        private Duration MAXIMUM_ADDITIONAL_DWELL_TIME;
+
+        private Map<SystemNode, Duration> nonDefaultAddiontalDwellTimesMap = new HashMap<>();
+
+        private boolean reachabilityPruning;
+        private boolean sanityCheck;
+
+        private Builder(SimpleTrainPathApplication application, int hardMaximumEarlierDeparture, int hardMinimumDwellTime, int hardMaximumLaterArrival) {
+            this.simpleTrainPathApplication = application;
+            HARD_MAXIMUM_EARLIER_DEPARTURE = Minutes.minutes(hardMaximumEarlierDeparture).toStandardDuration();
+            HARD_MINIMUM_DWELL_TIME = Minutes.minutes(hardMinimumDwellTime).toStandardDuration();
+            HARD_MAXIMUM_LATER_ARRIVAL = Minutes.minutes(hardMaximumLaterArrival).toStandardDuration();
+            setMINIMUM_DWELL_TIME(HARD_MINIMUM_DWELL_TIME);
+        }
+
+        private Builder(TrainPathAllocationProblemPruningParameters params) {
+            this.simpleTrainPathApplication = params.simpleTrainPathApplication;
+            HARD_MAXIMUM_EARLIER_DEPARTURE = params.HARD_MAXIMUM_EARLIER_DEPARTURE;
+            HARD_MINIMUM_DWELL_TIME = params.HARD_MINIMUM_DWELL_TIME;
+            HARD_MAXIMUM_LATER_ARRIVAL = params.HARD_MAXIMUM_LATER_ARRIVAL;
+            MAXIMUM_EARLIER_DEPARTURE = params.MAXIMUM_EARLIER_DEPARTURE;
+            MINIMUM_DWELL_TIME = params.MINIMUM_DWELL_TIME;
+            MAXIMUM_LATER_ARRIVAL = params.MAXIMUM_LATER_ARRIVAL;
+            MAXIMUM_LATER_DEPARTURE = params.MAXIMUM_LATER_DEPARTURE;
+            MAXIMUM_EARLIER_ARRIVAL = params.MAXIMUM_EARLIER_ARRIVAL;
+            MAXIMUM_ADDITIONAL_DWELL_TIME = params.MAXIMUM_ADDITIONAL_DWELL_TIME;
+            nonDefaultAddiontalDwellTimesMap.putAll(params.nonDefaultAddiontalDwellTimesMap);
+            reachabilityPruning = params.reachabilityPruning;
+            sanityCheck = params.sanityCheck;
+        }
+
+        public Builder relaxToMax() {
+
+            setMAXIMUM_ADDITIONAL_DWELL_TIME(getApplicationHardMaxDuration(simpleTrainPathApplication, HARD_MAXIMUM_EARLIER_DEPARTURE, HARD_MAXIMUM_LATER_ARRIVAL));
+            setMAXIMUM_EARLIER_ARRIVAL(getApplicationDuration(simpleTrainPathApplication));
+            setMAXIMUM_LATER_DEPARTURE(getApplicationDuration(simpleTrainPathApplication));
+
+
+            // set to applications hard bounds
+            setMINIMUM_DWELL_TIME(HARD_MINIMUM_DWELL_TIME);
+            setMAXIMUM_EARLIER_DEPARTURE(HARD_MAXIMUM_EARLIER_DEPARTURE);
+            setMAXIMUM_LATER_ARRIVAL(HARD_MAXIMUM_LATER_ARRIVAL);
+
+            return this;
+        }
+
+        public Builder relax(MacroscopicTopology topology) {
+            // TODO not implemented yet
+            List<List<SystemNode>> routes = topology.getRoutes(simpleTrainPathApplication.getFrom(), simpleTrainPathApplication.getTo());
+            Set<SystemNode> nodes = new HashSet<>();
+            for (List<SystemNode> route : routes) {
+                for (SystemNode systemNode : route) {
+                    nodes.add(systemNode);
+                }
+            }
+            for (SystemNode node : nodes) {
+                Duration current = nonDefaultAddiontalDwellTimesMap.containsKey(node) ? nonDefaultAddiontalDwellTimesMap.get(node) : MAXIMUM_ADDITIONAL_DWELL_TIME;
+                setMAXIMUM_ADDITIONAL_DWELL_TIME(current.plus(Minutes.minutes(10).toStandardDuration()));
+            }
+
+            return this;
+        }
+
+        /**
+         * Widens each time window to the wider one of these and the other parameters, so the result is a relaxation of both
+         * if they have the same minimum dwell time.
+         *
+         * @param other parameters of the same application
+         * @return
+         * @see TrainPathAllocationProblemPruningParameters#isRelaxationOf(TrainPathAllocationProblemPruningParameters)
+         */
+        public Builder relaxTo(TrainPathAllocationProblemPruningParameters other) {
+            setMINIMUM_DWELL_TIME(min(MINIMUM_DWELL_TIME, other.MINIMUM_DWELL_TIME));
+            setMAXIMUM_EARLIER_DEPARTURE(max(MAXIMUM_EARLIER_DEPARTURE, other.MAXIMUM_EARLIER_DEPARTURE));
+            setMAXIMUM_LATER_DEPARTURE(max(MAXIMUM_LATER_DEPARTURE, other.MAXIMUM_LATER_DEPARTURE));
+            setMAXIMUM_EARLIER_ARRIVAL(max(MAXIMUM_EARLIER_ARRIVAL, other.MAXIMUM_EARLIER_ARRIVAL));
+            setMAXIMUM_LATER_ARRIVAL(max(MAXIMUM_LATER_ARRIVAL, other.MAXIMUM_LATER_ARRIVAL));
+
+            Set<SystemNode> nodes = new HashSet<>(nonDefaultAddiontalDwellTimesMap.keySet());
+            nodes.addAll(other.nonDefaultAddiontalDwellTimesMap.keySet());
+            for (SystemNode node : nodes) {
+                Duration current = nonDefaultAddiontalDwellTimesMap.containsKey(node) ? nonDefaultAddiontalDwellTimesMap.get(node) : MAXIMUM_ADDITIONAL_DWELL_TIME;
+                setMAXIMUM_ADDITIONAL_DWELL_TIME(node, max(current, other.getMAXIMUM_ADDITIONAL_DWELL_TIME(node)));
+            }
+            setMAXIMUM_ADDITIONAL_DWELL_TIME(max(MAXIMUM_ADDITIONAL_DWELL_TIME, other.MAXIMUM_ADDITIONAL_DWELL_TIME));
+            return this;
+        }
+
+        private static Duration min(Duration d1, Duration d2) {
+            return d1.isShorterThan(d2) ? d1 : d2;
+        }
+
+        private static Duration max(Duration d1, Duration d2) {
+            // null means zero
+            if (d1 == null || d2 == null) {
+                return d1 == null ? d2 : d1;
+            }
+            return d1.isLongerThan(d2) ? d1 : d2;
+        }
+
+        public Builder setDefaultPruning() {
+            // set to applications hard bounds
+            setMINIMUM_DWELL_TIME(HARD_MINIMUM_DWELL_TIME);
+            setMAXIMUM_EARLIER_DEPARTURE(HARD_MAXIMUM_EARLIER_DEPARTURE);
+            setMAXIMUM_LATER_ARRIVAL(HARD_MAXIMUM_LATER_ARRIVAL);
+
+            // set to arbitrary initial values
+            // TODO command-line options for default pruning?
+            setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(15).toStandardDuration());
+            Duration maxDuration = getApplicationHardMaxDuration(simpleTrainPathApplication, HARD_MAXIMUM_EARLIER_DEPARTURE, HARD_MAXIMUM_LATER_ARRIVAL);
+            Duration anHour = Minutes.minutes(60).toStandardDuration();
+            if (maxDuration.isShorterThan(anHour)) {
+                setMAXIMUM_LATER_DEPARTURE(maxDuration);
+                setMAXIMUM_EARLIER_ARRIVAL(maxDuration);
+            } else {
+                setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(60).toStandardDuration());
+                setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(60).toStandardDuration());
+            }
 
 
+            nonDefaultAddiontalDwellTimesMap.clear();
+            return this;
+        }
+
+        public Builder setMAXIMUM_LATER_DEPARTURE(Duration MAXIMUM_LATER_DEPARTURE) {
+            this.MAXIMUM_LATER_DEPARTURE = MAXIMUM_LATER_DEPARTURE;
+            return this;
+        }
+
+        public Builder setMAXIMUM_EARLIER_DEPARTURE(Duration MAXIMUM_EARLIER_DEPARTURE) {
+            if (MAXIMUM_EARLIER_DEPARTURE.toPeriod().toStandardDuration().isLongerThan(HARD_MAXIMUM_EARLIER_DEPARTURE.toPeriod().toStandardDuration())) {
+                throw new IllegalArgumentException("Must not be longer than hard maximum.");
+            }
+            this.MAXIMUM_EARLIER_DEPARTURE = MAXIMUM_EARLIER_DEPARTURE;
+            return this;
+        }
+
+        public Builder setMINIMUM_DWELL_TIME(Duration MINIMUM_DWELL_TIME) {
+            if (MINIMUM_DWELL_TIME.isShorterThan(HARD_MINIMUM_DWELL_TIME)) {
+                throw new IllegalArgumentException("Must not be shorter than hard minimum.");
+            }
+            this.MINIMUM_DWELL_TIME = MINIMUM_DWELL_TIME;
+            return this;
+        }
+
+        public Builder setMAXIMUM_LATER_ARRIVAL(Duration MAXIMUM_LATER_ARRIVAL) {
+            if (MAXIMUM_LATER_ARRIVAL.toPeriod().toStandardDuration().isLongerThan(HARD_MAXIMUM_LATER_ARRIVAL.toPeriod().toStandardDuration())) {
+                throw new IllegalArgumentException("Must not be longer than hard maximum.");
+            }
+            this.MAXIMUM_LATER_ARRIVAL = MAXIMUM_LATER_ARRIVAL;
+            return this;
+        }
+
+        public Builder setMAXIMUM_EARLIER_ARRIVAL(Duration MAXIMUM_EARLIER_ARRIVAL) {
+            this.MAXIMUM_EARLIER_ARRIVAL = MAXIMUM_EARLIER_ARRIVAL;
+            return this;
+        }
+
+        public Builder setMAXIMUM_ADDITIONAL_DWELL_TIME(Duration MAXIMUM_ADDITIONAL_DWELL_TIME) {
+            if (MAXIMUM_ADDITIONAL_DWELL_TIME.getMillis() < 0) {
+                throw new IllegalArgumentException("Duration must not be < 0");
+            }
+            this.MAXIMUM_ADDITIONAL_DWELL_TIME = MAXIMUM_ADDITIONAL_DWELL_TIME;
+            return this;
+        }
+
+        public Builder setMAXIMUM_ADDITIONAL_DWELL_TIME(SystemNode node, Duration MAXIMUM_ADDITIONAL_DWELL_TIME) {
+            if (MAXIMUM_ADDITIONAL_DWELL_TIME.getMillis() < 0) {
+                throw new IllegalArgumentException("Duration must not be < 0");
+            }
+            nonDefaultAddiontalDwellTimesMap.put(node, MAXIMUM_ADDITIONAL_DWELL_TIME);
+            return this;
+        }
+
+        /**
+         * @param reachabilityPruning
+         * @return
+         * @see TrainPathAllocationProblemPruningParameters#isReachabilityPruning()
+         */
+        public Builder setReachabilityPruning(boolean reachabilityPruning) {
+            this.reachabilityPruning = reachabilityPruning;
+            return this;
+        }
+
+        /**
+         * @param sanityCheck
+         * @return
+         * @see TrainPathAllocationProblemPruningParameters#isSanityCheck()
+         */
+        public Builder setSanityCheck(boolean sanityCheck) {
+            this.sanityCheck = sanityCheck;
+            return this;
+        }
+
+        public TrainPathAllocationProblemPruningParameters build() {
+            return new TrainPathAllocationProblemPruningParameters(this);
+        }
+    }
 }
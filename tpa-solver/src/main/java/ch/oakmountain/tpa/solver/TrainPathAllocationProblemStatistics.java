@@ -21,8 +21,6 @@ import ch.oakmountain.tpa.web.TpaWebPersistor;
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.codehaus.plexus.util.dag.CycleDetectedException;
-import org.codehaus.plexus.util.dag.Vertex;
 
 import java.io.File;
 import java.io.IOException;
@@ -58,7 +56,7 @@ class TrainPathAllocationProblemStatistics {
     int pathBasedSolutionCandidateConflictConstraints = 0;
     int pathBasedSolutionCandidateConflictTerms = 0;
     int pathBasedVariablesCount = 0;
-    int totalNbPaths = 0;
+    BigInteger totalNbPaths = BigInteger.ZERO;
 
     public TrainPathAllocationProblemStatistics(TrainPathAllocationProblem tpa, String outputDir) throws IOException {
         this.outputDir = outputDir;
@@ -80,8 +78,8 @@ class TrainPathAllocationProblemStatistics {
         }
     }
 
-    private void addTrainPathApplication(TablePersistor appsTable, SimpleTrainPathApplication r) throws CycleDetectedException, IOException, IllegalAccessException {
-        TrainPathDAG dag = SolutionCandidateFinder.findFeasibleDAG(tpa.getMacroscopicTopology(), tpa.getCatalogue(), r);
+    private void addTrainPathApplication(TablePersistor appsTable, SimpleTrainPathApplication r) throws IOException, IllegalAccessException {
+        TrainPathDAG dag = SolutionCandidateFinder.findFeasibleDAG(tpa.getMacroscopicTopology(), tpa.getCatalogue(), r, tpa.getDagCache());
 
         persist(outputDir, r, null, dag);
 
@@ -98,21 +96,21 @@ class TrainPathAllocationProblemStatistics {
         int dagEffectiveVerticies = 0;
         int myarcnodeflowconstraints = 0;
 
-        for (Vertex vertex : dag.getVerticies()) {
-            if (vertex.isLeaf() && vertex.isRoot()) {
+        for (int vertex = 0; vertex < dag.getNbVertices(); vertex++) {
+            if (dag.isLeaf(vertex) && dag.isRoot(vertex)) {
                 // skip unconnected vertices
                 continue;
             }
             dagEffectiveVerticies += 1;
-            if (!vertex.isRoot() && !vertex.isLeaf()) {
-                TrainPathSlot trainPathSlot = dag.getSlotFromVertex(vertex.getLabel());
-                incrementArcNodeUnityCapacityCountForSlotBy(trainPathSlot, vertex.getChildren().size());
+            if (!dag.isRoot(vertex) && !dag.isLeaf(vertex)) {
+                TrainPathSlot trainPathSlot = dag.getSlot(vertex);
+                incrementArcNodeUnityCapacityCountForSlotBy(trainPathSlot, dag.getNbChildren(vertex));
             }
-            int vertexFlowConstraintTerms = vertex.getChildren().size() + vertex.getParents().size();
+            int vertexFlowConstraintTerms = dag.getNbChildren(vertex) + dag.getNbParents(vertex);
             increaseArcNodeFlowConstraintTermsBy(vertexFlowConstraintTerms);
             incrementArcNodeFlowConstraintsBy(1);
             myarcnodeflowconstraints++;
-            incrementArcNodeVariablesCountBy(vertex.getChildren().size());
+            incrementArcNodeVariablesCountBy(dag.getNbChildren(vertex));
         }
         LOGGER.debug("arcnodeflowconstraints|" + r.getName() + "|" + myarcnodeflowconstraints);
         LOGGER.debug("dagEffectiveVerticies|" + r.getName() + "|" + dagEffectiveVerticies);
@@ -123,8 +121,9 @@ class TrainPathAllocationProblemStatistics {
             }
         }
         int nbSolutionCandidates = solutionCandidates.size();
-        int nbPaths = dag.nbPaths();
+        BigInteger nbPaths = dag.nbPathsExact();
 
+        incrementTotalNbPathsBy(nbPaths);
         incrementPathBasedVariablesBy(nbSolutionCandidates);
         incrementPathBasedSolutionCandidateChoiceConstraintsCount();
         incrementPathBasedSolutionCandidateChoiceTermsCountBy(nbSolutionCandidates);
@@ -161,8 +160,8 @@ class TrainPathAllocationProblemStatistics {
         pathBasedConflictCounts.put(trainPathSlot, pathBasedConflictCounts.get(trainPathSlot) + 1);
     }
 
-    private void incrementTotalNbPathsBy(int nbPaths) {
-        totalNbPaths += nbPaths;
+    private void incrementTotalNbPathsBy(BigInteger nbPaths) {
+        totalNbPaths = totalNbPaths.add(nbPaths);
     }
 
     private void increaseArcNodeFlowConstraintTermsBy(int flowConstraintTerms) {
@@ -176,7 +175,7 @@ class TrainPathAllocationProblemStatistics {
         arcNodeUnitCapacityCounts.put(trainPathSlot, arcNodeUnitCapacityCounts.get(trainPathSlot) + by);
     }
 
-    public void compile() throws IOException, CycleDetectedException, IllegalAccessException {
+    public void compile() throws IOException, IllegalAccessException {
         TablePersistor appsTable = new TablePersistor("apps", outputDir, "Train Path Allocation Problem", TrainPathApplicationStatistics.getHeader());
 
         for (SimpleTrainPathApplication r : tpa.getSimpleTrainPathApplications()) {
@@ -184,6 +183,7 @@ class TrainPathAllocationProblemStatistics {
         }
         appsTable.finishTable();
         compileSummaryTable();
+        TrainPathAllocationProblemModel.LOGGER.info(tpa.getDagCache());
     }
 
     private void compileSummaryTable() throws IOException {
@@ -233,7 +233,7 @@ class TrainPathAllocationProblemStatistics {
         summaryTable.writeRow(Arrays.asList("path-based", "terms in choice constraints", String.valueOf(pathBasedSolutionCandidateChoiceTermsCount)));
         summaryTable.writeRow(Arrays.asList("path-based", "conflict constraints", String.valueOf(pathBasedSolutionCandidateConflictConstraints)));
         summaryTable.writeRow(Arrays.asList("path-based", "terms in conflict constraints", String.valueOf(pathBasedSolutionCandidateConflictTerms)));
-        summaryTable.writeRow(Arrays.asList("path-based", "enumeration rate ", String.valueOf(pathBasedSolutionCandidateChoiceTermsCount + "/" + totalNbPaths + "(" + ((double) pathBasedSolutionCandidateChoiceTermsCount / totalNbPaths) + ")")));
+        summaryTable.writeRow(Arrays.asList("path-based", "enumeration rate ", String.valueOf(pathBasedSolutionCandidateChoiceTermsCount + "/" + totalNbPaths + "(" + ((double) pathBasedSolutionCandidateChoiceTermsCount / totalNbPaths.doubleValue()) + ")")));
         BigInteger pathBasedConstraints = BigInteger.valueOf(pathBasedSolutionCandidateChoiceConstraintsCount).add(BigInteger.valueOf(pathBasedSolutionCandidateConflictConstraints));
         summaryTable.writeRow(Arrays.asList("path-based", "rows (constraints)", String.valueOf(pathBasedConstraints)));
         summaryTable.writeRow(Arrays.asList("path-based", "columns (variables)", String.valueOf(pathBasedVariablesCount)));
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.oakmountain.tpa.solver;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.joda.time.DateTimeConstants;
+
+import java.util.*;
+
+/**
+ * Aggregates a train path allocation problem into one representative day per class of equivalent weekdays.
+ * <p/>
+ * If no application's hard time window crosses midnight, applications on different days cannot share a slot and the
+ * problem decomposes into daily sub-problems. Two days are equivalent if the same periodical applications and the same
+ * periodical slots are active on both; their sub-problems are then identical up to the day shift, and so are their optimal
+ * allocations. Only the representative days are solved and the allocations are shifted back to the other days of their class.
+ */
+public class TrainPathAllocationProblemWeekdayAggregation {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final int MILLIS_PER_DAY = DateTimeConstants.MILLIS_PER_DAY;
+
+    private final TrainPathAllocationProblem tpa;
+    private final TrainPathAllocationProblem representativeProblem;
+    private final int[] representativeDays;
+
+    private TrainPathAllocationProblemWeekdayAggregation(TrainPathAllocationProblem tpa, TrainPathAllocationProblem representativeProblem, int[] representativeDays) {
+        this.tpa = tpa;
+        this.representativeProblem = representativeProblem;
+        this.representativeDays = representativeDays;
+    }
+
+    /**
+     * Detects the weekday equivalence classes of the problem.
+     *
+     * @param tpa
+     * @return the aggregation or null if the problem must be solved as a whole week (the reason is logged)
+     */
+    public static TrainPathAllocationProblemWeekdayAggregation aggregate(TrainPathAllocationProblem tpa) {
+        // Applications per day; bail out on coupling across days
+        List<Set<TrainPathApplication>> applicationsByDay = new ArrayList<>(8);
+        for (int day = 0; day <= 7; day++) {
+            applicationsByDay.add(new HashSet<TrainPathApplication>());
+        }
+        for (SimpleTrainPathApplication r : tpa.getSimpleTrainPathApplications()) {
+            if (r.getParent() == null) {
+                LOGGER.info("Weekday aggregation not applicable: application " + r.getName() + " has no periodical application");
+                return null;
+            }
+            int day = r.getStartTime().getDayOfWeek();
+            if (!isWithinDay(r, day)) {
+                LOGGER.info("Weekday aggregation not applicable: hard time window of application " + r.getName() + " crosses midnight");
+                return null;
+            }
+            if (r.getParent().getRequestOnWeekDay(day) != r) {
+                LOGGER.info("Weekday aggregation not applicable: application " + r.getName() + " is not the one of its periodical application on day " + day);
+                return null;
+            }
+            applicationsByDay.get(day).add(r.getParent());
+        }
+
+        // Slots per day
+        List<Set<PeriodicalTrainPathSlot>> slotsByDay = new ArrayList<>(8);
+        for (int day = 0; day <= 7; day++) {
+            slotsByDay.add(new HashSet<PeriodicalTrainPathSlot>());
+        }
+        for (PeriodicalTrainPathSlot periodicalTrainPathSlot : tpa.getCatalogue().getTrainPathSlots()) {
+            for (Integer day : periodicalTrainPathSlot.getPeriodicity().getWeekDays()) {
+                slotsByDay.get(day).add(periodicalTrainPathSlot);
+            }
+        }
+
+        // Representative day: the first equivalent day of the week
+        int[] representativeDays = new int[8];
+        Set<SimpleTrainPathApplication> representativeApplications = new HashSet<>();
+        int nbClasses = 0;
+        for (int day = 1; day <= 7; day++) {
+            representativeDays[day] = day;
+            for (int other = 1; other < day; other++) {
+                if (representativeDays[other] == other && applicationsByDay.get(day).equals(applicationsByDay.get(other)) && slotsByDay.get(day).equals(slotsByDay.get(other))) {
+                    representativeDays[day] = other;
+                    break;
+                }
+            }
+            if (representativeDays[day] == day) {
+                nbClasses++;
+                for (TrainPathApplication application : applicationsByDay.get(day)) {
+                    representativeApplications.add(application.getRequestOnWeekDay(day));
+                }
+            }
+        }
+        LOGGER.info("Weekday aggregation: " + nbClasses + " classes of equivalent weekdays, " + representativeApplications.size() + " of " + tpa.getSimpleTrainPathApplications().size() + " applications to solve");
+
+        TrainPathAllocationProblem representativeProblem = new TrainPathAllocationProblem(tpa.getMacroscopicTopology(), representativeApplications, tpa.getCatalogue(), tpa.getDagCache());
+        return new TrainPathAllocationProblemWeekdayAggregation(tpa, representativeProblem, representativeDays);
+    }
+
+    /**
+     * Checks that every slot the application may use starts and ends on the application's day.
+     *
+     * @param r
+     * @param day
+     * @return
+     */
+    private static boolean isWithinDay(SimpleTrainPathApplication r, int day) {
+        int dayStart = (day - 1) * MILLIS_PER_DAY;
+        int lowerBound = r.getParams().getDepartureHardLowerBoundMillis();
+        int upperBound = r.getParams().getArrivalHardUpperBoundMillis();
+        return dayStart <= lowerBound && lowerBound <= upperBound && upperBound < dayStart + MILLIS_PER_DAY;
+    }
+
+    public TrainPathAllocationProblem getRepresentativeProblem() {
+        return representativeProblem;
+    }
+
+    public int getRepresentativeDay(int day) {
+        return representativeDays[day];
+    }
+
+    /**
+     * Shifts the allocations of the representative problem to all days of the original problem.
+     *
+     * @param representativeAllocations
+     * @return
+     */
+    public TrainPathAllocations expand(TrainPathAllocations representativeAllocations) {
+        Map<SimpleTrainPathApplication, SolutionCandidate> allocations = new HashMap<>();
+        Set<SimpleTrainPathApplication> removedSimpleTrainPathApplications = new HashSet<>();
+        for (SimpleTrainPathApplication r : tpa.getSimpleTrainPathApplications()) {
+            int day = r.getStartTime().getDayOfWeek();
+            SimpleTrainPathApplication representative = r.getParent().getRequestOnWeekDay(representativeDays[day]);
+            if (representativeAllocations.getRemovedSimpleTrainPathApplications().contains(representative)) {
+                removedSimpleTrainPathApplications.add(r);
+            }
+            SolutionCandidate representativeAllocation = representativeAllocations.getAllocations().get(representative);
+            if (representativeAllocation == null) {
+                continue;
+            }
+            if (representative == r) {
+                allocations.put(r, representativeAllocation);
+                continue;
+            }
+            List<TrainPathSlot> path = new LinkedList<>();
+            for (TrainPathSlot slot : representativeAllocation.getPath()) {
+                TrainPathSlot shiftedSlot = slot.getPeriodicalTrainPathSlot().getSlotOn(day);
+                if (shiftedSlot == null) {
+                    throw new IllegalStateException("Slot " + slot.getName() + " of representative day " + representativeDays[day] + " does not exist on day " + day);
+                }
+                path.add(shiftedSlot);
+            }
+            allocations.put(r, new SolutionCandidate(path, tpa.getCatalogue(), r));
+        }
+        return new TrainPathAllocations(tpa, allocations, tpa.getSimpleTrainPathApplications(), removedSimpleTrainPathApplications);
+    }
+}
@@ -37,6 +37,10 @@ public class TrainPathApplication implements IPeriodical {
 
 
     public TrainPathApplication(String name, SystemNode from, SystemNode to, LocalTime startTime, LocalTime endTime, Periodicity periodicity, int hardMaximumEarlierDeparture, int hardMinimumDwellTime, int hardMaximumLaterArrival) {
+        this(name, from, to, startTime, endTime, periodicity, hardMaximumEarlierDeparture, hardMinimumDwellTime, hardMaximumLaterArrival, false, false);
+    }
+
+    public TrainPathApplication(String name, SystemNode from, SystemNode to, LocalTime startTime, LocalTime endTime, Periodicity periodicity, int hardMaximumEarlierDeparture, int hardMinimumDwellTime, int hardMaximumLaterArrival, boolean reachabilityPruning, boolean sanityCheck) {
         this.name = name;
         this.periodicity = periodicity;
         this.from = from;
@@ -49,7 +53,7 @@ public class TrainPathApplication implements IPeriodical {
             if (end.isBefore(start)) {
                 end = new PeriodicalTimeFrame(PeriodicalTimeFrame.nextDayOfWeek(day), endTime.getHourOfDay(), endTime.getMinuteOfHour());
             }
-            SimpleTrainPathApplication r = new SimpleTrainPathApplication(name + "_" + day, from, to, start, end, this, hardMaximumEarlierDeparture, hardMinimumDwellTime, hardMaximumLaterArrival);
+            SimpleTrainPathApplication r = new SimpleTrainPathApplication(name + "_" + day, from, to, start, end, this, hardMaximumEarlierDeparture, hardMinimumDwellTime, hardMaximumLaterArrival, reachabilityPruning, sanityCheck);
             simpleTrainPathApplications[day] = r;
         }
     }
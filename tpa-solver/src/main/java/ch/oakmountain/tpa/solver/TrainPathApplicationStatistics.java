@@ -17,7 +17,6 @@
 package ch.oakmountain.tpa.solver;
 
 import ch.oakmountain.tpa.web.TablePersistor;
-import org.codehaus.plexus.util.dag.Vertex;
 import org.joda.time.Duration;
 
 import java.io.File;
@@ -89,15 +88,13 @@ class TrainPathApplicationStatistics {
     }
 
     List<String> compileAndGetTrainPathApplicationListRow() throws IOException {
-        HashMap<TrainPathSlot, Vertex> slotVertexHashMap = new HashMap<>();
         HashMap<SystemNode, Set<TrainPathSlot>> systemNodeTrainPathSlotHashMap = new HashMap<>();
         HashMap<SystemNode, Set<Pair<TrainPathSlot, TrainPathSlot>>> connectionsThroughSystemNode = new HashMap<>();
-        for (Vertex vertex : dag.getVerticies()) {
-            if (vertex.isLeaf() || vertex.isRoot()) {
+        for (int vertex = 0; vertex < dag.getNbVertices(); vertex++) {
+            if (dag.isLeaf(vertex) || dag.isRoot(vertex)) {
                 continue;
             }
-            TrainPathSlot trainPathSlot = dag.getSlotFromVertex(vertex.getLabel());
-            slotVertexHashMap.put(trainPathSlot, vertex);
+            TrainPathSlot trainPathSlot = dag.getSlot(vertex);
             SystemNode from = trainPathSlot.getFrom();
             SystemNode to = trainPathSlot.getTo();
             initSystemNodeInMaps(systemNodeTrainPathSlotHashMap, connectionsThroughSystemNode, to);
@@ -105,11 +102,8 @@ class TrainPathApplicationStatistics {
             systemNodeTrainPathSlotHashMap.get(from).add(trainPathSlot);
 
 
-            for (Vertex child : vertex.getChildren()) {
-                if (vertex.isLeaf() || vertex.isRoot()) {
-                    continue;
-                }
-                TrainPathSlot childSlot = dag.getSlotFromVertex(child.getLabel());
+            for (int edge = dag.getChildEdgesBegin(vertex); edge < dag.getChildEdgesEnd(vertex); edge++) {
+                TrainPathSlot childSlot = dag.getSlot(dag.getEdgeTarget(edge));
                 Pair<TrainPathSlot, TrainPathSlot> connection = new Pair<TrainPathSlot, TrainPathSlot>(trainPathSlot, childSlot);
 
                 connectionsThroughSystemNode.get(to).add(connection);
@@ -150,17 +144,17 @@ class TrainPathApplicationStatistics {
 
             String timeWindow;
             if (systemNode.equals(simpleTrainPathApplication.getFrom())) {
-                timeWindow = "[" + simpleTrainPathApplication.getParams().getDepartureLowerBound().toString() + "," + simpleTrainPathApplication.getParams().getDepartureUpperBound().toString() + "]";
+                timeWindow = "[" + dag.getParams().getDepartureLowerBound().toString() + "," + dag.getParams().getDepartureUpperBound().toString() + "]";
             } else if (systemNode.equals(simpleTrainPathApplication.getTo())) {
-                timeWindow = "[" + simpleTrainPathApplication.getParams().getArrivalLowerBound().toString() + "," + simpleTrainPathApplication.getParams().getArrivalUpperBound().toString() + "]";
+                timeWindow = "[" + dag.getParams().getArrivalLowerBound().toString() + "," + dag.getParams().getArrivalUpperBound().toString() + "]";
             } else {
-                timeWindow = "[arr+ " + PeriodicalTimeFrame.formatDuration(simpleTrainPathApplication.getParams().getMINIMUM_DWELL_TIME()) + ", arr+" + PeriodicalTimeFrame.formatDuration(simpleTrainPathApplication.getParams().getHARD_MINIMUM_DWELL_TIME().plus(simpleTrainPathApplication.getParams().getMAXIMUM_ADDITIONAL_DWELL_TIME(systemNode))) + "]";
+                timeWindow = "[arr+ " + PeriodicalTimeFrame.formatDuration(dag.getParams().getMINIMUM_DWELL_TIME()) + ", arr+" + PeriodicalTimeFrame.formatDuration(simpleTrainPathApplication.getParams().getHARD_MINIMUM_DWELL_TIME().plus(dag.getParams().getMAXIMUM_ADDITIONAL_DWELL_TIME(systemNode))) + "]";
             }
             table.writeRow(Arrays.asList(
                     systemNode.getName(),
                     String.valueOf(nbSuccSlots),
                     timeWindow,
-                    "[" + PeriodicalTimeFrame.formatDuration(simpleTrainPathApplication.getParams().getMINIMUM_DWELL_TIME()) + "," + PeriodicalTimeFrame.formatDuration(simpleTrainPathApplication.getParams().getMAXIMUM_ADDITIONAL_DWELL_TIME(systemNode)) + "]",
+                    "[" + PeriodicalTimeFrame.formatDuration(dag.getParams().getMINIMUM_DWELL_TIME()) + "," + PeriodicalTimeFrame.formatDuration(dag.getParams().getMAXIMUM_ADDITIONAL_DWELL_TIME(systemNode)) + "]",
                     "Min/max/average slots",
                     dwellStats
             ));
@@ -175,7 +169,7 @@ class TrainPathApplicationStatistics {
                 PeriodicalTimeFrame.formatDuration(simpleTrainPathApplication.getParams().getHARD_MAXIMUM_EARLIER_DEPARTURE()),
                 PeriodicalTimeFrame.formatDuration(simpleTrainPathApplication.getParams().getHARD_MAXIMUM_LATER_ARRIVAL()),
                 PeriodicalTimeFrame.formatDuration(simpleTrainPathApplication.getParams().getHARD_MINIMUM_DWELL_TIME()),
-                String.valueOf(dag.nbPaths()),
+                String.valueOf(dag.nbPathsExact()),
                 String.valueOf(dag.getCyclomaticComplexity())
         );
 
@@ -19,76 +19,235 @@ package ch.oakmountain.tpa.solver;
 import ch.oakmountain.tpa.web.GraphCSV;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.codehaus.plexus.util.dag.CycleDetectedException;
-import org.codehaus.plexus.util.dag.DAG;
-import org.codehaus.plexus.util.dag.Vertex;
 import org.joda.time.Duration;
 
 import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigInteger;
 import java.util.*;
-import java.util.regex.Pattern;
 
 /**
  * Represents a train path DAG for a train path application.
  * <p/>
- *
+ * Vertices are dense <code>int</code>s: 0 and 1 are the dummy request start and end nodes, all other vertices carry a train path slot.
+ * Arcs are stored as primitive source/target arrays in compressed sparse row order, i.e. the arcs leaving vertex <code>v</code> are
+ * the edge ids in [{@link #getChildEdgesBegin(int)}, {@link #getChildEdgesEnd(int)}). Arcs are only ever added from a slot to a later
+ * slot, so no cycle detection is done on insertion; the topological order is derived once when the adjacency is frozen.
  */
-public class TrainPathDAG extends DAG {
+public class TrainPathDAG implements Serializable {
 
     private static final Logger LOGGER = LogManager.getLogger();
 
+    private static final int REQUEST_START_NODE = 0;
+    private static final int REQUEST_END_NODE = 1;
+    private static final int INITIAL_CAPACITY = 64;
 
-    private final Vertex requestStartNode;
-    private final Vertex requestEndNode;
     private Map<Infeasible, Set<TrainPathSlot>> infeasibilityMap = new HashMap<>(Infeasible.values().length);
-    private HashSet<Pair<String, String>> removedEdges = new HashSet();
-    private HashMap<Vertex, String> groupMap = new HashMap<>();
     private SimpleTrainPathApplication simpleTrainPathApplication;
+    private TrainPathAllocationProblemPruningParameters params;
     private TrainPathSlotCatalogue catalogue;
     private Map<Infeasible, Duration> minDurationMap = new HashMap<>();
 
+    // Vertices
+    private TrainPathSlot[] vertexSlots = new TrainPathSlot[INITIAL_CAPACITY];
+    private int nbVertices = 2;
+    private int[] vertexBySlotId;
+
+    // Arcs, sorted by source once frozen
+    private int[] edgeSources = new int[INITIAL_CAPACITY];
+    private int[] edgeTargets = new int[INITIAL_CAPACITY];
+    private int nbEdges = 0;
+    private int[] childOffsets;
+    private int[] parentOffsets;
+    private int[] parentEdges;
+    private int[] topologicalOrder;
+    private boolean frozen = false;
+    private long[] pathsFrom;
+    private long[] pathsTo;
+
+    // Arcs removed by backtracking
+    private int[] removedEdgeSources = new int[0];
+    private int[] removedEdgeTargets = new int[0];
+
+    // Reachability pruning during construction, null if off
+    private TrainPathDAGReachabilityBounds reachabilityBounds;
+    private BitSet prunedSlotIds = new BitSet();
+    private int nbPrunedEdges = 0;
+
     TrainPathDAG(SimpleTrainPathApplication simpleTrainPathApplication, TrainPathSlotCatalogue catalogue) {
+        this(simpleTrainPathApplication, simpleTrainPathApplication.getParams(), catalogue);
+    }
+
+    TrainPathDAG(SimpleTrainPathApplication simpleTrainPathApplication, TrainPathAllocationProblemPruningParameters params, TrainPathSlotCatalogue catalogue) {
         this.simpleTrainPathApplication = simpleTrainPathApplication;
+        this.params = params;
         this.catalogue = catalogue;
-        requestStartNode = addVertex(simpleTrainPathApplication.getName() + "_start", simpleTrainPathApplication.getName() + "_start");
-        requestEndNode = addVertex(simpleTrainPathApplication.getName() + "_end", simpleTrainPathApplication.getName() + "_end");
+        vertexBySlotId = new int[catalogue.getNbSlots()];
+        Arrays.fill(vertexBySlotId, -1);
         for (Infeasible infeasibleItem : Infeasible.values()) {
             minDurationMap.put(infeasibleItem, null);
             infeasibilityMap.put(infeasibleItem, new HashSet<TrainPathSlot>());
         }
     }
 
+    private TrainPathDAG(TrainPathDAG graph, SimpleTrainPathApplication simpleTrainPathApplication, TrainPathAllocationProblemPruningParameters params) {
+        this.simpleTrainPathApplication = simpleTrainPathApplication;
+        this.params = params;
+        this.catalogue = graph.catalogue;
+        infeasibilityMap = graph.infeasibilityMap;
+        minDurationMap = graph.minDurationMap;
+        vertexSlots = graph.vertexSlots;
+        nbVertices = graph.nbVertices;
+        vertexBySlotId = graph.vertexBySlotId;
+        edgeSources = graph.edgeSources;
+        edgeTargets = graph.edgeTargets;
+        nbEdges = graph.nbEdges;
+        childOffsets = graph.childOffsets;
+        parentOffsets = graph.parentOffsets;
+        parentEdges = graph.parentEdges;
+        topologicalOrder = graph.topologicalOrder;
+        frozen = graph.frozen;
+        pathsFrom = graph.pathsFrom;
+        pathsTo = graph.pathsTo;
+        removedEdgeSources = graph.removedEdgeSources;
+        removedEdgeTargets = graph.removedEdgeTargets;
+        reachabilityBounds = graph.reachabilityBounds;
+        prunedSlotIds = graph.prunedSlotIds;
+        nbPrunedEdges = graph.nbPrunedEdges;
+    }
+
+    /**
+     * Returns a view of this DAG for another application with equal pruning parameters.
+     * <p/>
+     * The view shares the (frozen) graph with this DAG; neither must be modified afterwards.
+     *
+     * @param simpleTrainPathApplication
+     * @param params
+     * @return
+     */
+    TrainPathDAG viewFor(SimpleTrainPathApplication simpleTrainPathApplication, TrainPathAllocationProblemPruningParameters params) {
+        if (!this.params.equals(params)) {
+            throw new IllegalArgumentException("Pruning parameters of " + simpleTrainPathApplication.getName() + " differ from the ones of the DAG for " + this.simpleTrainPathApplication.getName());
+        }
+        ensureFrozen();
+        return new TrainPathDAG(this, simpleTrainPathApplication, params);
+    }
+
     /**
-     * Construct the Train Path DAG for the application with the current pruning parameters.
+     * Construct the Train Path DAG for the application with its initial pruning parameters.
      *
      * @param macro
      * @param simpleTrainPathApplication
      * @param catalogue
      * @return
-     * @throws CycleDetectedException
      */
-    public static TrainPathDAG constructDAG(MacroscopicTopology macro, SimpleTrainPathApplication simpleTrainPathApplication, TrainPathSlotCatalogue catalogue) throws CycleDetectedException {
-        TrainPathDAG dag = new TrainPathDAG(simpleTrainPathApplication, catalogue);
+    public static TrainPathDAG constructDAG(MacroscopicTopology macro, SimpleTrainPathApplication simpleTrainPathApplication, TrainPathSlotCatalogue catalogue) {
+        return constructDAG(macro, simpleTrainPathApplication, simpleTrainPathApplication.getParams(), catalogue);
+    }
 
-        // Determine vertices at source node
-        Set<Vertex> initialVerticesToCheck = new HashSet<>();
-        for (SystemNode nextNode : macro.getSuccessors(simpleTrainPathApplication.getFrom(), simpleTrainPathApplication.getFrom(), simpleTrainPathApplication.getTo())) {
-            PeriodicalTimeFrame earlierDepartureLowerBound = simpleTrainPathApplication.getParams().getDepartureLowerBound();
-            PeriodicalTimeFrame laterDepartureUpperBound = simpleTrainPathApplication.getParams().getDepartureUpperBound();
-            List<TrainPathSlot> newSlots = catalogue.getSortedTrainPathSlots(simpleTrainPathApplication.getFrom(), nextNode,
-                    earlierDepartureLowerBound, laterDepartureUpperBound);
-            for (TrainPathSlot newSlot : newSlots.subList(0, Math.min(newSlots.size(), TrainPathAllocationProblemPruningParameters.getMAX_OUTGOINGCONNECTIONS_PER_SLOT()))) {
-                Vertex v = dag.addVertex(newSlot.getName(), newSlot.getPeriodicalTrainPathSlot().getTrainPathSectionName());
-                initialVerticesToCheck.add(v);
-                dag.addEdge(dag.getRequestStartNode().getLabel(), v.getLabel());
-            }
+    /**
+     * Construct the Train Path DAG for the application with the given pruning parameters.
+     *
+     * @param macro
+     * @param simpleTrainPathApplication
+     * @param params
+     * @param catalogue
+     * @return
+     */
+    public static TrainPathDAG constructDAG(MacroscopicTopology macro, SimpleTrainPathApplication simpleTrainPathApplication, TrainPathAllocationProblemPruningParameters params, TrainPathSlotCatalogue catalogue) {
+        TrainPathDAG dag = new TrainPathDAG(simpleTrainPathApplication, params, catalogue);
+        if (params.isReachabilityPruning()) {
+            dag.reachabilityBounds = TrainPathDAGReachabilityBounds.compute(macro, catalogue, simpleTrainPathApplication, params);
         }
-        dag = dag.constructIter(macro, simpleTrainPathApplication, initialVerticesToCheck, catalogue, new HashSet<Vertex>());
+
+        // Determine vertices at source node
+        VertexFrontier frontier = new VertexFrontier();
+        dag.addStartVertices(macro, frontier);
+        dag.constructIter(macro, frontier);
         dag.backtrackingIter();
+        dag.logPruning();
 
         return dag;
     }
 
+    /**
+     * Returns the DAG for relaxed pruning parameters, widening this DAG instead of constructing it from scratch.
+     * <p/>
+     * The exploration of this DAG, including the arcs removed by backtracking, is taken over. Only the start node (if the departure window is wider),
+     * slots at system nodes with a longer maximum additional dwell time and slots arriving at the terminal node are explored again,
+     * as well as the slots newly reached from them. Backtracking is then redone on the widened graph, so the result has the same slots
+     * and arcs as the DAG constructed from scratch with the relaxed parameters. This DAG is left untouched.
+     *
+     * @param macro
+     * @param relaxedParams
+     * @return
+     * @throws IllegalArgumentException if the parameters are not a relaxation of this DAG's parameters
+     * @see TrainPathAllocationProblemPruningParameters#isRelaxationOf(TrainPathAllocationProblemPruningParameters)
+     */
+    public TrainPathDAG widen(MacroscopicTopology macro, TrainPathAllocationProblemPruningParameters relaxedParams) {
+        if (!relaxedParams.isRelaxationOf(params)) {
+            throw new IllegalArgumentException("Pruning parameters for " + simpleTrainPathApplication.getName() + " are not a relaxation of the DAG's pruning parameters");
+        }
+        if (reachabilityBounds != null && relaxedParams.getArrivalUpperBoundMillis() != params.getArrivalUpperBoundMillis()) {
+            // slots pruned so far might reach the target within the later arrival upper bound
+            return constructDAG(macro, simpleTrainPathApplication, relaxedParams, catalogue);
+        }
+        TrainPathDAG widened = new TrainPathDAG(simpleTrainPathApplication, relaxedParams, catalogue);
+        widened.reachabilityBounds = reachabilityBounds;
+
+        // Vertices keep their numbers; the ones whose outcome does not depend on the relaxed windows stay processed
+        boolean[] explore = new boolean[nbVertices];
+        explore[REQUEST_START_NODE] = relaxedParams.getDepartureLowerBoundMillis() != params.getDepartureLowerBoundMillis()
+                || relaxedParams.getDepartureUpperBoundMillis() != params.getDepartureUpperBoundMillis();
+        VertexFrontier frontier = new VertexFrontier();
+        int nbExplored = 0;
+        for (int v = REQUEST_END_NODE + 1; v < nbVertices; v++) {
+            TrainPathSlot slot = vertexSlots[v];
+            widened.addVertex(slot);
+            SystemNode weAreAt = slot.getTo();
+            if (weAreAt.equals(simpleTrainPathApplication.getTo())) {
+                explore[v] = true;
+            } else if (params.isWithinHardBounds(slot.getEndMillisOfWeek())) {
+                explore[v] = relaxedParams.getMaximumAdditionalDwellTimeMillis(weAreAt) != params.getMaximumAdditionalDwellTimeMillis(weAreAt);
+            }
+            if (explore[v]) {
+                frontier.add(v, slot.getId());
+                nbExplored++;
+            } else {
+                frontier.markProcessed(slot.getId());
+            }
+        }
+        for (int e = 0; e < nbEdges; e++) {
+            if (!explore[edgeSources[e]]) {
+                widened.addEdge(edgeSources[e], edgeTargets[e]);
+            }
+        }
+        for (int i = 0; i < removedEdgeSources.length; i++) {
+            if (!explore[removedEdgeSources[i]]) {
+                widened.addEdge(removedEdgeSources[i], removedEdgeTargets[i]);
+            }
+        }
+        for (Infeasible infeasible : Infeasible.values()) {
+            if (infeasible == Infeasible.BACKTRACKING) {
+                continue;
+            }
+            for (TrainPathSlot slot : infeasibilityMap.get(infeasible)) {
+                if (!explore[getVertex(slot)]) {
+                    widened.markSlotInfeasible(slot, infeasible);
+                }
+            }
+        }
+
+        if (explore[REQUEST_START_NODE]) {
+            widened.addStartVertices(macro, frontier);
+        }
+        widened.constructIter(macro, frontier);
+        widened.backtrackingIter();
+        widened.logPruning();
+        LOGGER.debug("Widened DAG of " + simpleTrainPathApplication.getName() + " from " + nbVertices + " to " + widened.nbVertices + " vertices, exploring " + nbExplored + " vertices again");
+        return widened;
+    }
+
     /**
      * Returns the number of all slots the set of solution candidates.
      *
@@ -134,147 +293,157 @@ public class TrainPathDAG extends DAG {
         return edges.size() - vertices.size() + 2;
     }
 
-    /**
-     * Expands the DAG such that expanded DAG complies with the standard multicommodity flow formulation where unit capacity constraints are associated with the arcs.
-     *
-     * @return
-     * @throws CycleDetectedException
-     */
-    @Deprecated
-    public TrainPathDAG expandDag() throws CycleDetectedException {
-        TrainPathDAG dag = this;
-
-        TrainPathDAG expandedDag = new TrainPathDAG(dag.simpleTrainPathApplication, dag.catalogue);
-        for (Vertex vertex : dag.getVerticies()) {
-            if (vertex.isRoot() || vertex.isLeaf()) {
-                continue;
-            }
-            String from = vertex.getLabel() + "_in";
-            String trainPathSectionName = catalogue.getSlot(vertex.getLabel()).getPeriodicalTrainPathSlot().getTrainPathSectionName();
-            expandedDag.addVertex(from, trainPathSectionName);
-            String to = vertex.getLabel() + "_out";
-            expandedDag.addVertex(to, trainPathSectionName);
-            expandedDag.addEdge(from, to);
-            if (vertex.getParents().size() <= 0 || vertex.getChildren().size() <= 0) {
-                throw new IllegalStateException("Interior node " + vertex.getLabel() + " has either no parent or no children");
-            }
-        }
-        for (Vertex vertex : dag.getVerticies()) {
-            String from = vertex.getLabel() + "_out";
-            if (vertex.isRoot()) {
-                from = expandedDag.getRequestStartNode().getLabel();
-            }
-            for (Vertex child : vertex.getChildren()) {
-                String to = child.getLabel() + "_in";
-                if (child.isLeaf()) {
-                    to = expandedDag.getRequestEndNode().getLabel();
-                }
-                expandedDag.addEdge(from, to);
-            }
-        }
-        return expandedDag;
+    public TrainPathSlotCatalogue getCatalogue() {
+        return catalogue;
     }
 
     public SimpleTrainPathApplication getSimpleTrainPathApplication() {
         return simpleTrainPathApplication;
     }
 
-    public Vertex getRequestEndNode() {
-        return requestEndNode;
+    public TrainPathAllocationProblemPruningParameters getParams() {
+        return params;
     }
 
-    public Vertex getRequestStartNode() {
-        return requestStartNode;
+    public int getRequestEndNode() {
+        return REQUEST_END_NODE;
     }
 
-    private void backtrackingIter() throws CycleDetectedException {
-        for (Infeasible infeasible : infeasibilityMap.keySet()) {
-            for (TrainPathSlot trainPathSlot : infeasibilityMap.get(infeasible)) {
-                Vertex v = getVertex(trainPathSlot.getName());
-                backtrackOnVertex(v, infeasible);
-            }
-        }
+    public int getRequestStartNode() {
+        return REQUEST_START_NODE;
     }
 
-    private void backtrackOnVertex(Vertex vertexNotReached, Infeasible infeasible) {
-        //LOGGER.debug("Request " + request.getName() + " backtrackOnVertex at " + vertexNotReached.getLabel());
-        if (vertexNotReached.getChildren().size() == 0 && vertexNotReached.getParents().size() > 0) {
-            infeasibilityMap.get(infeasible).add(catalogue.getSlot(vertexNotReached.getLabel()));
-
-            for (String parentLabel : vertexNotReached.getParentLabels()) {
-                Vertex parent = getVertex(parentLabel);
-
-                removedEdges.add(new Pair(parent.getLabel(), vertexNotReached.getLabel()));
-                removeEdge(parent, vertexNotReached);
+    /****************************************************
+     * DAG CONSTRUCTION
+     ****************************************************/
 
-                // Don't do recursion to root node
-                if (getRequestStartNode().equals(parent)) {
+    private void addStartVertices(MacroscopicTopology macro, VertexFrontier frontier) {
+        for (SystemNode nextNode : macro.getSuccessors(simpleTrainPathApplication.getFrom(), simpleTrainPathApplication.getFrom(), simpleTrainPathApplication.getTo())) {
+            int earlierDepartureLowerBound = params.getDepartureLowerBoundMillis();
+            int laterDepartureUpperBound = params.getDepartureUpperBoundMillis();
+            List<TrainPathSlot> newSlots = catalogue.getSortedTrainPathSlots(simpleTrainPathApplication.getFrom(), nextNode,
+                    earlierDepartureLowerBound, laterDepartureUpperBound);
+            for (TrainPathSlot newSlot : newSlots.subList(0, Math.min(newSlots.size(), TrainPathAllocationProblemPruningParameters.getMAX_OUTGOINGCONNECTIONS_PER_SLOT()))) {
+                if (isPruned(newSlot)) {
                     continue;
                 }
+                int v = addVertex(newSlot);
+                frontier.add(v, newSlot.getId());
+                addEdge(REQUEST_START_NODE, v);
+            }
+        }
+    }
 
-                TrainPathSlot parentSlot = catalogue.getSlot(parent.getLabel());
-                if (parentSlot == null) {
-                    throw new IllegalStateException("Cannot find slot for vertex " + vertexNotReached.getLabel());
+    private void backtrackingIter() {
+        ensureFrozen();
+        boolean[] removed = new boolean[nbEdges];
+        int[] nbLiveChildren = new int[nbVertices];
+        int[] nbLiveParents = new int[nbVertices];
+        for (int v = 0; v < nbVertices; v++) {
+            nbLiveChildren[v] = childOffsets[v + 1] - childOffsets[v];
+            nbLiveParents[v] = parentOffsets[v + 1] - parentOffsets[v];
+        }
+        // besides the vertex backtracking starts from, a vertex is pushed once per arc removed, so the number of arcs bounds the worklist
+        int[] worklist = new int[nbEdges + 1];
+        for (Infeasible infeasible : infeasibilityMap.keySet()) {
+            for (TrainPathSlot trainPathSlot : new ArrayList<>(infeasibilityMap.get(infeasible))) {
+                int v = getVertex(trainPathSlot);
+                if (v >= 0) {
+                    backtrackOnVertex(v, infeasible, removed, nbLiveChildren, nbLiveParents, worklist);
                 }
-
-                // backtracking
-                backtrackOnVertex(parent, Infeasible.BACKTRACKING);
             }
         }
+        removeEdges(removed);
     }
 
-    private TrainPathDAG constructIter(MacroscopicTopology macro, SimpleTrainPathApplication
-            simpleTrainPathApplication, Set<Vertex> verticesToCheck, TrainPathSlotCatalogue catalogue, Set<Vertex> processedVertices) throws CycleDetectedException {
-
-        if (verticesToCheck.size() == 0) {
-            return this;
+    /**
+     * Removes the arcs to the vertex if it has no live children left, and so on for its parents, with an explicit worklist instead of recursion.
+     *
+     * @param vertexNotReached
+     * @param infeasible       reason of the vertex itself, its parents are marked {@link Infeasible#BACKTRACKING}
+     * @param removed
+     * @param nbLiveChildren
+     * @param nbLiveParents
+     * @param worklist
+     */
+    private void backtrackOnVertex(int vertexNotReached, Infeasible infeasible, boolean[] removed, int[] nbLiveChildren, int[] nbLiveParents, int[] worklist) {
+        int size = 0;
+        worklist[size++] = vertexNotReached;
+        Infeasible reason = infeasible;
+        while (size > 0) {
+            int vertex = worklist[--size];
+            if (nbLiveChildren[vertex] == 0 && nbLiveParents[vertex] > 0) {
+                infeasibilityMap.get(reason).add(vertexSlots[vertex]);
+
+                for (int i = parentOffsets[vertex]; i < parentOffsets[vertex + 1]; i++) {
+                    int edge = parentEdges[i];
+                    if (removed[edge]) {
+                        continue;
+                    }
+                    int parent = edgeSources[edge];
+                    removed[edge] = true;
+                    nbLiveChildren[parent]--;
+                    nbLiveParents[vertex]--;
+
+                    // Don't backtrack to root node
+                    if (parent != REQUEST_START_NODE) {
+                        worklist[size++] = parent;
+                    }
+                }
+            }
+            reason = Infeasible.BACKTRACKING;
         }
+    }
 
+    /**
+     * Expands the DAG breadth-first, layer by layer, until the frontier is empty.
+     *
+     * @param macro
+     * @param frontier
+     */
+    private void constructIter(MacroscopicTopology macro, VertexFrontier frontier) {
+        int arrivalLowerBound = params.getArrivalLowerBoundMillis();
+        int arrivalUppderBound = params.getArrivalUpperBoundMillis();
+        int departureLowerBound = params.getDepartureLowerBoundMillis();
 
-        PeriodicalTimeFrame arrivalLowerBound = simpleTrainPathApplication.getParams().getArrivalLowerBound();
-        PeriodicalTimeFrame arrivalUppderBound = simpleTrainPathApplication.getParams().getArrivalUpperBound();
-
-        Set<Vertex> nextVerticesToCheck = new HashSet<>();
-        for (Vertex leaf : verticesToCheck) {
-            TrainPathSlot currentLastTrainPathSlot = catalogue.getSlot(leaf.getLabel());
-
-            // Is the vertex already part of the DAG?
-            if (processedVertices.contains(leaf)) {
-                continue;
-            }
+        while (frontier.nextLayer()) {
+            for (int i = 0; i < frontier.currentSize; i++) {
+                int leaf = frontier.current[i];
+                TrainPathSlot currentLastTrainPathSlot = vertexSlots[leaf];
 
-            // At terminal node?
-            if (currentLastTrainPathSlot.getTo().equals(simpleTrainPathApplication.getTo())) {
+                // At terminal node?
+                if (currentLastTrainPathSlot.getTo().equals(simpleTrainPathApplication.getTo())) {
 
-                if (currentLastTrainPathSlot.getEndTime().isWithinBounds(arrivalLowerBound, arrivalUppderBound)) {
-                    addEdge(currentLastTrainPathSlot.getName(), getRequestEndNode().getLabel());
-                } else {
-                    if (currentLastTrainPathSlot.getEndTime().isWithinBounds(simpleTrainPathApplication.getParams().getDepartureLowerBound(), arrivalLowerBound)) {
-                        markSlotInfeasible(currentLastTrainPathSlot, Infeasible.UNDERDUE);
+                    if (MillisOfWeek.isWithinBounds(currentLastTrainPathSlot.getEndMillisOfWeek(), arrivalLowerBound, arrivalUppderBound)) {
+                        addEdge(leaf, getRequestEndNode());
                     } else {
-                        markSlotInfeasible(currentLastTrainPathSlot, Infeasible.OVERDUE);
+                        if (MillisOfWeek.isWithinBounds(currentLastTrainPathSlot.getEndMillisOfWeek(), departureLowerBound, arrivalLowerBound)) {
+                            markSlotInfeasible(currentLastTrainPathSlot, Infeasible.UNDERDUE);
+                        } else {
+                            markSlotInfeasible(currentLastTrainPathSlot, Infeasible.OVERDUE);
+                        }
                     }
                 }
+                // Overdue at non-terminal node?
+                else if (!params.isWithinHardBounds(currentLastTrainPathSlot.getEndMillisOfWeek())) {
+                    markSlotInfeasible(currentLastTrainPathSlot, Infeasible.OVERDUE);
+                }
+                // Next layer
+                else {
+                    addSlotSuccessorsToNextVerticesToCheck(macro, frontier, leaf);
+                }
             }
-            // Overdue at non-terminal node?
-            else if (!simpleTrainPathApplication.getParams().isWithinHardBounds(currentLastTrainPathSlot.getEndTime())) {
-                markSlotInfeasible(currentLastTrainPathSlot, Infeasible.OVERDUE);
-            }
-            // Recursive search
-            else {
-                addSlotSuccessorsToNextVerticesToCheck(macro, simpleTrainPathApplication, catalogue, nextVerticesToCheck, currentLastTrainPathSlot);
-            }
-            // Vertex is processed
-            processedVertices.add(leaf);
         }
-        return constructIter(macro, simpleTrainPathApplication, nextVerticesToCheck, catalogue, processedVertices);
     }
 
-    private void addSlotSuccessorsToNextVerticesToCheck(MacroscopicTopology macro, SimpleTrainPathApplication simpleTrainPathApplication, TrainPathSlotCatalogue catalogue, Set<Vertex> nextVerticesToCheck, TrainPathSlot currentLastTrainPathSlot) throws CycleDetectedException {
+    private void addSlotSuccessorsToNextVerticesToCheck(MacroscopicTopology macro, VertexFrontier nextVerticesToCheck, int currentLastVertex) {
+        TrainPathSlot currentLastTrainPathSlot = vertexSlots[currentLastVertex];
+        SystemNode weAreAt = currentLastTrainPathSlot.getTo();
+        int lowerInclusiveBoundNewSlot = MillisOfWeek.plus(currentLastTrainPathSlot.getEndMillisOfWeek(), params.getMinimumDwellTimeMillis());
+        int upperInclusiveBoundNewSlot = MillisOfWeek.plus(lowerInclusiveBoundNewSlot, params.getMaximumAdditionalDwellTimeMillis(weAreAt));
+        boolean successorsPruned = false;
+        boolean successorsAdded = false;
         for (SystemNode nextSystemNodeCandidate : macro.getSuccessors(currentLastTrainPathSlot.getTo(), simpleTrainPathApplication.getFrom(), simpleTrainPathApplication.getTo())) {
-            PeriodicalTimeFrame lowerInclusiveBoundNewSlot = currentLastTrainPathSlot.getEndTime().plus(simpleTrainPathApplication.getParams().getMINIMUM_DWELL_TIME());
-            SystemNode weAreAt = currentLastTrainPathSlot.getTo();
-            PeriodicalTimeFrame upperInclusiveBoundNewSlot = currentLastTrainPathSlot.getEndTime().plus(simpleTrainPathApplication.getParams().getMINIMUM_DWELL_TIME()).plus(simpleTrainPathApplication.getParams().getMAXIMUM_ADDITIONAL_DWELL_TIME(weAreAt));
             List<TrainPathSlot> nextSlotCandidates = catalogue.getSortedTrainPathSlots(currentLastTrainPathSlot.getTo(), nextSystemNodeCandidate, lowerInclusiveBoundNewSlot, upperInclusiveBoundNewSlot);
 
             // No Successors
@@ -292,28 +461,389 @@ public class TrainPathDAG extends DAG {
                     LOGGER.debug("Request " + simpleTrainPathApplication.getName() + ": Due to MAX_OUTGOINGCONNECTIONS_PER_SLOT=" + TrainPathAllocationProblemPruningParameters.getMAX_OUTGOINGCONNECTIONS_PER_SLOT() + ", not considerung " + (nextSlotCandidates.size() - TrainPathAllocationProblemPruningParameters.getMAX_OUTGOINGCONNECTIONS_PER_SLOT()) + " of " + nextSlotCandidates.size() + " outgoing connections at slot " + currentLastTrainPathSlot.getName());
                 }
                 for (TrainPathSlot nextSlotCandidate : nextSlotCandidates.subList(0, Math.min(nextSlotCandidates.size(), TrainPathAllocationProblemPruningParameters.getMAX_OUTGOINGCONNECTIONS_PER_SLOT()))) {
-                    Vertex toVertex = addVertex(nextSlotCandidate.getName(), nextSlotCandidate.getPeriodicalTrainPathSlot().getTrainPathSectionName());
-                    addEdge(currentLastTrainPathSlot.getName(), nextSlotCandidate.getName());
-                    if (!nextVerticesToCheck.contains(toVertex)) {
-                        nextVerticesToCheck.add(toVertex);
+                    if (isPruned(nextSlotCandidate)) {
+                        successorsPruned = true;
+                        continue;
                     }
+                    int toVertex = addVertex(nextSlotCandidate);
+                    addEdge(currentLastVertex, toVertex);
+                    nextVerticesToCheck.add(toVertex, nextSlotCandidate.getId());
+                    successorsAdded = true;
                 }
             }
         }
+        // dead end because of pruning: let backtracking remove it
+        if (successorsPruned && !successorsAdded) {
+            markSlotInfeasible(currentLastTrainPathSlot, Infeasible.PRUNED);
+        }
     }
 
-    public Vertex addVertex(final String label, final String group) {
-        Vertex v = addVertex(label);
-        groupMap.put(v, group);
+    /**
+     * Returns whether the slot cannot reach the terminal node in time, counting it as avoided.
+     *
+     * @param slot
+     * @return
+     */
+    private boolean isPruned(TrainPathSlot slot) {
+        if (reachabilityBounds == null || reachabilityBounds.canReachTarget(slot)) {
+            return false;
+        }
+        prunedSlotIds.set(slot.getId());
+        nbPrunedEdges++;
+        return true;
+    }
+
+    private void logPruning() {
+        if (reachabilityBounds != null && LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Reachability pruning of DAG for " + simpleTrainPathApplication.getName() + " avoided " + getNbPrunedVertices() + " vertices and " + getNbPrunedEdges() + " edges");
+        }
+    }
+
+    /**
+     * Returns the vertex of the slot, adding it if not yet in the DAG.
+     *
+     * @param slot
+     * @return
+     */
+    int addVertex(TrainPathSlot slot) {
+        int slotId = slot.getId();
+        if (slotId < 0) {
+            throw new IllegalArgumentException("Slot " + slot.getName() + " is not part of a catalogue");
+        }
+        if (slotId >= vertexBySlotId.length) {
+            int oldLength = vertexBySlotId.length;
+            vertexBySlotId = Arrays.copyOf(vertexBySlotId, Math.max(slotId + 1, 2 * oldLength));
+            Arrays.fill(vertexBySlotId, oldLength, vertexBySlotId.length, -1);
+        }
+        int v = vertexBySlotId[slotId];
+        if (v < 0) {
+            if (nbVertices == vertexSlots.length) {
+                vertexSlots = Arrays.copyOf(vertexSlots, 2 * nbVertices);
+            }
+            v = nbVertices++;
+            vertexSlots[v] = slot;
+            vertexBySlotId[slotId] = v;
+        }
         return v;
     }
 
+    /**
+     * Adds an arc. The caller guarantees that the arc is new and goes forward in time.
+     *
+     * @param from
+     * @param to
+     */
+    void addEdge(int from, int to) {
+        if (nbEdges == edgeSources.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, 2 * nbEdges);
+            edgeSources = Arrays.copyOf(edgeSources, capacity);
+            edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+        }
+        edgeSources[nbEdges] = from;
+        edgeTargets[nbEdges] = to;
+        nbEdges++;
+        frozen = false;
+    }
+
+    private void ensureFrozen() {
+        if (!frozen) {
+            freeze();
+        }
+    }
+
+    /**
+     * Sorts the arcs by source (stable, so children keep their insertion order), builds the child and parent offsets and counts the paths.
+     * <p/>
+     * Everything is computed here rather than on first use, so that a frozen DAG is only read when shared between threads.
+     */
+    private void freeze() {
+        childOffsets = new int[nbVertices + 1];
+        for (int e = 0; e < nbEdges; e++) {
+            childOffsets[edgeSources[e] + 1]++;
+        }
+        for (int v = 0; v < nbVertices; v++) {
+            childOffsets[v + 1] += childOffsets[v];
+        }
+        int[] next = Arrays.copyOf(childOffsets, nbVertices);
+        int[] sources = new int[nbEdges];
+        int[] targets = new int[nbEdges];
+        for (int e = 0; e < nbEdges; e++) {
+            int position = next[edgeSources[e]]++;
+            sources[position] = edgeSources[e];
+            targets[position] = edgeTargets[e];
+        }
+        edgeSources = sources;
+        edgeTargets = targets;
+
+        parentOffsets = new int[nbVertices + 1];
+        for (int e = 0; e < nbEdges; e++) {
+            parentOffsets[edgeTargets[e] + 1]++;
+        }
+        for (int v = 0; v < nbVertices; v++) {
+            parentOffsets[v + 1] += parentOffsets[v];
+        }
+        next = Arrays.copyOf(parentOffsets, nbVertices);
+        parentEdges = new int[nbEdges];
+        for (int e = 0; e < nbEdges; e++) {
+            parentEdges[next[edgeTargets[e]]++] = e;
+        }
+
+        frozen = true;
+        topologicalOrder = computeTopologicalOrder();
+        countPaths();
+    }
+
+    private int[] computeTopologicalOrder() {
+        int[] nbUnorderedParents = new int[nbVertices];
+        for (int v = 0; v < nbVertices; v++) {
+            nbUnorderedParents[v] = getNbParents(v);
+        }
+        int[] order = new int[nbVertices];
+        int head = 0;
+        int tail = 0;
+        for (int v = 0; v < nbVertices; v++) {
+            if (nbUnorderedParents[v] == 0) {
+                order[tail++] = v;
+            }
+        }
+        while (head < tail) {
+            int v = order[head++];
+            for (int e = childOffsets[v]; e < childOffsets[v + 1]; e++) {
+                if (--nbUnorderedParents[edgeTargets[e]] == 0) {
+                    order[tail++] = edgeTargets[e];
+                }
+            }
+        }
+        if (tail < nbVertices) {
+            throw new IllegalStateException("Train path DAG of request " + simpleTrainPathApplication.getName() + " has a cycle");
+        }
+        return order;
+    }
+
+    private void removeEdges(boolean[] removed) {
+        int nbKept = 0;
+        int nbRemoved = removedEdgeSources.length;
+        removedEdgeSources = Arrays.copyOf(removedEdgeSources, nbRemoved + nbEdges);
+        removedEdgeTargets = Arrays.copyOf(removedEdgeTargets, nbRemoved + nbEdges);
+        for (int e = 0; e < nbEdges; e++) {
+            if (removed[e]) {
+                removedEdgeSources[nbRemoved] = edgeSources[e];
+                removedEdgeTargets[nbRemoved] = edgeTargets[e];
+                nbRemoved++;
+            } else {
+                edgeSources[nbKept] = edgeSources[e];
+                edgeTargets[nbKept] = edgeTargets[e];
+                nbKept++;
+            }
+        }
+        removedEdgeSources = Arrays.copyOf(removedEdgeSources, nbRemoved);
+        removedEdgeTargets = Arrays.copyOf(removedEdgeTargets, nbRemoved);
+        nbEdges = nbKept;
+        freeze();
+    }
+
     private void markSlotInfeasible(TrainPathSlot infeasibleSlot, Infeasible infeasibilityReason) {
         infeasibilityMap.get(infeasibilityReason).add(infeasibleSlot);
     }
 
+    /****************************************************
+     * ADJACENCY
+     ****************************************************/
+
+    public int getNbVertices() {
+        return nbVertices;
+    }
+
+    /**
+     * Returns the number of slots not added as vertices by reachability pruning during construction (or widening, for a widened DAG).
+     *
+     * @return
+     * @see TrainPathAllocationProblemPruningParameters#isReachabilityPruning()
+     */
+    public int getNbPrunedVertices() {
+        return prunedSlotIds.cardinality();
+    }
+
+    /**
+     * Returns the number of arcs not added by reachability pruning during construction (or widening, for a widened DAG).
+     *
+     * @return
+     * @see TrainPathAllocationProblemPruningParameters#isReachabilityPruning()
+     */
+    public int getNbPrunedEdges() {
+        return nbPrunedEdges;
+    }
+
+    public int getNbEdges() {
+        return nbEdges;
+    }
+
+    public int getEdgeSource(int edge) {
+        ensureFrozen();
+        return edgeSources[edge];
+    }
+
+    public int getEdgeTarget(int edge) {
+        ensureFrozen();
+        return edgeTargets[edge];
+    }
+
+    /**
+     * First edge id leaving the vertex.
+     *
+     * @param v
+     * @return
+     */
+    public int getChildEdgesBegin(int v) {
+        ensureFrozen();
+        return childOffsets[v];
+    }
+
+    /**
+     * Edge id after the last edge leaving the vertex.
+     *
+     * @param v
+     * @return
+     */
+    public int getChildEdgesEnd(int v) {
+        ensureFrozen();
+        return childOffsets[v + 1];
+    }
+
+    /**
+     * Index into {@link #getParentEdge(int)} of the first edge entering the vertex.
+     *
+     * @param v
+     * @return
+     */
+    public int getParentEdgesBegin(int v) {
+        ensureFrozen();
+        return parentOffsets[v];
+    }
+
+    /**
+     * Index into {@link #getParentEdge(int)} after the last edge entering the vertex.
+     *
+     * @param v
+     * @return
+     */
+    public int getParentEdgesEnd(int v) {
+        ensureFrozen();
+        return parentOffsets[v + 1];
+    }
+
+    public int getParentEdge(int index) {
+        ensureFrozen();
+        return parentEdges[index];
+    }
+
+    public int getNbChildren(int v) {
+        ensureFrozen();
+        return childOffsets[v + 1] - childOffsets[v];
+    }
+
+    public int getNbParents(int v) {
+        ensureFrozen();
+        return parentOffsets[v + 1] - parentOffsets[v];
+    }
+
+    public boolean isRoot(int v) {
+        return getNbParents(v) == 0;
+    }
+
+    public boolean isLeaf(int v) {
+        return getNbChildren(v) == 0;
+    }
+
+    public boolean hasEdge(int from, int to) {
+        ensureFrozen();
+        for (int e = childOffsets[from]; e < childOffsets[from + 1]; e++) {
+            if (edgeTargets[e] == to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the vertices such that every arc goes from an earlier to a later vertex.
+     *
+     * @return
+     */
+    public int[] getTopologicalOrder() {
+        ensureFrozen();
+        return topologicalOrder.clone();
+    }
+
+    /**
+     * Returns the slot of the vertex or null for the dummy start and end nodes.
+     *
+     * @param v
+     * @return
+     */
+    public TrainPathSlot getSlot(int v) {
+        return vertexSlots[v];
+    }
+
+    /**
+     * Returns the vertex of the slot or -1 if the slot is not in the DAG.
+     *
+     * @param slot
+     * @return
+     */
+    public int getVertex(TrainPathSlot slot) {
+        int slotId = slot.getId();
+        if (slotId < 0 || slotId >= vertexBySlotId.length) {
+            return -1;
+        }
+        return vertexBySlotId[slotId];
+    }
+
+    public String getLabel(int v) {
+        if (v == REQUEST_START_NODE) {
+            return simpleTrainPathApplication.getName() + "_start";
+        } else if (v == REQUEST_END_NODE) {
+            return simpleTrainPathApplication.getName() + "_end";
+        }
+        return vertexSlots[v].getName();
+    }
+
+    private String getGroup(int v) {
+        if (v == REQUEST_START_NODE || v == REQUEST_END_NODE) {
+            return getLabel(v);
+        }
+        return vertexSlots[v].getPeriodicalTrainPathSlot().getTrainPathSectionName();
+    }
+
+    /****************************************************
+     * ANALYSIS
+     ****************************************************/
+
+    /**
+     * Returns the weight the arc contributes to the weight of a solution candidate using it: the duration of the target
+     * slot plus the earliness (from the start node) or the dwell time after the source slot, or the lateness for an arc to the end node.
+     *
+     * @param vertex
+     * @param child
+     * @return
+     * @see SolutionCandidate#getWeight()
+     */
+    public long getArcWeight(int vertex, int child) {
+        if (child == REQUEST_END_NODE) {
+            return TrainPathAllocationProblem.getLateness(simpleTrainPathApplication, vertexSlots[vertex]);
+        }
+        TrainPathSlot secondSlot = vertexSlots[child];
+        long weight = secondSlot.getDurationMillis();
+        if (vertex == REQUEST_START_NODE) {
+            weight += TrainPathAllocationProblem.getEarlyness(simpleTrainPathApplication, secondSlot);
+        } else {
+            weight += MillisOfWeek.distanceAfter(secondSlot.getStartMillisOfWeek(), vertexSlots[vertex].getEndMillisOfWeek());
+        }
+        return weight;
+    }
+
     public boolean isTargetNodeReached() {
-        return requestEndNode.getParents().size() > 0;
+        return getNbParents(REQUEST_END_NODE) > 0;
     }
 
     private boolean isMarkedInfeasible(TrainPathSlot slot) {
@@ -351,44 +881,155 @@ public class TrainPathDAG extends DAG {
      */
     @Deprecated
     public int bottleneckSize() {
-        Map<Pair<SystemNode, SystemNode>, Set<Vertex>> sizes = new HashMap<>();
-        Set<Vertex> doneVertices = new HashSet<>();
+        Map<Pair<SystemNode, SystemNode>, Set<Integer>> sizes = new HashMap<>();
+        Set<Integer> doneVertices = new HashSet<>();
         recursiveBottleneckFrom(getRequestEndNode(), sizes, doneVertices);
         int minBottleneck = Integer.MAX_VALUE;
         for (Pair<SystemNode, SystemNode> link : sizes.keySet()) {
-            Set<Vertex> vertices = sizes.get(link);
+            Set<Integer> vertices = sizes.get(link);
             minBottleneck = Math.min(minBottleneck, vertices.size());
         }
         return minBottleneck;
     }
 
-    public int nbPaths() {
+    /**
+     * Returns the number of paths from the request start node to the leaves, saturating at {@link Long#MAX_VALUE}.
+     *
+     * @return
+     */
+    public long nbPaths() {
         return pathsFromVertex(getRequestStartNode());
     }
 
-    public int pathsFromVertex(Vertex v) {
-        if (v.isLeaf()) {
-            return 1;
-        } else {
-            int sum = 0;
-            for (Vertex child : v.getChildren()) {
-                sum += pathsFromVertex(child);
+    /**
+     * Returns the exact number of paths from the request start node to the leaves.
+     *
+     * @return
+     */
+    public BigInteger nbPathsExact() {
+        ensureFrozen();
+        BigInteger[] exactPathsFrom = new BigInteger[nbVertices];
+        for (int i = nbVertices - 1; i >= 0; i--) {
+            int v = topologicalOrder[i];
+            if (isLeaf(v)) {
+                exactPathsFrom[v] = BigInteger.ONE;
+            } else {
+                BigInteger sum = BigInteger.ZERO;
+                for (int e = childOffsets[v]; e < childOffsets[v + 1]; e++) {
+                    sum = sum.add(exactPathsFrom[edgeTargets[e]]);
+                }
+                exactPathsFrom[v] = sum;
+            }
+        }
+        return exactPathsFrom[getRequestStartNode()];
+    }
+
+    /**
+     * Returns the number of paths from the vertex to the leaves, saturating at {@link Long#MAX_VALUE}.
+     *
+     * @param v
+     * @return
+     */
+    public long pathsFromVertex(int v) {
+        ensureFrozen();
+        return pathsFrom[v];
+    }
+
+    /**
+     * Returns the number of paths from the request start node to the vertex, saturating at {@link Long#MAX_VALUE}.
+     *
+     * @param v
+     * @return
+     */
+    public long pathsToVertex(int v) {
+        ensureFrozen();
+        return pathsTo[v];
+    }
+
+    /**
+     * Returns the number of paths from the request start node through the vertex to the leaves, saturating at {@link Long#MAX_VALUE}.
+     *
+     * @param v
+     * @return
+     */
+    public long pathsThroughVertex(int v) {
+        ensureFrozen();
+        return saturatedMultiply(pathsTo[v], pathsFrom[v]);
+    }
+
+    /**
+     * Returns the number of paths through the slot, 0 if the slot is not in the DAG.
+     *
+     * @param slot
+     * @return
+     */
+    public long pathsThroughSlot(TrainPathSlot slot) {
+        int v = getVertex(slot);
+        return v < 0 ? 0 : pathsThroughVertex(v);
+    }
+
+    /**
+     * Returns the number of paths from the slot to the leaves, 0 if the slot is not in the DAG.
+     *
+     * @param slot
+     * @return
+     */
+    public long pathsFromSlot(TrainPathSlot slot) {
+        int v = getVertex(slot);
+        return v < 0 ? 0 : pathsFromVertex(v);
+    }
+
+    /**
+     * Counts paths from and to every vertex by dynamic programming over the topological order in O(V+E).
+     */
+    private void countPaths() {
+        long[] from = new long[nbVertices];
+        for (int i = nbVertices - 1; i >= 0; i--) {
+            int v = topologicalOrder[i];
+            if (isLeaf(v)) {
+                from[v] = 1;
+            } else {
+                for (int e = childOffsets[v]; e < childOffsets[v + 1]; e++) {
+                    from[v] = saturatedAdd(from[v], from[edgeTargets[e]]);
+                }
             }
-            return sum;
         }
+        long[] to = new long[nbVertices];
+        to[getRequestStartNode()] = 1;
+        for (int i = 0; i < nbVertices; i++) {
+            int v = topologicalOrder[i];
+            for (int e = childOffsets[v]; e < childOffsets[v + 1]; e++) {
+                to[edgeTargets[e]] = saturatedAdd(to[edgeTargets[e]], to[v]);
+            }
+        }
+        pathsFrom = from;
+        pathsTo = to;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        if (a != 0 && b > Long.MAX_VALUE / a) {
+            return Long.MAX_VALUE;
+        }
+        return a * b;
     }
 
-    private void recursiveBottleneckFrom(Vertex leaf, Map<Pair<SystemNode, SystemNode>, Set<Vertex>> sizes, Set<Vertex> doneVertices) {
+    private void recursiveBottleneckFrom(int leaf, Map<Pair<SystemNode, SystemNode>, Set<Integer>> sizes, Set<Integer> doneVertices) {
         if (doneVertices.contains(leaf)) {
             return;
         }
-        for (Vertex vertex : leaf.getParents()) {
-            if (vertex.equals(getRequestStartNode())) {
+        for (int i = getParentEdgesBegin(leaf); i < getParentEdgesEnd(leaf); i++) {
+            int vertex = edgeSources[parentEdges[i]];
+            if (vertex == getRequestStartNode()) {
                 continue;
             }
-            Pair<SystemNode, SystemNode> link = new Pair<>(catalogue.getSlot(vertex.getLabel()).getFrom(), catalogue.getSlot(vertex.getLabel()).getTo());
+            Pair<SystemNode, SystemNode> link = new Pair<>(vertexSlots[vertex].getFrom(), vertexSlots[vertex].getTo());
             if (!sizes.containsKey(link)) {
-                sizes.put(link, new HashSet<Vertex>());
+                sizes.put(link, new HashSet<Integer>());
             }
             sizes.get(link).add(vertex);
             recursiveBottleneckFrom(vertex, sizes, doneVertices);
@@ -400,13 +1041,33 @@ public class TrainPathDAG extends DAG {
      * Enumeration
      ****************************************************/
 
+    /**
+     * Returns an iterator over the solution candidates that enumerates them lazily.
+     *
+     * @param byIncreasingWeight enumerate in order of increasing weight instead of depth-first
+     * @param limit              maximum number of candidates to enumerate
+     * @return
+     * @see SolutionCandidateIterator
+     */
+    public SolutionCandidateIterator solutionCandidateIterator(boolean byIncreasingWeight, int limit) {
+        return new SolutionCandidateIterator(this, byIncreasingWeight, limit);
+    }
+
+    /**
+     * Enumerates the solution candidates, following each arc with probability <code>randomRatio</code>.
+     *
+     * @param randomRatio
+     * @return
+     * @deprecated random and not reproducible, use {@link #solutionCandidateIterator(boolean, int)} or {@link SolutionCandidateFinder#getKBest(TrainPathDAG, int)}.
+     */
+    @Deprecated
     public SolutionCandidateEnumerationResult enumerate(double randomRatio) {
         SolutionCandidateEnumerationResult solutionCandidateEnumerationResult = new SolutionCandidateEnumerationResult();
         Set<SolutionCandidate> solutionCandidates = solutionCandidateEnumerationResult.getSolutionCandidates();
-        Set<Pair<Vertex, Vertex>> excessVertices = solutionCandidateEnumerationResult.getExcessVertices();
-        Set<Pair<Vertex, Vertex>> unsampledEdges = solutionCandidateEnumerationResult.getUnsampledEdges();
-        LinkedList<Vertex> path = new LinkedList<Vertex>();
-        enumerateFrom(requestStartNode, path, solutionCandidates, randomRatio, excessVertices, unsampledEdges);
+        Set<Pair<Integer, Integer>> excessVertices = solutionCandidateEnumerationResult.getExcessVertices();
+        Set<Pair<Integer, Integer>> unsampledEdges = solutionCandidateEnumerationResult.getUnsampledEdges();
+        LinkedList<Integer> path = new LinkedList<Integer>();
+        enumerateFrom(getRequestStartNode(), path, solutionCandidates, randomRatio, excessVertices, unsampledEdges);
         return solutionCandidateEnumerationResult;
     }
 
@@ -421,27 +1082,28 @@ public class TrainPathDAG extends DAG {
      * @param unsampledEdges
      */
 
-    private void enumerateFrom(Vertex parent, List<Vertex> path, Set<SolutionCandidate> travelPaths, double randomRatio, Set<Pair<Vertex, Vertex>> excessVertices, Set<Pair<Vertex, Vertex>> unsampledEdges) {
-        for (Vertex vertex : parent.getChildren()) {
-            if (vertex.equals(requestEndNode)) {
+    private void enumerateFrom(int parent, List<Integer> path, Set<SolutionCandidate> travelPaths, double randomRatio, Set<Pair<Integer, Integer>> excessVertices, Set<Pair<Integer, Integer>> unsampledEdges) {
+        for (int e = getChildEdgesBegin(parent); e < getChildEdgesEnd(parent); e++) {
+            int vertex = edgeTargets[e];
+            if (vertex == getRequestEndNode()) {
                 travelPaths.add(new SolutionCandidate(convertVertexListToTrainPathList(path), catalogue, simpleTrainPathApplication));
             }
-            List<Vertex> newPath = addToCopy(path, vertex);
+            List<Integer> newPath = addToCopy(path, vertex);
 
-            if (travelPaths.size() > simpleTrainPathApplication.getParams().getMAX_TRAINPATHS_PER_REQUEST()) {
-                excessVertices.add(new Pair(parent, vertex));
+            if (travelPaths.size() > params.getMAX_TRAINPATHS_PER_REQUEST()) {
+                excessVertices.add(new Pair<>(parent, vertex));
             } else if (Math.random() > randomRatio) {
-                unsampledEdges.add(new Pair(parent, vertex));
+                unsampledEdges.add(new Pair<>(parent, vertex));
             } else {
                 enumerateFrom(vertex, newPath, travelPaths, randomRatio, excessVertices, unsampledEdges);
             }
         }
     }
 
-    private List<TrainPathSlot> convertVertexListToTrainPathList(List<Vertex> path) {
+    private List<TrainPathSlot> convertVertexListToTrainPathList(List<Integer> path) {
         List<TrainPathSlot> slotPath = new LinkedList<TrainPathSlot>();
-        for (Vertex vertex : path) {
-            TrainPathSlot slot = catalogue.getSlot(vertex.getLabel());
+        for (int vertex : path) {
+            TrainPathSlot slot = getSlot(vertex);
             if (slot == null) {
                 throw new IllegalArgumentException("No slot must be null in a solution candidate");
             }
@@ -460,62 +1122,52 @@ public class TrainPathDAG extends DAG {
         if (!isTargetNodeReached()) {
             return 0;
         }
-        int nbEdges = 0;
-        int nbVerticies = 0;
-        for (Vertex vertex : this.getVerticies()) {
-            // N.B. Vertex.isConnected is implmented wrongly!!!
-            if (vertex.getParents().size() == 0 && vertex.getChildren().size() == 0) {
+        int nbConnectedVerticies = 0;
+        for (int v = 0; v < nbVertices; v++) {
+            if (isRoot(v) && isLeaf(v)) {
                 continue;
             }
-            nbVerticies = nbVerticies + 1;
-            nbEdges = nbEdges + vertex.getChildren().size();
+            nbConnectedVerticies = nbConnectedVerticies + 1;
         }
-        return nbEdges - nbVerticies + 2;
+        return nbEdges - nbConnectedVerticies + 2;
     }
 
     public GraphCSV toCSV(Set<SolutionCandidate> solutionCandidates, boolean includeRemovedEdges) {
+        ensureFrozen();
         GraphCSV csv = new GraphCSV();
-        for (Vertex vertex : this.getVerticies()) {
-            for (Vertex child : vertex.getChildren()) {
-                boolean partOfSolutionCandidate = isPartOfSolutionCandidate(vertex, child, solutionCandidates);
-                String macroLinkNameSource = getMacroLinkName(vertex.getLabel());
-                String macroLinkNameTarget = getMacroLinkName(child.getLabel());
-
-                csv.appendLine(vertex.getLabel(), child.getLabel(), partOfSolutionCandidate ? "3.0" : "1.0", vertex.getLabel() + "_" + child.getLabel(), groupMap.get(vertex), groupMap.get(child), macroLinkNameSource, macroLinkNameTarget);
-            }
+        for (int e = 0; e < nbEdges; e++) {
+            int vertex = edgeSources[e];
+            int child = edgeTargets[e];
+            boolean partOfSolutionCandidate = isPartOfSolutionCandidate(vertex, child, solutionCandidates);
+            String macroLinkNameSource = getMacroLinkName(vertex);
+            String macroLinkNameTarget = getMacroLinkName(child);
+
+            csv.appendLine(getLabel(vertex), getLabel(child), partOfSolutionCandidate ? "3.0" : "1.0", getLabel(vertex) + "_" + getLabel(child), getGroup(vertex), getGroup(child), macroLinkNameSource, macroLinkNameTarget);
         }
         if (includeRemovedEdges) {
-            for (Pair<String, String> removedEdge : removedEdges) {
-                String macroLinkNameSource = getMacroLinkName(removedEdge.first);
-                String macroLinkNameTarget = getMacroLinkName(removedEdge.second);
-                List<Infeasible> reasons = getInfeasibilityReasons(catalogue.getSlot(removedEdge.second));
-                String fromNodeString = removedEdge.first.toString();
-                if (!removedEdge.first.equals(getRequestStartNode().getLabel())) {
-                    fromNodeString = catalogue.getSlot(removedEdge.first).toString();
+            for (int i = 0; i < removedEdgeSources.length; i++) {
+                int from = removedEdgeSources[i];
+                int to = removedEdgeTargets[i];
+                String macroLinkNameSource = getMacroLinkName(from);
+                String macroLinkNameTarget = getMacroLinkName(to);
+                List<Infeasible> reasons = getInfeasibilityReasons(getSlot(to));
+                String fromNodeString = getLabel(from);
+                if (from != getRequestStartNode()) {
+                    fromNodeString = getSlot(from).toString();
                 }
-                String toNodeString = removedEdge.second.toString();
-                if (!removedEdge.second.equals(getRequestEndNode().getLabel())) {
-                    toNodeString = catalogue.getSlot(removedEdge.second).toString();
+                String toNodeString = getLabel(to);
+                if (to != getRequestEndNode()) {
+                    toNodeString = getSlot(to).toString();
                 }
                 String description = "Arc " + fromNodeString + " => " + toNodeString + " removed because of " + reasons.toString();
-                csv.appendLine(removedEdge.first, removedEdge.second, "2.0", description, groupMap.get(getVertex(removedEdge.first)), groupMap.get(getVertex(removedEdge.second)), macroLinkNameSource, macroLinkNameTarget);
+                csv.appendLine(getLabel(from), getLabel(to), "2.0", description, getGroup(from), getGroup(to), macroLinkNameSource, macroLinkNameTarget);
             }
         }
         return csv;
     }
 
-    public TrainPathSlot getSlotFromVertex(String label) {
-        if (label.endsWith("_out")) {
-            label = label.split(Pattern.quote("_out"))[0];
-        } else if (label.endsWith("_in")) {
-            label = label.split(Pattern.quote("_in"))[0];
-        }
-        TrainPathSlot slot = catalogue.getSlot(label);
-        return slot;
-    }
-
-    public String getMacroLinkName(String label) {
-        TrainPathSlot slot = getSlotFromVertex(label);
+    public String getMacroLinkName(int v) {
+        TrainPathSlot slot = getSlot(v);
         String macroLinkName = "";
         if (slot != null) {
             macroLinkName = slot.getFrom().toString() + " => " + slot.getTo().toString();
@@ -527,8 +1179,8 @@ public class TrainPathDAG extends DAG {
      * MISCELLANEOUS
      ****************************************************/
 
-    private List<Vertex> addToCopy(List<Vertex> path, Vertex v) {
-        List<Vertex> newPath = (List<Vertex>) ((LinkedList<Vertex>) path).clone();
+    private List<Integer> addToCopy(List<Integer> path, int v) {
+        List<Integer> newPath = (List<Integer>) ((LinkedList<Integer>) path).clone();
         newPath.add(v);
         return newPath;
     }
@@ -541,11 +1193,7 @@ public class TrainPathDAG extends DAG {
         throw new IllegalStateException("Not implemented");
     }
 
-    private String getGroup(Vertex v) {
-        return groupMap.get(v);
-    }
-
-    private boolean isPartOfSolutionCandidate(Vertex vertex, Vertex child, Set<SolutionCandidate> solutionCandidates) {
+    private boolean isPartOfSolutionCandidate(int vertex, int child, Set<SolutionCandidate> solutionCandidates) {
         boolean partOfSolutionCandidate = false;
         for (SolutionCandidate solutionCandidate : solutionCandidates) {
             List<TrainPathSlot> path = solutionCandidate.getPath();
@@ -553,25 +1201,25 @@ public class TrainPathDAG extends DAG {
                 TrainPathSlot slot = path.get(i);
                 if (i > 0) {
                     TrainPathSlot previous = path.get(i - 1);
-                    if (previous.getName().equals(vertex.getLabel()) && slot.getName().equals(child.getLabel())) {
+                    if (previous.getName().equals(getLabel(vertex)) && slot.getName().equals(getLabel(child))) {
                         partOfSolutionCandidate = true;
                         break;
                     }
                 }
                 if (i < path.size() - 1) {
                     TrainPathSlot next = path.get(i + 1);
-                    if (slot.getName().equals(vertex.getLabel()) && next.getName().equals(child.getLabel())) {
+                    if (slot.getName().equals(getLabel(vertex)) && next.getName().equals(getLabel(child))) {
                         partOfSolutionCandidate = true;
                         break;
                     }
                 }
             }
             // N.B. Dummy nodes are not part of solution candidates
-            if (vertex.equals(getRequestStartNode()) && child.getLabel().equals(solutionCandidate.getPath().get(0).getName())) {
+            if (vertex == getRequestStartNode() && getLabel(child).equals(solutionCandidate.getPath().get(0).getName())) {
                 partOfSolutionCandidate = true;
                 break;
             }
-            if (child.equals(getRequestEndNode()) && vertex.getLabel().equals(solutionCandidate.getPath().get(solutionCandidate.getPath().size() - 1).getName())) {
+            if (child == getRequestEndNode() && getLabel(vertex).equals(solutionCandidate.getPath().get(solutionCandidate.getPath().size() - 1).getName())) {
                 partOfSolutionCandidate = true;
                 break;
             }
@@ -582,14 +1230,61 @@ public class TrainPathDAG extends DAG {
     /****************************************************
      * DAG CONSTRUCTION: INFEASIBILITY
      ****************************************************/
+    /**
+     * Frontier of the breadth-first DAG construction: the vertices of the current and the next layer in arrays, and a marker by slot id,
+     * so that each vertex is put on a frontier and processed at most once.
+     */
+    private static final class VertexFrontier {
+        private final BitSet reached = new BitSet();
+        private int[] current = new int[INITIAL_CAPACITY];
+        private int currentSize = 0;
+        private int[] next = new int[INITIAL_CAPACITY];
+        private int nextSize = 0;
+
+        /**
+         * Marks the slot's vertex as processed without putting it on the frontier.
+         */
+        void markProcessed(int slotId) {
+            reached.set(slotId);
+        }
+
+        /**
+         * Puts the vertex on the next layer unless it has been reached before.
+         */
+        void add(int vertex, int slotId) {
+            if (reached.get(slotId)) {
+                return;
+            }
+            reached.set(slotId);
+            if (nextSize == next.length) {
+                next = Arrays.copyOf(next, 2 * nextSize);
+            }
+            next[nextSize++] = vertex;
+        }
+
+        /**
+         * Makes the next layer the current one.
+         *
+         * @return false if it is empty
+         */
+        boolean nextLayer() {
+            int[] layer = current;
+            current = next;
+            currentSize = nextSize;
+            next = layer;
+            nextSize = 0;
+            return currentSize > 0;
+        }
+    }
+
     public enum Infeasible {
-        OVERDUE, UNDERDUE, BACKTRACKING, NOSUCCESSOR
+        OVERDUE, UNDERDUE, BACKTRACKING, NOSUCCESSOR, PRUNED
     }
 
     public class SolutionCandidateEnumerationResult {
         private Set<SolutionCandidate> solutionCandidates;
-        private Set<Pair<Vertex, Vertex>> excessVertices;
-        private Set<Pair<Vertex, Vertex>> unsampledEdges;
+        private Set<Pair<Integer, Integer>> excessVertices;
+        private Set<Pair<Integer, Integer>> unsampledEdges;
 
         public SolutionCandidateEnumerationResult() {
             solutionCandidates = new HashSet<>();
@@ -601,11 +1296,11 @@ public class TrainPathDAG extends DAG {
             return solutionCandidates;
         }
 
-        public Set<Pair<Vertex, Vertex>> getExcessVertices() {
+        public Set<Pair<Integer, Integer>> getExcessVertices() {
             return excessVertices;
         }
 
-        public Set<Pair<Vertex, Vertex>> getUnsampledEdges() {
+        public Set<Pair<Integer, Integer>> getUnsampledEdges() {
             return unsampledEdges;
         }
 
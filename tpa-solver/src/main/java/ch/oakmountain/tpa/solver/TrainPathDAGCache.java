@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.oakmountain.tpa.solver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of constructed train path DAGs.
+ * <p/>
+ * DAGs are keyed by their pruning parameters (which determine route and time window, see {@link TrainPathAllocationProblemPruningParameters#equals(Object)})
+ * together with the topology and catalogue they are built from. A hit returns a read-only view sharing the cached graph,
+ * bound to the requesting application. Windows on different weekdays are different keys, since the catalogue may differ from day to day.
+ * <p/>
+ * The cache is thread-safe; DAGs are constructed outside the lock, so the same DAG may occasionally be constructed twice concurrently.
+ */
+public class TrainPathDAGCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    private final int maximumSize;
+    private final Map<Key, TrainPathDAG> dags;
+    private long nbHits = 0;
+    private long nbMisses = 0;
+    private long nbEvictions = 0;
+
+    public TrainPathDAGCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param maximumSize maximum number of cached DAGs; 0 disables caching.
+     */
+    public TrainPathDAGCache(int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Maximum cache size must not be negative, found " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.dags = new LinkedHashMap<Key, TrainPathDAG>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, TrainPathDAG> eldest) {
+                if (size() > TrainPathDAGCache.this.maximumSize) {
+                    nbEvictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the DAG of the application for the given pruning parameters, constructing it on a miss.
+     *
+     * @param macro
+     * @param simpleTrainPathApplication
+     * @param params
+     * @param catalogue
+     * @return
+     */
+    public TrainPathDAG getDAG(MacroscopicTopology macro, SimpleTrainPathApplication simpleTrainPathApplication, TrainPathAllocationProblemPruningParameters params, TrainPathSlotCatalogue catalogue) {
+        return getDAG(macro, simpleTrainPathApplication, null, params, catalogue);
+    }
+
+    /**
+     * Returns the DAG of the application for the given relaxed pruning parameters, widening the given DAG on a miss.
+     *
+     * @param macro
+     * @param simpleTrainPathApplication
+     * @param dag
+     * @param relaxedParams
+     * @param catalogue
+     * @return
+     * @see TrainPathDAG#widen(MacroscopicTopology, TrainPathAllocationProblemPruningParameters)
+     */
+    public TrainPathDAG getWidenedDAG(MacroscopicTopology macro, SimpleTrainPathApplication simpleTrainPathApplication, TrainPathDAG dag, TrainPathAllocationProblemPruningParameters relaxedParams, TrainPathSlotCatalogue catalogue) {
+        return getDAG(macro, simpleTrainPathApplication, dag, relaxedParams, catalogue);
+    }
+
+    private TrainPathDAG getDAG(MacroscopicTopology macro, SimpleTrainPathApplication simpleTrainPathApplication, TrainPathDAG dagToWiden, TrainPathAllocationProblemPruningParameters params, TrainPathSlotCatalogue catalogue) {
+        Key key = new Key(macro, catalogue, params);
+        TrainPathDAG cached;
+        synchronized (this) {
+            cached = dags.get(key);
+            if (cached != null) {
+                nbHits++;
+            } else {
+                nbMisses++;
+            }
+        }
+        if (cached != null) {
+            return cached.viewFor(simpleTrainPathApplication, params);
+        }
+
+        TrainPathDAG dag;
+        if (dagToWiden == null) {
+            dag = TrainPathDAG.constructDAG(macro, simpleTrainPathApplication, params, catalogue);
+        } else {
+            dag = dagToWiden.widen(macro, params);
+        }
+        if (maximumSize == 0) {
+            return dag;
+        }
+        // cache a view, so the returned DAG and the cached one do not share lazily computed state
+        TrainPathDAG shared = dag.viewFor(simpleTrainPathApplication, params);
+        synchronized (this) {
+            if (!dags.containsKey(key)) {
+                dags.put(key, shared);
+            }
+        }
+        return dag;
+    }
+
+    public synchronized void clear() {
+        dags.clear();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public synchronized int size() {
+        return dags.size();
+    }
+
+    public synchronized long getNbHits() {
+        return nbHits;
+    }
+
+    public synchronized long getNbMisses() {
+        return nbMisses;
+    }
+
+    public synchronized long getNbEvictions() {
+        return nbEvictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long nbRequests = nbHits + nbMisses;
+        return "DAG cache: " + nbHits + " hits, " + nbMisses + " misses (hit ratio " + (nbRequests == 0 ? 0 : (100 * nbHits / nbRequests)) + "%), " + nbEvictions + " evictions, " + dags.size() + "/" + maximumSize + " entries";
+    }
+
+    private static final class Key {
+        private final MacroscopicTopology macro;
+        private final int macroVersion;
+        private final TrainPathSlotCatalogue catalogue;
+        private final int catalogueVersion;
+        private final TrainPathAllocationProblemPruningParameters params;
+
+        private Key(MacroscopicTopology macro, TrainPathSlotCatalogue catalogue, TrainPathAllocationProblemPruningParameters params) {
+            this.macro = macro;
+            this.macroVersion = macro.getVersion();
+            this.catalogue = catalogue;
+            this.catalogueVersion = catalogue.getVersion();
+            this.params = params;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            if (macro != key.macro) return false;
+            if (macroVersion != key.macroVersion) return false;
+            if (catalogue != key.catalogue) return false;
+            if (catalogueVersion != key.catalogueVersion) return false;
+            return params.equals(key.params);
+
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(macro);
+            result = 31 * result + macroVersion;
+            result = 31 * result + System.identityHashCode(catalogue);
+            result = 31 * result + catalogueVersion;
+            result = 31 * result + params.hashCode();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.oakmountain.tpa.solver;
+
+import java.util.*;
+
+/**
+ * Backward time bounds of a train path application: for each system node along its routes, the latest arrival from which the terminal
+ * node can still be reached within the arrival upper bound.
+ * <p/>
+ * Times are millis after the hard departure lower bound. The bounds are computed by a label-setting search from the terminal node backwards:
+ * for a link from A to a settled system node C, the slot departing latest among those arriving at C not after C's latest arrival gives
+ * A's latest departure, and A's latest arrival is that minus the minimum dwell time. Maximum dwell times are ignored, so the bounds are
+ * optimistic: a slot arriving after its system node's bound cannot be on any path of the DAG, whereas a slot within the bound may still be a dead end.
+ * <p/>
+ * The bounds depend only on the route, the hard departure lower bound, the arrival upper bound and the minimum dwell time.
+ */
+final class TrainPathDAGReachabilityBounds {
+
+    private final SimpleTrainPathApplication simpleTrainPathApplication;
+    private final int originMillisOfWeek;
+    private final Map<SystemNode, Integer> latestArrivals = new HashMap<>();
+
+    private TrainPathDAGReachabilityBounds(SimpleTrainPathApplication simpleTrainPathApplication, int originMillisOfWeek) {
+        this.simpleTrainPathApplication = simpleTrainPathApplication;
+        this.originMillisOfWeek = originMillisOfWeek;
+    }
+
+    static TrainPathDAGReachabilityBounds compute(MacroscopicTopology macro, TrainPathSlotCatalogue catalogue, SimpleTrainPathApplication simpleTrainPathApplication, TrainPathAllocationProblemPruningParameters params) {
+        SystemNode from = simpleTrainPathApplication.getFrom();
+        SystemNode to = simpleTrainPathApplication.getTo();
+        TrainPathDAGReachabilityBounds bounds = new TrainPathDAGReachabilityBounds(simpleTrainPathApplication, params.getDepartureHardLowerBoundMillis());
+        int dwellMillis = params.getMinimumDwellTimeMillis();
+
+        // Predecessors along the routes of the application
+        Map<SystemNode, List<SystemNode>> predecessors = new HashMap<>();
+        Deque<SystemNode> toVisit = new ArrayDeque<>();
+        Set<SystemNode> visited = new HashSet<>();
+        toVisit.add(from);
+        visited.add(from);
+        while (!toVisit.isEmpty()) {
+            SystemNode systemNode = toVisit.poll();
+            for (SystemNode successor : macro.getSuccessors(systemNode, from, to)) {
+                List<SystemNode> successorPredecessors = predecessors.get(successor);
+                if (successorPredecessors == null) {
+                    successorPredecessors = new LinkedList<>();
+                    predecessors.put(successor, successorPredecessors);
+                }
+                successorPredecessors.add(systemNode);
+                if (visited.add(successor)) {
+                    toVisit.add(successor);
+                }
+            }
+        }
+
+        // Label-setting search backwards from the terminal node, latest arrival first
+        Set<SystemNode> settled = new HashSet<>();
+        PriorityQueue<LatestArrivalLabel> queue = new PriorityQueue<>();
+        int latestArrivalAtTarget = bounds.relative(params.getArrivalUpperBoundMillis());
+        bounds.latestArrivals.put(to, latestArrivalAtTarget);
+        queue.add(new LatestArrivalLabel(to, latestArrivalAtTarget));
+        while (!queue.isEmpty()) {
+            LatestArrivalLabel label = queue.poll();
+            SystemNode currentNode = label.systemNode;
+            if (!settled.add(currentNode) || !predecessors.containsKey(currentNode)) {
+                continue;
+            }
+            for (SystemNode predecessor : predecessors.get(currentNode)) {
+                if (settled.contains(predecessor)) {
+                    continue;
+                }
+                TrainPathSlot latestSlot = bounds.getLatestTrainPathSlot(catalogue, predecessor, currentNode, label.latestArrival);
+                if (latestSlot == null) {
+                    continue;
+                }
+                int latestArrival = bounds.relative(latestSlot.getStartMillisOfWeek()) - (predecessor.equals(from) ? 0 : dwellMillis);
+                if (latestArrival < 0) {
+                    continue;
+                }
+                Integer knownLatestArrival = bounds.latestArrivals.get(predecessor);
+                if (knownLatestArrival == null || latestArrival > knownLatestArrival) {
+                    bounds.latestArrivals.put(predecessor, latestArrival);
+                    queue.add(new LatestArrivalLabel(predecessor, latestArrival));
+                }
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Returns the slot on the link departing latest among the ones departing not before the origin and arriving not after the latest arrival.
+     */
+    private TrainPathSlot getLatestTrainPathSlot(TrainPathSlotCatalogue catalogue, SystemNode from, SystemNode to, int latestArrival) {
+        List<TrainPathSlot> slots = catalogue.getSortedTrainPathSlots(from, to, originMillisOfWeek, MillisOfWeek.plus(originMillisOfWeek, latestArrival));
+        // sorted by departure, so the first one arriving in time from the end is the latest
+        for (int i = slots.size() - 1; i >= 0; i--) {
+            TrainPathSlot slot = slots.get(i);
+            if (relative(slot.getStartMillisOfWeek()) + slot.getDurationMillis() <= latestArrival) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    private int relative(int millisOfWeek) {
+        return MillisOfWeek.distanceAfter(millisOfWeek, originMillisOfWeek);
+    }
+
+    /**
+     * Returns whether the slot may be on a path to the terminal node, i.e. whether it arrives at the terminal node or not after its system node's latest arrival.
+     *
+     * @param slot
+     * @return
+     */
+    boolean canReachTarget(TrainPathSlot slot) {
+        SystemNode systemNode = slot.getTo();
+        if (systemNode.equals(simpleTrainPathApplication.getTo())) {
+            // arrival bounds are checked on construction
+            return true;
+        }
+        Integer latestArrival = latestArrivals.get(systemNode);
+        return latestArrival != null && relative(slot.getStartMillisOfWeek()) + slot.getDurationMillis() <= latestArrival;
+    }
+
+    /**
+     * Returns the latest arrival at the system node in millis after the hard departure lower bound, or null if the terminal node cannot be reached from it.
+     *
+     * @param systemNode
+     * @return
+     */
+    Integer getLatestArrival(SystemNode systemNode) {
+        return latestArrivals.get(systemNode);
+    }
+
+    private static final class LatestArrivalLabel implements Comparable<LatestArrivalLabel> {
+        private final SystemNode systemNode;
+        private final int latestArrival;
+
+        private LatestArrivalLabel(SystemNode systemNode, int latestArrival) {
+            this.systemNode = systemNode;
+            this.latestArrival = latestArrival;
+        }
+
+        @Override
+        public int compareTo(LatestArrivalLabel o) {
+            if (latestArrival != o.latestArrival) {
+                return latestArrival > o.latestArrival ? -1 : 1;
+            }
+            return systemNode.getName().compareTo(o.systemNode.getName());
+        }
+    }
+}
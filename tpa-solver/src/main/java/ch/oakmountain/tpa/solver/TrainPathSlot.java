@@ -18,18 +18,29 @@ package ch.oakmountain.tpa.solver;
 
 import org.joda.time.Duration;
 
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
  *
  */
 public class TrainPathSlot {
+    public static final Comparator<TrainPathSlot> START_TIME_COMPARATOR = new Comparator<TrainPathSlot>() {
+        @Override
+        public int compare(TrainPathSlot o1, TrainPathSlot o2) {
+            return o1.getStartTime().compareTo(o2.getStartTime());
+        }
+    };
     private final PeriodicalTrainPathSlot periodicalTrainPathSlot;
     private final String name;
     private PeriodicalTimeFrame startTime;
     private PeriodicalTimeFrame endTime;
+    private final int startMillisOfWeek;
+    private final int endMillisOfWeek;
     private SystemNode from;
     private SystemNode to;
+    private int id = -1;
 
     public TrainPathSlot(String name, PeriodicalTimeFrame startTime, PeriodicalTimeFrame endTime, SystemNode from, SystemNode to, PeriodicalTrainPathSlot periodicalTrainPathSlot) {
         this.name = name;
@@ -38,24 +49,13 @@ public class TrainPathSlot {
         this.from = from;
         this.to = to;
         this.periodicalTrainPathSlot = periodicalTrainPathSlot;
-
+        this.startMillisOfWeek = startTime.getMillisOfWeek();
+        this.endMillisOfWeek = endTime.getMillisOfWeek();
     }
 
     public static void sort(List<TrainPathSlot> slots) {
-        // insertion sort: the first i elements (0...i-1) of the list are sorted
-        // therefore, preferrably, use linked list instead of array list
-        for (int i = 1; i < slots.size(); i++) {
-            // insert the i-th element into the list
-            int j = i - 1;
-            while (j >= 0 && slots.get(i).getStartTime().isBefore(slots.get(j).getStartTime())) {
-                j--;
-            }
-            j++;
-            if (j < i) {
-                slots.add(j, slots.get(i));
-                slots.remove(i + 1);
-            }
-        }
+        // stable merge sort on an array copy, written back by list iterator
+        Collections.sort(slots, START_TIME_COMPARATOR);
     }
 
     public PeriodicalTrainPathSlot getPeriodicalTrainPathSlot() {
@@ -66,6 +66,22 @@ public class TrainPathSlot {
         return name;
     }
 
+    /**
+     * Returns the dense id assigned by the catalogue (-1 if not added to a catalogue).
+     *
+     * @return
+     */
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        if (this.id >= 0) {
+            throw new IllegalStateException("Slot " + name + " already has id " + this.id);
+        }
+        this.id = id;
+    }
+
     public PeriodicalTimeFrame getStartTime() {
         return startTime;
     }
@@ -78,6 +94,18 @@ public class TrainPathSlot {
         return endTime.distanceAfter(startTime);
     }
 
+    public int getStartMillisOfWeek() {
+        return startMillisOfWeek;
+    }
+
+    public int getEndMillisOfWeek() {
+        return endMillisOfWeek;
+    }
+
+    public int getDurationMillis() {
+        return MillisOfWeek.distanceAfter(endMillisOfWeek, startMillisOfWeek);
+    }
+
     public SystemNode getFrom() {
         return from;
     }
@@ -95,5 +123,9 @@ public class TrainPathSlot {
         return getStartTime().isWithinBounds(earliest, latest);
     }
 
+    public boolean isStartTimeContainedInclusive(int earliestMillisOfWeek, int latestMillisOfWeek) {
+        return MillisOfWeek.isWithinBounds(startMillisOfWeek, earliestMillisOfWeek, latestMillisOfWeek);
+    }
+
 
 }
@@ -23,10 +23,9 @@ import org.joda.time.Hours;
 import org.joda.time.LocalTime;
 import org.joda.time.Minutes;
 
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  *
@@ -38,8 +37,12 @@ public class TrainPathSlotCatalogue {
     private Map<SystemNode, List<PeriodicalTrainPathSlot>> toMap = new LinkedHashMap<>();
     private Map<Pair<SystemNode, SystemNode>, List<PeriodicalTrainPathSlot>> linkMap = new LinkedHashMap<>();
     private Map<String, TrainPathSlot> slotMap = new LinkedHashMap<>();
+    private List<TrainPathSlot> slotTable = new ArrayList<>();
     private Map<String, PeriodicalTrainPathSlot> periodicalSlotMap = new LinkedHashMap<>();
     private Map<PeriodicalTrainPathSlot, String> trainPathSectionNameMap = new LinkedHashMap<>();
+    // built lazily and read concurrently by parallel DAG construction
+    private ConcurrentMap<Pair<SystemNode, SystemNode>, LinkSlotIndex> linkSlotIndexMap = new ConcurrentHashMap<>();
+    private volatile int version = 0;
 
     public static TrainPathSlotCatalogue generateTestTrainPathCatalogue(MacroscopicTopology macroscopicTopology, int trainsPerHour, int durationMinutes) {
         TrainPathSlotCatalogue catalogue = new TrainPathSlotCatalogue();
@@ -73,7 +76,16 @@ public class TrainPathSlotCatalogue {
     }
 
     public int getNbSlots() {
-        return slotMap.keySet().size();
+        return slotTable.size();
+    }
+
+    /**
+     * Returns a counter that changes whenever a periodical slot is added.
+     *
+     * @return
+     */
+    public int getVersion() {
+        return version;
     }
 
     public int getNbPeriodicalSlots() {
@@ -108,12 +120,16 @@ public class TrainPathSlotCatalogue {
             }
         }
         linkMap.get(link).add(slot);
+        linkSlotIndexMap.remove(link);
+        version++;
         periodicalSlotMap.put(name, slot);
         for (TrainPathSlot trainPathSlot : slot.getSlots()) {
             if (slotMap.containsKey(trainPathSlot.getName())) {
                 throw new IllegalArgumentException("There is alreaday a train path slot of this name " + trainPathSlot.getName() + " in this train path catalogue");
             }
             slotMap.put(trainPathSlot.getName(), trainPathSlot);
+            trainPathSlot.setId(slotTable.size());
+            slotTable.add(trainPathSlot);
         }
         trainPathSlots.add(slot);
         if (!fromMap.containsKey(from)) {
@@ -138,6 +154,16 @@ public class TrainPathSlotCatalogue {
         return slotMap.get(name);
     }
 
+    /**
+     * Get the slot by its dense id in [0, getNbSlots()).
+     *
+     * @param id
+     * @return
+     */
+    public TrainPathSlot getSlot(int id) {
+        return slotTable.get(id);
+    }
+
     public void logInfo() {
         LOGGER.info("Parsed the following slots...");
         for (PeriodicalTrainPathSlot slot : trainPathSlots) {
@@ -154,33 +180,45 @@ public class TrainPathSlotCatalogue {
      * @return
      */
     public TrainPathSlot getQuickestTrainPathSlot(SystemNode from, SystemNode to, PeriodicalTimeFrame earliest) {
-        return getNextOrQuickestTrainPathSlot(from, to, earliest, false);
+        return getNextOrQuickestTrainPathSlot(from, to, earliest.getMillisOfWeek(), false);
+    }
+
+    /**
+     * Get the slot on the link that arrives first when leaving not before earliest; ties go to the first periodical slot added.
+     *
+     * @param from
+     * @param to
+     * @param earliestMillisOfWeek
+     * @return
+     */
+    public TrainPathSlot getQuickestTrainPathSlot(SystemNode from, SystemNode to, int earliestMillisOfWeek) {
+        return getNextOrQuickestTrainPathSlot(from, to, earliestMillisOfWeek, false);
     }
 
-    private TrainPathSlot getNextOrQuickestTrainPathSlot(SystemNode from, SystemNode to, PeriodicalTimeFrame earliest, boolean takeStartTime) {
+    private TrainPathSlot getNextOrQuickestTrainPathSlot(SystemNode from, SystemNode to, int earliestMillisOfWeek, boolean takeStartTime) {
         Pair<SystemNode, SystemNode> link = new Pair(from, to);
         TrainPathSlot bestSlot = null;
-        Duration bestDistance = null;
+        int bestDistance = Integer.MAX_VALUE;
         if (linkMap.get(link) == null) {
             throw new IllegalArgumentException("There is no edge from " + from.getName() + " to " + to.getName() + " in the macroscopic topology");
         }
         for (PeriodicalTrainPathSlot periodicalTrainPathSlot : linkMap.get(link)) {
-            TrainPathSlot slotCand = periodicalTrainPathSlot.getNextOrQuickestTrainPathSlot(earliest);
+            TrainPathSlot slotCand = periodicalTrainPathSlot.getNextOrQuickestTrainPathSlot(earliestMillisOfWeek);
             if (slotCand == null) {
                 LOGGER.warn("Found no successor slot at " + periodicalTrainPathSlot.getName() + "; are there no slots for this periodical slot?");
                 continue;
             }
-            Duration distanceCand;
+            int distanceCand;
             if (takeStartTime) {
-                distanceCand = slotCand.getStartTime().distanceAfter(earliest);
+                distanceCand = MillisOfWeek.distanceAfter(slotCand.getStartMillisOfWeek(), earliestMillisOfWeek);
             } else {
                 // situation [------>start-->earliest-->end---->[ vs. [---->earliest-->start-->end--[
-                Duration durationEarliestToStart = slotCand.getStartTime().distanceAfter(earliest);
-                Duration durationStartToEnd = slotCand.getEndTime().distanceAfter(slotCand.getStartTime());
-                distanceCand = durationEarliestToStart.plus(durationStartToEnd);
+                int durationEarliestToStart = MillisOfWeek.distanceAfter(slotCand.getStartMillisOfWeek(), earliestMillisOfWeek);
+                int durationStartToEnd = slotCand.getDurationMillis();
+                distanceCand = durationEarliestToStart + durationStartToEnd;
             }
 
-            if (bestDistance == null || distanceCand.isShorterThan(bestDistance)) {
+            if (bestSlot == null || distanceCand < bestDistance) {
                 bestSlot = slotCand;
                 bestDistance = distanceCand;
             }
@@ -189,42 +227,159 @@ public class TrainPathSlotCatalogue {
     }
 
     public TrainPathSlot getNextTrainPathSlot(SystemNode from, SystemNode to, PeriodicalTimeFrame earliest) {
-        return getNextOrQuickestTrainPathSlot(from, to, earliest, true);
+        return getNextOrQuickestTrainPathSlot(from, to, earliest.getMillisOfWeek(), true);
     }
 
     public List<TrainPathSlot> getSortedTrainPathSlots(SystemNode from, SystemNode to, PeriodicalTimeFrame earliest, PeriodicalTimeFrame latest) {
-        Pair<SystemNode, SystemNode> link = new Pair(from, to);
-        List<TrainPathSlot> slots = new LinkedList<>();
-        if (linkMap.get(link) != null) {
-            for (PeriodicalTrainPathSlot periodicalTrainPathSlot : linkMap.get(link)) {
-                periodicalTrainPathSlot.addAllStartTimeContainedInclusive(earliest, latest, slots);
+        return getSortedTrainPathSlots(from, to, earliest.getMillisOfWeek(), latest.getMillisOfWeek());
+    }
+
+    /**
+     * Returns the slots on the link whose start time is within [earliest, latest] (wrapping around the end of the week if earliest > latest),
+     * sorted by start time from earliest on. The returned list is an unmodifiable view on the link's slot index.
+     *
+     * @param from
+     * @param to
+     * @param earliestMillisOfWeek
+     * @param latestMillisOfWeek
+     * @return
+     */
+    public List<TrainPathSlot> getSortedTrainPathSlots(SystemNode from, SystemNode to, int earliestMillisOfWeek, int latestMillisOfWeek) {
+        LinkSlotIndex index = getLinkSlotIndex(new Pair<>(from, to));
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        return index.getWindow(earliestMillisOfWeek, latestMillisOfWeek);
+    }
+
+    private LinkSlotIndex getLinkSlotIndex(Pair<SystemNode, SystemNode> link) {
+        LinkSlotIndex index = linkSlotIndexMap.get(link);
+        if (index == null && linkMap.containsKey(link)) {
+            LinkSlotIndex newIndex = new LinkSlotIndex(linkMap.get(link));
+            index = linkSlotIndexMap.putIfAbsent(link, newIndex);
+            if (index == null) {
+                index = newIndex;
             }
         }
-        TrainPathSlot.sort(slots);
-        return slots;
+        return index;
     }
 
     public TrainPathSlot getNextTrainPathSlotWithin24(SystemNode from, SystemNode to, PeriodicalTimeFrame earliest) {
+        return getNextTrainPathSlotWithin24(from, to, earliest.getMillisOfWeek());
+    }
+
+    public TrainPathSlot getNextTrainPathSlotWithin24(SystemNode from, SystemNode to, int earliestMillisOfWeek) {
         Pair<SystemNode, SystemNode> link = new Pair(from, to);
-        List<TrainPathSlot> slots = new LinkedList<>();
         if (linkMap.get(link) == null) {
             throw new IllegalArgumentException("There is no edge from " + from.getName() + " to " + to.getName() + " in the macroscopic topology");
         }
-        if (linkMap.get(link) != null) {
-            for (PeriodicalTrainPathSlot periodicalTrainPathSlot : linkMap.get(link)) {
-                periodicalTrainPathSlot.addAllStartTimeContainedInclusive(earliest, earliest.plus(Hours.hours(24).toStandardDuration()), slots);
+        int millisWithin24 = MillisOfWeek.of(Hours.hours(24).toStandardDuration());
+        // window is sorted from earliest on, hence the first slot is the next one
+        List<TrainPathSlot> slots = getLinkSlotIndex(link).getWindow(earliestMillisOfWeek, MillisOfWeek.plus(earliestMillisOfWeek, millisWithin24));
+        if (slots.size() > 0 && MillisOfWeek.distanceAfter(slots.get(0).getStartMillisOfWeek(), earliestMillisOfWeek) < millisWithin24) {
+            return slots.get(0);
+        }
+        return null;
+    }
+
+    /**
+     * Concrete slots of one link sorted by start time.
+     */
+    private static class LinkSlotIndex {
+        private final TrainPathSlot[] slots;
+        private final int[] startMillisOfWeek;
+
+        LinkSlotIndex(List<PeriodicalTrainPathSlot> periodicalTrainPathSlots) {
+            List<TrainPathSlot> all = new ArrayList<>();
+            for (PeriodicalTrainPathSlot periodicalTrainPathSlot : periodicalTrainPathSlots) {
+                all.addAll(periodicalTrainPathSlot.getSlots());
+            }
+            slots = all.toArray(new TrainPathSlot[all.size()]);
+            Arrays.sort(slots, new Comparator<TrainPathSlot>() {
+                @Override
+                public int compare(TrainPathSlot o1, TrainPathSlot o2) {
+                    return Integer.compare(o1.getStartMillisOfWeek(), o2.getStartMillisOfWeek());
+                }
+            });
+            startMillisOfWeek = new int[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                startMillisOfWeek[i] = slots[i].getStartMillisOfWeek();
             }
         }
-        Duration minDistance = Hours.hours(24).toStandardDuration();
-        TrainPathSlot slot = null;
-        for (TrainPathSlot trainPathSlot : slots) {
-            Duration distance = trainPathSlot.getStartTime().distanceAfter(earliest);
-            if (distance.isShorterThan(minDistance)) {
-                minDistance = distance;
-                slot = trainPathSlot;
+
+        /**
+         * Index of the first slot starting at or after the given moment.
+         */
+        private int lowerBound(int millisOfWeek) {
+            int low = 0;
+            int high = startMillisOfWeek.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (startMillisOfWeek[mid] < millisOfWeek) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
             }
+            return low;
+        }
+
+        /**
+         * Index of the first slot starting strictly after the given moment.
+         */
+        private int upperBound(int millisOfWeek) {
+            int low = 0;
+            int high = startMillisOfWeek.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (startMillisOfWeek[mid] <= millisOfWeek) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        List<TrainPathSlot> getWindow(int earliestMillisOfWeek, int latestMillisOfWeek) {
+            int first = lowerBound(earliestMillisOfWeek);
+            int last = upperBound(latestMillisOfWeek);
+            if (earliestMillisOfWeek <= latestMillisOfWeek) {
+                return new CyclicSlotView(slots, first, Math.max(0, last - first));
+            } else {
+                // [earliest, END_OF_WEEK) followed by [START_OF_WEEK, latest]
+                return new CyclicSlotView(slots, first, slots.length - first + last);
+            }
+        }
+    }
+
+    /**
+     * Read-only view of <code>size</code> consecutive elements of an array starting at <code>offset</code> and wrapping around its end.
+     */
+    private static class CyclicSlotView extends AbstractList<TrainPathSlot> implements RandomAccess {
+        private final TrainPathSlot[] slots;
+        private final int offset;
+        private final int size;
+
+        CyclicSlotView(TrainPathSlot[] slots, int offset, int size) {
+            this.slots = slots;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public TrainPathSlot get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            int i = offset + index;
+            return slots[i < slots.length ? i : i - slots.length];
+        }
+
+        @Override
+        public int size() {
+            return size;
         }
-        return slot;
     }
 
 }
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.solver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BuiltInMIPSolverTest {
+
+    private static final double DELTA = 1e-6;
+
+    private static MIPLinearExpression expr(double[] coeffs, int[] vars) {
+        MIPLinearExpression expr = new MIPLinearExpression();
+        for (int i = 0; i < coeffs.length; i++) {
+            expr.addTerm(coeffs[i], vars[i]);
+        }
+        return expr;
+    }
+
+    private static int[] addVars(MIPModel model, int nb, double ub, MIPModel.VarType type) {
+        double[] lb = new double[nb];
+        double[] ubs = new double[nb];
+        MIPModel.VarType[] types = new MIPModel.VarType[nb];
+        for (int i = 0; i < nb; i++) {
+            ubs[i] = ub;
+            types[i] = type;
+        }
+        return model.addVars(lb, ubs, null, types, null);
+    }
+
+    @Test
+    public void testLP() throws Exception {
+        MIPModel model = new BuiltInMIPSolver().newModel(null);
+        int[] xy = addVars(model, 2, 10, MIPModel.VarType.CONTINUOUS);
+        model.update();
+        int c1 = model.addConstr(expr(new double[]{1, 2}, xy), MIPModel.Sense.LESS_EQUAL, 4, "c1");
+        int c2 = model.addConstr(expr(new double[]{3, 1}, xy), MIPModel.Sense.LESS_EQUAL, 6, "c2");
+        model.setObjective(expr(new double[]{-1, -1}, xy));
+
+        assertEquals(MIPModel.Status.OPTIMAL, model.optimize());
+        assertEquals(-2.8, model.getObjectiveValue(), DELTA);
+        assertArrayEquals(new double[]{1.6, 1.2}, model.getValues(xy), DELTA);
+        assertArrayEquals(new double[]{-0.4, -0.2}, model.getDuals(new int[]{c1, c2}), DELTA);
+    }
+
+    @Test
+    public void testLPEqualityAndNegativeRhs() throws Exception {
+        MIPModel model = new BuiltInMIPSolver().newModel(null);
+        int[] xy = addVars(model, 2, 5, MIPModel.VarType.CONTINUOUS);
+        model.update();
+        int c1 = model.addConstr(expr(new double[]{1, -1}, xy), MIPModel.Sense.EQUAL, -2, "c1");
+        int c2 = model.addConstr(expr(new double[]{1}, new int[]{xy[1]}), MIPModel.Sense.GREATER_EQUAL, 3, "c2");
+        model.setObjective(expr(new double[]{1}, new int[]{xy[0]}));
+
+        assertEquals(MIPModel.Status.OPTIMAL, model.optimize());
+        assertArrayEquals(new double[]{1, 3}, model.getValues(xy), DELTA);
+        // x = y - 2 and y >= 3: raising either right hand side by one raises x by one
+        assertArrayEquals(new double[]{1, 1}, model.getDuals(new int[]{c1, c2}), DELTA);
+    }
+
+    @Test
+    public void testUnbounded() throws Exception {
+        MIPModel model = new BuiltInMIPSolver().newModel(null);
+        int[] x = addVars(model, 1, 1e100, MIPModel.VarType.CONTINUOUS);
+        model.update();
+        model.addConstr(expr(new double[]{1}, x), MIPModel.Sense.GREATER_EQUAL, 1, "c");
+        model.setObjective(expr(new double[]{-1}, x));
+        assertEquals(MIPModel.Status.UNBOUNDED, model.optimize());
+    }
+
+    @Test
+    public void testUnboundedMIP() throws Exception {
+        MIPModel model = new BuiltInMIPSolver().newModel(null);
+        int[] x = addVars(model, 1, 1e100, MIPModel.VarType.INTEGER);
+        model.update();
+        model.addConstr(expr(new double[]{1}, x), MIPModel.Sense.GREATER_EQUAL, 1, "c");
+        model.setObjective(expr(new double[]{-1}, x));
+        assertEquals(MIPModel.Status.UNBOUNDED, model.optimize());
+        assertFalse(model.hasSolution());
+    }
+
+    @Test
+    public void testInfeasibleMIPWithUnboundedRelaxation() throws Exception {
+        // 2x - 2y = 1 has no integer solution, but its LP relaxation is unbounded and branch-and-bound does not terminate
+        MIPModel model = new BuiltInMIPSolver(Double.POSITIVE_INFINITY, 1000).newModel(null);
+        int[] xy = addVars(model, 2, 1e100, MIPModel.VarType.INTEGER);
+        model.update();
+        model.addConstr(expr(new double[]{2, -2}, xy), MIPModel.Sense.EQUAL, 1, "c");
+        model.setObjective(expr(new double[]{-1}, new int[]{xy[0]}));
+        assertEquals(MIPModel.Status.INFEASIBLE_OR_UNBOUNDED, model.optimize());
+        assertFalse(model.hasSolution());
+    }
+
+    @Test
+    public void testLimits() throws Exception {
+        // the knapsack of testMIP, whose LP relaxation is fractional, stopped after the root node
+        for (double[] start : new double[][]{null, {0, 1, 1}}) {
+            MIPModel model = new BuiltInMIPSolver(Double.POSITIVE_INFINITY, 1).newModel(null);
+            int[] abc = addVars(model, 3, 1, MIPModel.VarType.BINARY);
+            model.update();
+            model.addConstr(expr(new double[]{2, 3, 1}, abc), MIPModel.Sense.LESS_EQUAL, 5, "c1");
+            model.addConstr(expr(new double[]{4, 1, 2}, abc), MIPModel.Sense.LESS_EQUAL, 11, "c2");
+            model.addConstr(expr(new double[]{3, 4, 2}, abc), MIPModel.Sense.LESS_EQUAL, 8, "c3");
+            model.setObjective(expr(new double[]{-5, -4, -3}, abc));
+            if (start != null) {
+                model.setStart(abc, start);
+            }
+
+            assertEquals(MIPModel.Status.NODE_LIMIT, model.optimize());
+            assertEquals(start != null, model.hasSolution());
+            if (start != null) {
+                assertEquals(-7, model.getObjectiveValue(), DELTA);
+                assertArrayEquals(start, model.getValues(abc), DELTA);
+            }
+
+            model.setNodeLimit(Double.POSITIVE_INFINITY);
+            model.setTimeLimit(0);
+            assertEquals(MIPModel.Status.TIME_LIMIT, model.optimize());
+
+            model.setTimeLimit(Double.POSITIVE_INFINITY);
+            assertEquals(MIPModel.Status.OPTIMAL, model.optimize());
+            assertEquals(-9, model.getObjectiveValue(), DELTA);
+        }
+    }
+
+    @Test
+    public void testMIP() throws Exception {
+        // knapsack with three capacities, LP relaxation is fractional
+        MIPModel model = new BuiltInMIPSolver().newModel(null);
+        int[] abc = addVars(model, 3, 1, MIPModel.VarType.BINARY);
+        model.update();
+        model.addConstr(expr(new double[]{2, 3, 1}, abc), MIPModel.Sense.LESS_EQUAL, 5, "c1");
+        model.addConstr(expr(new double[]{4, 1, 2}, abc), MIPModel.Sense.LESS_EQUAL, 11, "c2");
+        model.addConstr(expr(new double[]{3, 4, 2}, abc), MIPModel.Sense.LESS_EQUAL, 8, "c3");
+        model.setObjective(expr(new double[]{-5, -4, -3}, abc));
+
+        assertEquals(MIPModel.Status.OPTIMAL, model.optimize());
+        assertEquals(-9, model.getObjectiveValue(), DELTA);
+        assertArrayEquals(new double[]{1, 1, 0}, model.getValues(abc), DELTA);
+    }
+
+    @Test
+    public void testStart() throws Exception {
+        // the knapsack of testMIP, started from a feasible, a suboptimal and an infeasible solution
+        for (double[] start : new double[][]{{1, 1, 0}, {0, 1, 1}, {1, 1, 1}, {1, Double.NaN, 0}}) {
+            MIPModel model = new BuiltInMIPSolver().newModel(null);
+            int[] abc = addVars(model, 3, 1, MIPModel.VarType.BINARY);
+            model.update();
+            model.addConstr(expr(new double[]{2, 3, 1}, abc), MIPModel.Sense.LESS_EQUAL, 5, "c1");
+            model.addConstr(expr(new double[]{4, 1, 2}, abc), MIPModel.Sense.LESS_EQUAL, 11, "c2");
+            model.addConstr(expr(new double[]{3, 4, 2}, abc), MIPModel.Sense.LESS_EQUAL, 8, "c3");
+            model.setObjective(expr(new double[]{-5, -4, -3}, abc));
+            model.setStart(abc, start);
+
+            assertEquals(MIPModel.Status.OPTIMAL, model.optimize());
+            assertEquals(-9, model.getObjectiveValue(), DELTA);
+            assertArrayEquals(new double[]{1, 1, 0}, model.getValues(abc), DELTA);
+        }
+    }
+
+    @Test
+    public void testColumnsAndRemoval() throws Exception {
+        // choose exactly one of x and y at minimum cost
+        MIPModel model = new BuiltInMIPSolver().newModel(null);
+        int[] xy = addVars(model, 2, 1, MIPModel.VarType.CONTINUOUS);
+        model.update();
+        int choice = model.addConstr(expr(new double[]{1, 1}, xy), MIPModel.Sense.EQUAL, 1, "choice");
+        model.setObjective(expr(new double[]{3, 2}, xy));
+        assertEquals(MIPModel.Status.OPTIMAL, model.optimize());
+        assertEquals(2, model.getObjectiveValue(), DELTA);
+        assertEquals(2, model.getDuals(new int[]{choice})[0], DELTA);
+
+        // a cheaper column
+        int z = model.addVar(0, 1, 1, MIPModel.VarType.CONTINUOUS, new int[]{choice}, new double[]{1}, "z");
+        model.update();
+        assertEquals(MIPModel.Status.OPTIMAL, model.optimize());
+        assertEquals(1, model.getObjectiveValue(), DELTA);
+        assertEquals(1, model.getValues(new int[]{z})[0], DELTA);
+
+        model.removeVar(z);
+        model.setVarType(xy[0], MIPModel.VarType.BINARY);
+        model.setVarType(xy[1], MIPModel.VarType.BINARY);
+        model.update();
+        assertEquals(2, model.getNbVars());
+        assertEquals(MIPModel.Status.OPTIMAL, model.optimize());
+        assertEquals(2, model.getObjectiveValue(), DELTA);
+
+        model.removeConstr(choice);
+        model.update();
+        assertEquals(0, model.getNbConstrs());
+        assertEquals(MIPModel.Status.OPTIMAL, model.optimize());
+        assertEquals(0, model.getObjectiveValue(), DELTA);
+    }
+
+    @Test
+    public void testIIS() throws Exception {
+        MIPModel model = new BuiltInMIPSolver().newModel(null);
+        int[] xyz = addVars(model, 3, 10, MIPModel.VarType.INTEGER);
+        model.update();
+        int c0 = model.addConstr(expr(new double[]{1, 1}, new int[]{xyz[0], xyz[1]}), MIPModel.Sense.GREATER_EQUAL, 3, "c0");
+        int c1 = model.addConstr(expr(new double[]{1}, new int[]{xyz[0]}), MIPModel.Sense.LESS_EQUAL, 1, "c1");
+        model.addConstr(expr(new double[]{1}, new int[]{xyz[2]}), MIPModel.Sense.LESS_EQUAL, 5, "c2");
+        int c3 = model.addConstr(expr(new double[]{1}, new int[]{xyz[1]}), MIPModel.Sense.LESS_EQUAL, 1, "c3");
+        model.setObjective(expr(new double[]{1, 1, 1}, xyz));
+
+        assertEquals(MIPModel.Status.INFEASIBLE, model.optimize());
+        assertArrayEquals(new int[]{c0, c1, c3}, model.computeIIS());
+        assertEquals("c3", model.getConstrName(c3));
+    }
+}
@@ -187,6 +187,45 @@ public class MacroscopicTopologyTest {
 
     }
 
+    @Test
+    public void testGetSuccessorsFromIndex() throws Exception {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        List<SystemNode> nodes = new LinkedList<>();
+        for (String linkName : macro.getLinkNames()) {
+            if (!nodes.contains(macro.getLink(linkName).first)) {
+                nodes.add(macro.getLink(linkName).first);
+            }
+        }
+        for (SystemNode alongFrom : nodes) {
+            for (SystemNode alongTo : nodes) {
+                List<List<SystemNode>> alongRoutes = macro.getRoutes(alongFrom, alongTo);
+                for (SystemNode from : nodes) {
+                    List<SystemNode> expected = new LinkedList<>();
+                    for (List<SystemNode> route : alongRoutes) {
+                        int fromIndex = route.indexOf(from);
+                        if (fromIndex >= 0 && route.size() > fromIndex + 1 && !expected.contains(route.get(fromIndex + 1))) {
+                            expected.add(route.get(fromIndex + 1));
+                        }
+                    }
+                    assertEquals(expected, macro.getSuccessors(from, alongFrom, alongTo));
+                }
+            }
+        }
+
+        // index is rebuilt when routes are added
+        SystemNode a1 = macro.getSystemNode("A1");
+        SystemNode a2 = macro.getSystemNode("A2");
+        SystemNode m1 = macro.getSystemNode("M1");
+        macro.link("A2_M1", a2, m1);
+        assertEquals(1, macro.getSuccessors(a2, a1, m1).size());
+        List<SystemNode> shortcut = new LinkedList<>();
+        shortcut.add(a1);
+        shortcut.add(a2);
+        shortcut.add(m1);
+        macro.addRoute(shortcut);
+        assertEquals(2, macro.getSuccessors(a2, a1, m1).size());
+    }
+
     @Test
     public void testFindRoutes() throws Exception {
         MacroscopicTopology macro = new MacroscopicTopology();
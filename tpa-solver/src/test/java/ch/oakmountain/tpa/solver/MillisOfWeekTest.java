@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.oakmountain.tpa.solver;
+
+import org.joda.time.Duration;
+import org.joda.time.Minutes;
+import org.junit.Test;
+
+import static org.joda.time.DateTimeConstants.*;
+import static org.junit.Assert.*;
+
+public class MillisOfWeekTest {
+
+    @Test
+    public void testConversion() throws Exception {
+        assertEquals(0, PeriodicalTimeFrame.START_OF_WEEK.getMillisOfWeek());
+        assertEquals(MillisOfWeek.MILLIS_PER_WEEK, PeriodicalTimeFrame.END_OF_WEEK.getMillisOfWeek());
+
+        PeriodicalTimeFrame time = new PeriodicalTimeFrame(WEDNESDAY, 13, 37);
+        assertEquals(((2 * 24 + 13) * 60 + 37) * 60 * 1000, time.getMillisOfWeek());
+        assertEquals(time, MillisOfWeek.toPeriodicalTimeFrame(time.getMillisOfWeek()));
+    }
+
+    @Test
+    public void testPlusMinus() throws Exception {
+        PeriodicalTimeFrame startTime = new PeriodicalTimeFrame(MONDAY, 0, 5);
+        Duration tenMinutes = Minutes.minutes(10).toStandardDuration();
+        assertEquals(startTime.minus(tenMinutes).getMillisOfWeek(), MillisOfWeek.minus(startTime.getMillisOfWeek(), MillisOfWeek.of(tenMinutes)));
+
+        PeriodicalTimeFrame endTime = new PeriodicalTimeFrame(SUNDAY, 23, 55);
+        assertEquals(endTime.plus(tenMinutes).getMillisOfWeek(), MillisOfWeek.plus(endTime.getMillisOfWeek(), MillisOfWeek.of(tenMinutes)));
+        assertEquals(endTime.getMillisOfWeek(), MillisOfWeek.plus(endTime.getMillisOfWeek(), MillisOfWeek.of((Duration) null)));
+    }
+
+    @Test
+    public void testDistanceAndBounds() throws Exception {
+        PeriodicalTimeFrame[] times = new PeriodicalTimeFrame[]{
+                new PeriodicalTimeFrame(MONDAY, 0, 0),
+                new PeriodicalTimeFrame(MONDAY, 7, 0),
+                new PeriodicalTimeFrame(TUESDAY, 7, 0),
+                new PeriodicalTimeFrame(SUNDAY, 23, 0),
+                new PeriodicalTimeFrame(SUNDAY, 23, 59)};
+        for (PeriodicalTimeFrame moment : times) {
+            for (PeriodicalTimeFrame earliest : times) {
+                assertEquals(moment.distanceAfter(earliest).getMillis(), MillisOfWeek.distanceAfter(moment.getMillisOfWeek(), earliest.getMillisOfWeek()));
+                for (PeriodicalTimeFrame latest : times) {
+                    assertEquals(moment.isWithinBounds(earliest, latest), MillisOfWeek.isWithinBounds(moment.getMillisOfWeek(), earliest.getMillisOfWeek(), latest.getMillisOfWeek()));
+                }
+            }
+        }
+    }
+}
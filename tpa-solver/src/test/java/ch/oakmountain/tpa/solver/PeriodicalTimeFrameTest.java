@@ -18,6 +18,7 @@ package ch.oakmountain.tpa.solver;
 
 
 import org.joda.time.*;
+import org.joda.time.chrono.ISOChronology;
 import org.junit.Test;
 
 import static org.joda.time.DateTimeConstants.*;
@@ -158,4 +159,34 @@ public class PeriodicalTimeFrameTest {
     }
 
 
+    @Test
+    public void testShiftToStandardWeekMultipleWeeks() throws Exception {
+        PeriodicalTimeFrame startTime = new PeriodicalTimeFrame(WEDNESDAY, 13, 37);
+        for (int weeks = -60; weeks <= 60; weeks += 7) {
+            for (int minutes = -24 * 60; minutes <= 24 * 60; minutes += 97) {
+                Duration offset = Days.days(7 * weeks).toStandardDuration().plus(Minutes.minutes(minutes).toStandardDuration());
+                PeriodicalTimeFrame expected = shiftToStandardWeekByLoop(startTime.getLocalMillis() + offset.getMillis());
+                assertEquals(expected, startTime.plus(offset));
+                assertEquals(expected.getLocalMillis(), startTime.plus(offset).getLocalMillis());
+                assertEquals(expected, startTime.withPeriodAdded(offset.toPeriod(), 1));
+                assertTrue(startTime.plus(offset).isAfterOrEqual(PeriodicalTimeFrame.START_OF_WEEK));
+                assertTrue(startTime.plus(offset).isBefore(PeriodicalTimeFrame.END_OF_WEEK));
+            }
+        }
+    }
+
+    /**
+     * Reference implementation of the former week normalisation, which shifts by one week per iteration.
+     */
+    private static PeriodicalTimeFrame shiftToStandardWeekByLoop(long localMillis) {
+        PeriodicalTimeFrame periodicalTimeFrame = new PeriodicalTimeFrame(localMillis, ISOChronology.getInstanceUTC());
+        while (periodicalTimeFrame.isAfterOrEqual(PeriodicalTimeFrame.END_OF_WEEK)) {
+            periodicalTimeFrame = new PeriodicalTimeFrame(periodicalTimeFrame.getChronology().days().add(periodicalTimeFrame.getLocalMillis(), -7), ISOChronology.getInstanceUTC());
+        }
+        while (periodicalTimeFrame.isBefore(PeriodicalTimeFrame.START_OF_WEEK)) {
+            periodicalTimeFrame = new PeriodicalTimeFrame(periodicalTimeFrame.getChronology().days().add(periodicalTimeFrame.getLocalMillis(), 7), ISOChronology.getInstanceUTC());
+        }
+        return periodicalTimeFrame;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.oakmountain.tpa.solver;
+
+import org.joda.time.LocalTime;
+import org.joda.time.Minutes;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.joda.time.DateTimeConstants.MONDAY;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class SolutionCandidateFinderTest {
+
+    /*
+           - X -
+         /       \
+       S           T
+         \       /
+           - Y -
+     */
+    private MacroscopicTopology getDiamondTopology() {
+        MacroscopicTopology macro = new MacroscopicTopology();
+        macro.link("S_X", "S", "X");
+        macro.link("X_T", "X", "T");
+        macro.link("S_Y", "S", "Y");
+        macro.link("Y_T", "Y", "T");
+        macro.addRoute(Arrays.asList(macro.getSystemNode("S"), macro.getSystemNode("X"), macro.getSystemNode("T")));
+        macro.addRoute(Arrays.asList(macro.getSystemNode("S"), macro.getSystemNode("Y"), macro.getSystemNode("T")));
+        return macro;
+    }
+
+    private void addSlot(TrainPathSlotCatalogue catalogue, MacroscopicTopology macro, String linkName, String from, String to, String start, String end) {
+        catalogue.add(linkName, linkName + "_" + start, LocalTime.parse(start), LocalTime.parse(end), macro.getSystemNode(from), macro.getSystemNode(to), Periodicity.getWholeWeekPeriodicity());
+    }
+
+    private SimpleTrainPathApplication getApplication(MacroscopicTopology macro, PeriodicalTimeFrame endTime) {
+        return new SimpleTrainPathApplication("app", macro.getSystemNode("S"), macro.getSystemNode("T"), new PeriodicalTimeFrame(MONDAY, 7, 30), endTime, null, 0, 0, 0);
+    }
+
+    @Test
+    public void testEarliestPathAlongAlternativeRoutes() throws Exception {
+        MacroscopicTopology macro = getDiamondTopology();
+        TrainPathSlotCatalogue catalogue = new TrainPathSlotCatalogue();
+        addSlot(catalogue, macro, "S_X", "S", "X", "08:00", "08:10");
+        addSlot(catalogue, macro, "X_T", "X", "T", "08:20", "09:00");
+        addSlot(catalogue, macro, "S_Y", "S", "Y", "08:05", "08:15");
+        addSlot(catalogue, macro, "Y_T", "Y", "T", "08:20", "08:40");
+
+        List<TrainPathSlot> path = SolutionCandidateFinder.getEarliestPathWithinRequestedBounds(macro, catalogue, getApplication(macro, new PeriodicalTimeFrame(MONDAY, 10, 0)));
+        assertNotNull(path);
+        assertEquals(2, path.size());
+        assertEquals("S_Y", path.get(0).getPeriodicalTrainPathSlot().getTrainPathSectionName());
+        assertEquals("Y_T", path.get(1).getPeriodicalTrainPathSlot().getTrainPathSectionName());
+        assertEquals(new PeriodicalTimeFrame(MONDAY, 8, 40), path.get(1).getEndTime());
+
+        // arrival after requested arrival
+        assertNull(SolutionCandidateFinder.getEarliestPathWithinRequestedBounds(macro, catalogue, getApplication(macro, new PeriodicalTimeFrame(MONDAY, 8, 30))));
+    }
+
+    @Test
+    public void testEarliestPathTieBreak() throws Exception {
+        MacroscopicTopology macro = getDiamondTopology();
+        TrainPathSlotCatalogue catalogue = new TrainPathSlotCatalogue();
+        addSlot(catalogue, macro, "S_Y", "S", "Y", "08:00", "08:10");
+        addSlot(catalogue, macro, "Y_T", "Y", "T", "08:20", "08:40");
+        addSlot(catalogue, macro, "S_X", "S", "X", "08:05", "08:15");
+        addSlot(catalogue, macro, "X_T", "X", "T", "08:20", "08:40");
+
+        // equal arrival: the path through the earlier settled system node wins, independently of the insertion order
+        for (int i = 0; i < 3; i++) {
+            List<TrainPathSlot> path = SolutionCandidateFinder.getEarliestPathWithinRequestedBounds(macro, catalogue, getApplication(macro, new PeriodicalTimeFrame(MONDAY, 10, 0)));
+            assertEquals("S_Y", path.get(0).getPeriodicalTrainPathSlot().getTrainPathSectionName());
+            assertEquals("Y_T", path.get(1).getPeriodicalTrainPathSlot().getTrainPathSectionName());
+        }
+    }
+
+    @Test
+    public void testFindFeasibleDAGWidensDefaultDAG() throws Exception {
+        MacroscopicTopology macro = getDiamondTopology();
+        TrainPathSlotCatalogue catalogue = new TrainPathSlotCatalogue();
+        addSlot(catalogue, macro, "S_X", "S", "X", "08:00", "08:10");
+        addSlot(catalogue, macro, "X_T", "X", "T", "09:00", "09:30");
+        addSlot(catalogue, macro, "S_Y", "S", "Y", "08:05", "08:15");
+        addSlot(catalogue, macro, "Y_T", "Y", "T", "11:00", "11:20");
+        SimpleTrainPathApplication app = new SimpleTrainPathApplication("app", macro.getSystemNode("S"), macro.getSystemNode("T"), new PeriodicalTimeFrame(MONDAY, 7, 30), new PeriodicalTimeFrame(MONDAY, 10, 0), null, 0, 0, 0, false, true);
+        assertTrue(app.getParams().isSanityCheck());
+        TrainPathAllocationProblemPruningParameters defaultParams = app.getParams().withDefaultPruning();
+
+        // the dwell time of 50 minutes at X exceeds the default maximum additional dwell time
+        assertFalse(TrainPathDAG.constructDAG(macro, app, defaultParams, catalogue).isTargetNodeReached());
+
+        TrainPathDAGCache dagCache = new TrainPathDAGCache();
+        TrainPathDAG dag = SolutionCandidateFinder.findFeasibleDAG(macro, catalogue, app, dagCache);
+        assertTrue(dag.isTargetNodeReached());
+        assertEquals(1, dag.nbPaths());
+        assertTrue(dag.getParams().isRelaxationOf(defaultParams));
+
+        // the widened DAG is cached
+        long nbMisses = dagCache.getNbMisses();
+        assertEquals(1, SolutionCandidateFinder.findFeasibleDAG(macro, catalogue, app, dagCache).nbPaths());
+        assertEquals(nbMisses, dagCache.getNbMisses());
+    }
+
+    @Test
+    public void testKBest() throws Exception {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 20);
+        SimpleTrainPathApplication r = new SimpleTrainPathApplication("therequest", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(1, 5, 0), new PeriodicalTimeFrame(1, 15, 0), null, 0, 0, 0);
+        TrainPathAllocationProblemPruningParameters params = r.getParams().toBuilder()
+                .setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(40).toStandardDuration())
+                .setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(40).toStandardDuration())
+                .setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(60).toStandardDuration())
+                .build();
+        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, params, catalogue);
+        List<Long> weights = new ArrayList<>();
+        for (SolutionCandidate solutionCandidate : SolutionCandidateFinder.getEnumerate(dag)) {
+            weights.add(solutionCandidate.getWeight());
+        }
+        Collections.sort(weights);
+
+        int k = 50;
+        List<SolutionCandidate> kBest = SolutionCandidateFinder.getKBest(dag, k);
+        assertEquals(k, kBest.size());
+        assertEquals(k, new HashSet<>(kBest).size());
+        for (int i = 0; i < k; i++) {
+            assertEquals((long) weights.get(i), kBest.get(i).getWeight());
+        }
+        // reproducible
+        assertEquals(kBest, SolutionCandidateFinder.getKBest(dag, k));
+
+        // all paths if k exceeds their number
+        List<SolutionCandidate> all = SolutionCandidateFinder.getKBest(dag, weights.size() + 10);
+        assertEquals(weights.size(), all.size());
+        assertEquals(SolutionCandidateFinder.getEnumerate(dag), new HashSet<>(all));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.oakmountain.tpa.solver;
+
+import org.joda.time.Minutes;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SolutionCandidateIteratorTest {
+
+    private static TrainPathDAG getDAG() {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 20);
+        SimpleTrainPathApplication r = new SimpleTrainPathApplication("therequest", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(1, 5, 0), new PeriodicalTimeFrame(1, 15, 0), null, 0, 0, 0);
+        TrainPathAllocationProblemPruningParameters params = r.getParams().toBuilder()
+                .setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(40).toStandardDuration())
+                .setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(40).toStandardDuration())
+                .setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(60).toStandardDuration())
+                .build();
+        return TrainPathDAG.constructDAG(macro, r, params, catalogue);
+    }
+
+    @Test
+    public void testDepthFirst() throws Exception {
+        TrainPathDAG dag = getDAG();
+        Set<SolutionCandidate> expected = new HashSet<>(SolutionCandidateFinder.getKBest(dag, (int) dag.nbPaths()));
+
+        Set<SolutionCandidate> solutionCandidates = new HashSet<>();
+        SolutionCandidateIterator iterator = dag.solutionCandidateIterator(false, Integer.MAX_VALUE);
+        while (iterator.hasNext()) {
+            assertTrue(solutionCandidates.add(iterator.next()));
+        }
+        assertFalse(iterator.isLimitReached());
+        assertEquals(dag.nbPaths(), solutionCandidates.size());
+        assertEquals(expected, solutionCandidates);
+    }
+
+    @Test
+    public void testByIncreasingWeight() throws Exception {
+        TrainPathDAG dag = getDAG();
+        Set<SolutionCandidate> expected = new HashSet<>(SolutionCandidateFinder.getKBest(dag, (int) dag.nbPaths()));
+
+        Set<SolutionCandidate> solutionCandidates = new HashSet<>();
+        SolutionCandidateIterator iterator = dag.solutionCandidateIterator(true, Integer.MAX_VALUE);
+        long previousWeight = Long.MIN_VALUE;
+        while (iterator.hasNext()) {
+            SolutionCandidate solutionCandidate = iterator.next();
+            assertTrue(solutionCandidates.add(solutionCandidate));
+            assertTrue(previousWeight <= solutionCandidate.getWeight());
+            previousWeight = solutionCandidate.getWeight();
+        }
+        assertEquals(expected, solutionCandidates);
+    }
+
+    @Test
+    public void testByIncreasingWeightWithManyEqualWeights() throws Exception {
+        // six trains per hour and long dwell times: about 4e11 paths, the cheapest thousands of them of equal weight
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 6, 20);
+        SimpleTrainPathApplication r = TrainPathAllocationProblemModelTest.getApplication(macro, "therequest", 5, 15, 0);
+        TrainPathAllocationProblemPruningParameters params = r.getParams().toBuilder()
+                .setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(120).toStandardDuration())
+                .setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(40).toStandardDuration())
+                .setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(60).toStandardDuration())
+                .build();
+        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, params, catalogue);
+        long minWeight = SolutionCandidateFinder.getCheapest(dag, null).getWeight();
+
+        Set<SolutionCandidate> solutionCandidates = new HashSet<>();
+        SolutionCandidateIterator iterator = dag.solutionCandidateIterator(true, 1000);
+        while (iterator.hasNext()) {
+            SolutionCandidate solutionCandidate = iterator.next();
+            assertTrue(solutionCandidates.add(solutionCandidate));
+            assertEquals(minWeight, solutionCandidate.getWeight());
+        }
+        assertEquals(1000, solutionCandidates.size());
+        assertTrue(iterator.isLimitReached());
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        TrainPathDAG dag = getDAG();
+        for (boolean byIncreasingWeight : new boolean[]{false, true}) {
+            SolutionCandidateIterator iterator = dag.solutionCandidateIterator(byIncreasingWeight, 10);
+            int nb = 0;
+            while (iterator.hasNext()) {
+                iterator.next();
+                nb++;
+            }
+            assertEquals(10, nb);
+            assertEquals(10, iterator.getNbReturned());
+            assertTrue(iterator.isLimitReached());
+            assertFalse(iterator.hasNext());
+        }
+        SolutionCandidateIterator all = dag.solutionCandidateIterator(false, (int) dag.nbPaths());
+        while (all.hasNext()) {
+            all.next();
+        }
+        assertFalse(all.isLimitReached());
+    }
+}
@@ -48,20 +48,46 @@ public class TrainPathAllocationParametersTest {
         assertEquals(new PeriodicalTimeFrame(1, 14, 0), r.getParams().getArrivalUpperBound());
         assertEquals(new PeriodicalTimeFrame(1, 15, 0), r.getParams().getArrivalHardUpperBound());
 
-        r.getParams().setMAXIMUM_EARLIER_DEPARTURE(Minutes.minutes(60).toStandardDuration());
+        TrainPathAllocationProblemPruningParameters params = r.getParams().toBuilder().setMAXIMUM_EARLIER_DEPARTURE(Minutes.minutes(60).toStandardDuration()).build();
+
+        assertEquals(new PeriodicalTimeFrame(1, 4, 0), params.getDepartureLowerBound());
+        assertEquals(new PeriodicalTimeFrame(1, 4, 0), params.getDepartureHardLowerBound());
+        assertEquals(new PeriodicalTimeFrame(1, 14, 0), params.getArrivalUpperBound());
+        assertEquals(new PeriodicalTimeFrame(1, 15, 0), params.getArrivalHardUpperBound());
+
+        params = params.toBuilder()
+                .setMAXIMUM_EARLIER_DEPARTURE(Minutes.minutes(30).toStandardDuration())
+                .setMAXIMUM_LATER_ARRIVAL(Minutes.minutes(30).toStandardDuration())
+                .build();
+
+        assertEquals(new PeriodicalTimeFrame(1, 4, 30), params.getDepartureLowerBound());
+        assertEquals(new PeriodicalTimeFrame(1, 4, 0), params.getDepartureHardLowerBound());
+        assertEquals(new PeriodicalTimeFrame(1, 14, 30), params.getArrivalUpperBound());
+        assertEquals(new PeriodicalTimeFrame(1, 15, 0), params.getArrivalHardUpperBound());
+    }
 
-        assertEquals(new PeriodicalTimeFrame(1, 4, 0), r.getParams().getDepartureLowerBound());
-        assertEquals(new PeriodicalTimeFrame(1, 4, 0), r.getParams().getDepartureHardLowerBound());
-        assertEquals(new PeriodicalTimeFrame(1, 14, 0), r.getParams().getArrivalUpperBound());
-        assertEquals(new PeriodicalTimeFrame(1, 15, 0), r.getParams().getArrivalHardUpperBound());
+    @Test
+    public void testBuilderLeavesParamsUntouched() throws Exception {
+        SimpleTrainPathApplication r = getRequest();
+        setHardBounds(r, 60, 0, 60);
+        TrainPathAllocationProblemPruningParameters params = r.getParams();
 
-        r.getParams().setMAXIMUM_EARLIER_DEPARTURE(Minutes.minutes(30).toStandardDuration());
-        r.getParams().setMAXIMUM_LATER_ARRIVAL(Minutes.minutes(30).toStandardDuration());
+        TrainPathAllocationProblemPruningParameters relaxed = params.relaxedToMax();
+        TrainPathAllocationProblemPruningParameters derived = params.withDefaultPruning().toBuilder()
+                .setMAXIMUM_ADDITIONAL_DWELL_TIME(r.getTo(), Minutes.minutes(5).toStandardDuration())
+                .build();
 
-        assertEquals(new PeriodicalTimeFrame(1, 4, 30), r.getParams().getDepartureLowerBound());
-        assertEquals(new PeriodicalTimeFrame(1, 4, 0), r.getParams().getDepartureHardLowerBound());
-        assertEquals(new PeriodicalTimeFrame(1, 14, 30), r.getParams().getArrivalUpperBound());
-        assertEquals(new PeriodicalTimeFrame(1, 15, 0), r.getParams().getArrivalHardUpperBound());
+        assertEquals(new PeriodicalTimeFrame(1, 5, 0), params.getDepartureLowerBound());
+        assertEquals(new PeriodicalTimeFrame(1, 14, 0), params.getArrivalUpperBound());
+        assertNull(params.getMAXIMUM_ADDITIONAL_DWELL_TIME(r.getTo()));
+
+        assertEquals(new PeriodicalTimeFrame(1, 4, 0), relaxed.getDepartureLowerBound());
+        assertEquals(new PeriodicalTimeFrame(1, 15, 0), relaxed.getArrivalUpperBound());
+        assertEquals(relaxed.getApplicationHardMaxDuration(), relaxed.getMAXIMUM_ADDITIONAL_DWELL_TIME(r.getTo()));
+
+        assertEquals(Minutes.minutes(15).toStandardDuration(), derived.getMAXIMUM_ADDITIONAL_DWELL_TIME(r.getFrom()));
+        assertEquals(Minutes.minutes(5).toStandardDuration(), derived.getMAXIMUM_ADDITIONAL_DWELL_TIME(r.getTo()));
+        assertEquals(Minutes.minutes(15).toStandardDuration(), params.withDefaultPruning().getMAXIMUM_ADDITIONAL_DWELL_TIME(r.getTo()));
     }
 
     @Test
@@ -88,7 +114,7 @@ public class TrainPathAllocationParametersTest {
         setHardBounds(r, 120, 0, 70);
 
         exception.expect(IllegalArgumentException.class);
-        r.getParams().setMAXIMUM_LATER_ARRIVAL(Minutes.minutes(80).toStandardDuration());
+        r.getParams().toBuilder().setMAXIMUM_LATER_ARRIVAL(Minutes.minutes(80).toStandardDuration());
     }
 
     @Test
@@ -98,7 +124,7 @@ public class TrainPathAllocationParametersTest {
         setHardBounds(r, 120, 0, 70);
 
         exception.expect(IllegalArgumentException.class);
-        r.getParams().setMAXIMUM_EARLIER_DEPARTURE(Minutes.minutes(130).toStandardDuration());
+        r.getParams().toBuilder().setMAXIMUM_EARLIER_DEPARTURE(Minutes.minutes(130).toStandardDuration());
     }
 
     @Test
@@ -115,16 +141,16 @@ public class TrainPathAllocationParametersTest {
         assertFalse(r.getParams().isWithinBounds(new PeriodicalTimeFrame(7, 14, 0)));
 
         setHardBounds(r, 120, 0, 80);
-        r.getParams().setMAXIMUM_LATER_ARRIVAL(Minutes.minutes(80).toStandardDuration());
-
-        assertTrue(r.getParams().isWithinBounds(new PeriodicalTimeFrame(1, 5, 0)));
-        assertTrue(r.getParams().isWithinBounds(new PeriodicalTimeFrame(1, 14, 0)));
-        assertTrue(r.getParams().isWithinBounds(new PeriodicalTimeFrame(1, 6, 0)));
-        assertTrue(r.getParams().isWithinBounds(new PeriodicalTimeFrame(1, 13, 0)));
-        assertTrue(r.getParams().isWithinBounds(new PeriodicalTimeFrame(1, 15, 20)));
-        assertFalse(r.getParams().isWithinBounds(new PeriodicalTimeFrame(1, 4, 0)));
-        assertFalse(r.getParams().isWithinBounds(new PeriodicalTimeFrame(1, 3, 0)));
-        assertFalse(r.getParams().isWithinBounds(new PeriodicalTimeFrame(7, 14, 0)));
+        TrainPathAllocationProblemPruningParameters params = r.getParams().toBuilder().setMAXIMUM_LATER_ARRIVAL(Minutes.minutes(80).toStandardDuration()).build();
+
+        assertTrue(params.isWithinBounds(new PeriodicalTimeFrame(1, 5, 0)));
+        assertTrue(params.isWithinBounds(new PeriodicalTimeFrame(1, 14, 0)));
+        assertTrue(params.isWithinBounds(new PeriodicalTimeFrame(1, 6, 0)));
+        assertTrue(params.isWithinBounds(new PeriodicalTimeFrame(1, 13, 0)));
+        assertTrue(params.isWithinBounds(new PeriodicalTimeFrame(1, 15, 20)));
+        assertFalse(params.isWithinBounds(new PeriodicalTimeFrame(1, 4, 0)));
+        assertFalse(params.isWithinBounds(new PeriodicalTimeFrame(1, 3, 0)));
+        assertFalse(params.isWithinBounds(new PeriodicalTimeFrame(7, 14, 0)));
     }
 
     private SimpleTrainPathApplication getRequest() throws NoSuchFieldException, IllegalAccessException {
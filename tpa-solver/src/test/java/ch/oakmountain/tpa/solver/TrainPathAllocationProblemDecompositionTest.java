@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.oakmountain.tpa.solver;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TrainPathAllocationProblemDecompositionTest {
+
+    @Test
+    public void testDecompose() throws Exception {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        SimpleTrainPathApplication monday1 = TrainPathAllocationProblemModelTest.getApplication(macro, "monday1", 5, 14, 0);
+        SimpleTrainPathApplication monday2 = TrainPathAllocationProblemModelTest.getApplication(macro, "monday2", 6, 15, 0);
+        SimpleTrainPathApplication wednesday = TrainPathAllocationProblemModelTest.getApplication(macro, "wednesday", new PeriodicalTimeFrame(3, 5, 0), new PeriodicalTimeFrame(3, 14, 0), 0);
+        SimpleTrainPathApplication infeasible = TrainPathAllocationProblemModelTest.getApplication(macro, "infeasible", new PeriodicalTimeFrame(5, 5, 0), new PeriodicalTimeFrame(5, 5, 10), 0);
+        TrainPathAllocationProblem tpa = TrainPathAllocationProblemModelTest.getTPA(macro, new HashSet<>(Arrays.asList(monday1, monday2, wednesday, infeasible)));
+
+        for (int nbThreads : new int[]{1, 3}) {
+            TrainPathAllocationProblemDecomposition decomposition = TrainPathAllocationProblemDecomposition.decompose(tpa, nbThreads);
+
+            assertEquals(Arrays.asList(infeasible), decomposition.getInfeasibleSimpleTrainPathApplications());
+            List<TrainPathAllocationProblem> components = decomposition.getComponents();
+            assertEquals(2, components.size());
+            // largest first
+            assertEquals(new HashSet<>(Arrays.asList(monday1, monday2)), components.get(0).getSimpleTrainPathApplications());
+            assertEquals(new HashSet<>(Arrays.asList(wednesday)), components.get(1).getSimpleTrainPathApplications());
+            assertSame(tpa.getDagCache(), components.get(0).getDagCache());
+        }
+    }
+
+    @Test
+    public void testComponentsDoNotShareSlots() throws Exception {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        Set<SimpleTrainPathApplication> simpleTrainPathApplications = new HashSet<>();
+        for (int day = 1; day <= 7; day++) {
+            for (int hour = 4; hour <= 6; hour++) {
+                simpleTrainPathApplications.add(TrainPathAllocationProblemModelTest.getApplication(macro, "r_" + day + "_" + hour, new PeriodicalTimeFrame(day, hour, 0), new PeriodicalTimeFrame(day, hour + 9, 0), 0));
+            }
+        }
+        TrainPathAllocationProblem tpa = TrainPathAllocationProblemModelTest.getTPA(macro, simpleTrainPathApplications);
+        TrainPathSlotCatalogue catalogue = tpa.getCatalogue();
+
+        TrainPathAllocationProblemDecomposition decomposition = TrainPathAllocationProblemDecomposition.decompose(tpa, 2);
+
+        Set<SimpleTrainPathApplication> covered = new HashSet<>();
+        Set<TrainPathSlot> slotsOfOtherComponents = new HashSet<>();
+        for (TrainPathAllocationProblem component : decomposition.getComponents()) {
+            Set<TrainPathSlot> slots = new HashSet<>();
+            for (SimpleTrainPathApplication r : component.getSimpleTrainPathApplications()) {
+                assertTrue(covered.add(r));
+                TrainPathDAG dag = SolutionCandidateFinder.findFeasibleDAG(macro, catalogue, r);
+                for (int v = 0; v < dag.getNbVertices(); v++) {
+                    if (dag.getSlot(v) != null) {
+                        slots.add(dag.getSlot(v));
+                        assertFalse(slotsOfOtherComponents.contains(dag.getSlot(v)));
+                    }
+                }
+            }
+            slotsOfOtherComponents.addAll(slots);
+        }
+        covered.addAll(decomposition.getInfeasibleSimpleTrainPathApplications());
+        assertEquals(simpleTrainPathApplications, covered);
+        assertEquals(7, decomposition.getComponents().size());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.solver;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TrainPathAllocationProblemGreedyHeuristicTest {
+
+    @Test
+    public void testPriorities() throws Exception {
+        TrainPathAllocationProblem tpa = TrainPathAllocationProblemModelTest.getTPA(6, 2);
+        long optimalWeight = TrainPathAllocationProblemModelTest.getWeight(TrainPathAllocationProblemModel.ModelType.ARC_NODE.createModel(tpa, 1, Integer.MAX_VALUE, MIPSolver.Type.BUILT_IN.createSolver()).solve(Files.createTempDirectory("tpa").toString(), false, false));
+
+        for (TrainPathAllocationProblemGreedyHeuristic.Priority priority : TrainPathAllocationProblemGreedyHeuristic.Priority.values()) {
+            TrainPathAllocations allocations = new TrainPathAllocationProblemGreedyHeuristic(tpa, 2, priority).solve(false);
+            assertEquals(tpa.getSimpleTrainPathApplications(), allocations.getAllocations().keySet());
+            assertTrue(allocations.getRemovedSimpleTrainPathApplications().isEmpty());
+            assertTrue(priority.name(), optimalWeight <= TrainPathAllocationProblemModelTest.getWeight(allocations));
+        }
+    }
+
+    @Test
+    public void testBacktracking() throws Exception {
+        // the heaviest application first takes a slot the last one cannot do without
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        Set<SimpleTrainPathApplication> simpleTrainPathApplications = new HashSet<>();
+        simpleTrainPathApplications.add(TrainPathAllocationProblemModelTest.getApplication(macro, "a", 5, 14, 30));
+        simpleTrainPathApplications.add(TrainPathAllocationProblemModelTest.getApplication(macro, "b", 5, 14, 30));
+        simpleTrainPathApplications.add(TrainPathAllocationProblemModelTest.getApplication(macro, "c", 4, 14, 30));
+        TrainPathAllocationProblem tpa = TrainPathAllocationProblemModelTest.getTPA(macro, simpleTrainPathApplications);
+
+        TrainPathAllocations withoutBacktracking = new TrainPathAllocationProblemGreedyHeuristic(tpa, 1, TrainPathAllocationProblemGreedyHeuristic.Priority.WEIGHT, 0).solve(false);
+        assertEquals(2, withoutBacktracking.getAllocations().size());
+        assertEquals(1, withoutBacktracking.getRemovedSimpleTrainPathApplications().size());
+        TrainPathAllocationProblemModelTest.getWeight(withoutBacktracking);
+
+        TrainPathAllocations withBacktracking = new TrainPathAllocationProblemGreedyHeuristic(tpa, 1, TrainPathAllocationProblemGreedyHeuristic.Priority.WEIGHT).solve(false);
+        assertEquals(simpleTrainPathApplications, withBacktracking.getAllocations().keySet());
+        TrainPathAllocationProblemModelTest.getWeight(withBacktracking);
+    }
+
+    @Test
+    public void testStartSolution() throws Exception {
+        TrainPathAllocationProblem tpa = TrainPathAllocationProblemModelTest.getTPA(6, 2);
+        TrainPathAllocations start = new TrainPathAllocationProblemGreedyHeuristic(tpa).solve(false);
+        Long expectedWeight = null;
+        for (TrainPathAllocationProblemModel.ModelType modelType : TrainPathAllocationProblemModel.ModelType.values()) {
+            for (int maxSolutionCandidatesPerApplication : new int[]{1, Integer.MAX_VALUE}) {
+                TrainPathAllocationProblemModel model = modelType.createModel(tpa, 1, maxSolutionCandidatesPerApplication, MIPSolver.Type.BUILT_IN.createSolver());
+                model.setStart(start);
+                TrainPathAllocations allocations = model.solve(Files.createTempDirectory("tpa").toString(), false, false);
+                assertEquals(tpa.getSimpleTrainPathApplications(), allocations.getAllocations().keySet());
+                long weight = TrainPathAllocationProblemModelTest.getWeight(allocations);
+                assertTrue(weight <= TrainPathAllocationProblemModelTest.getWeight(start));
+                if (maxSolutionCandidatesPerApplication == 1 && modelType == TrainPathAllocationProblemModel.ModelType.PATH_BASED) {
+                    // only the cheapest path and the start path per application
+                    continue;
+                }
+                if (expectedWeight == null) {
+                    expectedWeight = weight;
+                }
+                assertEquals(modelType.name(), (long) expectedWeight, weight);
+            }
+        }
+    }
+}
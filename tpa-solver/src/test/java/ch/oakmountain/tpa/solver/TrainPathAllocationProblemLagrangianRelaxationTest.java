@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.solver;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TrainPathAllocationProblemLagrangianRelaxationTest {
+
+    @Test
+    public void testBoundsOnOptimum() throws Exception {
+        TrainPathAllocationProblem tpa = TrainPathAllocationProblemModelTest.getTPA(6, 2);
+        TrainPathAllocations optimum = TrainPathAllocationProblemModel.ModelType.ARC_NODE.createModel(tpa, 1, Integer.MAX_VALUE, MIPSolver.Type.BUILT_IN.createSolver()).solve(Files.createTempDirectory("tpa").toString(), false, false);
+        long optimalWeight = TrainPathAllocationProblemModelTest.getWeight(optimum);
+
+        for (int nbThreads : new int[]{1, 3}) {
+            TrainPathAllocationProblemLagrangianRelaxation.LagrangianRelaxationResult result = new TrainPathAllocationProblemLagrangianRelaxation(tpa, nbThreads).solve(false);
+            assertNotNull(result.getAllocations());
+            assertEquals(tpa.getSimpleTrainPathApplications(), result.getAllocations().getAllocations().keySet());
+            long weight = TrainPathAllocationProblemModelTest.getWeight(result.getAllocations());
+            assertEquals(weight, result.getUpperBound());
+            assertTrue(result.getLowerBound() <= optimalWeight + 1e-6);
+            assertTrue(optimalWeight <= weight);
+            assertTrue(result.getNbIterations() >= 1);
+        }
+    }
+
+    @Test
+    public void testPartialRepair() throws Exception {
+        // four applications sharing three paths: one is left unallocated
+        TrainPathAllocationProblem tpa = TrainPathAllocationProblemModelTest.getTPA(4, 4);
+        TrainPathAllocationProblemLagrangianRelaxation.LagrangianRelaxationResult result = new TrainPathAllocationProblemLagrangianRelaxation(tpa, 1, 50).solve(false);
+        TrainPathAllocations allocations = result.getAllocations();
+        assertEquals(3, allocations.getAllocations().size());
+        assertEquals(1, allocations.getRemovedSimpleTrainPathApplications().size());
+        assertFalse(allocations.getAllocations().containsKey(allocations.getRemovedSimpleTrainPathApplications().iterator().next()));
+        assertEquals(TrainPathAllocationProblemModelTest.getWeight(allocations), result.getUpperBound());
+    }
+
+    @Test
+    public void testInfeasibleApplication() throws Exception {
+        TrainPathAllocationProblem feasible = TrainPathAllocationProblemModelTest.getTPA(2, 1);
+        MacroscopicTopology macro = feasible.getMacroscopicTopology();
+        Set<SimpleTrainPathApplication> simpleTrainPathApplications = new HashSet<>(feasible.getSimpleTrainPathApplications());
+        SimpleTrainPathApplication infeasible = TrainPathAllocationProblemModelTest.getApplication(macro, "tooshort", 5, 7, 0);
+        simpleTrainPathApplications.add(infeasible);
+        TrainPathAllocationProblem tpa = new TrainPathAllocationProblem(macro, simpleTrainPathApplications, feasible.getCatalogue());
+
+        try {
+            new TrainPathAllocationProblemLagrangianRelaxation(tpa).solve(false);
+            fail("Application without path must not be ignored");
+        } catch (InfeasibleTPAApplicationException e) {
+            // expected
+        }
+        TrainPathAllocations allocations = new TrainPathAllocationProblemLagrangianRelaxation(tpa).solve(true).getAllocations();
+        assertEquals(feasible.getSimpleTrainPathApplications(), allocations.getAllocations().keySet());
+        assertTrue(allocations.getRemovedSimpleTrainPathApplications().contains(infeasible));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.oakmountain.tpa.solver;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TrainPathAllocationProblemModelPathBasedColumnGenerationTest {
+
+    @Test
+    public void testFindCheapestSolutionCandidate() throws Exception {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        SimpleTrainPathApplication r = TrainPathAllocationProblemModelTest.getApplication(macro, "r", 5, 14, 0);
+        TrainPathAllocationProblem tpa = TrainPathAllocationProblemModelTest.getTPA(macro, Collections.singleton(r));
+        TrainPathSlotCatalogue catalogue = tpa.getCatalogue();
+        TrainPathAllocationProblemModelPathBasedColumnGeneration model = new TrainPathAllocationProblemModelPathBasedColumnGeneration(tpa);
+        TrainPathDAG dag = SolutionCandidateFinder.findFeasibleDAG(macro, catalogue, r);
+        Set<SolutionCandidate> solutionCandidates = SolutionCandidateFinder.getEnumerate(dag);
+
+        // without penalties: path of minimum weight
+        SolutionCandidate cheapest = model.findCheapestSolutionCandidate(r, dag, null);
+        long minWeight = Long.MAX_VALUE;
+        for (SolutionCandidate solutionCandidate : solutionCandidates) {
+            minWeight = Math.min(minWeight, solutionCandidate.getWeight());
+        }
+        assertTrue(solutionCandidates.contains(cheapest));
+        assertEquals(minWeight, cheapest.getWeight());
+
+        // penalizing a slot of the cheapest path: path of minimum weight avoiding it
+        TrainPathSlot penalized = cheapest.getPath().get(0);
+        double[] slotPenalties = new double[catalogue.getNbSlots()];
+        slotPenalties[penalized.getId()] = TrainPathAllocationProblemModelPathBasedColumnGeneration.ARTIFICIAL_COST;
+        SolutionCandidate avoiding = model.findCheapestSolutionCandidate(r, dag, slotPenalties);
+        long minWeightAvoiding = Long.MAX_VALUE;
+        for (SolutionCandidate solutionCandidate : solutionCandidates) {
+            if (!solutionCandidate.getPath().contains(penalized)) {
+                minWeightAvoiding = Math.min(minWeightAvoiding, solutionCandidate.getWeight());
+            }
+        }
+        assertFalse(avoiding.getPath().contains(penalized));
+        assertEquals(minWeightAvoiding, avoiding.getWeight());
+    }
+
+    @Test
+    public void testSlotContentionWithoutEnoughColumns() throws Exception {
+        // three applications sharing three paths, but only the cheapest path per application before pricing
+        TrainPathAllocationProblem tpa = TrainPathAllocationProblemModelTest.getTPA(3, 3);
+        TrainPathAllocationProblemModelPathBasedColumnGeneration model = new TrainPathAllocationProblemModelPathBasedColumnGeneration(tpa, 1, 1, MIPSolver.Type.BUILT_IN.createSolver());
+        TrainPathAllocations allocations = model.solve(Files.createTempDirectory("tpa").toString(), false, false);
+        assertEquals(1, allocations.getAllocations().size());
+        assertEquals(2, allocations.getRemovedSimpleTrainPathApplications().size());
+        TrainPathAllocationProblemModelTest.getWeight(allocations);
+
+        // with pricing, all applications are allocated
+        model = new TrainPathAllocationProblemModelPathBasedColumnGeneration(tpa, 1, TrainPathAllocationProblemModelPathBasedColumnGeneration.DEFAULT_MAX_ITERATIONS, MIPSolver.Type.BUILT_IN.createSolver());
+        allocations = model.solve(Files.createTempDirectory("tpa").toString(), false, false);
+        assertEquals(tpa.getSimpleTrainPathApplications(), allocations.getAllocations().keySet());
+        assertTrue(allocations.getRemovedSimpleTrainPathApplications().isEmpty());
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.oakmountain.tpa.solver;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TrainPathAllocationProblemModelTest {
+
+    /**
+     * Applications from A1 to D1 in groups sharing the same time window, the time windows of consecutive groups one hour apart.
+     *
+     * @param nbApplications
+     * @param nbApplicationsPerTimeWindow
+     * @return
+     */
+    static TrainPathAllocationProblem getTPA(int nbApplications, int nbApplicationsPerTimeWindow) {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        Set<SimpleTrainPathApplication> simpleTrainPathApplications = new HashSet<>();
+        for (int i = 0; i < nbApplications; i++) {
+            int hour = i / nbApplicationsPerTimeWindow;
+            simpleTrainPathApplications.add(getApplication(macro, "r" + i, 5 + hour, 14 + hour, 30));
+        }
+        return getTPA(macro, simpleTrainPathApplications);
+    }
+
+    /**
+     * Allocation problem on the test catalogue of the large topology.
+     *
+     * @param macro                       the large topology
+     * @param simpleTrainPathApplications
+     * @return
+     */
+    static TrainPathAllocationProblem getTPA(MacroscopicTopology macro, Set<SimpleTrainPathApplication> simpleTrainPathApplications) {
+        TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 20);
+        return new TrainPathAllocationProblem(macro, simpleTrainPathApplications, catalogue);
+    }
+
+    /**
+     * Application from A1 to D1 on Monday.
+     *
+     * @param macro                   the large topology
+     * @param name
+     * @param startHour
+     * @param endHour
+     * @param hardMaximumLaterArrival
+     * @return
+     */
+    static SimpleTrainPathApplication getApplication(MacroscopicTopology macro, String name, int startHour, int endHour, int hardMaximumLaterArrival) {
+        return getApplication(macro, name, new PeriodicalTimeFrame(1, startHour, 0), new PeriodicalTimeFrame(1, endHour, 0), hardMaximumLaterArrival);
+    }
+
+    /**
+     * Application from A1 to D1.
+     *
+     * @param macro                   the large topology
+     * @param name
+     * @param startTime
+     * @param endTime
+     * @param hardMaximumLaterArrival
+     * @return
+     */
+    static SimpleTrainPathApplication getApplication(MacroscopicTopology macro, String name, PeriodicalTimeFrame startTime, PeriodicalTimeFrame endTime, int hardMaximumLaterArrival) {
+        return new SimpleTrainPathApplication(name, macro.getSystemNode("A1"), macro.getSystemNode("D1"), startTime, endTime, null, 0, 0, hardMaximumLaterArrival);
+    }
+
+    /**
+     * Weight of the allocations, asserting that no slot is allocated twice.
+     *
+     * @param allocations
+     * @return
+     */
+    static long getWeight(TrainPathAllocations allocations) {
+        Set<TrainPathSlot> usedSlots = new HashSet<>();
+        long weight = 0;
+        for (SolutionCandidate solutionCandidate : allocations.getAllocations().values()) {
+            for (TrainPathSlot slot : solutionCandidate.getPath()) {
+                assertTrue(usedSlots.add(slot));
+            }
+            weight += solutionCandidate.getWeight();
+        }
+        return weight;
+    }
+
+    @Test
+    public void testSolveWithBuiltInSolver() throws Exception {
+        TrainPathAllocationProblem tpa = getTPA(6, 2);
+        Long expectedWeight = null;
+        for (TrainPathAllocationProblemModel.ModelType modelType : TrainPathAllocationProblemModel.ModelType.values()) {
+            TrainPathAllocationProblemModel model = modelType.createModel(tpa, 1, Integer.MAX_VALUE, MIPSolver.Type.BUILT_IN.createSolver());
+            TrainPathAllocations allocations = model.solve(Files.createTempDirectory("tpa").toString(), false, false);
+
+            assertEquals(tpa.getSimpleTrainPathApplications(), allocations.getAllocations().keySet());
+            long weight = getWeight(allocations);
+            if (expectedWeight == null) {
+                expectedWeight = weight;
+            }
+            assertEquals(modelType.name(), (long) expectedWeight, weight);
+        }
+    }
+
+    @Test
+    public void testParallelBuildModel() throws Exception {
+        TrainPathAllocationProblem tpa = getTPA(6, 2);
+        for (TrainPathAllocationProblemModel.ModelType modelType : TrainPathAllocationProblemModel.ModelType.values()) {
+            // the written model lists variables with bounds and types, constraints and objective
+            List<String> expectedModel = null;
+            for (int nbThreads : new int[]{1, 3}) {
+                TrainPathAllocationProblemModel model = modelType.createModel(tpa, nbThreads, Integer.MAX_VALUE, MIPSolver.Type.BUILT_IN.createSolver());
+                Path outputDir = Files.createTempDirectory("tpa");
+                model.solve(outputDir.toString(), false, false);
+                List<String> writtenModel = Files.readAllLines(outputDir.resolve("model.lp"), StandardCharsets.UTF_8);
+                if (expectedModel == null) {
+                    expectedModel = writtenModel;
+                }
+                assertEquals(modelType.name(), expectedModel, writtenModel);
+            }
+        }
+    }
+
+    @Test
+    public void testInfeasibleWithBuiltInSolver() throws Exception {
+        TrainPathAllocationProblem tpa = getTPA(4, 4);
+        for (TrainPathAllocationProblemModel.ModelType modelType : new TrainPathAllocationProblemModel.ModelType[]{TrainPathAllocationProblemModel.ModelType.ARC_NODE, TrainPathAllocationProblemModel.ModelType.PATH_BASED}) {
+            TrainPathAllocationProblemModel model = modelType.createModel(tpa, 1, Integer.MAX_VALUE, MIPSolver.Type.BUILT_IN.createSolver());
+            try {
+                model.solve(Files.createTempDirectory("tpa").toString(), false, false);
+                fail("Four applications sharing three paths must not be allocated by " + modelType);
+            } catch (InfeasibleTPAModelException e) {
+                assertFalse(e.getIisSimpleTrainPathApplications().isEmpty());
+            }
+        }
+
+        // column generation leaves one of them unallocated
+        TrainPathAllocationProblemModel model = TrainPathAllocationProblemModel.ModelType.PATH_BASED_COLUMN_GENERATION.createModel(tpa, 1, Integer.MAX_VALUE, MIPSolver.Type.BUILT_IN.createSolver());
+        TrainPathAllocations allocations = model.solve(Files.createTempDirectory("tpa").toString(), false, false);
+        assertEquals(3, allocations.getAllocations().size());
+        assertEquals(1, allocations.getRemovedSimpleTrainPathApplications().size());
+        assertFalse(allocations.getAllocations().containsKey(allocations.getRemovedSimpleTrainPathApplications().iterator().next()));
+        getWeight(allocations);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.oakmountain.tpa.solver;
+
+import org.joda.time.LocalTime;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TrainPathAllocationProblemWeekdayAggregationTest {
+
+    // Monday to Friday
+    private static final int WORKING_DAYS = 2 + 4 + 8 + 16 + 32;
+
+    @Test
+    public void testAggregateAndExpand() throws Exception {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        TrainPathApplication workingDays = new TrainPathApplication("workingDays", macro.getSystemNode("A1"), macro.getSystemNode("D1"), LocalTime.parse("05:00"), LocalTime.parse("14:00"), new Periodicity(WORKING_DAYS), 0, 0, 0);
+        TrainPathApplication wholeWeek = new TrainPathApplication("wholeWeek", macro.getSystemNode("A1"), macro.getSystemNode("D1"), LocalTime.parse("06:00"), LocalTime.parse("15:00"), Periodicity.getWholeWeekPeriodicity(), 0, 0, 0);
+        Set<SimpleTrainPathApplication> simpleTrainPathApplications = new HashSet<>();
+        simpleTrainPathApplications.addAll(workingDays.getChildren());
+        simpleTrainPathApplications.addAll(wholeWeek.getChildren());
+        TrainPathAllocationProblem tpa = TrainPathAllocationProblemModelTest.getTPA(macro, simpleTrainPathApplications);
+        TrainPathSlotCatalogue catalogue = tpa.getCatalogue();
+
+        TrainPathAllocationProblemWeekdayAggregation aggregation = TrainPathAllocationProblemWeekdayAggregation.aggregate(tpa);
+        assertNotNull(aggregation);
+        for (int day = 1; day <= 5; day++) {
+            assertEquals(1, aggregation.getRepresentativeDay(day));
+        }
+        assertEquals(6, aggregation.getRepresentativeDay(6));
+        assertEquals(6, aggregation.getRepresentativeDay(7));
+        Set<SimpleTrainPathApplication> representativeApplications = aggregation.getRepresentativeProblem().getSimpleTrainPathApplications();
+        assertEquals(new HashSet<>(Arrays.asList(workingDays.getRequestOnWeekDay(1), wholeWeek.getRequestOnWeekDay(1), wholeWeek.getRequestOnWeekDay(6))), representativeApplications);
+
+        // allocate some path to each representative application
+        Map<SimpleTrainPathApplication, SolutionCandidate> representativeAllocations = new HashMap<>();
+        for (SimpleTrainPathApplication r : representativeApplications) {
+            TrainPathDAG dag = SolutionCandidateFinder.findFeasibleDAG(macro, catalogue, r);
+            representativeAllocations.put(r, SolutionCandidateFinder.getEnumerate(dag).iterator().next());
+        }
+        TrainPathAllocations expanded = aggregation.expand(new TrainPathAllocations(aggregation.getRepresentativeProblem(), representativeAllocations, representativeApplications, new HashSet<SimpleTrainPathApplication>()));
+
+        assertSame(tpa, expanded.getTpa());
+        assertEquals(simpleTrainPathApplications.size(), expanded.getAllocations().size());
+        for (SimpleTrainPathApplication r : simpleTrainPathApplications) {
+            int day = r.getStartTime().getDayOfWeek();
+            SolutionCandidate solutionCandidate = expanded.getAllocations().get(r);
+            SolutionCandidate representative = representativeAllocations.get(r.getParent().getRequestOnWeekDay(aggregation.getRepresentativeDay(day)));
+            assertSame(r, solutionCandidate.getTrainPathApplication());
+            assertEquals(representative.getPath().size(), solutionCandidate.getPath().size());
+            for (int i = 0; i < solutionCandidate.getPath().size(); i++) {
+                TrainPathSlot slot = solutionCandidate.getPath().get(i);
+                assertSame(representative.getPath().get(i).getPeriodicalTrainPathSlot(), slot.getPeriodicalTrainPathSlot());
+                assertEquals(day, slot.getStartTime().getDayOfWeek());
+            }
+        }
+    }
+
+    @Test
+    public void testWindowCrossingMidnightIsNotAggregated() throws Exception {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        TrainPathApplication night = new TrainPathApplication("night", macro.getSystemNode("A1"), macro.getSystemNode("D1"), LocalTime.parse("20:00"), LocalTime.parse("04:00"), Periodicity.getWholeWeekPeriodicity(), 0, 0, 0);
+        TrainPathAllocationProblem tpa = TrainPathAllocationProblemModelTest.getTPA(macro, new HashSet<>(night.getChildren()));
+
+        assertNull(TrainPathAllocationProblemWeekdayAggregation.aggregate(tpa));
+    }
+}
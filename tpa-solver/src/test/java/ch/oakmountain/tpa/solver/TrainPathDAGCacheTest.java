@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 Christian Eichenberger
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.oakmountain.tpa.solver;
+
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TrainPathDAGCacheTest {
+
+    @Test
+    public void testHitReturnsViewForApplication() throws Exception {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 20);
+        SimpleTrainPathApplication r1 = new SimpleTrainPathApplication("r1", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(1, 5, 0), new PeriodicalTimeFrame(1, 14, 0), null, 0, 0, 0);
+        SimpleTrainPathApplication r2 = new SimpleTrainPathApplication("r2", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(1, 5, 0), new PeriodicalTimeFrame(1, 14, 0), null, 0, 0, 0);
+        SimpleTrainPathApplication r3 = new SimpleTrainPathApplication("r3", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(2, 5, 0), new PeriodicalTimeFrame(2, 14, 0), null, 0, 0, 0);
+        TrainPathDAGCache cache = new TrainPathDAGCache(10);
+
+        TrainPathDAG dag1 = cache.getDAG(macro, r1, r1.getParams().relaxedToMax(), catalogue);
+        TrainPathDAG dag2 = cache.getDAG(macro, r2, r2.getParams().relaxedToMax(), catalogue);
+        assertEquals(1, cache.getNbHits());
+        assertEquals(1, cache.getNbMisses());
+
+        assertSame(r2, dag2.getSimpleTrainPathApplication());
+        assertEquals(dag1.nbPaths(), dag2.nbPaths());
+        assertEquals(dag1.getNbEdges(), dag2.getNbEdges());
+        Set<SolutionCandidate> solutionCandidates = SolutionCandidateFinder.getEnumerate(dag2);
+        for (SolutionCandidate solutionCandidate : solutionCandidates) {
+            assertSame(r2, solutionCandidate.getTrainPathApplication());
+        }
+
+        // same window on another day, different pruning
+        cache.getDAG(macro, r3, r3.getParams().relaxedToMax(), catalogue);
+        cache.getDAG(macro, r1, r1.getParams().withDefaultPruning(), catalogue);
+        assertEquals(1, cache.getNbHits());
+        assertEquals(3, cache.getNbMisses());
+        assertEquals(3, cache.size());
+
+        // same window and pruning, other construction mode
+        TrainPathDAG prunedDag = cache.getDAG(macro, r2, r2.getParams().relaxedToMax().toBuilder().setReachabilityPruning(true).build(), catalogue);
+        assertEquals(1, cache.getNbHits());
+        assertEquals(4, cache.getNbMisses());
+        assertTrue(prunedDag.getParams().isReachabilityPruning());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 20);
+        SimpleTrainPathApplication r = new SimpleTrainPathApplication("r", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(1, 5, 0), new PeriodicalTimeFrame(1, 14, 0), null, 0, 0, 0);
+        TrainPathDAGCache cache = new TrainPathDAGCache(1);
+
+        cache.getDAG(macro, r, r.getParams().relaxedToMax(), catalogue);
+        cache.getDAG(macro, r, r.getParams().withDefaultPruning(), catalogue);
+        cache.getDAG(macro, r, r.getParams().relaxedToMax(), catalogue);
+        assertEquals(0, cache.getNbHits());
+        assertEquals(3, cache.getNbMisses());
+        assertEquals(2, cache.getNbEvictions());
+        assertEquals(1, cache.size());
+
+        TrainPathDAGCache disabled = new TrainPathDAGCache(0);
+        disabled.getDAG(macro, r, r.getParams().relaxedToMax(), catalogue);
+        disabled.getDAG(macro, r, r.getParams().relaxedToMax(), catalogue);
+        assertEquals(0, disabled.getNbHits());
+        assertEquals(0, disabled.size());
+    }
+}
@@ -16,13 +16,12 @@
 
 package ch.oakmountain.tpa.solver;
 
-import org.codehaus.plexus.util.dag.CycleDetectedException;
-import org.codehaus.plexus.util.dag.Vertex;
 import org.joda.time.Minutes;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.math.BigInteger;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -45,12 +44,28 @@ public class TrainPathDAGTest {
         when(r.getName()).thenReturn("r");
         when(r.getEndTime()).thenReturn(PeriodicalTimeFrame.END_OF_WEEK);
         when(r.getParams()).thenReturn(new TrainPathAllocationProblemPruningParameters(r));
+        when(cat.getNbSlots()).thenReturn(4);
+
+        TrainPathSlot slota = mock(TrainPathSlot.class);
+        TrainPathSlot slotb = mock(TrainPathSlot.class);
+        TrainPathSlot slotc = mock(TrainPathSlot.class);
+        TrainPathSlot slotd = mock(TrainPathSlot.class);
+        when(slota.getId()).thenReturn(0);
+        when(slotb.getId()).thenReturn(1);
+        when(slotc.getId()).thenReturn(2);
+        when(slotd.getId()).thenReturn(3);
+        when(slota.getName()).thenReturn("a");
+        when(slotb.getName()).thenReturn("b");
+        when(slotc.getName()).thenReturn("c");
+        when(slotd.getName()).thenReturn("d");
+
         TrainPathDAG dag = new TrainPathDAG(r, cat);
-        Vertex root = dag.addVertex("root");
-        Vertex a = dag.addVertex("a");
-        Vertex b = dag.addVertex("b");
-        Vertex c = dag.addVertex("c");
-        Vertex d = dag.addVertex("d");
+        int root = dag.getRequestStartNode();
+        int a = dag.addVertex(slota);
+        int b = dag.addVertex(slotb);
+        int c = dag.addVertex(slotc);
+        int d = dag.addVertex(slotd);
+        assertEquals(a, dag.addVertex(slota));
         /*
           root - a - b -c
                    |
@@ -63,38 +78,104 @@ public class TrainPathDAGTest {
         assertEquals(2, dag.pathsFromVertex(root));
         assertEquals(1, dag.pathsFromVertex(b));
         assertEquals(2, dag.pathsFromVertex(a));
-
-        TrainPathSlot slota = mock(TrainPathSlot.class);
-        TrainPathSlot slotb = mock(TrainPathSlot.class);
-        TrainPathSlot slotc = mock(TrainPathSlot.class);
-        TrainPathSlot slotd = mock(TrainPathSlot.class);
-        when(cat.getSlot("a")).thenReturn(slota);
-        when(cat.getSlot("b")).thenReturn(slotb);
-        when(cat.getSlot("c")).thenReturn(slotc);
-        when(cat.getSlot("d")).thenReturn(slotd);
-        when(slota.getName()).thenReturn("a");
-        when(slotb.getName()).thenReturn("b");
-        when(slotc.getName()).thenReturn("c");
-        when(slotd.getName()).thenReturn("d");
-
-        Method method = dag.getClass().getDeclaredMethod("backtrackOnVertex", Vertex.class, TrainPathDAG.Infeasible.class);
+        assertEquals(1, dag.pathsToVertex(c));
+        assertEquals(2, dag.pathsThroughVertex(a));
+        assertEquals(1, dag.pathsThroughSlot(slotd));
+        assertArrayEquals(new int[]{root, dag.getRequestEndNode(), a, b, d, c}, dag.getTopologicalOrder());
+
+        Method mark = dag.getClass().getDeclaredMethod("markSlotInfeasible", TrainPathSlot.class, TrainPathDAG.Infeasible.class);
+        mark.setAccessible(true);
+        mark.invoke(dag, slotc, TrainPathDAG.Infeasible.NOSUCCESSOR);
+        Method method = dag.getClass().getDeclaredMethod("backtrackingIter");
         method.setAccessible(true);
-        method.invoke(dag, c, TrainPathDAG.Infeasible.NOSUCCESSOR);
+        method.invoke(dag);
 
         /*
           root - a -
                    |
                    - d
          */
-        assertFalse(dag.hasEdge("b", "c"));
-        assertFalse(dag.hasEdge("a", "b"));
-        assertTrue(dag.hasEdge("root", "a"));
-        assertTrue(dag.hasEdge("a", "d"));
+        assertFalse(dag.hasEdge(b, c));
+        assertFalse(dag.hasEdge(a, b));
+        assertTrue(dag.hasEdge(root, a));
+        assertTrue(dag.hasEdge(a, d));
+        assertEquals(2, dag.getNbEdges());
         assertEquals(1, dag.pathsFromVertex(root));
         assertEquals(1, dag.pathsFromVertex(b));
         assertEquals(1, dag.pathsFromVertex(a));
     }
 
+    @Test
+    public void testBacktrackingLongChain() throws Exception {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 4, 20);
+        SimpleTrainPathApplication r = new SimpleTrainPathApplication("r", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(1, 5, 0), new PeriodicalTimeFrame(1, 15, 0), null, 0, 0, 0);
+
+        // root - s0 - s1 - ... - sn, far deeper than recursion would allow
+        TrainPathDAG dag = new TrainPathDAG(r, catalogue);
+        int nbSlots = catalogue.getNbSlots();
+        assertTrue(nbSlots >= 20000);
+        int previous = dag.getRequestStartNode();
+        for (int slotId = 0; slotId < nbSlots; slotId++) {
+            int vertex = dag.addVertex(catalogue.getSlot(slotId));
+            dag.addEdge(previous, vertex);
+            previous = vertex;
+        }
+
+        Method mark = dag.getClass().getDeclaredMethod("markSlotInfeasible", TrainPathSlot.class, TrainPathDAG.Infeasible.class);
+        mark.setAccessible(true);
+        mark.invoke(dag, catalogue.getSlot(nbSlots - 1), TrainPathDAG.Infeasible.NOSUCCESSOR);
+        Method method = dag.getClass().getDeclaredMethod("backtrackingIter");
+        method.setAccessible(true);
+        method.invoke(dag);
+
+        assertEquals(0, dag.getNbEdges());
+    }
+
+    @Test
+    public void testPathCounts() throws Exception {
+        SimpleTrainPathApplication r = mock(SimpleTrainPathApplication.class);
+        TrainPathSlotCatalogue cat = mock(TrainPathSlotCatalogue.class);
+        when(r.getName()).thenReturn("r");
+        int nbDiamonds = 70;
+        when(cat.getNbSlots()).thenReturn(2 * nbDiamonds);
+
+        /*
+          start - a_0 - a_1 - ... - a_69 - end
+                X     X     X     X
+                - b_0 - b_1 - ... - b_69 -
+         */
+        TrainPathDAG dag = new TrainPathDAG(r, cat);
+        int[] previous = new int[]{dag.getRequestStartNode()};
+        TrainPathSlot firstSlot = null;
+        for (int i = 0; i < nbDiamonds; i++) {
+            int[] current = new int[2];
+            for (int j = 0; j < 2; j++) {
+                TrainPathSlot slot = mock(TrainPathSlot.class);
+                when(slot.getId()).thenReturn(2 * i + j);
+                current[j] = dag.addVertex(slot);
+                if (firstSlot == null) {
+                    firstSlot = slot;
+                }
+                for (int p : previous) {
+                    dag.addEdge(p, current[j]);
+                }
+            }
+            previous = current;
+        }
+        for (int p : previous) {
+            dag.addEdge(p, dag.getRequestEndNode());
+        }
+
+        assertEquals(BigInteger.valueOf(2).pow(nbDiamonds), dag.nbPathsExact());
+        assertEquals(Long.MAX_VALUE, dag.nbPaths());
+        assertEquals(1, dag.pathsToVertex(dag.getVertex(firstSlot)));
+        assertEquals(Long.MAX_VALUE, dag.pathsFromSlot(firstSlot));
+        assertEquals(Long.MAX_VALUE, dag.pathsThroughSlot(firstSlot));
+        assertEquals(1, dag.pathsFromVertex(previous[0]));
+        assertEquals(Long.MAX_VALUE, dag.pathsToVertex(dag.getRequestEndNode()));
+    }
+
     @Test
     public void testSpan1() throws Exception {
         Set<SolutionCandidate> solutionCandidateSet = new HashSet<>();
@@ -224,7 +305,7 @@ public class TrainPathDAGTest {
     }
 
     @Test
-    public void constructionTest() throws CycleDetectedException {
+    public void constructionTest() {
         MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
         TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 20);
 
@@ -233,9 +314,8 @@ public class TrainPathDAGTest {
 
         // departure: 5:00, arrival: 13:30 = 5:00 + (18-1) * 0:30
         SimpleTrainPathApplication r = new SimpleTrainPathApplication("therequest", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(1, 5, 0), new PeriodicalTimeFrame(1, 13, 30), null, 0, 0, 0);
-        TrainPathAllocationProblemPruningParameters params = r.getParams();
-        params.setDefaultPruning();
-        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, catalogue);
+        TrainPathAllocationProblemPruningParameters params = r.getParams().withDefaultPruning();
+        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, params, catalogue);
 
         // exactly on train path is possible
         assertEquals(true, dag.isTargetNodeReached());
@@ -247,7 +327,7 @@ public class TrainPathDAGTest {
     }
 
     @Test
-    public void constructionTest1b() throws CycleDetectedException {
+    public void constructionTest1b() {
         MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
         TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 20);
 
@@ -256,11 +336,12 @@ public class TrainPathDAGTest {
 
         // departure: 5:00, arrival: 14:00
         SimpleTrainPathApplication r = new SimpleTrainPathApplication("therequest", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(1, 5, 0), new PeriodicalTimeFrame(1, 14, 00), null, 0, 0, 0);
-        TrainPathAllocationProblemPruningParameters params = r.getParams();
-        params.setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(30).toStandardDuration());
-        params.setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(40).toStandardDuration());
-        params.setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(40).toStandardDuration());
-        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, catalogue);
+        TrainPathAllocationProblemPruningParameters params = r.getParams().toBuilder()
+                .setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(30).toStandardDuration())
+                .setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(40).toStandardDuration())
+                .setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(40).toStandardDuration())
+                .build();
+        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, params, catalogue);
 
         // there are 18 positions to spend the additional 30 minutes...
         assertEquals(true, dag.isTargetNodeReached());
@@ -269,7 +350,7 @@ public class TrainPathDAGTest {
     }
 
     @Test
-    public void constructionTest1c() throws CycleDetectedException {
+    public void constructionTest1c() {
         MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
         TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 20);
 
@@ -278,11 +359,12 @@ public class TrainPathDAGTest {
 
         // departure: 5:00, arrival: 14:00
         SimpleTrainPathApplication r = new SimpleTrainPathApplication("therequest", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(1, 5, 0), new PeriodicalTimeFrame(1, 14, 00), null, 0, 0, 0);
-        TrainPathAllocationProblemPruningParameters params = r.getParams();
-        params.setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(0).toStandardDuration());
-        params.setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(40).toStandardDuration());
-        params.setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(40).toStandardDuration());
-        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, catalogue);
+        TrainPathAllocationProblemPruningParameters params = r.getParams().toBuilder()
+                .setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(0).toStandardDuration())
+                .setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(40).toStandardDuration())
+                .setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(40).toStandardDuration())
+                .build();
+        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, params, catalogue);
 
         // the additional 30 minutes cannot be spent at the departure node, so there are 18-1=17 positions to spend the additional 30 minutes...
         assertEquals(true, dag.isTargetNodeReached());
@@ -291,7 +373,7 @@ public class TrainPathDAGTest {
     }
 
     @Test
-    public void constructionTest1d() throws CycleDetectedException {
+    public void constructionTest1d() {
         MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
         TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 20);
 
@@ -300,11 +382,12 @@ public class TrainPathDAGTest {
 
         // departure: 5:00, arrival: 14:00
         SimpleTrainPathApplication r = new SimpleTrainPathApplication("therequest", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(1, 5, 0), new PeriodicalTimeFrame(1, 14, 00), null, 0, 0, 0);
-        TrainPathAllocationProblemPruningParameters params = r.getParams();
-        params.setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(0).toStandardDuration());
-        params.setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(10).toStandardDuration());
-        params.setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(40).toStandardDuration());
-        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, catalogue);
+        TrainPathAllocationProblemPruningParameters params = r.getParams().toBuilder()
+                .setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(0).toStandardDuration())
+                .setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(10).toStandardDuration())
+                .setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(40).toStandardDuration())
+                .build();
+        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, params, catalogue);
 
         // the additional 30 minutes have to be spent at the final node
         assertEquals(true, dag.isTargetNodeReached());
@@ -313,7 +396,135 @@ public class TrainPathDAGTest {
     }
 
     @Test
-    public void constructionTest2() throws CycleDetectedException, IllegalAccessException, IOException {
+    public void widenTest() {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 20);
+
+        // departure: 5:00, arrival: 14:00
+        SimpleTrainPathApplication r = new SimpleTrainPathApplication("therequest", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(1, 5, 0), new PeriodicalTimeFrame(1, 14, 00), null, 0, 0, 0);
+        TrainPathAllocationProblemPruningParameters params = r.getParams().toBuilder()
+                .setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(0).toStandardDuration())
+                .setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(10).toStandardDuration())
+                .setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(40).toStandardDuration())
+                .build();
+        TrainPathAllocationProblemPruningParameters relaxedParams = params.toBuilder()
+                .setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(30).toStandardDuration())
+                .setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(40).toStandardDuration())
+                .build();
+        assertTrue(relaxedParams.isRelaxationOf(params));
+        assertFalse(params.isRelaxationOf(relaxedParams));
+
+        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, params, catalogue);
+        TrainPathDAG widened = dag.widen(macro, relaxedParams);
+        TrainPathDAG constructed = TrainPathDAG.constructDAG(macro, r, relaxedParams, catalogue);
+
+        // the widened DAG is the DAG constructed from scratch, the original DAG is untouched
+        assertEquals(1, dag.nbPaths());
+        assertEquals(18, widened.nbPaths());
+        assertEquals(constructed.getNbVertices(), widened.getNbVertices());
+        assertEquals(constructed.getNbEdges(), widened.getNbEdges());
+        for (int edge = 0; edge < constructed.getNbEdges(); edge++) {
+            TrainPathSlot fromSlot = constructed.getSlot(constructed.getEdgeSource(edge));
+            TrainPathSlot toSlot = constructed.getSlot(constructed.getEdgeTarget(edge));
+            int from = fromSlot == null ? widened.getRequestStartNode() : widened.getVertex(fromSlot);
+            int to = toSlot == null ? widened.getRequestEndNode() : widened.getVertex(toSlot);
+            assertTrue(widened.hasEdge(from, to));
+        }
+        assertEquals(SolutionCandidateFinder.getEnumerate(constructed), SolutionCandidateFinder.getEnumerate(widened));
+
+        try {
+            widened.widen(macro, params);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void reachabilityPruningTest() {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 20);
+        SimpleTrainPathApplication r = new SimpleTrainPathApplication("therequest", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(1, 5, 0), new PeriodicalTimeFrame(1, 15, 0), null, 0, 0, 0);
+        TrainPathAllocationProblemPruningParameters params = r.getParams().toBuilder()
+                .setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(40).toStandardDuration())
+                .setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(40).toStandardDuration())
+                .setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(60).toStandardDuration())
+                .build();
+        TrainPathAllocationProblemPruningParameters relaxedParams = params.toBuilder()
+                .setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(60).toStandardDuration())
+                .build();
+
+        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, params, catalogue);
+        TrainPathDAG relaxedDag = TrainPathDAG.constructDAG(macro, r, relaxedParams, catalogue);
+        assertEquals(0, dag.getNbPrunedVertices());
+        assertEquals(0, dag.getNbPrunedEdges());
+
+        TrainPathAllocationProblemPruningParameters prunedParams = params.toBuilder().setReachabilityPruning(true).build();
+        TrainPathAllocationProblemPruningParameters prunedRelaxedParams = relaxedParams.toBuilder().setReachabilityPruning(true).build();
+        assertFalse(prunedParams.equals(params));
+        assertFalse(prunedParams.isRelaxationOf(params));
+        assertTrue(prunedRelaxedParams.isRelaxationOf(prunedParams));
+
+        TrainPathDAG prunedDag = TrainPathDAG.constructDAG(macro, r, prunedParams, catalogue);
+
+        // same paths, fewer slots explored
+        assertTrue(prunedDag.getNbPrunedVertices() > 0);
+        assertTrue(prunedDag.getNbPrunedEdges() >= prunedDag.getNbPrunedVertices());
+        assertTrue(prunedDag.getNbVertices() < dag.getNbVertices());
+        assertEquals(dag.getNbEdges(), prunedDag.getNbEdges());
+        assertEquals(dag.nbPaths(), prunedDag.nbPaths());
+        assertEquals(SolutionCandidateFinder.getEnumerate(dag), SolutionCandidateFinder.getEnumerate(prunedDag));
+
+        // widening keeps the bounds
+        TrainPathDAG widenedDag = prunedDag.widen(macro, prunedRelaxedParams);
+        assertEquals(relaxedDag.nbPaths(), widenedDag.nbPaths());
+        assertEquals(SolutionCandidateFinder.getEnumerate(relaxedDag), SolutionCandidateFinder.getEnumerate(widenedDag));
+    }
+
+    @Test
+    public void arcWeightTest() {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 20);
+        // window across the end of the week, so earliness and lateness wrap around
+        SimpleTrainPathApplication r = new SimpleTrainPathApplication("therequest", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(7, 20, 0), new PeriodicalTimeFrame(1, 6, 0), null, 60, 0, 60);
+        TrainPathAllocationProblemPruningParameters params = r.getParams().toBuilder()
+                .setMAXIMUM_EARLIER_DEPARTURE(Minutes.minutes(60).toStandardDuration())
+                .setMAXIMUM_LATER_ARRIVAL(Minutes.minutes(60).toStandardDuration())
+                .setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(40).toStandardDuration())
+                .setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(60).toStandardDuration())
+                .setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(60).toStandardDuration())
+                .build();
+        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, params, catalogue);
+        assertTrue(dag.isTargetNodeReached());
+
+        long earliness = 0;
+        long lateness = 0;
+        for (int vertex = 0; vertex < dag.getNbVertices(); vertex++) {
+            for (int edge = dag.getChildEdgesBegin(vertex); edge < dag.getChildEdgesEnd(vertex); edge++) {
+                int child = dag.getEdgeTarget(edge);
+                long expected;
+                if (child == dag.getRequestEndNode()) {
+                    expected = dag.getSlot(vertex).getEndTime().distanceAfterInterval(r.getStartTime(), r.getEndTime()).getMillis();
+                    lateness = Math.max(lateness, expected);
+                } else {
+                    TrainPathSlot slot = dag.getSlot(child);
+                    expected = slot.getEndTime().distanceAfter(slot.getStartTime()).getMillis();
+                    if (vertex == dag.getRequestStartNode()) {
+                        expected += slot.getStartTime().distanceBeforeInterval(r.getStartTime(), r.getEndTime()).getMillis();
+                        earliness = Math.max(earliness, slot.getStartTime().distanceBeforeInterval(r.getStartTime(), r.getEndTime()).getMillis());
+                    } else {
+                        expected += slot.getStartTime().distanceAfter(dag.getSlot(vertex).getEndTime()).getMillis();
+                    }
+                }
+                assertEquals(expected, dag.getArcWeight(vertex, child));
+            }
+        }
+        assertTrue(earliness > 0);
+        assertTrue(lateness > 0);
+    }
+
+    @Test
+    public void constructionTest2() throws IllegalAccessException, IOException {
         MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
         TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 20);
 
@@ -322,11 +533,12 @@ public class TrainPathDAGTest {
 
         // departure: 5:00, arrival: 14:00, 18*30
         SimpleTrainPathApplication r = new SimpleTrainPathApplication("therequest", macro.getSystemNode("A1"), macro.getSystemNode("D1"), new PeriodicalTimeFrame(1, 5, 0), new PeriodicalTimeFrame(1, 15, 0), null, 0, 0, 0);
-        TrainPathAllocationProblemPruningParameters params = r.getParams();
-        params.setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(40).toStandardDuration());
-        params.setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(40).toStandardDuration());
-        params.setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(60).toStandardDuration());
-        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, catalogue);
+        TrainPathAllocationProblemPruningParameters params = r.getParams().toBuilder()
+                .setMAXIMUM_ADDITIONAL_DWELL_TIME(Minutes.minutes(40).toStandardDuration())
+                .setMAXIMUM_LATER_DEPARTURE(Minutes.minutes(40).toStandardDuration())
+                .setMAXIMUM_EARLIER_ARRIVAL(Minutes.minutes(60).toStandardDuration())
+                .build();
+        TrainPathDAG dag = TrainPathDAG.constructDAG(macro, r, params, catalogue);
 
         // exactly on train path is possible
         assertEquals(true, dag.isTargetNodeReached());
@@ -335,6 +547,7 @@ public class TrainPathDAGTest {
 
         // enumeration
         for (double ratio = 0.1; ratio <= 1; ratio += 0.1) {
+            @SuppressWarnings("deprecation")
             TrainPathDAG.SolutionCandidateEnumerationResult result = dag.enumerate(ratio);
             Set<SolutionCandidate> solutionCandidates = result.getSolutionCandidates();
             //TpaWebPersistor.createGraph(r.getName() + "_dag" + ((int) ratio * 10), "output", dag.toCSV(solutionCandidates, false), "<h1>Train Path Slot DAG for Request " + r.getName() + "</h1>\n" + r.getHTMLDescription(macro, catalogue));
@@ -21,9 +21,12 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.util.List;
+
 import static org.joda.time.DateTimeConstants.MONDAY;
 import static org.joda.time.DateTimeConstants.SUNDAY;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 
 /**
@@ -208,4 +211,50 @@ public class TrainPathSlotCatalogueTest {
         assertEquals(4, tps.size());
         */
     }
+
+    @Test
+    public void testGetSortedTrainPathSlotsWrapping() throws Exception {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 45);
+        SystemNode from = macro.getSystemNode("A2");
+        SystemNode to = macro.getSystemNode("A3");
+
+        // slots at :00 and :30 every day
+        List<TrainPathSlot> slots = catalogue.getSortedTrainPathSlots(from, to, new PeriodicalTimeFrame(SUNDAY, 22, 45), new PeriodicalTimeFrame(MONDAY, 1, 0));
+        assertEquals(5, slots.size());
+        assertEquals(new PeriodicalTimeFrame(SUNDAY, 23, 0), slots.get(0).getStartTime());
+        assertEquals(new PeriodicalTimeFrame(SUNDAY, 23, 30), slots.get(1).getStartTime());
+        assertEquals(new PeriodicalTimeFrame(MONDAY, 0, 0), slots.get(2).getStartTime());
+        assertEquals(new PeriodicalTimeFrame(MONDAY, 0, 30), slots.get(3).getStartTime());
+        assertEquals(new PeriodicalTimeFrame(MONDAY, 1, 0), slots.get(4).getStartTime());
+
+        slots = catalogue.getSortedTrainPathSlots(from, to, new PeriodicalTimeFrame(MONDAY, 5, 0), new PeriodicalTimeFrame(MONDAY, 5, 29));
+        assertEquals(1, slots.size());
+        assertEquals(new PeriodicalTimeFrame(MONDAY, 5, 0), slots.get(0).getStartTime());
+
+        slots = catalogue.getSortedTrainPathSlots(from, to, new PeriodicalTimeFrame(MONDAY, 5, 1), new PeriodicalTimeFrame(MONDAY, 5, 29));
+        assertEquals(0, slots.size());
+
+        slots = catalogue.getSortedTrainPathSlots(from, to, PeriodicalTimeFrame.START_OF_WEEK, PeriodicalTimeFrame.END_OF_WEEK);
+        assertEquals(7 * 24 * 2, slots.size());
+        for (int i = 1; i < slots.size(); i++) {
+            assertTrue(slots.get(i - 1).getStartTime().isBefore(slots.get(i).getStartTime()));
+        }
+
+        // unknown link
+        assertEquals(0, catalogue.getSortedTrainPathSlots(from, from, PeriodicalTimeFrame.START_OF_WEEK, PeriodicalTimeFrame.END_OF_WEEK).size());
+    }
+
+    @Test
+    public void testSlotIds() throws Exception {
+        MacroscopicTopology macro = MacroscopicTopology.getLargeTopology();
+        TrainPathSlotCatalogue catalogue = TrainPathSlotCatalogue.generateTestTrainPathCatalogue(macro, 2, 45);
+
+        assertEquals(7 * catalogue.getNbPeriodicalSlots(), catalogue.getNbSlots());
+        for (int id = 0; id < catalogue.getNbSlots(); id++) {
+            TrainPathSlot slot = catalogue.getSlot(id);
+            assertEquals(id, slot.getId());
+            assertEquals(slot, catalogue.getSlot(slot.getName()));
+        }
+    }
 }
\ No newline at end of file